@@ -2,8 +2,10 @@ package com.example.calculator;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
 @SpringBootApplication
+@EnableConfigurationProperties(CalculatorProperties.class)
 public class CalculatorApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,195 @@
+package com.example.calculator;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Application configuration, bound from the {@code calculator.*} properties.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "calculator")
+public class CalculatorProperties {
+
+    private Validation validation = new Validation();
+
+    private Parser parser = new Parser();
+
+    private Exchange exchange = new Exchange();
+
+    private Snapshot snapshot = new Snapshot();
+
+    private ResultCache resultCache = new ResultCache();
+
+    private Sharding sharding = new Sharding();
+
+    private Memory memory = new Memory();
+
+    private Progress progress = new Progress();
+
+    private Tenants tenants = new Tenants();
+
+    @Getter
+    @Setter
+    public static class Validation {
+        /**
+         * Maximum number of errors listed in a validation report.
+         */
+        private int maxErrors = 100;
+    }
+
+    @Getter
+    @Setter
+    public static class Parser {
+        /**
+         * Sum document totals per customer, currency and document type while parsing, so that
+         * each customer balance takes one conversion per currency instead of one per document.
+         */
+        private boolean precomputeTotals = false;
+
+        /**
+         * Estimated average number of documents per customer, used with the upload size to size the
+         * customer index before parsing.
+         */
+        private int rowsPerCustomer = 8;
+
+        /**
+         * Store parsed documents in direct buffers outside of the heap, for very large files. Parent documents
+         * are then validated while parsing.
+         */
+        private boolean offHeapDocuments = false;
+
+        /**
+         * Number of parsed documents files kept for uploads of the same file, 0 to disable the cache.
+         */
+        private int cacheSize = 0;
+    }
+
+    @Getter
+    @Setter
+    public static class Exchange {
+        /**
+         * Significant digits of the currency conversion factors, 0 for unlimited precision.
+         */
+        private int precision = 34;
+    }
+
+    @Getter
+    @Setter
+    public static class Snapshot {
+        /**
+         * Save the parsed documents cache and the exchange rate sets on shutdown, and reload them on startup.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Snapshot file.
+         */
+        private String path = "calculator-snapshot.bin";
+    }
+
+    @Getter
+    @Setter
+    public static class ResultCache {
+        /**
+         * Bound of the estimated size of the cached sumInvoices results in bytes, 0 to disable the cache.
+         */
+        private long maxBytes = 0;
+
+        /**
+         * Time a result is kept after it is computed.
+         */
+        private Duration ttl = Duration.ofMinutes(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Sharding {
+        /**
+         * Base URLs of the worker instances that CSV documents files are split across by customer, none to
+         * process files locally. Workers are instances of this application without workers of their own.
+         */
+        private List<String> workers = new ArrayList<>();
+
+        /**
+         * Time to wait for the response of a worker.
+         */
+        private Duration timeout = Duration.ofMinutes(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Memory {
+        /**
+         * Budget of the estimated memory held by a request parsing a documents file in bytes, requests exceeding
+         * it fail with 413 Payload Too Large. 0 to only report the memory of the requests.
+         */
+        private long maxRequestBytes = 0;
+    }
+
+    @Getter
+    @Setter
+    public static class Progress {
+        /**
+         * Interval of the progress events sent to the subscribers of a request.
+         */
+        private Duration interval = Duration.ofMillis(500);
+
+        /**
+         * Time after which a progress subscription is closed if its request has not completed.
+         */
+        private Duration timeout = Duration.ofMinutes(30);
+    }
+
+    @Getter
+    @Setter
+    public static class Tenants {
+        /**
+         * Calculations running at the same time across all tenants, 0 to disable tenant scheduling.
+         */
+        private int concurrency = 0;
+
+        /**
+         * Time a request waits for a calculation slot before it fails with 503 Service Unavailable.
+         */
+        private Duration queueTimeout = Duration.ofSeconds(30);
+
+        /**
+         * Tenants by API key, sent in the X-Api-Key header.
+         */
+        private Map<String, String> apiKeys = new LinkedHashMap<>();
+
+        /**
+         * Pools by tenant. Requests of tenants without a pool use the pool of the default tenant, which has the
+         * default settings if it is not configured.
+         */
+        private Map<String, Pool> pools = new LinkedHashMap<>();
+
+        @Getter
+        @Setter
+        public static class Pool {
+            /**
+             * Calculations of the tenant running at the same time.
+             */
+            private int concurrency = 2;
+
+            /**
+             * Requests of the tenant waiting for a calculation slot, further requests fail with 429 Too Many
+             * Requests.
+             */
+            private int queueCapacity = 16;
+
+            /**
+             * Share of the calculation slots of the tenant relative to the other waiting tenants.
+             */
+            private int weight = 1;
+        }
+    }
+}
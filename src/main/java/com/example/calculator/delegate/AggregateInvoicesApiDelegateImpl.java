@@ -0,0 +1,201 @@
+package com.example.calculator.delegate;
+
+import com.example.calculator.CalculatorProperties;
+import com.example.calculator.exception.CurrencyExchangeException;
+import com.example.calculator.exception.ValidationReportException;
+import com.example.calculator.memory.RequestMemoryAccounting;
+import com.example.calculator.model.AggregateGroup;
+import com.example.calculator.model.AggregationDimension;
+import com.example.calculator.model.AggregationMeasure;
+import com.example.calculator.model.Customer;
+import com.example.calculator.model.ExchangeRate;
+import com.example.calculator.model.ValidationMode;
+import com.example.calculator.progress.ProgressRegistry;
+import com.example.calculator.service.AggregationService;
+import com.example.calculator.service.DocumentsFileParserService;
+import com.example.calculator.service.DocumentsParseOptions;
+import com.example.calculator.service.ParsedDocumentsCache;
+import com.example.calculator.specification.api.AggregateInvoicesApiDelegate;
+import com.example.calculator.specification.model.AggregateGroupDto;
+import com.example.calculator.specification.model.AggregateResponseDto;
+import com.example.calculator.tenant.TenantScheduler;
+import com.example.calculator.timing.Stage;
+import com.example.calculator.timing.StageTimer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.*;
+
+/**
+ * Implementation of {@link com.example.calculator.specification.api.AggregateInvoicesApiDelegate AggregateInvoicesApiDelegate}
+ */
+@Slf4j
+@Component
+public class AggregateInvoicesApiDelegateImpl extends DocumentsApiDelegateSupport
+        implements AggregateInvoicesApiDelegate {
+
+    /**
+     * Estimated size of an aggregated group and of its response, without the strings of its customer.
+     */
+    private static final long GROUP_BYTES = 256;
+
+    private AggregationService aggregationService;
+
+    public AggregateInvoicesApiDelegateImpl(AggregationService aggregationService,
+                                            DocumentsFileParserService documentsFileParserService,
+                                            CalculatorProperties calculatorProperties,
+                                            ParsedDocumentsCache parsedDocumentsCache,
+                                            RequestMemoryAccounting requestMemoryAccounting,
+                                            ProgressRegistry progressRegistry,
+                                            TenantScheduler tenantScheduler) {
+        super(documentsFileParserService, calculatorProperties, parsedDocumentsCache, requestMemoryAccounting,
+                progressRegistry, tenantScheduler);
+        this.aggregationService = aggregationService;
+    }
+
+    /**
+     * Aggregate the documents in the file by the requested dimensions, using the provided output currency and
+     * currency exchange rates.
+     *
+     * @param file The documents file, in any of the formats accepted by sumInvoices (required)
+     * @param exchangeRates A list of currencies and exchange rates (for example: EUR:1,USD:0.987,GBP:0.878)  (required)
+     * @param outputCurrency ISO 4217 currency code (required)
+     * @param customerVat Only aggregate the documents of the customer with this VAT number (optional)
+     * @param validationMode FAIL_FAST (default) or COLLECT_ALL (optional)
+     * @param groupBy CUSTOMER, CURRENCY and/or DOCUMENT_TYPE, CUSTOMER by default (optional)
+     * @param measures SUM, COUNT, MIN and/or MAX, SUM by default (optional)
+     * @return The requested measures per group, with the duration of the request stages in the Server-Timing header.
+     * @throws ValidationReportException If validationMode is COLLECT_ALL and the file contains invalid documents.
+     */
+    @Override
+    public ResponseEntity<AggregateResponseDto> aggregateInvoices(MultipartFile file,
+                                                                  List<String> exchangeRates,
+                                                                  String outputCurrency,
+                                                                  String customerVat,
+                                                                  String validationMode,
+                                                                  List<String> groupBy,
+                                                                  List<String> measures) {
+        final StageTimer timer = StageTimer.current();
+        timer.stop(Stage.UPLOAD);
+
+        final Currency outputCurrencyObject = getOutputCurrency(outputCurrency);
+        final ValidationMode validationModeValue = getValidationMode(validationMode);
+        final Set<AggregationDimension> dimensions = getValues(groupBy, AggregationDimension.class,
+                AggregationDimension.CUSTOMER, "groupBy dimension");
+        final Set<AggregationMeasure> measureSet = getValues(measures, AggregationMeasure.class,
+                AggregationMeasure.SUM, "measure");
+
+        timer.start(Stage.EXCHANGE_RATES);
+        final Collection<ExchangeRate> exchangeRateSet = getExchangeRates(exchangeRates);
+        timer.stop(Stage.EXCHANGE_RATES);
+
+        admit(file, timer);
+        final DocumentsParseOptions parseOptions = getParseOptions(file, customerVat, validationModeValue, exchangeRateSet)
+                .build();
+
+        timer.start(Stage.PARSE);
+        final Map<String, Customer> customersMap = parseCustomers(file, parseOptions);
+        timer.stop(Stage.PARSE);
+
+        timer.start(Stage.CALCULATE);
+        if (parseOptions.getProgress() != null) {
+            parseOptions.getProgress().startCalculation(customersMap.size());
+        }
+        final List<AggregateGroup> groups;
+        try {
+            groups = aggregationService.aggregate(customersMap.values(), dimensions, outputCurrencyObject,
+                    exchangeRateSet);
+        } catch (CurrencyExchangeException currEx) {
+            log.info("Error while aggregating documents: {}", currEx.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("Currency conversion error from [%s] to [%s]: %s",
+                            currEx.getFromCurrency(), currEx.getToCurrency(), currEx.getMessage()));
+        } catch (ArithmeticException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Aggregated amounts exceed the supported range");
+        }
+
+        if (parseOptions.getProgress() != null) {
+            parseOptions.getProgress().customersSummed(customersMap.size());
+        }
+
+        final List<AggregateGroupDto> groupDtos = new ArrayList<>(groups.size());
+        for (AggregateGroup group : groups) {
+            parseOptions.getMemoryBudget().charge(GROUP_BYTES);
+            groupDtos.add(toDto(group, measureSet));
+        }
+
+        AggregateResponseDto responseDto = new AggregateResponseDto();
+        responseDto.setCurrency(outputCurrency);
+        responseDto.setGroups(groupDtos);
+        timer.stop(Stage.CALCULATE);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(StageTimer.SERVER_TIMING_HEADER, timer.toServerTiming())
+                .body(responseDto);
+    }
+
+    private static AggregateGroupDto toDto(AggregateGroup group, Set<AggregationMeasure> measures) {
+        AggregateGroupDto groupDto = new AggregateGroupDto();
+        if (group.getCustomer() != null) {
+            groupDto.setCustomerName(group.getCustomer().getName());
+            groupDto.setCustomerVat(group.getCustomer().getVatNumber());
+        }
+        if (group.getCurrency() != null) {
+            groupDto.setCurrency(group.getCurrency().getCurrencyCode());
+        }
+        if (group.getDocumentType() != null) {
+            groupDto.setDocumentType(AggregateGroupDto.DocumentTypeEnum.fromValue(group.getDocumentType().name()));
+        }
+        if (measures.contains(AggregationMeasure.SUM)) {
+            groupDto.setSum(group.getSum());
+        }
+        if (measures.contains(AggregationMeasure.COUNT)) {
+            groupDto.setCount(group.getCount());
+        }
+        if (measures.contains(AggregationMeasure.MIN)) {
+            groupDto.setMin(group.getMin());
+        }
+        if (measures.contains(AggregationMeasure.MAX)) {
+            groupDto.setMax(group.getMax());
+        }
+        return groupDto;
+    }
+
+    /**
+     * Resolve a list of enum names.
+     *
+     * @param names        Names of the values (optional)
+     * @param type         The enum type
+     * @param defaultValue Value used if no names are specified
+     * @param description  Description of the values in error messages
+     * @return The set of values
+     * @throws ResponseStatusException If a name is not valid
+     */
+    private static <E extends Enum<E>> Set<E> getValues(List<String> names, Class<E> type, E defaultValue,
+                                                        String description) throws ResponseStatusException {
+        if (names == null || names.stream().allMatch(StringUtils::isBlank)) {
+            return EnumSet.of(defaultValue);
+        }
+        Set<E> values = EnumSet.noneOf(type);
+        for (String name : names) {
+            if (StringUtils.isBlank(name)) {
+                continue;
+            }
+            try {
+                values.add(Enum.valueOf(type, name));
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        String.format("Unsupported %s: %s", description, name));
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,404 @@
+package com.example.calculator.delegate;
+
+import com.example.calculator.CalculatorProperties;
+import com.example.calculator.exception.DocumentValidationException;
+import com.example.calculator.exception.UnsupportedCurrencyException;
+import com.example.calculator.exception.ValidationReportException;
+import com.example.calculator.io.CompressedInputStreams;
+import com.example.calculator.memory.RequestMemoryAccounting;
+import com.example.calculator.progress.Progress;
+import com.example.calculator.progress.ProgressController;
+import com.example.calculator.progress.ProgressInputStream;
+import com.example.calculator.progress.ProgressRegistry;
+import com.example.calculator.model.Customer;
+import com.example.calculator.model.ExchangeRate;
+import com.example.calculator.model.ValidationMode;
+import com.example.calculator.service.DocumentsFileParserService;
+import com.example.calculator.service.DocumentsParseOptions;
+import com.example.calculator.service.DocumentsParseResult;
+import com.example.calculator.service.ParsedDocumentsCache;
+import com.example.calculator.store.OffHeapDocumentStore;
+import com.example.calculator.tenant.TenantScheduler;
+import com.example.calculator.timing.Stage;
+import com.example.calculator.timing.StageTimer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Request handling shared by the delegates of the endpoints that process an uploaded documents file:
+ * validation of the exchange rates and output currency, and parsing of the file.
+ */
+@Slf4j
+abstract class DocumentsApiDelegateSupport {
+
+    private static final Pattern PATTERN_CURRENCY_CODE = Pattern.compile("^([A-Z]){3}$");
+
+    /**
+     * Approximate size of a documents file row in bytes, to estimate the number of rows of an upload.
+     */
+    private static final int AVERAGE_ROW_BYTES = 48;
+    /**
+     * Upper bound of the estimated number of customers, the customer index grows past it if needed.
+     */
+    private static final int MAX_EXPECTED_CUSTOMERS = 1 << 20;
+
+    protected final DocumentsFileParserService documentsFileParserService;
+    protected final CalculatorProperties calculatorProperties;
+    private final ParsedDocumentsCache parsedDocumentsCache;
+    private final RequestMemoryAccounting requestMemoryAccounting;
+    private final ProgressRegistry progressRegistry;
+    private final TenantScheduler tenantScheduler;
+
+    protected DocumentsApiDelegateSupport(DocumentsFileParserService documentsFileParserService,
+                                          CalculatorProperties calculatorProperties,
+                                          ParsedDocumentsCache parsedDocumentsCache,
+                                          RequestMemoryAccounting requestMemoryAccounting,
+                                          ProgressRegistry progressRegistry,
+                                          TenantScheduler tenantScheduler) {
+        this.documentsFileParserService = documentsFileParserService;
+        this.calculatorProperties = calculatorProperties;
+        this.parsedDocumentsCache = parsedDocumentsCache;
+        this.requestMemoryAccounting = requestMemoryAccounting;
+        this.progressRegistry = progressRegistry;
+        this.tenantScheduler = tenantScheduler;
+    }
+
+    /**
+     * Wait until the tenant of the request may start a calculation, if tenant scheduling is enabled, see
+     * {@link TenantScheduler}. The slot is released when the request completes; outside of a web request the
+     * calculation is not scheduled.
+     *
+     * @param file  The uploaded file, its size is the cost of the calculation
+     * @param timer The timer of the request, which records the wait as the queue stage
+     * @throws ResponseStatusException If the API key is unknown, or the tenant has too many waiting requests, or
+     *                                 no slot became free in time.
+     */
+    protected void admit(MultipartFile file, StageTimer timer) throws ResponseStatusException {
+        if (!tenantScheduler.isEnabled()
+                || !(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return;
+        }
+        final String tenant = resolveTenant(attributes.getRequest());
+        timer.start(Stage.QUEUE);
+        final TenantScheduler.Admission admission = tenantScheduler.admit(tenant, file.getSize());
+        timer.stop(Stage.QUEUE);
+        attributes.registerDestructionCallback(TenantScheduler.class.getName(), admission::release,
+                RequestAttributes.SCOPE_REQUEST);
+    }
+
+    /**
+     * Identify the tenant of a request from its headers, see {@link TenantScheduler#resolveTenant}.
+     */
+    private String resolveTenant(HttpServletRequest request) throws ResponseStatusException {
+        return tenantScheduler.resolveTenant(request.getHeader(TenantScheduler.API_KEY_HEADER),
+                request.getHeader(TenantScheduler.TENANT_HEADER));
+    }
+
+    /**
+     * Parse and validate the exchange rates of a request.
+     *
+     * @param exchangeRateStringList Exchange rates, for example EUR:1, or USD:0.987@2024-01-01 for a rate effective
+     *                               from a date
+     * @return A collection {@link com.example.calculator.model.ExchangeRate ExchangeRate} models
+     * @throws ResponseStatusException If the exchange rates are not valid
+     */
+    protected Collection<ExchangeRate> getExchangeRates(List<String> exchangeRateStringList)
+            throws ResponseStatusException {
+        try {
+            return new ExchangeRatesParser().parse(exchangeRateStringList);
+        } catch (UnsupportedCurrencyException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Build the options for parsing the documents file of a request, with the memory budget of the request,
+     * which the endpoint then charges with its results.
+     *
+     * @param file           The uploaded file, its size is used to estimate the number of customers
+     * @param customerVat    Filter customers with specified VAT number (optional)
+     * @param validationMode The validation mode
+     * @param exchangeRates  The exchange rates of the request
+     * @return The parse options builder, for endpoint specific options
+     */
+    protected DocumentsParseOptions.DocumentsParseOptionsBuilder getParseOptions(MultipartFile file,
+                                                                                 String customerVat,
+                                                                                 ValidationMode validationMode,
+                                                                                 Collection<ExchangeRate> exchangeRates) {
+        final DocumentsParseOptions.DocumentsParseOptionsBuilder parseOptions = DocumentsParseOptions.builder()
+                .filterVatNumber(customerVat)
+                .validationMode(validationMode)
+                .maxErrors(calculatorProperties.getValidation().getMaxErrors())
+                .expectedCustomers(getExpectedCustomers(file.getSize()))
+                .expectedDocuments(file.getSize() / AVERAGE_ROW_BYTES)
+                .documentStore(createDocumentStore())
+                .memoryBudget(requestMemoryAccounting.createBudget())
+                .progress(startProgress(file));
+        if (validationMode == ValidationMode.COLLECT_ALL) {
+            parseOptions.supportedCurrencies(exchangeRates.stream()
+                    .map(ExchangeRate::getCurrency)
+                    .collect(Collectors.toSet()));
+        }
+        return parseOptions;
+    }
+
+    /**
+     * Create an off-heap store for the documents of the request if enabled. The store is closed when the request
+     * completes; outside of a web request its buffers are released once it is garbage collected.
+     *
+     * @return The store, or null if documents are kept on the heap
+     */
+    private OffHeapDocumentStore createDocumentStore() {
+        if (!calculatorProperties.getParser().isOffHeapDocuments()) {
+            return null;
+        }
+        final OffHeapDocumentStore documentStore = new OffHeapDocumentStore();
+        final RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.registerDestructionCallback(OffHeapDocumentStore.class.getName(), documentStore::close,
+                    RequestAttributes.SCOPE_REQUEST);
+        }
+        return documentStore;
+    }
+
+    /**
+     * Start tracking the progress of the request if it sent a progress id, see {@link ProgressController}. The
+     * progress is finished when the request completes.
+     *
+     * @param file The uploaded file, its size is the total of the bytes read
+     * @return The progress, or null if the request has no progress id
+     * @throws ResponseStatusException 409 if a running request of the same tenant has the progress id
+     */
+    private Progress startProgress(MultipartFile file) {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return null;
+        }
+        final String progressId = attributes.getRequest().getHeader(ProgressController.PROGRESS_ID_HEADER);
+        if (StringUtils.isBlank(progressId)) {
+            return null;
+        }
+        final Progress progress = progressRegistry.start(resolveTenant(attributes.getRequest()), progressId,
+                file.getSize());
+        attributes.registerDestructionCallback(Progress.class.getName(), progress::finish,
+                RequestAttributes.SCOPE_REQUEST);
+        return progress;
+    }
+
+    /**
+     * Estimate the number of customers of an upload from its size. Compressed uploads are underestimated,
+     * the customer index then grows while parsing.
+     *
+     * @param fileSize Size of the upload in bytes
+     * @return The estimated number of customers
+     */
+    private int getExpectedCustomers(long fileSize) {
+        final long rows = fileSize / AVERAGE_ROW_BYTES;
+        final int rowsPerCustomer = Math.max(1, calculatorProperties.getParser().getRowsPerCustomer());
+        return (int) Math.min(MAX_EXPECTED_CUSTOMERS, rows / rowsPerCustomer);
+    }
+
+    /**
+     * Parse the uploaded documents file into customers, or get them from the {@link ParsedDocumentsCache} if the
+     * same file was parsed with the same options before. Documents stored off-heap are not cached.
+     *
+     * @param file    The uploaded file
+     * @param options Parsing options
+     * @return A map of VAT numbers and Customer objects.
+     * @throws ValidationReportException If validationMode is COLLECT_ALL and the file contains invalid documents.
+     * @throws ResponseStatusException   If the file cannot be parsed or contains an invalid document.
+     */
+    protected Map<String, Customer> parseCustomers(MultipartFile file, DocumentsParseOptions options)
+            throws ResponseStatusException {
+        return parseCustomers(file, options, null);
+    }
+
+    /**
+     * Parse the uploaded documents file into customers, see {@link #parseCustomers(MultipartFile, DocumentsParseOptions)}.
+     *
+     * @param contentHash The hash of the file if the request already computed it, see {@link #getContentHash}
+     */
+    protected Map<String, Customer> parseCustomers(MultipartFile file, DocumentsParseOptions options,
+                                                   String contentHash)
+            throws ResponseStatusException {
+        try {
+            String cacheKey = null;
+            if (parsedDocumentsCache.isEnabled() && options.getDocumentStore() == null) {
+                cacheKey = ParsedDocumentsCache.key(contentHash != null ? contentHash
+                        : ParsedDocumentsCache.contentHash(file.getInputStream()), options);
+                Map<String, Customer> cachedCustomers = parsedDocumentsCache.get(cacheKey);
+                if (cachedCustomers != null) {
+                    log.debug("Documents file [{}] found in cache", file.getName());
+                    return cachedCustomers;
+                }
+            }
+
+            DocumentsParseResult parseResult = parseDocuments(file, options);
+            if (parseResult.getValidationReport().hasErrors()) {
+                log.info("Validation of documents file [{}] found {} error(s)", file.getName(),
+                        parseResult.getValidationReport().getErrorCount());
+                throw new ValidationReportException(parseResult.getValidationReport());
+            }
+            if (cacheKey != null) {
+                parsedDocumentsCache.put(cacheKey, parseResult.getCustomers());
+            }
+            return parseResult.getCustomers();
+        } catch (IOException | IllegalArgumentException e) {
+            log.info("Error parsing documents file [{}]: {}", file.getName(), e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Unable to parse documents file " + file.getName() + ": " + e.getMessage());
+        } catch (DocumentValidationException docEx) {
+            log.info("Validation failed for document [{}]: {}", docEx.getDocumentNumber(), docEx.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("Validation failed for document [%s]: [%s]", docEx.getDocumentNumber(), docEx.getMessage()));
+        }
+    }
+
+    /**
+     * Hash the content of the uploaded documents file, to identify uploads of the same file.
+     *
+     * @param file The uploaded file
+     * @return The SHA-256 hash of the file in hexadecimal
+     * @throws ResponseStatusException If the file cannot be read.
+     */
+    protected String getContentHash(MultipartFile file) throws ResponseStatusException {
+        try {
+            return ParsedDocumentsCache.contentHash(file.getInputStream());
+        } catch (IOException e) {
+            log.info("Error reading documents file [{}]: {}", file.getName(), e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Unable to read documents file " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Open an uploaded CSV documents file, decompressing it while it is read.
+     *
+     * @param file The uploaded file
+     * @return The CSV content, or null if the file is in the binary columnar format or Parquet.
+     * @throws ResponseStatusException If the file cannot be read.
+     */
+    protected InputStream openCsvDocuments(MultipartFile file) throws ResponseStatusException {
+        if (hasContentType(file, DocumentsFileParserService.PARQUET_CONTENT_TYPE)
+                || hasContentType(file, DocumentsFileParserService.BINARY_CONTENT_TYPE)) {
+            return null;
+        }
+        try {
+            return CompressedInputStreams.decompress(file.getInputStream(), file.getContentType());
+        } catch (IOException e) {
+            log.info("Error reading documents file [{}]: {}", file.getName(), e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Unable to read documents file " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Parse an uploaded documents file with the parser selected by its content type: the binary columnar format,
+     * Parquet, or CSV otherwise. Compressed binary and CSV files are decompressed while they are parsed, up to the
+     * memory budget of the request.
+     *
+     * @param file    The uploaded file
+     * @param options Parsing options
+     * @return The parsed customers and the validation report.
+     */
+    private DocumentsParseResult parseDocuments(MultipartFile file, DocumentsParseOptions options)
+            throws IOException, DocumentValidationException, IllegalArgumentException {
+        if (hasContentType(file, DocumentsFileParserService.PARQUET_CONTENT_TYPE)) {
+            // Parquet files need random access
+            Path tempFile = Files.createTempFile("documents", ".parquet");
+            try {
+                file.transferTo(tempFile);
+                if (options.getProgress() != null) {
+                    options.getProgress().bytesRead(file.getSize());
+                }
+                return documentsFileParserService.parseDocumentsParquet(tempFile, options);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+
+        InputStream fileStream = options.getProgress() == null ? file.getInputStream()
+                : new ProgressInputStream(file.getInputStream(), options.getProgress());
+        InputStream inputStream = CompressedInputStreams.decompress(fileStream, file.getContentType(),
+                options.getMemoryBudget());
+        return hasContentType(file, DocumentsFileParserService.BINARY_CONTENT_TYPE)
+                ? documentsFileParserService.parseDocumentsBinary(inputStream, options)
+                : documentsFileParserService.parseDocumentsCsv(inputStream, options);
+    }
+
+    /**
+     * Check the content type of an uploaded file, ignoring its parameters.
+     *
+     * @param file        The uploaded file
+     * @param contentType The expected content type
+     * @return True if the file has the expected content type
+     */
+    private boolean hasContentType(MultipartFile file, String contentType) {
+        if (StringUtils.isBlank(file.getContentType())) {
+            return false;
+        }
+        try {
+            return MediaType.parseMediaType(file.getContentType())
+                    .equalsTypeAndSubtype(MediaType.parseMediaType(contentType));
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Resolve the requested validation mode.
+     *
+     * @param validationMode Validation mode name (optional)
+     * @return The validation mode, {@link ValidationMode#FAIL_FAST FAIL_FAST} if not specified.
+     * @throws ResponseStatusException If requested validationMode is not valid
+     */
+    protected ValidationMode getValidationMode(String validationMode) throws ResponseStatusException {
+        if (StringUtils.isBlank(validationMode)) {
+            return ValidationMode.FAIL_FAST;
+        }
+        try {
+            return ValidationMode.valueOf(validationMode);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Unsupported validation mode: " + validationMode);
+        }
+    }
+
+    /**
+     * Create a {@link java.util.Currency Currency} using currency code.
+     *
+     * @param outputCurrency Currency code
+     * @return An instance of {@link java.util.Currency Currency}
+     * @throws ResponseStatusException If requested outputCurrency is not valid
+     */
+    protected Currency getOutputCurrency(String outputCurrency) throws ResponseStatusException {
+        // Workaround check, OpenAPI generator for some reason did not add @Pattern
+        // constraint for outputCurrency to SumInvoicesApi
+        if (!PATTERN_CURRENCY_CODE.matcher(outputCurrency).matches()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "outputCurrency does not match the regex " + PATTERN_CURRENCY_CODE);
+        }
+        try {
+            return Currency.getInstance(outputCurrency);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Unsupported ISO 4217 currency code: " + outputCurrency);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.calculator.delegate;
+
+import com.example.calculator.exception.UnsupportedCurrencyException;
+import com.example.calculator.model.ExchangeRate;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single pass parser of the exchange rates of a request, such as {@code EUR:1} or {@code USD:0.987@2024-01-01}.
+ * <p>
+ * Entries are scanned character by character instead of matched with a regex and split. Currencies are indexed
+ * by their three letter code in an array, so duplicates and the default currency are found in constant time per
+ * entry, and duplicate entries are dropped on the fly. An instance parses the rates of one request.
+ */
+final class ExchangeRatesParser {
+
+    private static final int LETTERS = 'Z' - 'A' + 1;
+    private static final int CURRENCY_CODES = LETTERS * LETTERS * LETTERS;
+    /**
+     * Length of an ISO date, yyyy-MM-dd.
+     */
+    private static final int DATE_LENGTH = 10;
+    /**
+     * Rates with more digits than a long holds are parsed by {@link BigDecimal#BigDecimal(String)}.
+     */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    /**
+     * Currencies by code index, shared by all instances. Filled lazily, racing threads store the same instance.
+     */
+    private static final Currency[] CURRENCIES = new Currency[CURRENCY_CODES];
+
+    /**
+     * Position in {@link #currencyRates} plus one by code index, 0 for currencies without a rate yet.
+     */
+    private final short[] positions = new short[CURRENCY_CODES];
+    private final List<CurrencyRates> currencyRates = new ArrayList<>();
+    private final List<ExchangeRate> exchangeRates = new ArrayList<>();
+    private CurrencyRates defaultCurrency;
+    private int defaultCurrencies;
+
+    /**
+     * Parse and validate exchange rates, with the error messages of the former regex based parser.
+     *
+     * @param exchangeRateStringList Exchange rates, blank entries are ignored
+     * @return The exchange rates in the order of the request, without repeated entries
+     * @throws UnsupportedCurrencyException If an invalid currency code is provided
+     * @throws ResponseStatusException      If an exchange rate is malformed or conflicts with another, or the
+     *                                      default currency is missing, ambiguous or has another rate than 1
+     */
+    Collection<ExchangeRate> parse(final List<String> exchangeRateStringList) throws UnsupportedCurrencyException {
+        for (String exchangeRateString : exchangeRateStringList) {
+            if (StringUtils.isBlank(exchangeRateString)) {
+                continue;
+            }
+            add(exchangeRateString);
+        }
+
+        if (defaultCurrencies == 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Default exchange rate currency is not specified");
+        }
+        if (defaultCurrencies > 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("Expected only 1 default exchange rate currency, while %d are specified", defaultCurrencies));
+        }
+        if (defaultCurrency.otherThanOne) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("Default exchange rate currency %s must have rate 1 on every date",
+                            defaultCurrency.currency.getCurrencyCode()));
+        }
+        return exchangeRates;
+    }
+
+    private void add(final String exchangeRateString) throws UnsupportedCurrencyException {
+        final int length = exchangeRateString.length();
+        final int code = codeIndex(exchangeRateString);
+        if (code < 0 || length < 5 || exchangeRateString.charAt(3) != ':') {
+            throw invalidExchangeRate(exchangeRateString);
+        }
+
+        // Rate: digits, optionally followed by a point and digits
+        int end = 4;
+        int point = -1;
+        while (end < length && exchangeRateString.charAt(end) != '@') {
+            final char c = exchangeRateString.charAt(end);
+            if (c == '.' && point < 0) {
+                point = end;
+            } else if (c < '0' || c > '9') {
+                throw invalidExchangeRate(exchangeRateString);
+            }
+            end++;
+        }
+        if (point == 4 || point == end - 1 || end == 4) {
+            throw invalidExchangeRate(exchangeRateString);
+        }
+        if (end < length && !isDate(exchangeRateString, end + 1)) {
+            throw invalidExchangeRate(exchangeRateString);
+        }
+
+        final BigDecimal rate = parseRate(exchangeRateString, 4, end, point);
+        final CurrencyRates rates = getCurrencyRates(code, exchangeRateString);
+        LocalDate effectiveDate = null;
+        if (end < length) {
+            try {
+                effectiveDate = LocalDate.parse(exchangeRateString.substring(end + 1));
+            } catch (DateTimeParseException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        String.format("Invalid exchange rate effective date: [%s]", exchangeRateString));
+            }
+        }
+
+        final BigDecimal existingRate = rates.put(effectiveDate, rate);
+        if (existingRate != null) {
+            if (!existingRate.equals(rate)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        String.format("Multiple exchange rates provided for currency: %s%s",
+                                rates.currency.getCurrencyCode(),
+                                effectiveDate == null ? "" : " effective from " + effectiveDate));
+            }
+            return;
+        }
+        exchangeRates.add(new ExchangeRate(rates.currency, rate, effectiveDate));
+
+        if (BigDecimal.ONE.equals(rate)) {
+            if (!rates.one) {
+                rates.one = true;
+                defaultCurrencies++;
+                defaultCurrency = rates;
+            }
+        } else {
+            rates.otherThanOne = true;
+        }
+    }
+
+    /**
+     * @return The rates of a currency, created with the first rate of the currency.
+     */
+    private CurrencyRates getCurrencyRates(final int code, final String exchangeRateString)
+            throws UnsupportedCurrencyException {
+        final int position = positions[code];
+        if (position > 0) {
+            return currencyRates.get(position - 1);
+        }
+        final CurrencyRates rates = new CurrencyRates(getCurrency(code, exchangeRateString.substring(0, 3)));
+        currencyRates.add(rates);
+        positions[code] = (short) currencyRates.size();
+        return rates;
+    }
+
+    private static Currency getCurrency(final int code, final String currencyCode)
+            throws UnsupportedCurrencyException {
+        Currency currency = CURRENCIES[code];
+        if (currency == null) {
+            try {
+                currency = Currency.getInstance(currencyCode);
+            } catch (IllegalArgumentException e) {
+                throw new UnsupportedCurrencyException(currencyCode);
+            }
+            CURRENCIES[code] = currency;
+        }
+        return currency;
+    }
+
+    /**
+     * @return The index of the three upper case letters starting the string, or -1 if there are none.
+     */
+    private static int codeIndex(final String exchangeRateString) {
+        if (exchangeRateString.length() < 3) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = 0; i < 3; i++) {
+            final char c = exchangeRateString.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                return -1;
+            }
+            index = index * LETTERS + (c - 'A');
+        }
+        return index;
+    }
+
+    /**
+     * @return True if the rest of the string from the start index has the shape of an ISO date, yyyy-MM-dd.
+     */
+    private static boolean isDate(final String exchangeRateString, final int start) {
+        if (exchangeRateString.length() - start != DATE_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < DATE_LENGTH; i++) {
+            final char c = exchangeRateString.charAt(start + i);
+            if (i == 4 || i == 7 ? c != '-' : c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse the digits of a rate, with the scale of its fraction digits like {@link BigDecimal#BigDecimal(String)}.
+     */
+    private static BigDecimal parseRate(final String exchangeRateString, final int start, final int end,
+                                        final int point) {
+        final int digits = point < 0 ? end - start : end - start - 1;
+        if (digits > MAX_LONG_DIGITS) {
+            return new BigDecimal(exchangeRateString.substring(start, end));
+        }
+        long unscaled = 0;
+        for (int i = start; i < end; i++) {
+            if (i != point) {
+                unscaled = unscaled * 10 + (exchangeRateString.charAt(i) - '0');
+            }
+        }
+        return BigDecimal.valueOf(unscaled, point < 0 ? 0 : end - point - 1);
+    }
+
+    private static ResponseStatusException invalidExchangeRate(final String exchangeRateString) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                String.format("Invalid currency exchange rate: [%s]. Examples: 'EUR:1', 'GBP:0.123' or 'GBP:0.125@2024-01-01'", exchangeRateString));
+    }
+
+    /**
+     * The rates of one currency by effective date.
+     */
+    private static final class CurrencyRates {
+
+        private final Currency currency;
+        private BigDecimal undatedRate;
+        /**
+         * Created with the first dated rate of the currency.
+         */
+        private Map<LocalDate, BigDecimal> datedRates;
+        /**
+         * Some rate of the currency is 1, which makes it a default currency.
+         */
+        private boolean one;
+        /**
+         * Some rate of the currency is not 1.
+         */
+        private boolean otherThanOne;
+
+        CurrencyRates(final Currency currency) {
+            this.currency = currency;
+        }
+
+        /**
+         * @return The rate the currency already had on the date, or null if it was added.
+         */
+        BigDecimal put(final LocalDate effectiveDate, final BigDecimal rate) {
+            if (effectiveDate == null) {
+                if (undatedRate == null) {
+                    undatedRate = rate;
+                    return null;
+                }
+                return undatedRate;
+            }
+            if (datedRates == null) {
+                datedRates = new HashMap<>();
+            }
+            return datedRates.putIfAbsent(effectiveDate, rate);
+        }
+    }
+}
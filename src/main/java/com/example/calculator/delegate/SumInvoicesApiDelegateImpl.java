@@ -1,87 +1,231 @@
 package com.example.calculator.delegate;
 
+import com.example.calculator.CalculatorProperties;
 import com.example.calculator.exception.CurrencyExchangeException;
-import com.example.calculator.exception.DocumentValidationException;
-import com.example.calculator.exception.UnsupportedCurrencyException;
+import com.example.calculator.exception.ValidationReportException;
+import com.example.calculator.memory.RequestMemoryAccounting;
 import com.example.calculator.model.Customer;
 import com.example.calculator.model.ExchangeRate;
+import com.example.calculator.model.SortKey;
+import com.example.calculator.model.SortOrder;
+import com.example.calculator.model.ValidationMode;
+import com.example.calculator.progress.Progress;
+import com.example.calculator.progress.ProgressRegistry;
+import com.example.calculator.service.BalanceQuery;
+import com.example.calculator.service.BalanceSelector;
 import com.example.calculator.service.CalculateService;
+import com.example.calculator.service.CustomerBalance;
 import com.example.calculator.service.DocumentsFileParserService;
+import com.example.calculator.service.DocumentsParseOptions;
+import com.example.calculator.service.ExchangeRateHistory;
+import com.example.calculator.service.ParsedDocumentsCache;
+import com.example.calculator.service.ResultCache;
+import com.example.calculator.shard.ShardedCalculationService;
 import com.example.calculator.specification.api.SumInvoicesApiDelegate;
 import com.example.calculator.specification.model.CalculateResponseDto;
 import com.example.calculator.specification.model.CustomerDto;
+import com.example.calculator.tenant.TenantScheduler;
+import com.example.calculator.timing.Stage;
+import com.example.calculator.timing.StageTimer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * Implementation of {@link com.example.calculator.specification.api.SumInvoicesApiDelegate SumInvoicesApiDelegate}
  */
 @Slf4j
 @Component
-public class SumInvoicesApiDelegateImpl implements SumInvoicesApiDelegate {
+public class SumInvoicesApiDelegateImpl extends DocumentsApiDelegateSupport implements SumInvoicesApiDelegate {
+
+    /**
+     * Hexadecimal digits of the result key hash used as ETag.
+     */
+    private static final int ETAG_LENGTH = 32;
+    /**
+     * Estimated size of a response without its customers, and of a customer without its name.
+     */
+    private static final long RESPONSE_BYTES = 64;
+    private static final long CUSTOMER_BYTES = 96;
 
     private CalculateService calculateService;
-    private DocumentsFileParserService documentsFileParserService;
-    private static final Pattern PATTERN_EXCHANGE_RATE = Pattern.compile("^([A-Z]){3}:((\\d{1,})|(\\d{1,}\\.\\d{1,}))$");
-    private static final Pattern PATTERN_CURRENCY_CODE = Pattern.compile("^([A-Z]){3}$");
+    private final ShardedCalculationService shardedCalculationService;
+    private final ResultCache<CalculateResponseDto> resultCache;
 
-    public SumInvoicesApiDelegateImpl(CalculateService calculateService, DocumentsFileParserService documentsFileParserService) {
+    public SumInvoicesApiDelegateImpl(CalculateService calculateService,
+                                      DocumentsFileParserService documentsFileParserService,
+                                      CalculatorProperties calculatorProperties,
+                                      ParsedDocumentsCache parsedDocumentsCache,
+                                      RequestMemoryAccounting requestMemoryAccounting,
+                                      ProgressRegistry progressRegistry,
+                                      TenantScheduler tenantScheduler,
+                                      ShardedCalculationService shardedCalculationService) {
+        super(documentsFileParserService, calculatorProperties, parsedDocumentsCache, requestMemoryAccounting,
+                progressRegistry, tenantScheduler);
         this.calculateService = calculateService;
-        this.documentsFileParserService = documentsFileParserService;
+        this.shardedCalculationService = shardedCalculationService;
+        this.resultCache = new ResultCache<>(calculatorProperties.getResultCache(),
+                SumInvoicesApiDelegateImpl::estimateBytes);
     }
 
     /**
      * Sum the invoices in the document, using the provided output currency and currency exchange rates.
      *
-     * @param file The CSV file, containing a list of invoices, debit and credit notes in different currencies. (required)
+     * @param file The CSV file, containing a list of invoices, debit and credit notes in different currencies.
+     *             It may be compressed with gzip or zstd, or be in the binary columnar format or Parquet,
+     *             selected by its content type. (required)
      * @param exchangeRates A list of currencies and exchange rates (for example: EUR:1,USD:0.987,GBP:0.878)  (required)
      * @param outputCurrency ISO 4217 currency code (required)
+     * @param ifNoneMatch ETag of a previous response to the same request (optional)
      * @param customerVat This the optional input filter. If specified, the result should contain only one customer matching the one specified in this filter.  (optional)
-     * @return
+     * @param validationMode FAIL_FAST (default) or COLLECT_ALL (optional)
+     * @param top Return only this number of customers, the first ones in sort order (optional)
+     * @param minBalance Return only customers with at least this balance (optional)
+     * @param maxBalance Return only customers with at most this balance (optional)
+     * @param sortOrder Sort customers ASC or DESC by the sort key, DESC by default if only top is specified,
+     *                  otherwise ASC (optional)
+     * @param sortBy Sort customers by NAME, VAT or BALANCE, BALANCE by default if top or sortOrder is specified,
+     *               otherwise customers are in the order they first appear in the file (optional)
+     * @return The customer balances, with the duration of the request stages in the Server-Timing header and,
+     * when the result cache is enabled, an ETag. 304 without a body if the ETag matches ifNoneMatch.
+     * @throws ValidationReportException If validationMode is COLLECT_ALL and the file contains invalid documents.
      */
     @Override
     public ResponseEntity<CalculateResponseDto> sumInvoices(MultipartFile file,
                                                             List<String> exchangeRates,
                                                             String outputCurrency,
-                                                            String customerVat) {
+                                                            String ifNoneMatch,
+                                                            String customerVat,
+                                                            String validationMode,
+                                                            Integer top,
+                                                            BigDecimal minBalance,
+                                                            BigDecimal maxBalance,
+                                                            String sortOrder,
+                                                            String sortBy) {
+        final StageTimer timer = StageTimer.current();
+        timer.stop(Stage.UPLOAD);
 
         final Currency outputCurrencyObject = getOutputCurrency(outputCurrency);
-        final Collection<ExchangeRate> exchangeRateSet;
-        try {
-            exchangeRateSet = buildExchangeRates(exchangeRates);
-        } catch (UnsupportedCurrencyException e) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        final ValidationMode validationModeValue = getValidationMode(validationMode);
+        final BalanceQuery balanceQuery = getBalanceQuery(top, minBalance, maxBalance, sortOrder, sortBy);
+        timer.start(Stage.EXCHANGE_RATES);
+        final Collection<ExchangeRate> exchangeRateSet = getExchangeRates(exchangeRates);
+        timer.stop(Stage.EXCHANGE_RATES);
+
+        if (!resultCache.isEnabled()) {
+            final CalculateResponseDto responseDto = calculate(file, null, customerVat, validationModeValue,
+                    exchangeRateSet, outputCurrencyObject, balanceQuery, timer);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header(StageTimer.SERVER_TIMING_HEADER, timer.toServerTiming())
+                    .body(responseDto);
         }
 
-        final Map<String, Customer> customersMap;
-        try {
-            customersMap = documentsFileParserService.parseDocumentsCsvInputStream(file.getInputStream(), customerVat);
-        } catch (IOException | IllegalArgumentException e) {
-            log.info("Error parsing CSV file [{}]: {}", file.getName(), e.getMessage());
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                    "Unable to parse CSV file " + file.getName() + ": " + e.getMessage());
-        } catch (DocumentValidationException docEx) {
-            log.info("Validation failed for document [{}]: {}", docEx.getDocumentNumber(), docEx.getMessage());
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                    String.format("Validation failed for document [%s]: [%s]", docEx.getDocumentNumber(), docEx.getMessage()));
+        final String contentHash = getContentHash(file);
+        final String resultKey = getResultKey(contentHash, exchangeRateSet, outputCurrencyObject, customerVat,
+                validationModeValue, balanceQuery);
+        final String eTag = getETag(resultKey);
+        if (matchesETag(ifNoneMatch, eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(eTag)
+                    .header(StageTimer.SERVER_TIMING_HEADER, timer.toServerTiming())
+                    .build();
         }
+        final CalculateResponseDto responseDto = resultCache.getOrCompute(resultKey, () -> calculate(file,
+                contentHash, customerVat, validationModeValue, exchangeRateSet, outputCurrencyObject, balanceQuery,
+                timer));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(eTag)
+                .header(StageTimer.SERVER_TIMING_HEADER, timer.toServerTiming())
+                .body(responseDto);
+    }
+
+    /**
+     * Parse the documents file and calculate the customer balances, on the workers if sharding is enabled and the
+     * file is CSV.
+     *
+     * @param contentHash The hash of the file if already computed (optional)
+     */
+    private CalculateResponseDto calculate(MultipartFile file,
+                                           String contentHash,
+                                           String customerVat,
+                                           ValidationMode validationMode,
+                                           Collection<ExchangeRate> exchangeRateSet,
+                                           Currency outputCurrency,
+                                           BalanceQuery balanceQuery,
+                                           StageTimer timer) {
+        admit(file, timer);
+        final BalanceSelector customers = new BalanceSelector(balanceQuery);
+        final InputStream csvDocuments = shardedCalculationService.isEnabled() ? openCsvDocuments(file) : null;
+        if (csvDocuments != null) {
+            timer.start(Stage.CALCULATE);
+            shardedCalculationService.sumInvoices(csvDocuments, exchangeRateSet, outputCurrency, customerVat,
+                    validationMode).forEach(customers::offer);
+        } else {
+            calculateLocally(file, contentHash, customerVat, validationMode, exchangeRateSet, outputCurrency,
+                    customers, timer);
+        }
+
+        CalculateResponseDto responseDto = new CalculateResponseDto();
+        responseDto.setCurrency(outputCurrency.getCurrencyCode());
+        responseDto.setCustomers(customers.getResult().stream()
+                .map(SumInvoicesApiDelegateImpl::toCustomerDto)
+                .collect(Collectors.toList()));
+        timer.stop(Stage.CALCULATE);
+        return responseDto;
+    }
 
-        List<CustomerDto> customers = new LinkedList<>();
+    /**
+     * Parse the documents file and calculate the customer balances locally.
+     *
+     * @param customers Receives the customers with their balances, positioned in the order of the parsed
+     *                  customers, which is the order they first appear in the file
+     */
+    private void calculateLocally(MultipartFile file,
+                                  String contentHash,
+                                  String customerVat,
+                                  ValidationMode validationMode,
+                                  Collection<ExchangeRate> exchangeRateSet,
+                                  Currency outputCurrency,
+                                  BalanceSelector customers,
+                                  StageTimer timer) {
+        final DocumentsParseOptions parseOptions = getParseOptions(file, customerVat, validationMode, exchangeRateSet)
+                .precomputeTotals(calculatorProperties.getParser().isPrecomputeTotals())
+                .build();
+
+        timer.start(Stage.PARSE);
+        final Map<String, Customer> customersMap = parseCustomers(file, parseOptions, contentHash);
+        timer.stop(Stage.PARSE);
+
+        timer.start(Stage.CALCULATE);
+        final ExchangeRateHistory exchangeRateHistory = calculateService.getExchangeRateHistory(exchangeRateSet);
+        final Progress progress = parseOptions.getProgress();
+        if (progress != null) {
+            progress.startCalculation(customersMap.size());
+        }
+        long position = 0;
         for (Customer customer : customersMap.values()) {
+            if (progress != null && position % Progress.SAMPLE_CUSTOMERS == 0) {
+                progress.customersSummed(position);
+            }
             BigDecimal totalBalance;
             try {
-                totalBalance = calculateService.getDocumentsTotalSum(
-                        customer.getDocuments(), outputCurrencyObject, exchangeRateSet);
+                totalBalance = calculateService.getCustomerBalance(customer, outputCurrency, exchangeRateHistory);
             } catch (CurrencyExchangeException currEx) {
                 log.info("Error while calculating documents total sum for customer with VAT [{}]: {}",
                         customer.getVatNumber(), currEx.getMessage());
@@ -89,101 +233,154 @@ public class SumInvoicesApiDelegateImpl implements SumInvoicesApiDelegate {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
                         String.format("Currency conversion error from [%s] to [%s]: %s",
                                 currEx.getFromCurrency(), currEx.getToCurrency(), currEx.getMessage()));
-            } catch (DocumentValidationException docValEx) {
-                log.info("Error while calculating documents total sum for customer with VAT [{}]: {}",
-                        customer.getVatNumber(), docValEx.getMessage());
-
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                        String.format("Failed validation for document [%s] and customer with VAT number [%s]: %s",
-                                docValEx.getDocumentNumber(), customer.getVatNumber(), docValEx.getMessage()));
             }
-            CustomerDto customerDto = new CustomerDto();
-            customerDto.setName(customer.getName());
-            customerDto.setBalance(totalBalance);
-            customers.add(customerDto);
+            parseOptions.getMemoryBudget().charge(estimateBytes(customer.getName()));
+            customers.offer(new CustomerBalance(position++, customer.getVatNumber(), customer.getName(),
+                    totalBalance));
+        }
+        if (progress != null) {
+            progress.customersSummed(customersMap.size());
         }
+    }
 
-        CalculateResponseDto responseDto = new CalculateResponseDto();
-        responseDto.setCurrency(outputCurrency);
-        responseDto.setCustomers(customers);
+    /**
+     * Build the result cache key of a request from the hash of its file and every parameter that changes the
+     * result, in a canonical form so that equivalent requests share the key.
+     */
+    private String getResultKey(String contentHash,
+                                Collection<ExchangeRate> exchangeRates,
+                                Currency outputCurrency,
+                                String customerVat,
+                                ValidationMode validationMode,
+                                BalanceQuery balanceQuery) {
+        final String rates = exchangeRates.stream()
+                .sorted(Comparator.comparing((ExchangeRate exchangeRate) -> exchangeRate.getCurrency().getCurrencyCode())
+                        .thenComparing(ExchangeRate::getEffectiveDate, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .map(exchangeRate -> exchangeRate.getCurrency().getCurrencyCode() + ":"
+                        + exchangeRate.getRate().stripTrailingZeros().toPlainString()
+                        + (exchangeRate.getEffectiveDate() == null ? "" : "@" + exchangeRate.getEffectiveDate()))
+                .collect(Collectors.joining(","));
+        return String.join("|", contentHash, rates, outputCurrency.getCurrencyCode(),
+                String.valueOf(customerVat),
+                validationMode.name(),
+                String.valueOf(balanceQuery.getTop()),
+                toCanonicalString(balanceQuery.getMinBalance()),
+                toCanonicalString(balanceQuery.getMaxBalance()),
+                String.valueOf(balanceQuery.getSortOrder()),
+                String.valueOf(balanceQuery.getSortBy()));
+    }
 
-        return ResponseEntity.ok(responseDto);
+    private static String toCanonicalString(BigDecimal value) {
+        return value == null ? "null" : value.stripTrailingZeros().toPlainString();
     }
 
     /**
-     * Parse string exchange rates and build a collection of
-     * {@link com.example.calculator.model.ExchangeRate ExchangeRate}
-     * instances
-     * @param exchangeRateStringList
-     * @return A collection {@link com.example.calculator.model.ExchangeRate ExchangeRate} models
-     * @throws UnsupportedCurrencyException If an invalid currency code is provided
+     * @return A strong ETag derived from the result cache key, results of the same key are always equal.
      */
-    private Collection<ExchangeRate> buildExchangeRates(List<String> exchangeRateStringList) throws UnsupportedCurrencyException {
-        Set<ExchangeRate> exchangeRates = new HashSet<>();
-        for (String exchangeRateString : exchangeRateStringList) {
-            if (StringUtils.isBlank(exchangeRateString)) {
-                continue;
-            }
-
-            if (!PATTERN_EXCHANGE_RATE.matcher(exchangeRateString).matches()) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                        String.format("Invalid currency exchange rate: [%s]. Examples: 'EUR:1' or 'GBP:0.123'", exchangeRateString));
-            }
+    private static String getETag(String resultKey) {
+        try {
+            final String hash = ParsedDocumentsCache.contentHash(
+                    new ByteArrayInputStream(resultKey.getBytes(StandardCharsets.UTF_8)));
+            return "\"" + hash.substring(0, ETAG_LENGTH) + "\"";
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-            String[] rateSplit = exchangeRateString.split(":");
-            BigDecimal rateBigDecimal = new BigDecimal(rateSplit[1]);
-            Currency currency;
-            try {
-                currency = Currency.getInstance(rateSplit[0]);
-            } catch (IllegalArgumentException e) {
-                throw new UnsupportedCurrencyException(rateSplit[0]);
+    /**
+     * Check an If-None-Match header, a list of entity tags or *, against the ETag of the result. Weak tags match
+     * their strong counterpart, as required for If-None-Match.
+     */
+    private static boolean matchesETag(String ifNoneMatch, String eTag) {
+        if (StringUtils.isBlank(ifNoneMatch)) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String trimmed = tag.trim();
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
             }
-            ExchangeRate exchangeRate = new ExchangeRate(currency, rateBigDecimal);
-
-            Optional<ExchangeRate> existingExchangeRate = exchangeRates.stream()
-                    .filter(exchangeRate1 -> exchangeRate1.getCurrency().equals(exchangeRate.getCurrency()))
-                    .findFirst();
-
-            if (existingExchangeRate.isPresent() && !existingExchangeRate.get().equals(exchangeRate)) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                        String.format("Multiple exchange rates provided for currency: %s", exchangeRate.getCurrency().getCurrencyCode()));
-            } else {
-                exchangeRates.add(exchangeRate);
+            if (trimmed.equals("*") || trimmed.equals(eTag)) {
+                return true;
             }
         }
+        return false;
+    }
 
-        // Validate default currency
-        long countDefaultCurrencies = exchangeRates.stream().filter(exchangeRate -> exchangeRate.getRate().equals(BigDecimal.ONE)).count();
-        if (countDefaultCurrencies == 0) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Default exchange rate currency is not specified");
+    /**
+     * Estimate the size of a response in bytes, for the byte bound of the result cache.
+     */
+    private static long estimateBytes(CalculateResponseDto responseDto) {
+        long bytes = RESPONSE_BYTES;
+        for (CustomerDto customerDto : responseDto.getCustomers()) {
+            bytes += estimateBytes(customerDto);
         }
+        return bytes;
+    }
 
-        if (countDefaultCurrencies > 1) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                    String.format("Expected only 1 default exchange rate currency, while %d are specified", countDefaultCurrencies));
-        }
-        return exchangeRates;
+    /**
+     * Estimate the size of a customer of a response in bytes.
+     */
+    private static long estimateBytes(CustomerDto customerDto) {
+        return estimateBytes(customerDto.getName());
     }
 
     /**
-     * Create a {@link java.util.Currency Currency} using currency code.
+     * Estimate the size of a customer of a response with the given name in bytes.
+     */
+    private static long estimateBytes(String name) {
+        return CUSTOMER_BYTES + 2L * (name == null ? 0 : name.length());
+    }
+
+    private static CustomerDto toCustomerDto(CustomerBalance customerBalance) {
+        CustomerDto customerDto = new CustomerDto();
+        customerDto.setName(customerBalance.name());
+        customerDto.setBalance(customerBalance.balance());
+        return customerDto;
+    }
+
+    /**
+     * Build the selection of customer balances to return.
      *
-     * @param outputCurrency Currency code
-     * @return An instance of {@link java.util.Currency Currency}
-     * @throws ResponseStatusException If requested outputCurrency is not valid
+     * @param top        Maximum number of customers (optional)
+     * @param minBalance Minimum balance (optional)
+     * @param maxBalance Maximum balance (optional)
+     * @param sortOrder  Sort order name (optional)
+     * @param sortBy     Sort key name (optional)
+     * @return The balance query
+     * @throws ResponseStatusException If a parameter is not valid
      */
-    private Currency getOutputCurrency(String outputCurrency) throws ResponseStatusException {
-        // Workaround check, OpenAPI generator for some reason did not add @Pattern
-        // constraint for outputCurrency to SumInvoicesApi
-        if (!PATTERN_CURRENCY_CODE.matcher(outputCurrency).matches()) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                    "outputCurrency does not match the regex " + PATTERN_CURRENCY_CODE);
+    private BalanceQuery getBalanceQuery(Integer top, BigDecimal minBalance, BigDecimal maxBalance, String sortOrder,
+                                         String sortBy) throws ResponseStatusException {
+        if (top != null && top < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "top must be greater than 0");
         }
-        try {
-            return Currency.getInstance(outputCurrency);
-        } catch (IllegalArgumentException e) {
+        if (minBalance != null && maxBalance != null && minBalance.compareTo(maxBalance) > 0) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                    "Unsupported ISO 4217 currency code: " + outputCurrency);
+                    "minBalance must be less than or equal to maxBalance");
+        }
+        SortOrder sortOrderValue = null;
+        if (StringUtils.isNotBlank(sortOrder)) {
+            try {
+                sortOrderValue = SortOrder.valueOf(sortOrder);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported sort order: " + sortOrder);
+            }
+        }
+        SortKey sortByValue = null;
+        if (StringUtils.isNotBlank(sortBy)) {
+            try {
+                sortByValue = SortKey.valueOf(sortBy);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported sort key: " + sortBy);
+            }
         }
+        return BalanceQuery.builder()
+                .top(top)
+                .minBalance(minBalance)
+                .maxBalance(maxBalance)
+                .sortOrder(sortOrderValue)
+                .sortBy(sortByValue)
+                .build();
     }
 }
@@ -1,27 +1,51 @@
 package com.example.calculator.error;
 
-import org.springframework.http.HttpStatus;
+import com.example.calculator.exception.ValidationReportException;
+import com.example.calculator.model.ValidationReport;
+import com.example.calculator.specification.model.ValidationErrorDto;
+import com.example.calculator.specification.model.ValidationReportDto;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.server.ResponseStatusException;
 
 import javax.validation.ConstraintViolationException;
+import java.util.stream.Collectors;
 
 /**
- * Default exception handler. Converts exceptions to HTTP responses.
+ * Default exception handler. Converts exceptions to HTTP responses: validation reports to JSON, other errors to
+ * plain text messages. The content type is set explicitly, so that it does not depend on the content types the
+ * client accepts.
  */
 @ControllerAdvice
 public class DefaultExceptionHandler {
 
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity<String> handleResponseStatusException(ResponseStatusException e) {
-        return new ResponseEntity<>(e.getMessage(), e.getStatus());
+        return ResponseEntity.status(e.getStatus()).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+    }
+
+    @ExceptionHandler(ValidationReportException.class)
+    public ResponseEntity<ValidationReportDto> handleValidationReportException(ValidationReportException e) {
+        ValidationReport report = e.getValidationReport();
+        ValidationReportDto reportDto = new ValidationReportDto();
+        reportDto.setErrorCount(report.getErrorCount());
+        reportDto.setTruncated(report.isTruncated());
+        reportDto.setErrors(report.getErrors().stream()
+                .map(error -> new ValidationErrorDto()
+                        .row(error.getRow())
+                        .column(error.getColumn())
+                        .documentNumber(error.getDocumentNumber())
+                        .message(error.getMessage()))
+                .collect(Collectors.toList()));
+        return ResponseEntity.status(e.getStatus()).contentType(MediaType.APPLICATION_JSON).body(reportDto);
     }
 
     @ExceptionHandler(ConstraintViolationException.class)
     public ResponseEntity<String> handleConstraintViolationException(ConstraintViolationException e) {
-        return new ResponseEntity<>("Validation error: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN)
+                .body("Validation error: " + e.getMessage());
     }
 
 }
@@ -0,0 +1,21 @@
+package com.example.calculator.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Thrown when the estimated memory held by a request exceeds the per-request budget.
+ * The HTTP response status is 413 Payload Too Large.
+ */
+@Getter
+public class MemoryBudgetExceededException extends ResponseStatusException {
+
+    private long maxBytes;
+
+    public MemoryBudgetExceededException(long maxBytes) {
+        super(HttpStatus.PAYLOAD_TOO_LARGE,
+                String.format("The documents file needs more than the memory budget of %d bytes per request", maxBytes));
+        this.maxBytes = maxBytes;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.calculator.exception;
+
+import com.example.calculator.model.ValidationReport;
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Thrown when a documents file validated in collect-all mode contains errors.
+ * The HTTP response body is the validation report.
+ */
+@Getter
+public class ValidationReportException extends ResponseStatusException {
+
+    private ValidationReport validationReport;
+
+    public ValidationReportException(ValidationReport validationReport) {
+        super(HttpStatus.BAD_REQUEST, "Validation failed with " + validationReport.getErrorCount() + " error(s)");
+        this.validationReport = validationReport;
+    }
+}
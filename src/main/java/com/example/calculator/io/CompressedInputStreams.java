@@ -0,0 +1,117 @@
+package com.example.calculator.io;
+
+import com.example.calculator.memory.BudgetedInputStream;
+import com.example.calculator.memory.MemoryBudget;
+import io.airlift.compress.zstd.ZstdInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Wraps uploaded file streams with a streaming decompressor, if the upload is compressed.
+ */
+public final class CompressedInputStreams {
+
+    /**
+     * Supported compression formats.
+     */
+    public enum Compression {
+        NONE,
+        GZIP,
+        ZSTD
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAGIC_LENGTH = 4;
+
+    private CompressedInputStreams() {
+    }
+
+    /**
+     * Wrap an input stream with a decompressor. The compression is taken from the content type if it declares one,
+     * otherwise it is detected from the magic bytes at the start of the stream. Data is decompressed while it
+     * is read, nothing is buffered beyond the decompressor's window.
+     *
+     * @param inputStream The uploaded input stream
+     * @param contentType The content type of the upload (optional)
+     * @return A stream of the uncompressed content
+     * @throws IOException If reading the stream header fails
+     */
+    public static InputStream decompress(final InputStream inputStream, final String contentType) throws IOException {
+        return decompress(inputStream, contentType, null);
+    }
+
+    /**
+     * Wrap an input stream with a decompressor, see {@link #decompress(InputStream, String)}. The decompressed
+     * content of a compressed upload is capped at the memory budget of the request.
+     *
+     * @param inputStream The uploaded input stream
+     * @param contentType The content type of the upload (optional)
+     * @param budget      The memory budget of the request (optional)
+     * @return A stream of the uncompressed content, failing with
+     * {@link com.example.calculator.exception.MemoryBudgetExceededException} once it exceeds the budget
+     * @throws IOException If reading the stream header fails
+     */
+    public static InputStream decompress(final InputStream inputStream, final String contentType,
+                                         final MemoryBudget budget) throws IOException {
+        Compression compression = fromContentType(contentType);
+        InputStream input = inputStream;
+        if (compression == Compression.NONE) {
+            input = inputStream.markSupported() ? inputStream : new BufferedInputStream(inputStream, BUFFER_SIZE);
+            compression = detect(input);
+        }
+
+        if (compression == Compression.NONE) {
+            return input;
+        }
+        final InputStream decompressed = compression == Compression.GZIP
+                ? new GZIPInputStream(input, BUFFER_SIZE) : new ZstdInputStream(input);
+        return budget == null ? decompressed : new BudgetedInputStream(decompressed, budget);
+    }
+
+    /**
+     * Resolve the compression declared by a content type, e.g. {@code application/gzip}.
+     *
+     * @param contentType The content type (optional)
+     * @return The declared compression, {@link Compression#NONE NONE} if none is declared.
+     */
+    static Compression fromContentType(final String contentType) {
+        if (contentType == null) {
+            return Compression.NONE;
+        }
+        String mediaType = contentType.toLowerCase(Locale.ROOT);
+        if (mediaType.contains("gzip")) {
+            return Compression.GZIP;
+        }
+        if (mediaType.contains("zstd")) {
+            return Compression.ZSTD;
+        }
+        return Compression.NONE;
+    }
+
+    /**
+     * Detect compression from the magic bytes at the start of a stream. The stream is reset afterwards.
+     *
+     * @param inputStream A stream supporting mark and reset
+     * @return The detected compression
+     * @throws IOException If reading the stream fails
+     */
+    static Compression detect(final InputStream inputStream) throws IOException {
+        byte[] magic = new byte[MAGIC_LENGTH];
+        inputStream.mark(MAGIC_LENGTH);
+        int length = inputStream.readNBytes(magic, 0, MAGIC_LENGTH);
+        inputStream.reset();
+
+        if (length >= 2 && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B) {
+            return Compression.GZIP;
+        }
+        if (length == MAGIC_LENGTH && (magic[0] & 0xFF) == 0x28 && (magic[1] & 0xFF) == 0xB5
+                && (magic[2] & 0xFF) == 0x2F && (magic[3] & 0xFF) == 0xFD) {
+            return Compression.ZSTD;
+        }
+        return Compression.NONE;
+    }
+}
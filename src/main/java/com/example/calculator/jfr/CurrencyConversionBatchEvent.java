@@ -0,0 +1,29 @@
+package com.example.calculator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import lombok.Setter;
+
+/**
+ * The amounts summed for one balance have been converted to the output currency.
+ */
+@Name("com.example.calculator.CurrencyConversionBatch")
+@Label("Currency Conversion Batch")
+@Category({"Calculator", "Calculation"})
+@Description("The amounts summed for one balance have been converted to the output currency")
+@StackTrace(false)
+@Threshold("1 ms")
+@Setter
+public class CurrencyConversionBatchEvent extends Event {
+
+    @Label("Conversions")
+    private int conversions;
+
+    @Label("Output Currency")
+    private String outputCurrency;
+}
@@ -0,0 +1,33 @@
+package com.example.calculator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import lombok.Setter;
+
+/**
+ * The balance of a customer has been calculated.
+ */
+@Name("com.example.calculator.CustomerSummed")
+@Label("Customer Summed")
+@Category({"Calculator", "Calculation"})
+@Description("The balance of a customer has been calculated")
+@StackTrace(false)
+@Threshold("1 ms")
+@Setter
+public class CustomerSummedEvent extends Event {
+
+    @Label("VAT Number")
+    private String vatNumber;
+
+    @Label("Document Count")
+    private int documentCount;
+
+    @Label("Precomputed")
+    @Description("The balance was calculated from totals precomputed by the parser")
+    private boolean precomputed;
+}
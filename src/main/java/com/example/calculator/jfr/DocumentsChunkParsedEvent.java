@@ -0,0 +1,37 @@
+package com.example.calculator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import lombok.Setter;
+
+/**
+ * A chunk of rows of a CSV documents file has been parsed.
+ */
+@Name("com.example.calculator.DocumentsChunkParsed")
+@Label("Documents Chunk Parsed")
+@Category({"Calculator", "Parsing"})
+@Description("A chunk of rows of a CSV documents file has been parsed")
+@StackTrace(false)
+@Threshold("0 ms")
+@Setter
+public class DocumentsChunkParsedEvent extends Event {
+
+    /**
+     * Number of rows of a full chunk, the last chunk of a file may be smaller.
+     */
+    public static final int CHUNK_ROWS = 1024;
+
+    @Label("Rows")
+    private int rows;
+
+    @Label("Bytes")
+    @Description("Bytes read from the input for the chunk, including read-ahead")
+    @DataAmount
+    private long bytes;
+}
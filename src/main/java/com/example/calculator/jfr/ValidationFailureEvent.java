@@ -0,0 +1,48 @@
+package com.example.calculator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import lombok.Setter;
+
+/**
+ * A document or an exchange rate failed validation.
+ */
+@Name("com.example.calculator.ValidationFailure")
+@Label("Validation Failure")
+@Category({"Calculator", "Validation"})
+@Description("A document or an exchange rate failed validation")
+@StackTrace(false)
+@Setter
+public class ValidationFailureEvent extends Event {
+
+    @Label("Row")
+    @Description("Row of the documents file, 0 if unknown")
+    private long row;
+
+    @Label("Column")
+    private String column;
+
+    @Label("Document Number")
+    private String documentNumber;
+
+    @Label("Message")
+    private String message;
+
+    /**
+     * Commit a validation failure if the event is enabled.
+     */
+    public static void emit(long row, String column, String documentNumber, String message) {
+        final ValidationFailureEvent event = new ValidationFailureEvent();
+        if (event.isEnabled()) {
+            event.setRow(row);
+            event.setColumn(column);
+            event.setDocumentNumber(documentNumber);
+            event.setMessage(message);
+            event.commit();
+        }
+    }
+}
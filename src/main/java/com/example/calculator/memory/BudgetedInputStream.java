@@ -0,0 +1,41 @@
+package com.example.calculator.memory;
+
+import com.example.calculator.io.CountingInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fails a request as soon as the bytes read from a stream exceed its {@link MemoryBudget}, so that a small compressed
+ * upload cannot expand without bound.
+ */
+public class BudgetedInputStream extends CountingInputStream {
+
+    private final MemoryBudget budget;
+
+    public BudgetedInputStream(InputStream in, MemoryBudget budget) {
+        super(in);
+        this.budget = budget;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = super.read();
+        budget.checkStreamed(getCount());
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        final int n = super.read(b, off, len);
+        budget.checkStreamed(getCount());
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        final long skipped = super.skip(n);
+        budget.checkStreamed(getCount());
+        return skipped;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.calculator.memory;
+
+import com.example.calculator.exception.MemoryBudgetExceededException;
+
+/**
+ * Estimated memory held by one request. Parsing charges the documents and customers it keeps, or the off-heap
+ * blocks of the documents, as well as the buffer a binary file is read into. The calculation charges its results.
+ * A request thus fails as soon as it needs more than its budget instead of exhausting the heap shared with other
+ * requests.
+ * <p>
+ * Estimates are not released before the request completes, so the charged bytes are also the peak of the
+ * request. Instances are used by the thread of their request only.
+ */
+public class MemoryBudget {
+
+    private final long maxBytes;
+    private long usedBytes;
+    private boolean exceeded;
+
+    /**
+     * @param maxBytes The budget in bytes, 0 to only account memory
+     */
+    public MemoryBudget(final long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Charge memory held until the request completes.
+     *
+     * @param bytes Estimated size in bytes
+     * @throws MemoryBudgetExceededException If the request now exceeds its budget.
+     */
+    public void charge(final long bytes) {
+        usedBytes += bytes;
+        if (maxBytes > 0 && usedBytes > maxBytes) {
+            exceeded = true;
+            throw new MemoryBudgetExceededException(maxBytes);
+        }
+    }
+
+    /**
+     * Check data that is streamed through the request without being held, such as a decompressed upload, against
+     * the budget on its own.
+     *
+     * @param bytes Size of the data streamed so far in bytes
+     * @throws MemoryBudgetExceededException If the data is larger than the budget.
+     */
+    public void checkStreamed(final long bytes) {
+        if (maxBytes > 0 && bytes > maxBytes) {
+            exceeded = true;
+            throw new MemoryBudgetExceededException(maxBytes);
+        }
+    }
+
+    /**
+     * @return The estimated bytes charged so far, the peak of the request.
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return True if the request was aborted for exceeding the budget.
+     */
+    public boolean isExceeded() {
+        return exceeded;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.calculator.memory;
+
+import com.example.calculator.CalculatorProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Creates the {@link MemoryBudget} of each request and reports the estimated peak memory of the requests as the
+ * {@code calculator.request.memory.peak} distribution summary, and the requests aborted for exceeding their
+ * budget as the {@code calculator.request.memory.rejected} counter.
+ */
+@Service
+public class RequestMemoryAccounting {
+
+    static final String PEAK_METRIC = "calculator.request.memory.peak";
+    static final String REJECTED_METRIC = "calculator.request.memory.rejected";
+
+    private final long maxRequestBytes;
+    private final DistributionSummary peakBytes;
+    private final Counter rejected;
+
+    public RequestMemoryAccounting(CalculatorProperties calculatorProperties, MeterRegistry meterRegistry) {
+        this.maxRequestBytes = calculatorProperties.getMemory().getMaxRequestBytes();
+        this.peakBytes = DistributionSummary.builder(PEAK_METRIC)
+                .description("Estimated peak memory held by a request parsing a documents file")
+                .baseUnit("bytes")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.rejected = Counter.builder(REJECTED_METRIC)
+                .description("Requests aborted for exceeding the memory budget")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Create the budget of the current request. Its peak is recorded when the request completes; outside of a
+     * web request it is not recorded.
+     *
+     * @return The budget
+     */
+    public MemoryBudget createBudget() {
+        final MemoryBudget budget = new MemoryBudget(maxRequestBytes);
+        final RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.registerDestructionCallback(MemoryBudget.class.getName(), () -> record(budget),
+                    RequestAttributes.SCOPE_REQUEST);
+        }
+        return budget;
+    }
+
+    void record(final MemoryBudget budget) {
+        peakBytes.record(budget.getUsedBytes());
+        if (budget.isExceeded()) {
+            rejected.increment();
+        }
+    }
+}
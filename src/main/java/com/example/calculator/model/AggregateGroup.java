@@ -0,0 +1,24 @@
+package com.example.calculator.model;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * The measures of the documents of one aggregation group. Dimensions that are not grouped by are null.
+ * Amounts are in the output currency, negative for credit notes.
+ */
+@Getter
+@Builder
+public class AggregateGroup {
+
+    private final Customer customer;
+    private final Currency currency;
+    private final DocumentType documentType;
+    private final long count;
+    private final BigDecimal sum;
+    private final BigDecimal min;
+    private final BigDecimal max;
+}
@@ -0,0 +1,13 @@
+package com.example.calculator.model;
+
+/**
+ * Dimensions that documents can be grouped by in an aggregation.
+ */
+public enum AggregationDimension {
+    CUSTOMER,
+    /**
+     * The source currency of the documents.
+     */
+    CURRENCY,
+    DOCUMENT_TYPE
+}
@@ -0,0 +1,11 @@
+package com.example.calculator.model;
+
+/**
+ * Measures computed per group in an aggregation.
+ */
+public enum AggregationMeasure {
+    SUM,
+    COUNT,
+    MIN,
+    MAX
+}
@@ -1,12 +1,17 @@
 package com.example.calculator.model;
 
+import com.example.calculator.store.OffHeapDocumentStore;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 
-import java.util.HashSet;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
-import java.util.Set;
 
 /**
  * Customer data model.
@@ -21,7 +26,50 @@ public class Customer {
     @NonNull
     private String vatNumber;
 
-    private Set<Document> documents = new HashSet<>();
+    /**
+     * Documents of the customer, the parser rejects or skips documents with a number already seen.
+     */
+    private List<Document> documents = new ArrayList<>();
+
+    /**
+     * Running sums of the document totals, only maintained if requested when parsing (optional)
+     */
+    private DocumentTotals documentTotals;
+
+    /**
+     * Store holding the documents of this customer instead of {@link #documents}, if documents are stored
+     * off-heap (optional)
+     */
+    private OffHeapDocumentStore documentStore;
+
+    /**
+     * Id of this customer in the {@link #documentStore}.
+     */
+    private int documentStoreId;
+
+    /**
+     * Keep the documents of this customer in an off-heap store instead of in {@link #getDocuments()}.
+     * @param documentStore The store
+     * @param documentStoreId Id of this customer in the store
+     */
+    public void attachDocumentStore(OffHeapDocumentStore documentStore, int documentStoreId) {
+        this.documentStore = documentStore;
+        this.documentStoreId = documentStoreId;
+    }
+
+    /**
+     * @return The number of documents of this customer, wherever they are stored.
+     */
+    public int getDocumentCount() {
+        return documentStore != null ? documentStore.getDocumentCount(documentStoreId) : documents.size();
+    }
+
+    /**
+     * @return A cursor over the documents of this customer, wherever they are stored.
+     */
+    public DocumentCursor documentCursor() {
+        return documentStore != null ? documentStore.cursor(documentStoreId) : new ListCursor(documents.iterator());
+    }
 
     /**
      * Add a document for this customer
@@ -31,6 +79,30 @@ public class Customer {
         documents.add(document);
     }
 
+    /**
+     * Add the total of a document to the running sums of this customer.
+     * @param document A {@link com.example.calculator.model.Document Document} instance to add.
+     */
+    public void addDocumentTotal(Document document) {
+        if (documentTotals == null) {
+            documentTotals = new DocumentTotals();
+        }
+        documentTotals.add(document);
+    }
+
+    /**
+     * Add an amount to the running sums of this customer, for example when restoring sums saved earlier.
+     * @param currency The currency of the amount
+     * @param documentType The document type of the amount
+     * @param total The amount to add
+     */
+    public void addDocumentTotal(Currency currency, DocumentType documentType, BigDecimal total) {
+        if (documentTotals == null) {
+            documentTotals = new DocumentTotals();
+        }
+        documentTotals.add(currency, documentType, total);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -43,4 +115,53 @@ public class Customer {
     public int hashCode() {
         return Objects.hash(vatNumber);
     }
+
+    /**
+     * Cursor over documents held on the heap.
+     */
+    private static final class ListCursor implements DocumentCursor {
+
+        private final Iterator<Document> iterator;
+        private Document document;
+
+        ListCursor(Iterator<Document> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean next() {
+            document = iterator.hasNext() ? iterator.next() : null;
+            return document != null;
+        }
+
+        @Override
+        public String getDocumentNumber() {
+            return document.getDocumentNumber();
+        }
+
+        @Override
+        public DocumentType getDocumentType() {
+            return document.getDocumentType();
+        }
+
+        @Override
+        public String getParentDocumentNumber() {
+            return document.getParentDocumentNumber();
+        }
+
+        @Override
+        public Currency getCurrency() {
+            return document.getCurrency();
+        }
+
+        @Override
+        public BigDecimal getTotal() {
+            return document.getTotal();
+        }
+
+        @Override
+        public LocalDate getDate() {
+            return document.getDate();
+        }
+    }
 }
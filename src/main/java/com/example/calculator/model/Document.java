@@ -5,6 +5,7 @@ import lombok.Getter;
 import lombok.NonNull;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.Currency;
 import java.util.Objects;
 
@@ -22,6 +23,10 @@ public class Document {
     private String parentDocumentNumber;
     private BigDecimal total;
     private Currency currency;
+    /**
+     * Date of the document, selects its exchange rates. Null if the file has no dates.
+     */
+    private LocalDate date;
 
     public static DocumentBuilder builder(final String documentNumber, final DocumentType documentType) {
         return internalBuilder().documentNumber(documentNumber).documentType(documentType);
@@ -36,7 +41,8 @@ public class Document {
                 && documentType == document.documentType
                 && Objects.equals(parentDocumentNumber, document.parentDocumentNumber)
                 && Objects.equals(total, document.total)
-                && Objects.equals(currency, document.currency);
+                && Objects.equals(currency, document.currency)
+                && Objects.equals(date, document.date);
     }
 
     @Override
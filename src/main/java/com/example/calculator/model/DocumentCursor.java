@@ -0,0 +1,39 @@
+package com.example.calculator.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Currency;
+
+/**
+ * Flyweight over the documents of a customer: one instance moves from document to document, so iterating
+ * does not need a {@link Document} object per document.
+ * <p>
+ * Usage: {@code while (cursor.next()) { cursor.getTotal(); ... }}
+ */
+public interface DocumentCursor {
+
+    /**
+     * Move to the next document.
+     *
+     * @return False if there are no more documents.
+     */
+    boolean next();
+
+    String getDocumentNumber();
+
+    DocumentType getDocumentType();
+
+    /**
+     * @return The parent document number, null if there is none.
+     */
+    String getParentDocumentNumber();
+
+    Currency getCurrency();
+
+    BigDecimal getTotal();
+
+    /**
+     * @return The date of the document, null if it has none.
+     */
+    LocalDate getDate();
+}
@@ -0,0 +1,77 @@
+package com.example.calculator.model;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Running sums of document totals per currency and document type.
+ */
+public class DocumentTotals {
+
+    private static final DocumentType[] DOCUMENT_TYPES = DocumentType.values();
+
+    /**
+     * Sums indexed by {@link DocumentType#ordinal()}, per document currency.
+     */
+    private final Map<Currency, BigDecimal[]> totals = new HashMap<>();
+
+    /**
+     * Add the total of a document to the sums.
+     *
+     * @param document The document to add
+     */
+    public void add(Document document) {
+        add(document.getCurrency(), document.getDocumentType(), document.getTotal());
+    }
+
+    /**
+     * Add an amount to the sum of a currency and document type.
+     *
+     * @param currency     The currency
+     * @param documentType The document type
+     * @param total        The amount to add
+     */
+    public void add(Currency currency, DocumentType documentType, BigDecimal total) {
+        BigDecimal[] currencyTotals = totals.computeIfAbsent(currency, it -> newTotals());
+        int index = documentType.ordinal();
+        currencyTotals[index] = currencyTotals[index].add(total);
+    }
+
+    /**
+     * @return The currencies of the added documents.
+     */
+    public Set<Currency> getCurrencies() {
+        return Collections.unmodifiableSet(totals.keySet());
+    }
+
+    /**
+     * @return The sum of totals of the documents with the given currency and type.
+     */
+    public BigDecimal getTotal(Currency currency, DocumentType documentType) {
+        BigDecimal[] currencyTotals = totals.get(currency);
+        return currencyTotals == null ? BigDecimal.ZERO : currencyTotals[documentType.ordinal()];
+    }
+
+    /**
+     * The balance of the documents in a currency: invoices and debit notes add, credit notes subtract.
+     *
+     * @return The balance of the documents with the given currency.
+     */
+    public BigDecimal getBalance(Currency currency) {
+        return getTotal(currency, DocumentType.INVOICE)
+                .subtract(getTotal(currency, DocumentType.CREDIT_NOTE))
+                .add(getTotal(currency, DocumentType.DEBIT_NOTE));
+    }
+
+    private static BigDecimal[] newTotals() {
+        BigDecimal[] currencyTotals = new BigDecimal[DOCUMENT_TYPES.length];
+        for (int i = 0; i < currencyTotals.length; i++) {
+            currencyTotals[i] = BigDecimal.ZERO;
+        }
+        return currencyTotals;
+    }
+}
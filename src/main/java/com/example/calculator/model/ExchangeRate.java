@@ -3,11 +3,13 @@ package com.example.calculator.model;
 import lombok.Getter;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.Currency;
 import java.util.Objects;
 
 /**
- * Holds pairs of a {@link java.util.Currency Currency} and exchange rate
+ * Holds pairs of a {@link java.util.Currency Currency} and exchange rate, optionally with the date from which
+ * the rate is effective
  */
 @Getter
 public class ExchangeRate {
@@ -15,10 +17,19 @@ public class ExchangeRate {
     private Currency currency;
     private BigDecimal rate;
     private boolean defaultCurrency;
+    /**
+     * First day the rate applies to, null if it applies to documents of any date without a more recent rate.
+     */
+    private LocalDate effectiveDate;
 
     public ExchangeRate(Currency currency, BigDecimal rate) {
+        this(currency, rate, null);
+    }
+
+    public ExchangeRate(Currency currency, BigDecimal rate, LocalDate effectiveDate) {
         this.currency = currency;
         this.rate = rate;
+        this.effectiveDate = effectiveDate;
         defaultCurrency = BigDecimal.ONE.equals(rate);
     }
 
@@ -27,11 +38,12 @@ public class ExchangeRate {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ExchangeRate that = (ExchangeRate) o;
-        return currency.equals(that.currency) && rate.equals(that.rate);
+        return currency.equals(that.currency) && rate.equals(that.rate)
+                && Objects.equals(effectiveDate, that.effectiveDate);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(currency);
+        return Objects.hash(currency, rate, effectiveDate);
     }
 }
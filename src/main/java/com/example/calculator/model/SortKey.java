@@ -0,0 +1,19 @@
+package com.example.calculator.model;
+
+/**
+ * Key customers are sorted by.
+ */
+public enum SortKey {
+    /**
+     * Customer name.
+     */
+    NAME,
+    /**
+     * Customer VAT number.
+     */
+    VAT,
+    /**
+     * Balance in the output currency.
+     */
+    BALANCE
+}
@@ -0,0 +1,15 @@
+package com.example.calculator.model;
+
+/**
+ * Direction in which customers are sorted by the requested key.
+ */
+public enum SortOrder {
+    /**
+     * Smallest values of the key first.
+     */
+    ASC,
+    /**
+     * Largest values of the key first.
+     */
+    DESC
+}
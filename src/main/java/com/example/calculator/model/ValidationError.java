@@ -0,0 +1,20 @@
+package com.example.calculator.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A single validation error found in a documents file.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ValidationError {
+
+    /**
+     * 1-based data row number, not counting the header row.
+     */
+    private final long row;
+    private final String column;
+    private final String documentNumber;
+    private final String message;
+}
@@ -0,0 +1,15 @@
+package com.example.calculator.model;
+
+/**
+ * How documents file validation reacts to invalid rows.
+ */
+public enum ValidationMode {
+    /**
+     * Stop at the first invalid document.
+     */
+    FAIL_FAST,
+    /**
+     * Validate the whole file and collect every error found.
+     */
+    COLLECT_ALL
+}
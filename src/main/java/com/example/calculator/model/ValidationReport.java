@@ -0,0 +1,60 @@
+package com.example.calculator.model;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the validation errors of a documents file, keeping at most a fixed number of them.
+ */
+public class ValidationReport {
+
+    private final int maxErrors;
+    private final List<ValidationError> errors = new ArrayList<>();
+
+    @Getter
+    private long errorCount;
+
+    public ValidationReport(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Record an error. Errors beyond the limit are counted but not kept.
+     *
+     * @param error The error to record.
+     */
+    public void add(ValidationError error) {
+        errorCount++;
+        if (errors.size() < maxErrors) {
+            errors.add(error);
+        }
+    }
+
+    /**
+     * Count errors that were found but are not listed, for example those left out of a truncated report that is
+     * merged into this one.
+     *
+     * @param count The number of errors.
+     */
+    public void addUnlisted(long count) {
+        errorCount += count;
+    }
+
+    public List<ValidationError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    public boolean hasErrors() {
+        return errorCount > 0;
+    }
+
+    /**
+     * @return True if more errors were found than are kept in this report.
+     */
+    public boolean isTruncated() {
+        return errorCount > errors.size();
+    }
+}
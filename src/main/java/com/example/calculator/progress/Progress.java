@@ -0,0 +1,117 @@
+package com.example.calculator.progress;
+
+/**
+ * Progress of one request processing a documents file, published by the request thread at sample points and
+ * read by the {@link ProgressRegistry} to stream it to subscribers. Fields are volatile and written without
+ * synchronization, a snapshot may mix values of consecutive samples.
+ */
+public class Progress {
+
+    /**
+     * Customers summed between two samples, see {@link #customersSummed(long)}.
+     */
+    public static final int SAMPLE_CUSTOMERS = 256;
+
+    public enum Phase {
+        PARSE, CALCULATE, DONE
+    }
+
+    private final long totalBytes;
+    private final long startNanos = System.nanoTime();
+    private volatile Phase phase = Phase.PARSE;
+    private volatile long phaseStartNanos = startNanos;
+    private volatile long bytesRead;
+    private volatile long rowsParsed;
+    private volatile long customersSummed;
+    private volatile long totalCustomers;
+    private volatile long finishNanos;
+
+    /**
+     * @param totalBytes Size of the uploaded file in bytes
+     */
+    public Progress(final long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * @param bytes Bytes of the uploaded file read so far
+     */
+    public void bytesRead(final long bytes) {
+        bytesRead = bytes;
+    }
+
+    /**
+     * @param rows Rows of the CSV file parsed so far, published with each chunk of rows
+     */
+    public void rowsParsed(final long rows) {
+        rowsParsed = rows;
+    }
+
+    /**
+     * Start summing the balances of the parsed customers.
+     *
+     * @param customers Number of customers to sum
+     */
+    public void startCalculation(final long customers) {
+        totalCustomers = customers;
+        phaseStartNanos = System.nanoTime();
+        phase = Phase.CALCULATE;
+    }
+
+    /**
+     * @param customers Customers summed so far, published every {@link #SAMPLE_CUSTOMERS} customers
+     */
+    public void customersSummed(final long customers) {
+        customersSummed = customers;
+    }
+
+    /**
+     * Mark the request as completed, successfully or not.
+     */
+    public void finish() {
+        finishNanos = System.nanoTime();
+        phase = Phase.DONE;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return Nanos since the request finished, or -1 if it is still running.
+     */
+    long nanosSinceFinish() {
+        return phase == Phase.DONE ? System.nanoTime() - finishNanos : -1;
+    }
+
+    /**
+     * Take a snapshot of the progress. The remaining time is extrapolated from the rate of the current phase:
+     * the bytes read while parsing, the customers summed while calculating.
+     *
+     * @return The progress event
+     */
+    public ProgressEvent snapshot() {
+        final Phase currentPhase = phase;
+        final long now = currentPhase == Phase.DONE ? finishNanos : System.nanoTime();
+        final Long etaMillis;
+        if (currentPhase == Phase.PARSE) {
+            etaMillis = extrapolate(now - phaseStartNanos, bytesRead, totalBytes);
+        } else if (currentPhase == Phase.CALCULATE) {
+            etaMillis = extrapolate(now - phaseStartNanos, customersSummed, totalCustomers);
+        } else {
+            etaMillis = 0L;
+        }
+        return new ProgressEvent(currentPhase, bytesRead, totalBytes, rowsParsed, customersSummed, totalCustomers,
+                (now - startNanos) / 1_000_000, etaMillis);
+    }
+
+    /**
+     * @return The milliseconds needed for the remaining work at the rate of the work done, null if unknown.
+     */
+    private static Long extrapolate(final long elapsedNanos, final long done, final long total) {
+        if (done <= 0 || total <= 0 || done > total) {
+            return null;
+        }
+        return (long) ((double) elapsedNanos * (total - done) / done / 1_000_000);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.calculator.progress;
+
+import com.example.calculator.tenant.TenantScheduler;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Streams the progress of a request as Server-Sent Events. The operation is described in openapi.yaml, but
+ * written by hand since the generated delegates cannot return an {@link SseEmitter}. Subscribers only see the
+ * requests of their own tenant, identified by the same headers as the requests.
+ */
+@RestController
+@RequestMapping("${openapi.invoicingAPIChallenge.base-path:/api/v1}")
+public class ProgressController {
+
+    /**
+     * Request header carrying the progress id chosen by the client.
+     */
+    public static final String PROGRESS_ID_HEADER = "X-Progress-Id";
+
+    private final ProgressRegistry progressRegistry;
+    private final TenantScheduler tenantScheduler;
+
+    public ProgressController(ProgressRegistry progressRegistry, TenantScheduler tenantScheduler) {
+        this.progressRegistry = progressRegistry;
+        this.tenantScheduler = tenantScheduler;
+    }
+
+    @GetMapping(value = "/progress/{progressId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter progress(@PathVariable("progressId") String progressId,
+                               @RequestHeader(value = TenantScheduler.API_KEY_HEADER, required = false) String apiKey,
+                               @RequestHeader(value = TenantScheduler.TENANT_HEADER, required = false) String tenant) {
+        return progressRegistry.subscribe(tenantScheduler.resolveTenant(apiKey, tenant), progressId);
+    }
+}
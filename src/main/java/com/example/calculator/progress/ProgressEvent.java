@@ -0,0 +1,23 @@
+package com.example.calculator.progress;
+
+/**
+ * Progress of a request as sent to subscribers.
+ *
+ * @param phase           Current phase of the request
+ * @param bytesRead       Bytes of the uploaded file read so far
+ * @param totalBytes      Size of the uploaded file
+ * @param rowsParsed      Rows of the CSV file parsed so far, sampled; 0 for binary and Parquet files
+ * @param customersSummed Customers whose balance is summed, sampled
+ * @param totalCustomers  Customers of the file, known once parsing is complete
+ * @param elapsedMillis   Time since the request started parsing
+ * @param etaMillis       Estimated time until the current phase completes, null if unknown
+ */
+public record ProgressEvent(Progress.Phase phase,
+                            long bytesRead,
+                            long totalBytes,
+                            long rowsParsed,
+                            long customersSummed,
+                            long totalCustomers,
+                            long elapsedMillis,
+                            Long etaMillis) {
+}
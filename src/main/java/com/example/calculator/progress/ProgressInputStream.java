@@ -0,0 +1,50 @@
+package com.example.calculator.progress;
+
+import com.example.calculator.io.CountingInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Publishes the bytes read from an uploaded file to its {@link Progress} every {@link #SAMPLE_BYTES} bytes.
+ */
+public class ProgressInputStream extends CountingInputStream {
+
+    static final int SAMPLE_BYTES = 1 << 16;
+
+    private final Progress progress;
+    private long nextSample = SAMPLE_BYTES;
+
+    public ProgressInputStream(InputStream in, Progress progress) {
+        super(in);
+        this.progress = progress;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = super.read();
+        sample(b == -1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        final int n = super.read(b, off, len);
+        sample(n == -1);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        final long skipped = super.skip(n);
+        sample(false);
+        return skipped;
+    }
+
+    private void sample(final boolean end) {
+        if (end || getCount() >= nextSample) {
+            progress.bytesRead(getCount());
+            nextSample = getCount() + SAMPLE_BYTES;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.calculator.progress;
+
+import com.example.calculator.CalculatorProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Progress of the requests that sent a progress id, streamed as Server-Sent Events to the subscribers of the id.
+ * <p>
+ * A single thread samples the progress of every subscribed request at a fixed interval, so the requests only
+ * publish counters and never block on subscribers. A {@code progress} event is sent at each tick, and a
+ * {@code done} event once the request completed. Subscribers may subscribe before the request starts, and for
+ * {@link #RETENTION} after it completed.
+ * <p>
+ * Progress ids are chosen by the clients, so they are scoped by tenant: a request only publishes to, and a
+ * subscriber only receives from, the ids of its own tenant, see
+ * {@link com.example.calculator.tenant.TenantScheduler#resolveTenant}. A running request keeps its id until it
+ * completes.
+ */
+@Slf4j
+@Service
+public class ProgressRegistry {
+
+    /**
+     * Time the progress of a completed request is kept for late subscribers.
+     */
+    static final Duration RETENTION = Duration.ofMinutes(1);
+
+    private final Duration timeout;
+    private final Map<ProgressKey, Progress> progresses = new ConcurrentHashMap<>();
+    private final Map<SseEmitter, ProgressKey> subscribers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public ProgressRegistry(CalculatorProperties calculatorProperties) {
+        this.timeout = calculatorProperties.getProgress().getTimeout();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "progress-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long interval = calculatorProperties.getProgress().getInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::tick, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        subscribers.keySet().forEach(SseEmitter::complete);
+    }
+
+    /**
+     * Start tracking the progress of a request, replacing a completed request with the same id.
+     *
+     * @param tenant     Tenant of the request
+     * @param progressId Id chosen by the client
+     * @param totalBytes Size of the uploaded file in bytes
+     * @return The progress, which the request finishes when it completes
+     * @throws ResponseStatusException 409 if a running request of the tenant has the same id.
+     */
+    public Progress start(final String tenant, final String progressId, final long totalBytes) {
+        final Progress progress = new Progress(totalBytes);
+        progresses.compute(new ProgressKey(tenant, progressId), (key, previous) -> {
+            if (previous != null && previous.getPhase() != Progress.Phase.DONE) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        String.format("Progress id [%s] is used by a running request", progressId));
+            }
+            return progress;
+        });
+        return progress;
+    }
+
+    /**
+     * Subscribe to the progress of a request, which may not have started yet.
+     *
+     * @param tenant     Tenant of the subscriber
+     * @param progressId Id chosen by the client
+     * @return The event stream, completed after the {@code done} event or when the subscription times out
+     */
+    public SseEmitter subscribe(final String tenant, final String progressId) {
+        final ProgressKey key = new ProgressKey(tenant, progressId);
+        final SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        emitter.onError(e -> subscribers.remove(emitter));
+        subscribers.put(emitter, key);
+        scheduler.execute(() -> send(emitter, key));
+        return emitter;
+    }
+
+    private void tick() {
+        subscribers.forEach(this::send);
+        progresses.values().removeIf(progress -> progress.nanosSinceFinish() > RETENTION.toNanos());
+    }
+
+    private void send(final SseEmitter emitter, final ProgressKey key) {
+        final Progress progress = progresses.get(key);
+        if (progress == null || !subscribers.containsKey(emitter)) {
+            return;
+        }
+        final ProgressEvent event = progress.snapshot();
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(event, MediaType.APPLICATION_JSON));
+            if (event.phase() == Progress.Phase.DONE) {
+                emitter.send(SseEmitter.event().name("done").data(key.progressId()));
+                subscribers.remove(emitter);
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client went away
+            log.debug("Progress subscriber of [{}] failed: {}", key.progressId(), e.getMessage());
+            subscribers.remove(emitter);
+            emitter.completeWithError(e);
+        }
+    }
+
+    private record ProgressKey(String tenant, String progressId) {
+    }
+}
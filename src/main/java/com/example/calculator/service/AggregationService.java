@@ -0,0 +1,201 @@
+package com.example.calculator.service;
+
+import com.example.calculator.Constants;
+import com.example.calculator.exception.CurrencyExchangeException;
+import com.example.calculator.model.AggregateGroup;
+import com.example.calculator.model.AggregationDimension;
+import com.example.calculator.model.Customer;
+import com.example.calculator.model.DocumentCursor;
+import com.example.calculator.model.DocumentType;
+import com.example.calculator.model.ExchangeRate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Aggregates documents by customer, source currency and document type.
+ * <p>
+ * The documents are read in a single scan. Each document total is converted to the output currency once and
+ * accumulated as a long number of minor units in arrays indexed by source currency and document type, so the
+ * scan does not allocate per group. Groups that are not requested are merged when the results are built.
+ */
+@Service
+public class AggregationService {
+
+    private static final DocumentType[] DOCUMENT_TYPES = DocumentType.values();
+
+    private CurrencyExchangeService currencyExchangeService;
+
+    public AggregationService(CurrencyExchangeService currencyExchangeService) {
+        this.currencyExchangeService = currencyExchangeService;
+    }
+
+    /**
+     * Aggregate the documents of customers. Amounts are signed like in a balance: credit notes are negative.
+     *
+     * @param customers     The customers with their documents
+     * @param groupBy       The dimensions to group by, no dimension puts all documents in one group
+     * @param currency      The currency into which the amounts are converted
+     * @param exchangeRates Currency exchange rates, each document is converted at the rates in effect on its date
+     * @return The groups, by customer in the order given, then by currency code and document type.
+     * @throws CurrencyExchangeException If an exchange rate does not exist for a currency in the documents.
+     * @throws ArithmeticException       If a sum exceeds the range of a long number of minor units.
+     */
+    public List<AggregateGroup> aggregate(final Collection<Customer> customers,
+                                          final Set<AggregationDimension> groupBy,
+                                          final Currency currency,
+                                          final Collection<ExchangeRate> exchangeRates)
+            throws CurrencyExchangeException {
+        Objects.requireNonNull(customers, "Argument [customers] cannot be null");
+        Objects.requireNonNull(groupBy, "Argument [groupBy] cannot be null");
+        Objects.requireNonNull(currency, "Argument [currency] cannot be null");
+        Objects.requireNonNull(exchangeRates, "Argument [exchangeRates] cannot be null");
+
+        // Documents in currencies without an exchange rate fail conversion, so the rates give all source currencies
+        final Currency[] currencies = exchangeRates.stream()
+                .map(ExchangeRate::getCurrency)
+                .distinct()
+                .sorted(Comparator.comparing(Currency::getCurrencyCode))
+                .toArray(Currency[]::new);
+        final Map<Currency, Integer> currencyIndexes = new HashMap<>();
+        for (int i = 0; i < currencies.length; i++) {
+            currencyIndexes.put(currencies[i], i);
+        }
+
+        final int scale = currency.getDefaultFractionDigits();
+        final boolean byCustomer = groupBy.contains(AggregationDimension.CUSTOMER);
+        final ExchangeRateHistory exchangeRateHistory = currencyExchangeService.getExchangeRateHistory(exchangeRates);
+        final Accumulators accumulators = new Accumulators(currencies.length * DOCUMENT_TYPES.length);
+        final GroupBuilder groupBuilder = new GroupBuilder(groupBy, currencies, scale);
+        final List<AggregateGroup> groups = new ArrayList<>();
+
+        for (Customer customer : customers) {
+            final DocumentCursor document = customer.documentCursor();
+            while (document.next()) {
+                final BigDecimal converted = currencyExchangeService.convertAmount(
+                        exchangeRateHistory.getTable(document.getDate()), document.getCurrency(), currency,
+                        document.getTotal());
+                long amount = converted.setScale(scale, Constants.DEFAULT_ROUNDING_MODE)
+                        .unscaledValue()
+                        .longValueExact();
+                final DocumentType documentType = document.getDocumentType();
+                if (documentType == DocumentType.CREDIT_NOTE) {
+                    amount = -amount;
+                }
+                final int cell = currencyIndexes.get(document.getCurrency()) * DOCUMENT_TYPES.length
+                        + documentType.ordinal();
+                accumulators.add(cell, amount);
+            }
+            if (byCustomer) {
+                groupBuilder.build(accumulators, customer, groups);
+                accumulators.reset();
+            }
+        }
+        if (!byCustomer) {
+            groupBuilder.build(accumulators, null, groups);
+        }
+        return groups;
+    }
+
+    /**
+     * Sum, count, min and max of amounts per cell, in parallel primitive arrays.
+     */
+    private static class Accumulators {
+
+        private final long[] sum;
+        private final long[] count;
+        private final long[] min;
+        private final long[] max;
+
+        Accumulators(int cells) {
+            sum = new long[cells];
+            count = new long[cells];
+            min = new long[cells];
+            max = new long[cells];
+            reset();
+        }
+
+        void add(int cell, long amount) {
+            sum[cell] = Math.addExact(sum[cell], amount);
+            count[cell]++;
+            min[cell] = Math.min(min[cell], amount);
+            max[cell] = Math.max(max[cell], amount);
+        }
+
+        void merge(int cell, Accumulators other, int otherCell) {
+            sum[cell] = Math.addExact(sum[cell], other.sum[otherCell]);
+            count[cell] += other.count[otherCell];
+            min[cell] = Math.min(min[cell], other.min[otherCell]);
+            max[cell] = Math.max(max[cell], other.max[otherCell]);
+        }
+
+        void reset() {
+            Arrays.fill(sum, 0);
+            Arrays.fill(count, 0);
+            Arrays.fill(min, Long.MAX_VALUE);
+            Arrays.fill(max, Long.MIN_VALUE);
+        }
+
+        int size() {
+            return count.length;
+        }
+    }
+
+    /**
+     * Merges the currency and document type cells into the requested groups and builds their results.
+     */
+    private static class GroupBuilder {
+
+        private final boolean byCurrency;
+        private final boolean byDocumentType;
+        private final Currency[] currencies;
+        private final int scale;
+        private final int groupTypes;
+        private final Accumulators merged;
+
+        GroupBuilder(Set<AggregationDimension> groupBy, Currency[] currencies, int scale) {
+            this.byCurrency = groupBy.contains(AggregationDimension.CURRENCY);
+            this.byDocumentType = groupBy.contains(AggregationDimension.DOCUMENT_TYPE);
+            this.currencies = currencies;
+            this.scale = scale;
+            this.groupTypes = byDocumentType ? DOCUMENT_TYPES.length : 1;
+            this.merged = new Accumulators((byCurrency ? currencies.length : 1) * groupTypes);
+        }
+
+        void build(Accumulators accumulators, Customer customer, List<AggregateGroup> groups) {
+            merged.reset();
+            for (int cell = 0; cell < accumulators.size(); cell++) {
+                if (accumulators.count[cell] > 0) {
+                    final int currencyIndex = cell / DOCUMENT_TYPES.length;
+                    final int typeIndex = cell % DOCUMENT_TYPES.length;
+                    merged.merge((byCurrency ? currencyIndex : 0) * groupTypes + (byDocumentType ? typeIndex : 0),
+                            accumulators, cell);
+                }
+            }
+
+            for (int group = 0; group < merged.size(); group++) {
+                if (merged.count[group] > 0) {
+                    groups.add(AggregateGroup.builder()
+                            .customer(customer)
+                            .currency(byCurrency ? currencies[group / groupTypes] : null)
+                            .documentType(byDocumentType ? DOCUMENT_TYPES[group % groupTypes] : null)
+                            .count(merged.count[group])
+                            .sum(BigDecimal.valueOf(merged.sum[group], scale))
+                            .min(BigDecimal.valueOf(merged.min[group], scale))
+                            .max(BigDecimal.valueOf(merged.max[group], scale))
+                            .build());
+                }
+            }
+        }
+    }
+}
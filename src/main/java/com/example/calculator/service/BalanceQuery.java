@@ -0,0 +1,74 @@
+package com.example.calculator.service;
+
+import com.example.calculator.model.SortKey;
+import com.example.calculator.model.SortOrder;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+/**
+ * Selection and order of the customer balances to return.
+ */
+@Getter
+@Builder
+public class BalanceQuery {
+
+    /**
+     * Maximum number of customers to return, the first ones in sort order (optional)
+     */
+    private Integer top;
+
+    /**
+     * Minimum balance, inclusive (optional)
+     */
+    private BigDecimal minBalance;
+
+    /**
+     * Maximum balance, inclusive (optional)
+     */
+    private BigDecimal maxBalance;
+
+    /**
+     * Direction of the order of the customers (optional)
+     */
+    private SortOrder sortOrder;
+
+    /**
+     * Key the customers are sorted by (optional)
+     */
+    private SortKey sortBy;
+
+    /**
+     * @return The requested sort key, {@link SortKey#BALANCE BALANCE} if only top or a sort order is specified,
+     * or null if the customers are returned in the order they first appear in the file.
+     */
+    public SortKey getEffectiveSortBy() {
+        if (sortBy == null && (top != null || sortOrder != null)) {
+            return SortKey.BALANCE;
+        }
+        return sortBy;
+    }
+
+    /**
+     * @return The requested sort order, {@link SortOrder#DESC DESC} if only top is specified, otherwise
+     * {@link SortOrder#ASC ASC} if the customers are sorted, or null if they are not.
+     */
+    public SortOrder getEffectiveSortOrder() {
+        if (sortOrder != null) {
+            return sortOrder;
+        }
+        if (sortBy == null && top != null) {
+            return SortOrder.DESC;
+        }
+        return getEffectiveSortBy() == null ? null : SortOrder.ASC;
+    }
+
+    /**
+     * @return True if the balance is within the min and max balance thresholds.
+     */
+    public boolean matches(final BigDecimal balance) {
+        return (minBalance == null || balance.compareTo(minBalance) >= 0)
+                && (maxBalance == null || balance.compareTo(maxBalance) <= 0);
+    }
+}
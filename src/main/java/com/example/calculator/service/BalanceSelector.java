@@ -0,0 +1,87 @@
+package com.example.calculator.service;
+
+import com.example.calculator.model.SortKey;
+import com.example.calculator.model.SortOrder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Selects the balances requested by a {@link BalanceQuery} while they are calculated. With a top limit only the
+ * first {@code top} balances in sort order are kept, in a bounded heap whose head is the one to evict next, so
+ * memory stays proportional to the limit instead of the number of customers.
+ * <p>
+ * Customers with equal sort keys, and all customers if no sort key is requested, are ordered by their position
+ * in the file. The order is total, so the result does not depend on the order the balances are offered in.
+ */
+public class BalanceSelector {
+
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+    private static final Comparator<String> NULLS_FIRST = Comparator.nullsFirst(Comparator.naturalOrder());
+    private static final Comparator<CustomerBalance> BY_POSITION =
+            Comparator.comparingLong(CustomerBalance::position);
+
+    private final BalanceQuery query;
+    private final Comparator<CustomerBalance> order;
+    private final PriorityQueue<CustomerBalance> heap;
+    private final List<CustomerBalance> items;
+
+    /**
+     * @param query The selection and order of the balances
+     */
+    public BalanceSelector(final BalanceQuery query) {
+        this.query = query;
+        this.order = order(query.getEffectiveSortBy(), query.getEffectiveSortOrder());
+
+        if (query.getTop() != null) {
+            this.heap = new PriorityQueue<>(Math.min(query.getTop(), MAX_INITIAL_CAPACITY) + 1, order.reversed());
+            this.items = null;
+        } else {
+            this.heap = null;
+            this.items = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Offer a balance, it is kept if it matches the thresholds and, with a top limit, is among the first ones.
+     */
+    public void offer(final CustomerBalance item) {
+        if (!query.matches(item.balance())) {
+            return;
+        }
+        if (heap == null) {
+            items.add(item);
+            return;
+        }
+        if (heap.size() < query.getTop()) {
+            heap.add(item);
+        } else if (order.compare(item, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(item);
+        }
+    }
+
+    /**
+     * @return The selected balances in sort order, sorted in parallel when there are many of them.
+     */
+    public List<CustomerBalance> getResult() {
+        final CustomerBalance[] result = (heap != null ? heap : items).toArray(new CustomerBalance[0]);
+        Arrays.parallelSort(result, order);
+        return Arrays.asList(result);
+    }
+
+    private static Comparator<CustomerBalance> order(final SortKey sortBy, final SortOrder sortOrder) {
+        if (sortBy == null) {
+            return BY_POSITION;
+        }
+        final Comparator<CustomerBalance> byKey = switch (sortBy) {
+            case NAME -> Comparator.comparing(CustomerBalance::name, NULLS_FIRST);
+            case VAT -> Comparator.comparing(CustomerBalance::vatNumber, NULLS_FIRST);
+            case BALANCE -> Comparator.comparing(CustomerBalance::balance);
+        };
+        return (sortOrder == SortOrder.DESC ? byKey.reversed() : byKey).thenComparing(BY_POSITION);
+    }
+}
@@ -3,7 +3,13 @@ package com.example.calculator.service;
 import com.example.calculator.Constants;
 import com.example.calculator.exception.CurrencyExchangeException;
 import com.example.calculator.exception.DocumentValidationException;
+import com.example.calculator.jfr.CurrencyConversionBatchEvent;
+import com.example.calculator.jfr.CustomerSummedEvent;
+import com.example.calculator.model.Customer;
 import com.example.calculator.model.Document;
+import com.example.calculator.model.DocumentCursor;
+import com.example.calculator.model.DocumentTotals;
+import com.example.calculator.model.DocumentType;
 import com.example.calculator.model.ExchangeRate;
 import org.springframework.stereotype.Service;
 
@@ -24,9 +30,74 @@ public class CalculateService {
         this.currencyExchangeService = currencyExchangeService;
     }
 
+    /**
+     * Resolve the history of the exchange rates of a request, to be passed to every calculation of the request.
+     *
+     * @param exchangeRates Currency exchange rates.
+     * @return The history of the exchange rates, see {@link CurrencyExchangeService#getExchangeRateHistory}
+     */
+    public ExchangeRateHistory getExchangeRateHistory(final Collection<ExchangeRate> exchangeRates) {
+        return currencyExchangeService.getExchangeRateHistory(exchangeRates);
+    }
+
+    /**
+     * Calculate the balance of a customer into a specified currency using provided exchange rates, see
+     * {@link #getCustomerBalance(Customer, Currency, ExchangeRateHistory)}. Requests calculating several customers
+     * resolve the history of their rates once instead.
+     *
+     * @param customer      The customer
+     * @param currency      The currency into which the balance will be converted to.
+     * @param exchangeRates Currency exchange rates.
+     * @return The balance of the customer in the requested currency.
+     * @throws CurrencyExchangeException If an exchange rate does not exist for a currency in the documents.
+     */
+    public BigDecimal getCustomerBalance(final Customer customer, final Currency currency,
+                                         Collection<ExchangeRate> exchangeRates)
+            throws CurrencyExchangeException {
+        Objects.requireNonNull(exchangeRates, "Argument [exchangeRates] cannot be null");
+        return getCustomerBalance(customer, currency, currencyExchangeService.getExchangeRateHistory(exchangeRates));
+    }
+
+    /**
+     * Calculate the balance of a customer into a specified currency using the history of the request exchange
+     * rates, from the totals precomputed by the parser if the customer has them and the rates have no effective
+     * dates, otherwise from its documents, read through a cursor.
+     * <p>
+     * Parent documents are not validated, the parser validates them for the whole file.
+     *
+     * @param customer            The customer
+     * @param currency            The currency into which the balance will be converted to.
+     * @param exchangeRateHistory Currency exchange rates, see {@link CurrencyExchangeService#getExchangeRateHistory}
+     * @return The balance of the customer in the requested currency.
+     * @throws CurrencyExchangeException If an exchange rate does not exist for a currency in the documents.
+     */
+    public BigDecimal getCustomerBalance(final Customer customer, final Currency currency,
+                                         final ExchangeRateHistory exchangeRateHistory)
+            throws CurrencyExchangeException {
+        final CustomerSummedEvent event = new CustomerSummedEvent();
+        event.begin();
+
+        final boolean precomputed = customer.getDocumentTotals() != null && !exchangeRateHistory.isDated();
+        final BigDecimal balance;
+        if (precomputed) {
+            balance = getDocumentsTotalSum(customer.getDocumentTotals(), currency, exchangeRateHistory.getTable(null));
+        } else {
+            balance = getDocumentsTotalSum(customer.documentCursor(), currency, exchangeRateHistory);
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.setVatNumber(customer.getVatNumber());
+            event.setDocumentCount(customer.getDocumentCount());
+            event.setPrecomputed(precomputed);
+            event.commit();
+        }
+        return balance;
+    }
+
     /**
      * Calculate the sum of totals for a list of {@link com.example.calculator.model.Document Documents}
-     * into a specified currency using provided exchange rates.
+     * into a specified currency using provided exchange rates, each document at the rates in effect on its date.
      *
      * @param documents     The documents to calculate the sum for
      * @param currency      The currency into which the sum will be converted to.
@@ -43,9 +114,13 @@ public class CalculateService {
         Objects.requireNonNull(currency, "Argument [currency] cannot be null");
         Objects.requireNonNull(exchangeRates, "Argument [exchangeRates] cannot be null");
 
+        final ExchangeRateHistory exchangeRateHistory = currencyExchangeService.getExchangeRateHistory(exchangeRates);
+        final CurrencyConversionBatchEvent conversionEvent = new CurrencyConversionBatchEvent();
+        conversionEvent.begin();
         BigDecimal totalSum = BigDecimal.ZERO;
         for (Document doc : documents) {
-            BigDecimal documentTotalConverted = currencyExchangeService.convertAmount(exchangeRates, doc.getCurrency(), currency, doc.getTotal());
+            BigDecimal documentTotalConverted = currencyExchangeService.convertAmount(
+                    exchangeRateHistory.getTable(doc.getDate()), doc.getCurrency(), currency, doc.getTotal());
 
             switch (doc.getDocumentType()) {
                 case INVOICE -> totalSum = totalSum.add(documentTotalConverted);
@@ -75,7 +150,109 @@ public class CalculateService {
                 }
             }
         }
+        commitConversionBatch(conversionEvent, documents.size(), currency);
+
+        return totalSum.setScale(currency.getDefaultFractionDigits(), Constants.DEFAULT_ROUNDING_MODE);
+    }
+
+    /**
+     * Calculate the balance of precomputed {@link com.example.calculator.model.DocumentTotals DocumentTotals}
+     * into a specified currency using provided exchange rates. The balance of each document currency is
+     * converted once, instead of converting every document. Rates with an effective date are ignored.
+     * <p>
+     * Parent documents are not validated, the parser does it when it precomputes the totals.
+     *
+     * @param documentTotals The precomputed sums of document totals
+     * @param currency       The currency into which the sum will be converted to.
+     * @param exchangeRates  Currency exchange rates.
+     * @return The sum of totals of the documents in the requested currency.
+     * @throws CurrencyExchangeException If an invalid currency has been specified or exchange rate does not exist
+     *                                   for a currency in the documents.
+     */
+    public BigDecimal getDocumentsTotalSum(final DocumentTotals documentTotals, final Currency currency,
+                                           Collection<ExchangeRate> exchangeRates)
+            throws CurrencyExchangeException {
+        Objects.requireNonNull(exchangeRates, "Argument [exchangeRates] cannot be null");
+        return getDocumentsTotalSum(documentTotals, currency,
+                currencyExchangeService.getExchangeRateTable(exchangeRates));
+    }
+
+    /**
+     * Calculate the balance of precomputed {@link com.example.calculator.model.DocumentTotals DocumentTotals}
+     * into a specified currency using the factors of a rate set, see
+     * {@link #getDocumentsTotalSum(DocumentTotals, Currency, Collection)}.
+     *
+     * @param documentTotals    The precomputed sums of document totals
+     * @param currency          The currency into which the sum will be converted to.
+     * @param exchangeRateTable Conversion factors of the exchange rates.
+     * @return The sum of totals of the documents in the requested currency.
+     * @throws CurrencyExchangeException If an invalid currency has been specified or exchange rate does not exist
+     *                                   for a currency in the documents.
+     */
+    public BigDecimal getDocumentsTotalSum(final DocumentTotals documentTotals, final Currency currency,
+                                           final ExchangeRateTable exchangeRateTable)
+            throws CurrencyExchangeException {
+        Objects.requireNonNull(documentTotals, "Argument [documentTotals] cannot be null");
+        Objects.requireNonNull(currency, "Argument [currency] cannot be null");
+        Objects.requireNonNull(exchangeRateTable, "Argument [exchangeRateTable] cannot be null");
+
+        final CurrencyConversionBatchEvent conversionEvent = new CurrencyConversionBatchEvent();
+        conversionEvent.begin();
+        BigDecimal totalSum = BigDecimal.ZERO;
+        for (Currency documentCurrency : documentTotals.getCurrencies()) {
+            totalSum = totalSum.add(currencyExchangeService.convertAmount(exchangeRateTable, documentCurrency, currency,
+                    documentTotals.getBalance(documentCurrency)));
+        }
+        commitConversionBatch(conversionEvent, documentTotals.getCurrencies().size(), currency);
+
+        return totalSum.setScale(currency.getDefaultFractionDigits(), Constants.DEFAULT_ROUNDING_MODE);
+    }
+
+    /**
+     * Calculate the sum of totals of the documents of a {@link DocumentCursor} into a specified currency using
+     * provided exchange rates, reading one document at a time. Each document is converted at the rates in effect
+     * on its date.
+     * <p>
+     * Parent documents are not validated, the parser does it for every document it reads.
+     *
+     * @param cursor              Cursor over the documents, consumed by the calculation
+     * @param currency            The currency into which the sum will be converted to.
+     * @param exchangeRateHistory Currency exchange rates, see {@link CurrencyExchangeService#getExchangeRateHistory}
+     * @return The sum of totals of the documents in the requested currency.
+     * @throws CurrencyExchangeException If an invalid currency has been specified or exchange rate does not exist
+     *                                   for a currency in the documents.
+     */
+    public BigDecimal getDocumentsTotalSum(final DocumentCursor cursor, final Currency currency,
+                                           final ExchangeRateHistory exchangeRateHistory)
+            throws CurrencyExchangeException {
+        Objects.requireNonNull(cursor, "Argument [cursor] cannot be null");
+        Objects.requireNonNull(currency, "Argument [currency] cannot be null");
+        Objects.requireNonNull(exchangeRateHistory, "Argument [exchangeRateHistory] cannot be null");
+
+        final CurrencyConversionBatchEvent conversionEvent = new CurrencyConversionBatchEvent();
+        conversionEvent.begin();
+        BigDecimal totalSum = BigDecimal.ZERO;
+        int conversions = 0;
+        while (cursor.next()) {
+            final BigDecimal documentTotalConverted = currencyExchangeService.convertAmount(
+                    exchangeRateHistory.getTable(cursor.getDate()), cursor.getCurrency(), currency, cursor.getTotal());
+            totalSum = cursor.getDocumentType() == DocumentType.CREDIT_NOTE
+                    ? totalSum.subtract(documentTotalConverted)
+                    : totalSum.add(documentTotalConverted);
+            conversions++;
+        }
+        commitConversionBatch(conversionEvent, conversions, currency);
 
         return totalSum.setScale(currency.getDefaultFractionDigits(), Constants.DEFAULT_ROUNDING_MODE);
     }
+
+    private static void commitConversionBatch(final CurrencyConversionBatchEvent event, final int conversions,
+                                              final Currency currency) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.setConversions(conversions);
+            event.setOutputCurrency(currency.getCurrencyCode());
+            event.commit();
+        }
+    }
 }
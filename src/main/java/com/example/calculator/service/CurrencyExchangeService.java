@@ -1,21 +1,99 @@
 package com.example.calculator.service;
 
+import com.example.calculator.CalculatorProperties;
 import com.example.calculator.exception.CurrencyExchangeException;
+import com.example.calculator.jfr.ValidationFailureEvent;
 import com.example.calculator.model.ExchangeRate;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
 import java.util.Collection;
 import java.util.Currency;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 import static com.example.calculator.Constants.DEFAULT_ROUNDING_MODE;
 
 /**
  * Converts amounts from one currency to another using provided exchange rates.
+ * <p>
+ * The factor of each currency pair is the product of their rates, rounded to the configured intermediate
+ * precision. Factors are computed once per rate set and cached, the {@value #MAX_CACHED_RATE_SETS} rate sets used
+ * most recently are kept. Rates with an effective date form an
+ * {@link ExchangeRateHistory}, whose factors depend on the date of the converted document.
  */
 @Service
 public class CurrencyExchangeService {
 
+    /**
+     * Intermediate precision used if none is configured, enough for any rate that is not derived from a double.
+     */
+    public static final MathContext DEFAULT_MATH_CONTEXT = new MathContext(34, DEFAULT_ROUNDING_MODE);
+
+    static final int MAX_CACHED_RATE_SETS = 64;
+
+    private final MathContext mathContext;
+    private final Map<Set<ExchangeRate>, ExchangeRateHistory> rateHistories = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Set<ExchangeRate>, ExchangeRateHistory> eldest) {
+            return size() > MAX_CACHED_RATE_SETS;
+        }
+    };
+
+    public CurrencyExchangeService() {
+        this(DEFAULT_MATH_CONTEXT);
+    }
+
+    /**
+     * @param mathContext Precision of the conversion factors, {@link MathContext#UNLIMITED} for exact factors
+     */
+    public CurrencyExchangeService(final MathContext mathContext) {
+        this.mathContext = mathContext;
+    }
+
+    @Autowired
+    public CurrencyExchangeService(final CalculatorProperties calculatorProperties) {
+        this(new MathContext(calculatorProperties.getExchange().getPrecision(), DEFAULT_ROUNDING_MODE));
+    }
+
+    /**
+     * Get the conversion factors of a rate set, computing them if the rate set was not used recently. Rates with
+     * an effective date are ignored, see {@link #getExchangeRateHistory} for them.
+     *
+     * @param exchangeRates The exchange rates
+     * @return The conversion factors of the exchange rates
+     */
+    public ExchangeRateTable getExchangeRateTable(final Collection<ExchangeRate> exchangeRates) {
+        return getExchangeRateHistory(exchangeRates).getTable(null);
+    }
+
+    /**
+     * Get the history of a rate set whose rates may have effective dates, creating it if the rate set was not
+     * used recently. The least recently used rate set is evicted once more than {@value #MAX_CACHED_RATE_SETS}
+     * are cached. Requests resolve their rate set once, so the lock is not taken per document.
+     *
+     * @param exchangeRates The exchange rates
+     * @return The history of the exchange rates
+     */
+    public ExchangeRateHistory getExchangeRateHistory(final Collection<ExchangeRate> exchangeRates) {
+        final Set<ExchangeRate> key = Set.copyOf(exchangeRates);
+        synchronized (rateHistories) {
+            return rateHistories.computeIfAbsent(key, rates -> new ExchangeRateHistory(exchangeRates, mathContext));
+        }
+    }
+
+    /**
+     * @return The rate sets whose conversion factors are cached.
+     */
+    public Set<Set<ExchangeRate>> getCachedRateSets() {
+        synchronized (rateHistories) {
+            return Set.copyOf(rateHistories.keySet());
+        }
+    }
+
     /**
      * Convert amount from one currency to another using exchange rates.
      *
@@ -31,37 +109,47 @@ public class CurrencyExchangeService {
                                     final Currency toCurrency,
                                     final BigDecimal amount)
             throws CurrencyExchangeException {
+        return convertAmount(getExchangeRateTable(exchangeRates), fromCurrency, toCurrency, amount);
+    }
 
-        ExchangeRate defaultExchangeRate = exchangeRates.stream()
-                .filter(it -> it.isDefaultCurrency())
-                .findFirst()
-                .orElseThrow(() -> new CurrencyExchangeException("Unable to find default currency exchange rate",
-                        fromCurrency, toCurrency));
+    /**
+     * Convert amount from one currency to another using the factors of a rate set.
+     *
+     * @param exchangeRateTable Conversion factors of the exchange rates, see {@link #getExchangeRateTable}
+     * @param fromCurrency      Convert from currency
+     * @param toCurrency        Convert to currency
+     * @param amount            The amount to convert
+     * @return Converted amount
+     * @throws CurrencyExchangeException If the requested currencies are not present in the exchange rates.
+     */
+    public BigDecimal convertAmount(final ExchangeRateTable exchangeRateTable,
+                                    final Currency fromCurrency,
+                                    final Currency toCurrency,
+                                    final BigDecimal amount)
+            throws CurrencyExchangeException {
+        final Currency defaultCurrency = exchangeRateTable.getDefaultCurrency();
+        if (defaultCurrency == null) {
+            throw missingExchangeRate("Unable to find default currency exchange rate", fromCurrency, toCurrency);
+        }
 
-        if (defaultExchangeRate.getCurrency().equals(fromCurrency) &&
-                defaultExchangeRate.getCurrency().equals(toCurrency)) {
+        if (defaultCurrency.equals(fromCurrency) && defaultCurrency.equals(toCurrency)) {
             return amount;
         }
 
-        ExchangeRate fromExchangeRate = exchangeRates.stream()
-                .filter(it -> it.getCurrency().equals(fromCurrency))
-                .findFirst()
-                .orElseThrow(() -> new CurrencyExchangeException(
-                        String.format("Unable to find currency exchange rate for [%s]", fromCurrency),
-                        fromCurrency, toCurrency));
-
-        ExchangeRate toExchangeRate = exchangeRates.stream()
-                .filter(it -> it.getCurrency().equals(toCurrency))
-                .findFirst()
-                .orElseThrow(() -> new CurrencyExchangeException(
-                        String.format("Unable to find currency exchange rate for [%s]", toCurrency),
-                        fromCurrency, toCurrency));
-
-        BigDecimal amountInDefaultCurrency = amount.multiply(fromExchangeRate.getRate());
-        BigDecimal amountInTargetCurrency = amountInDefaultCurrency
-                .multiply(toExchangeRate.getRate())
-                .setScale(toExchangeRate.getCurrency().getDefaultFractionDigits(), DEFAULT_ROUNDING_MODE);
-
-        return amountInTargetCurrency;
+        final BigDecimal factor = exchangeRateTable.getFactor(fromCurrency, toCurrency);
+        if (factor == null) {
+            final Currency missingCurrency = exchangeRateTable.hasRate(fromCurrency) ? toCurrency : fromCurrency;
+            throw missingExchangeRate(String.format("Unable to find currency exchange rate for [%s]", missingCurrency),
+                    fromCurrency, toCurrency);
+        }
+
+        return amount.multiply(factor).setScale(toCurrency.getDefaultFractionDigits(), DEFAULT_ROUNDING_MODE);
+    }
+
+    private static CurrencyExchangeException missingExchangeRate(final String message,
+                                                                 final Currency fromCurrency,
+                                                                 final Currency toCurrency) {
+        ValidationFailureEvent.emit(0, "Currency", null, message);
+        return new CurrencyExchangeException(message, fromCurrency, toCurrency);
     }
 }
@@ -0,0 +1,14 @@
+package com.example.calculator.service;
+
+import java.math.BigDecimal;
+
+/**
+ * The balance of a customer with the keys it can be sorted by.
+ *
+ * @param position  Position of the first document of the customer in the file, unique within a response
+ * @param vatNumber VAT number of the customer
+ * @param name      Name of the customer
+ * @param balance   Balance in the output currency
+ */
+public record CustomerBalance(long position, String vatNumber, String name, BigDecimal balance) {
+}
@@ -0,0 +1,154 @@
+package com.example.calculator.service;
+
+import com.example.calculator.model.Customer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Open addressing index of customers by VAT number, used while parsing to find or create the customer of each row
+ * with a single probe sequence. VAT numbers made only of digits are hashed and compared as longs, others as strings.
+ * <p>
+ * The table is sized up front from the expected number of customers and doubles when it is half full.
+ */
+class CustomerIndex {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_NUMERIC_DIGITS = 18;
+    /**
+     * Marks slots whose VAT number is not numeric; numeric keys are never negative.
+     */
+    private static final long NOT_NUMERIC = -1;
+
+    private String[] vatNumbers;
+    private long[] numericKeys;
+    private Customer[] customers;
+    private int mask;
+    private int size;
+
+    /**
+     * Order in which customers were added, the order of {@link #toMap()}.
+     */
+    private Customer[] insertionOrder;
+
+    /**
+     * @param expectedCustomers Expected number of customers, 0 if unknown
+     */
+    CustomerIndex(final int expectedCustomers) {
+        final int capacity = tableSizeFor(Math.max(MIN_CAPACITY, expectedCustomers * 2L));
+        allocate(capacity);
+        insertionOrder = new Customer[Math.max(MIN_CAPACITY, expectedCustomers)];
+    }
+
+    /**
+     * Get the customer with a VAT number, or add a new customer if there is none.
+     *
+     * @param vatNumber    The VAT number
+     * @param customerName Name of the customer, used if it is added
+     * @return The existing or added customer
+     */
+    Customer getOrAdd(final String vatNumber, final String customerName) {
+        final long numericKey = numericKey(vatNumber);
+        int slot = (numericKey == NOT_NUMERIC ? mix(vatNumber.hashCode()) : mix(Long.hashCode(numericKey))) & mask;
+        while (vatNumbers[slot] != null) {
+            if (numericKey == NOT_NUMERIC
+                    ? numericKeys[slot] == NOT_NUMERIC && vatNumbers[slot].equals(vatNumber)
+                    : numericKeys[slot] == numericKey) {
+                return customers[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        final Customer customer = new Customer(customerName, vatNumber);
+        vatNumbers[slot] = vatNumber;
+        numericKeys[slot] = numericKey;
+        customers[slot] = customer;
+        if (size == insertionOrder.length) {
+            final Customer[] grown = new Customer[size * 2];
+            System.arraycopy(insertionOrder, 0, grown, 0, size);
+            insertionOrder = grown;
+        }
+        insertionOrder[size++] = customer;
+        if (size * 2 > vatNumbers.length) {
+            resize();
+        }
+        return customer;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The customers by VAT number, in the order they were added.
+     */
+    Map<String, Customer> toMap() {
+        final Map<String, Customer> map = new LinkedHashMap<>((int) (size / 0.75f) + 1);
+        for (int i = 0; i < size; i++) {
+            map.put(insertionOrder[i].getVatNumber(), insertionOrder[i]);
+        }
+        return map;
+    }
+
+    private void resize() {
+        final String[] oldVatNumbers = vatNumbers;
+        final long[] oldNumericKeys = numericKeys;
+        final Customer[] oldCustomers = customers;
+        allocate(oldVatNumbers.length * 2);
+        for (int i = 0; i < oldVatNumbers.length; i++) {
+            if (oldVatNumbers[i] != null) {
+                final long numericKey = oldNumericKeys[i];
+                int slot = (numericKey == NOT_NUMERIC
+                        ? mix(oldVatNumbers[i].hashCode()) : mix(Long.hashCode(numericKey))) & mask;
+                while (vatNumbers[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                vatNumbers[slot] = oldVatNumbers[i];
+                numericKeys[slot] = numericKey;
+                customers[slot] = oldCustomers[i];
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        vatNumbers = new String[capacity];
+        numericKeys = new long[capacity];
+        customers = new Customer[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return The VAT number as a long if it only has digits and no leading zero, which would be lost,
+     * otherwise {@link #NOT_NUMERIC}.
+     */
+    static long numericKey(final String vatNumber) {
+        final int length = vatNumber.length();
+        if (length == 0 || length > MAX_NUMERIC_DIGITS || (vatNumber.charAt(0) == '0' && length > 1)) {
+            return NOT_NUMERIC;
+        }
+        long key = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = vatNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return NOT_NUMERIC;
+            }
+            key = key * 10 + (c - '0');
+        }
+        return key;
+    }
+
+    /**
+     * Spread the hash bits, linear probing needs well distributed low bits.
+     */
+    private static int mix(final int hash) {
+        final int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(final long capacity) {
+        if (capacity >= 1 << 30) {
+            return 1 << 30;
+        }
+        return Integer.highestOneBit((int) capacity - 1) << 1;
+    }
+}
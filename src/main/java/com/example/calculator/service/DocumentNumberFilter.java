@@ -0,0 +1,116 @@
+package com.example.calculator.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bloom filter of the document numbers seen while parsing, a compact pre-check for duplicate documents.
+ * A number that was not added is reported as new with certainty, an added number, or about 1% of the
+ * others, as possibly seen and needs an exact check.
+ * <p>
+ * The filter starts with a layer sized for the expected number of documents and adds layers of twice the size
+ * when it fills up, so the false positive rate stays bounded when the estimate is too low.
+ */
+class DocumentNumberFilter {
+
+    private static final int MIN_CAPACITY = 1024;
+    private static final int BITS_PER_NUMBER = 10;
+    private static final int HASH_FUNCTIONS = 7;
+
+    private final List<Layer> layers = new ArrayList<>();
+    private Layer current;
+
+    /**
+     * @param expectedNumbers Expected number of document numbers, 0 if unknown
+     */
+    DocumentNumberFilter(final long expectedNumbers) {
+        addLayer(Math.max(MIN_CAPACITY, expectedNumbers));
+    }
+
+    /**
+     * Add a document number unless it may have been added before.
+     *
+     * @return True if the number was certainly not added before, false if it may have been.
+     */
+    boolean add(final String documentNumber) {
+        final long hash = hash(documentNumber);
+        for (Layer layer : layers) {
+            if (layer.mightContain(hash)) {
+                return false;
+            }
+        }
+        if (current.size == current.capacity) {
+            addLayer(current.capacity * 2);
+        }
+        current.put(hash);
+        return true;
+    }
+
+    /**
+     * @return Size of the filter in bytes.
+     */
+    long getSizeInBytes() {
+        long bytes = 0;
+        for (Layer layer : layers) {
+            bytes += (long) layer.bits.length * Long.BYTES;
+        }
+        return bytes;
+    }
+
+    private void addLayer(final long capacity) {
+        current = new Layer(capacity);
+        layers.add(current);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the characters, finalized with the MurmurHash3 mix so both halves are usable.
+     */
+    static long hash(final String documentNumber) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < documentNumber.length(); i++) {
+            hash = (hash ^ documentNumber.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static final class Layer {
+
+        private final long capacity;
+        private final long[] bits;
+        private final long bitCount;
+        private long size;
+
+        Layer(final long capacity) {
+            this.capacity = capacity;
+            this.bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, (capacity * BITS_PER_NUMBER + 63) / 64)];
+            this.bitCount = (long) bits.length * 64;
+        }
+
+        boolean mightContain(final long hash) {
+            // Double hashing, see Kirsch and Mitzenmacher, "Less Hashing, Same Performance"
+            final int hash1 = (int) hash;
+            final int hash2 = (int) (hash >>> 32);
+            for (int i = 1; i <= HASH_FUNCTIONS; i++) {
+                final long bit = Integer.toUnsignedLong(hash1 + i * hash2) % bitCount;
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void put(final long hash) {
+            final int hash1 = (int) hash;
+            final int hash2 = (int) (hash >>> 32);
+            for (int i = 1; i <= HASH_FUNCTIONS; i++) {
+                final long bit = Integer.toUnsignedLong(hash1 + i * hash2) % bitCount;
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+            size++;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.calculator.service;
+
+import com.example.calculator.exception.DocumentValidationException;
+import com.example.calculator.model.Document;
+import com.example.calculator.model.DocumentType;
+import com.example.calculator.service.DocumentsFileParserService.CsvHeader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Currency;
+
+/**
+ * Reader of the binary columnar documents format. The format holds the same columns as the CSV file,
+ * with strings and currencies dictionary encoded and totals stored as scaled integers.
+ * <p>
+ * All numbers are big-endian. Layout:
+ * <pre>
+ * magic            4 bytes   "CDOC"
+ * version          uint8     1
+ * scale            uint8     number of decimal places of the totals
+ * rows             int32
+ * string count     int32
+ * strings          per string: uint16 length, UTF-8 bytes
+ * currency count   uint16
+ * currencies       per currency: 3 ASCII bytes of the ISO 4217 code
+ * customer column  int32[rows]  string id of the customer name
+ * vat column       int32[rows]  string id of the VAT number
+ * number column    int32[rows]  string id of the document number
+ * type column      int8[rows]   document type
+ * parent column    int32[rows]  string id of the parent document number, -1 if none
+ * currency column  uint16[rows] currency id
+ * total column     int64[rows]  unscaled total
+ * </pre>
+ */
+class DocumentsBinaryReader {
+
+    static final byte[] MAGIC = {'C', 'D', 'O', 'C'};
+    static final int VERSION = 1;
+    static final int NO_STRING = -1;
+    static final int CURRENCY_CODE_LENGTH = 3;
+    /**
+     * Bytes of a row over all columns.
+     */
+    private static final int ROW_BYTES = 3 * Integer.BYTES + Byte.BYTES + Integer.BYTES + Short.BYTES + Long.BYTES;
+    /**
+     * Initial size of the buffer the file is read into, it doubles while the file is read.
+     */
+    private static final int INITIAL_BUFFER_BYTES = 1 << 16;
+    /**
+     * Largest array size the JVM allocates.
+     */
+    private static final int MAX_BUFFER_BYTES = Integer.MAX_VALUE - 8;
+
+    private DocumentsBinaryReader() {
+    }
+
+    /**
+     * Read a binary documents file and pass its rows to a collector. The file is held in memory while it is read,
+     * and charged to the memory budget of the collector.
+     *
+     * @throws IOException                 If reading the input stream fails.
+     * @throws com.example.calculator.exception.MemoryBudgetExceededException If the file exceeds the budget.
+     * @throws DocumentValidationException If a row contains invalid data in FAIL_FAST mode.
+     * @throws IllegalArgumentException    If the file structure is invalid.
+     */
+    static DocumentsParseResult read(final InputStream inputStream, final DocumentsCollector collector)
+            throws IOException, DocumentValidationException, IllegalArgumentException {
+        final ByteBuffer buffer = readAllBytes(inputStream, collector);
+        try {
+            return read(buffer, collector);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Binary documents file is truncated or corrupt");
+        }
+    }
+
+    private static DocumentsParseResult read(final ByteBuffer buffer, final DocumentsCollector collector)
+            throws DocumentValidationException {
+        final byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) {
+                throw new IllegalArgumentException("Not a binary documents file");
+            }
+        }
+        final int version = Byte.toUnsignedInt(buffer.get());
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported binary documents file version: " + version);
+        }
+        final int scale = Byte.toUnsignedInt(buffer.get());
+        final int rows = checkCount(buffer.getInt(), buffer, ROW_BYTES);
+
+        // Each string takes at least its length, the rows are checked again once the strings are read
+        final String[] strings = new String[checkCount(buffer.getInt(), buffer, Short.BYTES)];
+        for (int i = 0; i < strings.length; i++) {
+            final int length = Short.toUnsignedInt(buffer.getShort());
+            strings[i] = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        }
+
+        // Codes that are not valid ISO 4217 currencies are kept to report them on the rows using them
+        final String[] currencyCodes = new String[Short.toUnsignedInt(buffer.getShort())];
+        final Currency[] currencies = new Currency[currencyCodes.length];
+        for (int i = 0; i < currencyCodes.length; i++) {
+            currencyCodes[i] = new String(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                    CURRENCY_CODE_LENGTH, StandardCharsets.US_ASCII);
+            buffer.position(buffer.position() + CURRENCY_CODE_LENGTH);
+            try {
+                currencies[i] = Currency.getInstance(currencyCodes[i]);
+            } catch (IllegalArgumentException e) {
+                currencies[i] = null;
+            }
+        }
+
+        checkCount(rows, buffer, ROW_BYTES);
+        final IntBuffer customerColumn = intColumn(buffer, rows);
+        final IntBuffer vatNumberColumn = intColumn(buffer, rows);
+        final IntBuffer documentNumberColumn = intColumn(buffer, rows);
+        final ByteBuffer typeColumn = buffer.slice(buffer.position(), rows);
+        buffer.position(buffer.position() + rows);
+        final IntBuffer parentColumn = intColumn(buffer, rows);
+        final ShortBuffer currencyColumn = buffer.slice(buffer.position(), rows * Short.BYTES).asShortBuffer();
+        buffer.position(buffer.position() + rows * Short.BYTES);
+        final LongBuffer totalColumn = buffer.slice(buffer.position(), rows * Long.BYTES).asLongBuffer();
+
+        for (int i = 0; i < rows; i++) {
+            final long row = i + 1L;
+            final String vatNumber = strings[vatNumberColumn.get(i)];
+            if (collector.isFilteredOut(vatNumber)) {
+                continue;
+            }
+
+            final String documentNumber = strings[documentNumberColumn.get(i)];
+            boolean valid = true;
+
+            final int documentTypeInt = typeColumn.get(i);
+            final DocumentType documentType = DocumentType.valueOf(documentTypeInt);
+            if (documentType == null) {
+                collector.reject(row, CsvHeader.TYPE, documentNumber, "Invalid document type: " + documentTypeInt);
+                valid = false;
+            }
+
+            final int currencyId = Short.toUnsignedInt(currencyColumn.get(i));
+            final Currency currency = currencies[currencyId];
+            if (currency == null) {
+                collector.reject(row, CsvHeader.CURRENCY, documentNumber, "Unsupported ISO 4217 currency code: " +
+                        currencyCodes[currencyId]);
+                valid = false;
+            } else if (collector.isUnsupported(currency)) {
+                collector.reject(row, CsvHeader.CURRENCY, documentNumber,
+                        String.format("Unable to find currency exchange rate for [%s]", currency));
+                valid = false;
+            }
+
+            if (!valid) {
+                continue;
+            }
+
+            final int parentId = parentColumn.get(i);
+            final Document document = Document.builder(documentNumber, documentType)
+                    .parentDocumentNumber(parentId == NO_STRING ? "" : strings[parentId])
+                    .currency(currency)
+                    .total(BigDecimal.valueOf(totalColumn.get(i), scale))
+                    .build();
+            collector.add(row, strings[customerColumn.get(i)], vatNumber, document);
+        }
+
+        return collector.finish();
+    }
+
+    /**
+     * Read a whole stream, charging the buffer to the memory budget before it grows, so a file over the budget
+     * fails before it is allocated.
+     */
+    private static ByteBuffer readAllBytes(final InputStream inputStream, final DocumentsCollector collector)
+            throws IOException {
+        byte[] bytes = new byte[0];
+        int length = 0;
+        while (true) {
+            if (length == bytes.length) {
+                if (length == MAX_BUFFER_BYTES) {
+                    throw new IllegalArgumentException("Binary documents file is too large");
+                }
+                final int capacity = length == 0 ? INITIAL_BUFFER_BYTES
+                        : (int) Math.min(MAX_BUFFER_BYTES, 2L * length);
+                collector.charge(capacity - length);
+                bytes = Arrays.copyOf(bytes, capacity);
+            }
+            final int n = inputStream.read(bytes, length, bytes.length - length);
+            if (n < 0) {
+                return ByteBuffer.wrap(bytes, 0, length);
+            }
+            length += n;
+        }
+    }
+
+    /**
+     * Check a count read from the file against the bytes left, before allocating or slicing by it.
+     *
+     * @param count        The count
+     * @param buffer       The file, at the position following the count
+     * @param bytesPerItem Minimum number of bytes of each counted item
+     * @return The count
+     * @throws IllegalArgumentException If the count is negative or the items do not fit in the bytes left.
+     */
+    private static int checkCount(final int count, final ByteBuffer buffer, final int bytesPerItem) {
+        if (count < 0 || count > buffer.remaining() / bytesPerItem) {
+            throw new IllegalArgumentException("Binary documents file is truncated or corrupt");
+        }
+        return count;
+    }
+
+    private static IntBuffer intColumn(final ByteBuffer buffer, final int rows) {
+        checkCount(rows, buffer, Integer.BYTES);
+        final IntBuffer column = buffer.slice(buffer.position(), rows * Integer.BYTES).asIntBuffer();
+        buffer.position(buffer.position() + rows * Integer.BYTES);
+        return column;
+    }
+}
@@ -0,0 +1,418 @@
+package com.example.calculator.service;
+
+import com.example.calculator.exception.DocumentValidationException;
+import com.example.calculator.exception.MemoryBudgetExceededException;
+import com.example.calculator.jfr.ValidationFailureEvent;
+import com.example.calculator.model.Customer;
+import com.example.calculator.model.Document;
+import com.example.calculator.model.DocumentType;
+import com.example.calculator.model.ValidationError;
+import com.example.calculator.model.ValidationMode;
+import com.example.calculator.model.ValidationReport;
+import com.example.calculator.service.DocumentsFileParserService.CsvHeader;
+import com.example.calculator.store.OffHeapDocumentStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Builds the customers of a documents file from its parsed rows, independently of the file format.
+ * Detects duplicate document numbers, validates parent documents once the whole file has been read,
+ * and throws on the first error or collects the errors depending on the validation mode.
+ * <p>
+ * Duplicates are pre-checked with a {@link DocumentNumberFilter}, only the numbers it reports as possibly seen
+ * are confirmed exactly, with a pass over the documents once the whole file has been read. That pass and the
+ * validation of the parents of all credit and debit notes are split into fork-join tasks for large files, and
+ * their errors are reported in the order of the rows.
+ */
+class DocumentsCollector {
+
+    /**
+     * Number of documents, or of notes, below which the deferred checks are not split into parallel tasks.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * Estimated heap bytes of a document without its strings: the document, its total and date, and its entries
+     * in the document log and in the documents of its customer.
+     */
+    static final long DOCUMENT_BYTES = 128;
+    /**
+     * Estimated heap bytes of a customer without its strings: the customer, its list of documents and its
+     * entries in the customer index.
+     */
+    static final long CUSTOMER_BYTES = 136;
+    /**
+     * Heap bytes of a document stored off-heap, its row in the document log. The blocks of the store are
+     * charged when they are allocated.
+     */
+    static final long STORED_DOCUMENT_BYTES = Long.BYTES;
+    /**
+     * Bytes of a string without its characters, which take a byte each for the Latin-1 text of numbers and names.
+     */
+    private static final long STRING_BYTES = 40;
+
+    private final DocumentsParseOptions options;
+    private final ValidationReport report;
+    private final CustomerIndex customers;
+    private final DocumentNumberFilter numberFilter;
+    private final DocumentLog log;
+    /**
+     * Indexes of the documents whose number may be a duplicate, in the order they were added.
+     */
+    private final List<Integer> candidates = new ArrayList<>();
+    /**
+     * Indexes of the credit and debit notes, whose parent is validated by {@link #finish()}.
+     */
+    private final List<Integer> notes = new ArrayList<>();
+
+    DocumentsCollector(DocumentsParseOptions options) {
+        this.options = options;
+        this.report = new ValidationReport(options.getMaxErrors());
+        // A filtered file has at most one customer
+        this.customers = new CustomerIndex(options.getFilterVatNumber() != null ? 1 : options.getExpectedCustomers());
+        this.numberFilter = new DocumentNumberFilter(options.getExpectedDocuments());
+        this.log = new DocumentLog(options.getExpectedDocuments(), options.getDocumentStore());
+    }
+
+    boolean isCollectAll() {
+        return options.getValidationMode() == ValidationMode.COLLECT_ALL;
+    }
+
+    /**
+     * @return True if rows of the customer with this VAT number are skipped by the filter.
+     */
+    boolean isFilteredOut(String vatNumber) {
+        return options.getFilterVatNumber() != null && !options.getFilterVatNumber().equals(vatNumber);
+    }
+
+    /**
+     * @return True if documents in this currency are not allowed by the options.
+     */
+    boolean isUnsupported(Currency currency) {
+        return options.getSupportedCurrencies() != null && !options.getSupportedCurrencies().contains(currency);
+    }
+
+    /**
+     * Reject an invalid row.
+     *
+     * @throws DocumentValidationException In FAIL_FAST mode.
+     */
+    void reject(long row, CsvHeader column, String documentNumber, String message)
+            throws DocumentValidationException {
+        ValidationFailureEvent.emit(row, Objects.toString(column, null), documentNumber, message);
+        if (!isCollectAll()) {
+            throw new DocumentValidationException(message, documentNumber);
+        }
+        report.add(new ValidationError(row, Objects.toString(column, null), documentNumber, message));
+    }
+
+    /**
+     * Add a valid document to its customer. A document whose number may have been seen before is kept aside
+     * until {@link #finish()}, which confirms or rules out the duplicate.
+     *
+     * @param row          1-based data row number
+     * @param customerName Name of the customer, used if this is the first document of the customer
+     * @param vatNumber    VAT number of the customer
+     * @param document     The document
+     * @throws MemoryBudgetExceededException If the documents kept exceed the memory budget of the request.
+     */
+    void add(long row, String customerName, String vatNumber, Document document) {
+        final int customerCount = customers.size();
+        final Customer customer = customers.getOrAdd(vatNumber, customerName);
+        if (customers.size() != customerCount) {
+            charge(CUSTOMER_BYTES + stringBytes(customer.getName()) + stringBytes(customer.getVatNumber()));
+        }
+        if (options.getDocumentStore() == null) {
+            charge(DOCUMENT_BYTES + stringBytes(document.getDocumentNumber())
+                    + stringBytes(document.getParentDocumentNumber()));
+        }
+        final long offHeapBytes = options.getDocumentStore() == null ? 0 : options.getDocumentStore().getOffHeapBytes();
+        final int index = log.add(row, customer, document);
+        if (options.getDocumentStore() != null) {
+            charge(STORED_DOCUMENT_BYTES + options.getDocumentStore().getOffHeapBytes() - offHeapBytes);
+        }
+        if (numberFilter.add(document.getDocumentNumber())) {
+            accept(index, document);
+        } else {
+            candidates.add(index);
+        }
+    }
+
+    /**
+     * Complete the deferred checks: duplicate candidates are confirmed against the documents read before them,
+     * and parents, which may appear later in the file than their notes, are looked up. The errors of these
+     * checks are reported in the order of their rows, after the errors reported while reading.
+     *
+     * @return The parsed customers and the validation report.
+     * @throws DocumentValidationException In FAIL_FAST mode, if a document number is a conflicting duplicate
+     *                                     or a parent document is missing.
+     */
+    DocumentsParseResult finish() throws DocumentValidationException {
+        final Map<String, Integer> firstIndexes = findFirstIndexes();
+        final List<DeferredError> errors = new ArrayList<>();
+        for (int candidate : candidates) {
+            final Document document = log.document(candidate);
+            final int first = firstIndexes.get(document.getDocumentNumber());
+            if (first == candidate) {
+                // A false positive of the filter
+                accept(candidate, document);
+            } else if (log.customer(first) != log.customer(candidate) || !log.document(first).equals(document)) {
+                // The same row repeated is harmless, the same number with different values is not
+                errors.add(new DeferredError(log.row(candidate), CsvHeader.DOCUMENT_NUMBER,
+                        document.getDocumentNumber(),
+                        String.format("Duplicate document number with different values, first seen in row %d",
+                                log.row(first))));
+            }
+        }
+
+        final DeferredError[] parentErrors = new DeferredError[notes.size()];
+        new ParentCheckTask(firstIndexes, parentErrors, 0, notes.size()).invoke();
+        for (DeferredError error : parentErrors) {
+            if (error != null) {
+                errors.add(error);
+            }
+        }
+
+        errors.sort(Comparator.comparingLong(DeferredError::row));
+        for (DeferredError error : errors) {
+            reject(error.row(), error.column(), error.documentNumber(), error.message());
+        }
+        return new DocumentsParseResult(customers.toMap(), report);
+    }
+
+    /**
+     * Charge memory kept by the parsed customers to the budget of the request, if any.
+     *
+     * @throws MemoryBudgetExceededException If the budget is exceeded.
+     */
+    void charge(final long bytes) {
+        if (options.getMemoryBudget() != null) {
+            options.getMemoryBudget().charge(bytes);
+        }
+    }
+
+    private static long stringBytes(final String value) {
+        return value == null ? 0 : STRING_BYTES + value.length();
+    }
+
+    /**
+     * Add a document that is not a duplicate to its customer.
+     */
+    private void accept(final int index, final Document document) {
+        final Customer customer = log.customer(index);
+        if (document.getDocumentType() != DocumentType.INVOICE) {
+            notes.add(index);
+        }
+        if (options.getDocumentStore() != null) {
+            options.getDocumentStore().link(index);
+        } else {
+            customer.addDocument(document);
+        }
+        if (options.isPrecomputeTotals()) {
+            customer.addDocumentTotal(document);
+        }
+    }
+
+    /**
+     * Find the first document with each number that the deferred checks need: the duplicate candidates and
+     * the parents of the notes. Only these numbers are held in a map, not every number of the file. The
+     * documents are scanned in parallel ranges, each keeping the lowest index it finds for a number.
+     *
+     * @return The index of the first document with each of these numbers.
+     */
+    private Map<String, Integer> findFirstIndexes() {
+        if (candidates.isEmpty() && notes.isEmpty()) {
+            return Map.of();
+        }
+        final Set<String> numbers = new HashSet<>();
+        for (int candidate : candidates) {
+            final Document document = log.document(candidate);
+            numbers.add(document.getDocumentNumber());
+            if (document.getParentDocumentNumber() != null) {
+                numbers.add(document.getParentDocumentNumber());
+            }
+        }
+        for (int note : notes) {
+            if (log.document(note).getParentDocumentNumber() != null) {
+                numbers.add(log.document(note).getParentDocumentNumber());
+            }
+        }
+
+        final Map<String, Integer> firstIndexes = new ConcurrentHashMap<>(numbers.size() * 4 / 3 + 1);
+        new FirstIndexTask(numbers, firstIndexes, 0, log.size()).invoke();
+        return firstIndexes;
+    }
+
+    /**
+     * Check that the parent of a credit or debit note exists and belongs to the same customer.
+     *
+     * @return The error of the note, or null if its parent is valid.
+     */
+    private DeferredError checkParentDocument(final int note, final Map<String, Integer> firstIndexes) {
+        final Document document = log.document(note);
+        final String parentDocumentNumber = document.getParentDocumentNumber();
+        if (document.getDocumentType() == DocumentType.CREDIT_NOTE
+                && (parentDocumentNumber == null || parentDocumentNumber.isEmpty())) {
+            return new DeferredError(log.row(note), CsvHeader.PARENT_DOCUMENT, document.getDocumentNumber(),
+                    "Parent document number is required for Credit Notes");
+        }
+
+        final Integer parent = parentDocumentNumber == null ? null : firstIndexes.get(parentDocumentNumber);
+        if (parent == null || log.customer(parent) != log.customer(note)) {
+            return new DeferredError(log.row(note), CsvHeader.PARENT_DOCUMENT, document.getDocumentNumber(),
+                    String.format("Non-existing parent document specified: [%s]", parentDocumentNumber));
+        }
+        return null;
+    }
+
+    /**
+     * An error found once the whole file has been read, reported with {@link #reject} in the order of the rows.
+     */
+    private record DeferredError(long row, CsvHeader column, String documentNumber, String message) {
+    }
+
+    /**
+     * Finds the lowest index of each of the numbers in a range of the documents.
+     */
+    private final class FirstIndexTask extends RecursiveAction {
+
+        private final Set<String> numbers;
+        private final Map<String, Integer> firstIndexes;
+        private final int from;
+        private final int to;
+
+        FirstIndexTask(final Set<String> numbers, final Map<String, Integer> firstIndexes,
+                       final int from, final int to) {
+            this.numbers = numbers;
+            this.firstIndexes = firstIndexes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    final String documentNumber = log.documentNumber(i);
+                    if (numbers.contains(documentNumber)) {
+                        firstIndexes.merge(documentNumber, i, Math::min);
+                    }
+                }
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new FirstIndexTask(numbers, firstIndexes, from, middle),
+                    new FirstIndexTask(numbers, firstIndexes, middle, to));
+        }
+    }
+
+    /**
+     * Checks the parents of a range of the notes, storing the error of each note at its position.
+     */
+    private final class ParentCheckTask extends RecursiveAction {
+
+        private final Map<String, Integer> firstIndexes;
+        private final DeferredError[] errors;
+        private final int from;
+        private final int to;
+
+        ParentCheckTask(final Map<String, Integer> firstIndexes, final DeferredError[] errors,
+                        final int from, final int to) {
+            this.firstIndexes = firstIndexes;
+            this.errors = errors;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    errors[i] = checkParentDocument(notes.get(i), firstIndexes);
+                }
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new ParentCheckTask(firstIndexes, errors, from, middle),
+                    new ParentCheckTask(firstIndexes, errors, middle, to));
+        }
+    }
+
+    /**
+     * The documents added, with the row they were read from and the customer they belong to, in parallel arrays
+     * indexed in the order they were added. If documents are stored off-heap, the documents and their customers
+     * are read from the store, whose record indexes are the same.
+     */
+    private static final class DocumentLog {
+
+        private final OffHeapDocumentStore store;
+        private final List<Customer> storeCustomers = new ArrayList<>();
+        private long[] rows;
+        private Customer[] customers;
+        private Document[] documents;
+        private int size;
+
+        DocumentLog(final long expectedDocuments, final OffHeapDocumentStore store) {
+            final int capacity = (int) Math.max(16, Math.min(expectedDocuments, 1 << 24));
+            this.store = store;
+            rows = new long[capacity];
+            if (store == null) {
+                customers = new Customer[capacity];
+                documents = new Document[capacity];
+            }
+        }
+
+        int add(final long row, final Customer customer, final Document document) {
+            if (size == rows.length) {
+                final int capacity = size + (size >> 1);
+                rows = Arrays.copyOf(rows, capacity);
+                if (store == null) {
+                    customers = Arrays.copyOf(customers, capacity);
+                    documents = Arrays.copyOf(documents, capacity);
+                }
+            }
+            rows[size] = row;
+            if (store == null) {
+                customers[size] = customer;
+                documents[size] = document;
+            } else {
+                if (customer.getDocumentStore() == null) {
+                    customer.attachDocumentStore(store, store.addCustomer());
+                    storeCustomers.add(customer);
+                }
+                store.add(customer.getDocumentStoreId(), document);
+            }
+            return size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long row(final int index) {
+            return rows[index];
+        }
+
+        Customer customer(final int index) {
+            return store == null ? customers[index] : storeCustomers.get(store.getCustomerId(index));
+        }
+
+        Document document(final int index) {
+            return store == null ? documents[index] : store.get(index);
+        }
+
+        String documentNumber(final int index) {
+            return store == null ? documents[index].getDocumentNumber() : store.getDocumentNumber(index);
+        }
+    }
+}
@@ -1,13 +1,17 @@
 package com.example.calculator.service;
 
 import com.example.calculator.exception.DocumentValidationException;
+import com.example.calculator.io.CountingInputStream;
+import com.example.calculator.jfr.DocumentsChunkParsedEvent;
 import com.example.calculator.model.Customer;
 import com.example.calculator.model.Document;
 import com.example.calculator.model.DocumentType;
+import com.example.calculator.model.ValidationMode;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
+import org.apache.parquet.io.LocalInputFile;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
@@ -16,19 +20,36 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.Arrays;
 import java.util.Currency;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
- * Parser of CSV files containing customers and documents.
+ * Parser of CSV, binary columnar and Parquet files containing customers and documents.
  */
 @Slf4j
 @Service
 public class DocumentsFileParserService {
 
+    /**
+     * Content type of the binary columnar documents format, see {@link DocumentsBinaryReader}.
+     */
+    public static final String BINARY_CONTENT_TYPE = "application/vnd.calculator.documents";
+
+    /**
+     * Content type of Parquet files, see {@link DocumentsParquetReader}.
+     */
+    public static final String PARQUET_CONTENT_TYPE = "application/vnd.apache.parquet";
+
+    /**
+     * Number of columns every row has, all but the optional {@link CsvHeader#DATE} column.
+     */
+    private static final int REQUIRED_COLUMNS = CsvHeader.DATE.ordinal();
+
     private CSVFormat csvFormat;
 
     enum CsvHeader {
@@ -38,7 +59,11 @@ public class DocumentsFileParserService {
         TYPE("Type"),
         PARENT_DOCUMENT("Parent document"),
         CURRENCY("Currency"),
-        TOTAL("Total");
+        TOTAL("Total"),
+        /**
+         * Optional ISO date of the document, files without dates have one column less.
+         */
+        DATE("Date");
 
         private String value;
 
@@ -75,71 +100,205 @@ public class DocumentsFileParserService {
     public Map<String, Customer> parseDocumentsCsvInputStream(final InputStream inputStream,
                                                               final String filterVatNumber)
             throws IOException, DocumentValidationException, IllegalArgumentException {
-        HashMap<String, Customer> customersMap = new HashMap<>();
+        return parseDocumentsCsv(inputStream,
+                DocumentsParseOptions.builder().filterVatNumber(filterVatNumber).build())
+                .getCustomers();
+    }
+
+    /**
+     * Parse a CSV file input and build a map of Customer VAT Numbers and Customers.
+     * <p>
+     * In {@link ValidationMode#FAIL_FAST FAIL_FAST} mode the first invalid document aborts parsing. In
+     * {@link ValidationMode#COLLECT_ALL COLLECT_ALL} mode invalid rows are skipped and reported in the
+     * validation report of the result, which also covers missing parent documents.
+     * <p>
+     * The last column, the ISO date of the document, is optional. Documents with a date are converted at the
+     * exchange rates in effect on that date.
+     * <p>
+     * If {@link DocumentsParseOptions#isPrecomputeTotals() precomputeTotals} is set, the customers hold the
+     * running sums of their documents and parent documents are validated here instead of in
+     * {@link CalculateService}.
+     *
+     * @param inputStream CSV file input stream
+     * @param options     Parsing options
+     * @return The parsed customers and the validation report.
+     * @throws IOException                 If CSV input stream reading fails.
+     * @throws DocumentValidationException If document line contains invalid data in FAIL_FAST mode.
+     * @throws IllegalArgumentException    If CSV structure is invalid in FAIL_FAST mode.
+     */
+    public DocumentsParseResult parseDocumentsCsv(final InputStream inputStream,
+                                                  final DocumentsParseOptions options)
+            throws IOException, DocumentValidationException, IllegalArgumentException {
+        final DocumentsCollector collector = new DocumentsCollector(options);
+        final CountingInputStream countingStream = new CountingInputStream(inputStream);
 
-        try (Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+        try (Reader reader = new InputStreamReader(countingStream, StandardCharsets.UTF_8);
              CSVParser parser = csvFormat.parse(reader)) {
 
+            DocumentsChunkParsedEvent chunkEvent = new DocumentsChunkParsedEvent();
+            chunkEvent.begin();
+            int chunkRows = 0;
+            long chunkStartBytes = 0;
             for (final CSVRecord record : parser) {
-                final String vatNumber = record.get(CsvHeader.VAT_NUMBER.toString());
-                if (filterVatNumber != null && !filterVatNumber.equals(vatNumber)) {
-                    continue;
+                if (chunkRows == DocumentsChunkParsedEvent.CHUNK_ROWS) {
+                    commitChunk(chunkEvent, chunkRows, countingStream.getCount() - chunkStartBytes);
+                    if (options.getProgress() != null) {
+                        options.getProgress().rowsParsed(record.getRecordNumber() - 1);
+                    }
+                    chunkEvent = new DocumentsChunkParsedEvent();
+                    chunkEvent.begin();
+                    chunkRows = 0;
+                    chunkStartBytes = countingStream.getCount();
                 }
+                chunkRows++;
 
-                final Customer customer;
-                if (customersMap.containsKey(vatNumber)) {
-                    customer = customersMap.get(vatNumber);
-
-                } else {
-                    final String customerName = record.get(CsvHeader.CUSTOMER.toString());
-                    customer = new Customer(customerName, vatNumber);
-                    customersMap.put(vatNumber, customer);
+                final long row = record.getRecordNumber();
+                if (collector.isCollectAll() && record.size() < REQUIRED_COLUMNS) {
+                    collector.reject(row, null, null, String.format("Expected %d columns but found %d",
+                            REQUIRED_COLUMNS, record.size()));
+                    continue;
                 }
 
-                // TODO: Check for duplicate documents by number but different values
-                final String documentNumber = record.get(CsvHeader.DOCUMENT_NUMBER.toString());
-                final String documentTypeString = record.get(CsvHeader.TYPE.toString());
-                final int documentTypeInt;
-                try {
-                    documentTypeInt = Integer.parseInt(documentTypeString);
-                } catch (NumberFormatException nfEx) {
-                    throw new DocumentValidationException("Document type is not a number: " +
-                            documentTypeString, documentNumber);
+                final String vatNumber = record.get(CsvHeader.VAT_NUMBER.toString());
+                if (collector.isFilteredOut(vatNumber)) {
+                    continue;
                 }
 
-                DocumentType documentType = DocumentType.valueOf(documentTypeInt);
-                if (documentType == null) {
-                    throw new DocumentValidationException("Invalid document type: " + documentTypeInt, documentNumber);
+                final Document document = parseDocument(record, row, collector);
+                if (document != null) {
+                    collector.add(row, record.get(CsvHeader.CUSTOMER.toString()), vatNumber, document);
                 }
+            }
+            if (chunkRows > 0) {
+                commitChunk(chunkEvent, chunkRows, countingStream.getCount() - chunkStartBytes);
+            }
+            if (options.getProgress() != null) {
+                options.getProgress().rowsParsed(parser.getRecordNumber());
+            }
+        }
 
-                final String parentDocumentNumber = record.get(CsvHeader.PARENT_DOCUMENT.toString());
-                final String documentCurrencyString = record.get(CsvHeader.CURRENCY.toString());
-                final Currency documentCurrencyObject;
-                try {
-                    documentCurrencyObject = Currency.getInstance(documentCurrencyString);
-                } catch (IllegalArgumentException e) {
-                    throw new DocumentValidationException("Unsupported ISO 4217 currency code: " +
-                            documentCurrencyString, documentNumber);
-                }
-                final String documentTotalString = record.get(CsvHeader.TOTAL.toString());
-                final BigDecimal documentTotal;
-                try {
-                    documentTotal = new BigDecimal(documentTotalString);
-                } catch (NumberFormatException nfEx) {
-                    throw new DocumentValidationException("Document total is not a decimal number: " +
-                            documentTotalString, documentNumber);
-                }
+        return collector.finish();
+    }
 
-                Document document = Document.builder(documentNumber, documentType)
-                        .parentDocumentNumber(parentDocumentNumber)
-                        .currency(documentCurrencyObject)
-                        .total(documentTotal)
-                        .build();
+    /**
+     * Parse a binary columnar documents file and build a map of Customer VAT Numbers and Customers.
+     * Validation and options are the same as for {@link #parseDocumentsCsv(InputStream, DocumentsParseOptions)
+     * parseDocumentsCsv}.
+     *
+     * @param inputStream Binary file input stream
+     * @param options     Parsing options
+     * @return The parsed customers and the validation report.
+     * @throws IOException                 If input stream reading fails.
+     * @throws DocumentValidationException If document row contains invalid data in FAIL_FAST mode.
+     * @throws IllegalArgumentException    If the file structure is invalid.
+     */
+    public DocumentsParseResult parseDocumentsBinary(final InputStream inputStream,
+                                                     final DocumentsParseOptions options)
+            throws IOException, DocumentValidationException, IllegalArgumentException {
+        return DocumentsBinaryReader.read(inputStream, new DocumentsCollector(options));
+    }
 
-                customer.addDocument(document);
+    /**
+     * Parse a Parquet documents file and build a map of Customer VAT Numbers and Customers. Only the document
+     * columns are read, and row groups that cannot contain the filtered VAT number are skipped.
+     * Validation and options are the same as for {@link #parseDocumentsCsv(InputStream, DocumentsParseOptions)
+     * parseDocumentsCsv}.
+     *
+     * @param file    Parquet file
+     * @param options Parsing options
+     * @return The parsed customers and the validation report.
+     * @throws IOException                 If file reading fails.
+     * @throws DocumentValidationException If document row contains invalid data in FAIL_FAST mode.
+     * @throws IllegalArgumentException    If the file structure is invalid.
+     */
+    public DocumentsParseResult parseDocumentsParquet(final Path file, final DocumentsParseOptions options)
+            throws IOException, DocumentValidationException, IllegalArgumentException {
+        return DocumentsParquetReader.read(new LocalInputFile(file), new DocumentsCollector(options),
+                options.getFilterVatNumber());
+    }
+
+    private static void commitChunk(final DocumentsChunkParsedEvent event, final int rows, final long bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.setRows(rows);
+            event.setBytes(bytes);
+            event.commit();
+        }
+    }
+
+    /**
+     * Build a document from a CSV record.
+     *
+     * @return The document or null if the record is invalid and the error has been collected.
+     */
+    private Document parseDocument(final CSVRecord record, final long row, final DocumentsCollector collector)
+            throws DocumentValidationException {
+        final String documentNumber = record.get(CsvHeader.DOCUMENT_NUMBER.toString());
+        boolean valid = true;
+
+        final String documentTypeString = record.get(CsvHeader.TYPE.toString());
+        DocumentType documentType = null;
+        try {
+            final int documentTypeInt = Integer.parseInt(documentTypeString);
+            documentType = DocumentType.valueOf(documentTypeInt);
+            if (documentType == null) {
+                collector.reject(row, CsvHeader.TYPE, documentNumber, "Invalid document type: " + documentTypeInt);
+                valid = false;
+            }
+        } catch (NumberFormatException nfEx) {
+            collector.reject(row, CsvHeader.TYPE, documentNumber, "Document type is not a number: " +
+                    documentTypeString);
+            valid = false;
+        }
+
+        final String parentDocumentNumber = record.get(CsvHeader.PARENT_DOCUMENT.toString());
+        final String documentCurrencyString = record.get(CsvHeader.CURRENCY.toString());
+        Currency documentCurrencyObject = null;
+        try {
+            documentCurrencyObject = Currency.getInstance(documentCurrencyString);
+        } catch (IllegalArgumentException e) {
+            collector.reject(row, CsvHeader.CURRENCY, documentNumber, "Unsupported ISO 4217 currency code: " +
+                    documentCurrencyString);
+            valid = false;
+        }
+        if (documentCurrencyObject != null && collector.isUnsupported(documentCurrencyObject)) {
+            collector.reject(row, CsvHeader.CURRENCY, documentNumber,
+                    String.format("Unable to find currency exchange rate for [%s]", documentCurrencyObject));
+            valid = false;
+        }
+
+        final String documentTotalString = record.get(CsvHeader.TOTAL.toString());
+        BigDecimal documentTotal = null;
+        try {
+            documentTotal = new BigDecimal(documentTotalString);
+        } catch (NumberFormatException nfEx) {
+            collector.reject(row, CsvHeader.TOTAL, documentNumber, "Document total is not a decimal number: " +
+                    documentTotalString);
+            valid = false;
+        }
+
+        LocalDate documentDate = null;
+        final String documentDateString = record.isSet(CsvHeader.DATE.toString())
+                ? record.get(CsvHeader.DATE.toString()) : "";
+        if (!documentDateString.isEmpty()) {
+            try {
+                documentDate = LocalDate.parse(documentDateString);
+            } catch (DateTimeParseException e) {
+                collector.reject(row, CsvHeader.DATE, documentNumber, "Document date is not an ISO date: " +
+                        documentDateString);
+                valid = false;
             }
         }
-        return customersMap;
 
+        if (!valid) {
+            return null;
+        }
+
+        return Document.builder(documentNumber, documentType)
+                .parentDocumentNumber(parentDocumentNumber)
+                .currency(documentCurrencyObject)
+                .total(documentTotal)
+                .date(documentDate)
+                .build();
     }
 }
@@ -0,0 +1,436 @@
+package com.example.calculator.service;
+
+import com.example.calculator.exception.DocumentValidationException;
+import com.example.calculator.model.Document;
+import com.example.calculator.model.DocumentType;
+import com.example.calculator.service.DocumentsFileParserService.CsvHeader;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.parquet.ParquetReadOptions;
+import org.apache.parquet.column.ColumnDescriptor;
+import org.apache.parquet.column.ColumnReader;
+import org.apache.parquet.column.impl.ColumnReadStoreImpl;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.example.data.simple.convert.GroupRecordConverter;
+import org.apache.parquet.filter2.compat.FilterCompat;
+import org.apache.parquet.filter2.compat.RowGroupFilter;
+import org.apache.parquet.filter2.predicate.FilterApi;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.io.ParquetDecodingException;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.Type;
+import org.apache.parquet.schema.Types;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reader of Parquet documents files. The file must have the columns of the CSV format, with the same names;
+ * other columns are not read. Row groups are read column by column, and row groups that cannot contain the
+ * filtered VAT number are skipped using their statistics, dictionaries and bloom filters.
+ * <p>
+ * String columns are UTF-8 binaries. The type may be an integer or a string, the total a decimal, an
+ * integer, a floating point number or a string. Integer columns, including decimals stored as integers, are
+ * read into primitive arrays, other numeric columns into their values.
+ */
+@Slf4j
+class DocumentsParquetReader {
+
+    /**
+     * The columns read from the file, all but the document date, which Parquet files do not have.
+     */
+    private static final CsvHeader[] COLUMNS = Arrays.copyOf(CsvHeader.values(), CsvHeader.DATE.ordinal());
+
+    private static final List<RowGroupFilter.FilterLevel> FILTER_LEVELS = Arrays.asList(
+            RowGroupFilter.FilterLevel.STATISTICS,
+            RowGroupFilter.FilterLevel.DICTIONARY,
+            RowGroupFilter.FilterLevel.BLOOMFILTER);
+
+    private DocumentsParquetReader() {
+    }
+
+    /**
+     * Reads the current value of a column reader as a Java value.
+     */
+    @FunctionalInterface
+    private interface ValueReader {
+        Object read(ColumnReader reader);
+    }
+
+    /**
+     * Reads the current value of a column reader as a string.
+     */
+    @FunctionalInterface
+    private interface StringReader {
+        String read(ColumnReader reader);
+    }
+
+    /**
+     * The values of a numeric column in a row group: unboxed for integer columns, with the scale of their decimal
+     * type, otherwise as values of the type of the column.
+     */
+    private static final class NumericColumn {
+
+        private final boolean[] defined;
+        private final long[] longs;
+        private final int scale;
+        private final Object[] values;
+
+        private NumericColumn(final boolean[] defined, final long[] longs, final int scale, final Object[] values) {
+            this.defined = defined;
+            this.longs = longs;
+            this.scale = scale;
+            this.values = values;
+        }
+
+        /**
+         * @throws NumberFormatException If the value is not an integer.
+         */
+        long getLong(final int row) {
+            return longs != null && defined[row] ? longs[row] : Long.parseLong(toString(row));
+        }
+
+        /**
+         * @throws NumberFormatException If the value is not a decimal number.
+         */
+        BigDecimal getDecimal(final int row) {
+            if (longs != null && defined[row]) {
+                return BigDecimal.valueOf(longs[row], scale);
+            }
+            return values != null && values[row] instanceof BigDecimal decimal
+                    ? decimal : new BigDecimal(toString(row));
+        }
+
+        /**
+         * @return The value as a string, {@code "null"} if it is not defined
+         */
+        String toString(final int row) {
+            if (!defined[row]) {
+                return "null";
+            }
+            return longs != null ? String.valueOf(longs[row]) : String.valueOf(values[row]);
+        }
+    }
+
+    /**
+     * Read a Parquet documents file and pass its rows to a collector.
+     *
+     * @throws IOException                 If reading the file fails.
+     * @throws DocumentValidationException If a row contains invalid data in FAIL_FAST mode.
+     * @throws IllegalArgumentException    If the file structure is invalid.
+     */
+    static DocumentsParseResult read(final InputFile inputFile, final DocumentsCollector collector,
+                                     final String filterVatNumber)
+            throws IOException, DocumentValidationException, IllegalArgumentException {
+        try (ParquetFileReader reader = open(inputFile)) {
+            final MessageType fileSchema = reader.getFileMetaData().getSchema();
+            final MessageType projection = project(fileSchema);
+            reader.setRequestedSchema(projection);
+
+            final List<BlockMetaData> rowGroups = reader.getRowGroups();
+            final Set<BlockMetaData> matchingRowGroups = new HashSet<>(
+                    filterRowGroups(reader, fileSchema, rowGroups, filterVatNumber));
+            log.debug("Reading {} of {} Parquet row groups", matchingRowGroups.size(), rowGroups.size());
+
+            final CsvHeader[] columns = COLUMNS;
+            final ColumnDescriptor[] descriptors = new ColumnDescriptor[columns.length];
+            final StringReader[] stringReaders = new StringReader[columns.length];
+            final ValueReader[] valueReaders = new ValueReader[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                descriptors[i] = projection.getColumnDescription(new String[]{columns[i].toString()});
+                final PrimitiveType type = descriptors[i].getPrimitiveType();
+                switch (columns[i]) {
+                    case TYPE -> valueReaders[i] = integerReader(columns[i], type);
+                    case TOTAL -> valueReaders[i] = decimalReader(columns[i], type);
+                    default -> stringReaders[i] = stringReader(columns[i], type);
+                }
+            }
+
+            final String createdBy = reader.getFileMetaData().getCreatedBy();
+            for (BlockMetaData rowGroup : rowGroups) {
+                if (!matchingRowGroups.contains(rowGroup)) {
+                    reader.skipNextRowGroup();
+                    continue;
+                }
+                final PageReadStore pages = reader.readNextRowGroup();
+                final ColumnReadStoreImpl columnStore = new ColumnReadStoreImpl(pages,
+                        new GroupRecordConverter(projection).getRootConverter(), projection, createdBy);
+                readRowGroup(columnStore, descriptors, stringReaders, valueReaders,
+                        Math.toIntExact(pages.getRowCount()), rowGroup.getRowIndexOffset(), collector);
+            }
+        } catch (ParquetDecodingException e) {
+            throw new IllegalArgumentException("Parquet file is corrupt: " + e.getMessage());
+        }
+        return collector.finish();
+    }
+
+    /**
+     * Open a Parquet file, reading its footer.
+     */
+    private static ParquetFileReader open(final InputFile inputFile) throws IOException {
+        try {
+            return ParquetFileReader.open(inputFile,
+                    ParquetReadOptions.builder(new PlainParquetConfiguration()).build());
+        } catch (IOException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // The footer check throws a plain RuntimeException for files that are not Parquet
+            throw new IllegalArgumentException("Not a Parquet file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Read one row group column by column, skipping the other columns when no row matches the VAT filter.
+     */
+    private static void readRowGroup(final ColumnReadStoreImpl columnStore,
+                                     final ColumnDescriptor[] descriptors,
+                                     final StringReader[] stringReaders,
+                                     final ValueReader[] valueReaders,
+                                     final int rows,
+                                     final long rowIndexOffset,
+                                     final DocumentsCollector collector) throws DocumentValidationException {
+        final int vatColumn = CsvHeader.VAT_NUMBER.ordinal();
+        final String[] vatNumbers = readStrings(columnStore, descriptors[vatColumn], stringReaders[vatColumn], rows);
+
+        boolean anyMatch = false;
+        for (String vatNumber : vatNumbers) {
+            if (!collector.isFilteredOut(vatNumber)) {
+                anyMatch = true;
+                break;
+            }
+        }
+        if (!anyMatch) {
+            return;
+        }
+
+        final String[] customerNames = readStrings(columnStore, descriptors, stringReaders, CsvHeader.CUSTOMER, rows);
+        final String[] documentNumbers = readStrings(columnStore, descriptors, stringReaders,
+                CsvHeader.DOCUMENT_NUMBER, rows);
+        final NumericColumn documentTypes = readNumbers(columnStore, descriptors, valueReaders, CsvHeader.TYPE, rows);
+        final String[] parentDocumentNumbers = readStrings(columnStore, descriptors, stringReaders,
+                CsvHeader.PARENT_DOCUMENT, rows);
+        final String[] currencyCodes = readStrings(columnStore, descriptors, stringReaders, CsvHeader.CURRENCY, rows);
+        final NumericColumn totals = readNumbers(columnStore, descriptors, valueReaders, CsvHeader.TOTAL, rows);
+
+        for (int i = 0; i < rows; i++) {
+            final long row = rowIndexOffset + i + 1;
+            final String vatNumber = vatNumbers[i];
+            if (collector.isFilteredOut(vatNumber)) {
+                continue;
+            }
+
+            final String documentNumber = documentNumbers[i];
+            boolean valid = true;
+
+            DocumentType documentType = null;
+            try {
+                final long documentTypeLong = documentTypes.getLong(i);
+                documentType = documentTypeLong == (int) documentTypeLong
+                        ? DocumentType.valueOf((int) documentTypeLong) : null;
+                if (documentType == null) {
+                    collector.reject(row, CsvHeader.TYPE, documentNumber, "Invalid document type: " + documentTypeLong);
+                    valid = false;
+                }
+            } catch (NumberFormatException nfEx) {
+                collector.reject(row, CsvHeader.TYPE, documentNumber, "Document type is not a number: " +
+                        documentTypes.toString(i));
+                valid = false;
+            }
+
+            final String currencyCode = currencyCodes[i];
+            Currency currency = null;
+            try {
+                currency = Currency.getInstance(String.valueOf(currencyCode));
+            } catch (IllegalArgumentException e) {
+                collector.reject(row, CsvHeader.CURRENCY, documentNumber, "Unsupported ISO 4217 currency code: " +
+                        currencyCode);
+                valid = false;
+            }
+            if (currency != null && collector.isUnsupported(currency)) {
+                collector.reject(row, CsvHeader.CURRENCY, documentNumber,
+                        String.format("Unable to find currency exchange rate for [%s]", currency));
+                valid = false;
+            }
+
+            BigDecimal total = null;
+            try {
+                total = totals.getDecimal(i);
+            } catch (NumberFormatException nfEx) {
+                collector.reject(row, CsvHeader.TOTAL, documentNumber, "Document total is not a decimal number: " +
+                        totals.toString(i));
+                valid = false;
+            }
+
+            if (!valid || documentNumber == null || vatNumber == null) {
+                if (valid) {
+                    collector.reject(row, documentNumber == null ? CsvHeader.DOCUMENT_NUMBER : CsvHeader.VAT_NUMBER,
+                            documentNumber, "Value is required");
+                }
+                continue;
+            }
+
+            final String parentDocumentNumber = parentDocumentNumbers[i];
+            final Document document = Document.builder(documentNumber, documentType)
+                    .parentDocumentNumber(parentDocumentNumber == null ? "" : parentDocumentNumber)
+                    .currency(currency)
+                    .total(total)
+                    .build();
+            final String customerName = customerNames[i];
+            collector.add(row, customerName == null ? "" : customerName, vatNumber, document);
+        }
+    }
+
+    private static String[] readStrings(final ColumnReadStoreImpl columnStore,
+                                        final ColumnDescriptor[] descriptors,
+                                        final StringReader[] stringReaders,
+                                        final CsvHeader column,
+                                        final int rows) {
+        return readStrings(columnStore, descriptors[column.ordinal()], stringReaders[column.ordinal()], rows);
+    }
+
+    /**
+     * Read all values of a string column in a row group, null where the value is not defined.
+     */
+    private static String[] readStrings(final ColumnReadStoreImpl columnStore,
+                                        final ColumnDescriptor descriptor,
+                                        final StringReader stringReader,
+                                        final int rows) {
+        final ColumnReader reader = columnStore.getColumnReader(descriptor);
+        final int maxDefinitionLevel = descriptor.getMaxDefinitionLevel();
+        final String[] values = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            if (reader.getCurrentDefinitionLevel() == maxDefinitionLevel) {
+                values[i] = stringReader.read(reader);
+            }
+            reader.consume();
+        }
+        return values;
+    }
+
+    /**
+     * Read all values of a numeric column in a row group, into a primitive array if the column is an integer.
+     */
+    private static NumericColumn readNumbers(final ColumnReadStoreImpl columnStore,
+                                             final ColumnDescriptor[] descriptors,
+                                             final ValueReader[] valueReaders,
+                                             final CsvHeader column,
+                                             final int rows) {
+        final ColumnDescriptor descriptor = descriptors[column.ordinal()];
+        final PrimitiveType type = descriptor.getPrimitiveType();
+        final PrimitiveType.PrimitiveTypeName typeName = type.getPrimitiveTypeName();
+        final boolean integer = typeName == PrimitiveType.PrimitiveTypeName.INT32
+                || typeName == PrimitiveType.PrimitiveTypeName.INT64;
+        final ColumnReader reader = columnStore.getColumnReader(descriptor);
+        final int maxDefinitionLevel = descriptor.getMaxDefinitionLevel();
+        final boolean[] defined = new boolean[rows];
+        final long[] longs = integer ? new long[rows] : null;
+        final Object[] values = integer ? null : new Object[rows];
+        for (int i = 0; i < rows; i++) {
+            if (reader.getCurrentDefinitionLevel() == maxDefinitionLevel) {
+                defined[i] = true;
+                if (!integer) {
+                    values[i] = valueReaders[column.ordinal()].read(reader);
+                } else if (typeName == PrimitiveType.PrimitiveTypeName.INT32) {
+                    longs[i] = reader.getInteger();
+                } else {
+                    longs[i] = reader.getLong();
+                }
+            }
+            reader.consume();
+        }
+        return new NumericColumn(defined, longs, decimalScale(type), values);
+    }
+
+    /**
+     * Keep only the document columns of the file schema.
+     */
+    private static MessageType project(final MessageType fileSchema) {
+        final Types.MessageTypeBuilder builder = Types.buildMessage();
+        for (CsvHeader column : COLUMNS) {
+            if (!fileSchema.containsField(column.toString())) {
+                throw new IllegalArgumentException("Missing column in Parquet file: " + column);
+            }
+            final Type field = fileSchema.getType(column.toString());
+            if (!field.isPrimitive() || field.isRepetition(Type.Repetition.REPEATED)) {
+                throw new IllegalArgumentException("Column in Parquet file must be a single value: " + column);
+            }
+            builder.addField(field);
+        }
+        return builder.named(fileSchema.getName());
+    }
+
+    /**
+     * Select the row groups that may contain the filtered VAT number.
+     */
+    private static List<BlockMetaData> filterRowGroups(final ParquetFileReader reader,
+                                                       final MessageType fileSchema,
+                                                       final List<BlockMetaData> rowGroups,
+                                                       final String filterVatNumber) {
+        final PrimitiveType vatType = fileSchema.getType(CsvHeader.VAT_NUMBER.toString()).asPrimitiveType();
+        if (filterVatNumber == null || vatType.getPrimitiveTypeName() != PrimitiveType.PrimitiveTypeName.BINARY) {
+            return rowGroups;
+        }
+        final FilterCompat.Filter filter = FilterCompat.get(FilterApi.eq(
+                FilterApi.binaryColumn(CsvHeader.VAT_NUMBER.toString()), Binary.fromString(filterVatNumber)));
+        return RowGroupFilter.filterRowGroups(FILTER_LEVELS, filter, rowGroups, reader);
+    }
+
+    private static StringReader stringReader(final CsvHeader column, final PrimitiveType type) {
+        return switch (type.getPrimitiveTypeName()) {
+            case BINARY, FIXED_LEN_BYTE_ARRAY -> reader -> reader.getBinary().toStringUsingUTF8();
+            // e.g. numeric VAT numbers
+            case INT32 -> reader -> String.valueOf(reader.getInteger());
+            case INT64 -> reader -> String.valueOf(reader.getLong());
+            default -> throw unsupportedType(column, type);
+        };
+    }
+
+    private static ValueReader integerReader(final CsvHeader column, final PrimitiveType type) {
+        return switch (type.getPrimitiveTypeName()) {
+            case BINARY, FIXED_LEN_BYTE_ARRAY -> reader -> reader.getBinary().toStringUsingUTF8();
+            case INT32 -> reader -> (long) reader.getInteger();
+            case INT64 -> ColumnReader::getLong;
+            default -> throw unsupportedType(column, type);
+        };
+    }
+
+    /**
+     * @return The scale of a decimal column, 0 for other columns
+     */
+    private static int decimalScale(final PrimitiveType type) {
+        return type.getLogicalTypeAnnotation() instanceof LogicalTypeAnnotation.DecimalLogicalTypeAnnotation decimal
+                ? decimal.getScale() : 0;
+    }
+
+    private static ValueReader decimalReader(final CsvHeader column, final PrimitiveType type) {
+        final boolean decimal = type.getLogicalTypeAnnotation()
+                instanceof LogicalTypeAnnotation.DecimalLogicalTypeAnnotation;
+        final int scale = decimalScale(type);
+        return switch (type.getPrimitiveTypeName()) {
+            case BINARY, FIXED_LEN_BYTE_ARRAY -> decimal
+                    ? reader -> new BigDecimal(new BigInteger(reader.getBinary().getBytes()), scale)
+                    : reader -> reader.getBinary().toStringUsingUTF8();
+            case INT32 -> reader -> BigDecimal.valueOf(reader.getInteger(), scale);
+            case INT64 -> reader -> BigDecimal.valueOf(reader.getLong(), scale);
+            case FLOAT -> reader -> BigDecimal.valueOf(reader.getFloat());
+            case DOUBLE -> reader -> BigDecimal.valueOf(reader.getDouble());
+            default -> throw unsupportedType(column, type);
+        };
+    }
+
+    private static IllegalArgumentException unsupportedType(final CsvHeader column, final PrimitiveType type) {
+        return new IllegalArgumentException(
+                "Unsupported Parquet type " + type.getPrimitiveTypeName() + " for column: " + column);
+    }
+}
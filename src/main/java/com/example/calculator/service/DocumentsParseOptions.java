@@ -0,0 +1,72 @@
+package com.example.calculator.service;
+
+import com.example.calculator.memory.MemoryBudget;
+import com.example.calculator.model.ValidationMode;
+import com.example.calculator.progress.Progress;
+import com.example.calculator.store.OffHeapDocumentStore;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.Currency;
+import java.util.Set;
+
+/**
+ * Options for parsing a documents file.
+ */
+@Getter
+@Builder
+public class DocumentsParseOptions {
+
+    /**
+     * Filter customers with specified VAT number (optional)
+     */
+    private String filterVatNumber;
+
+    @Builder.Default
+    private ValidationMode validationMode = ValidationMode.FAIL_FAST;
+
+    /**
+     * Maximum number of errors kept in the validation report in
+     * {@link ValidationMode#COLLECT_ALL COLLECT_ALL} mode.
+     */
+    @Builder.Default
+    private int maxErrors = 100;
+
+    /**
+     * Currencies that documents may use (optional). If set, documents in other currencies are reported as invalid.
+     */
+    private Set<Currency> supportedCurrencies;
+
+    /**
+     * Maintain per customer running sums of document totals while parsing. Parent documents are then
+     * validated by the parser, once the whole file has been read.
+     */
+    private boolean precomputeTotals;
+
+    /**
+     * Expected number of customers in the file, used to size the customer index up front. 0 if unknown.
+     */
+    private int expectedCustomers;
+
+    /**
+     * Expected number of documents in the file, used to size the duplicate document filter up front. 0 if unknown.
+     */
+    private long expectedDocuments;
+
+    /**
+     * Store the documents off-heap in this store instead of in the customers (optional). Parent documents are
+     * then validated by the parser, once the whole file has been read. The caller owns and closes the store.
+     */
+    private OffHeapDocumentStore documentStore;
+
+    /**
+     * Budget charged with the estimated memory of the documents and customers kept by the parser (optional).
+     * Parsing fails with {@link com.example.calculator.exception.MemoryBudgetExceededException} once it is exceeded.
+     */
+    private MemoryBudget memoryBudget;
+
+    /**
+     * Progress of the request, published with the rows parsed (optional).
+     */
+    private Progress progress;
+}
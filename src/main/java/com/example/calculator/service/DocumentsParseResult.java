@@ -0,0 +1,23 @@
+package com.example.calculator.service;
+
+import com.example.calculator.model.Customer;
+import com.example.calculator.model.ValidationReport;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * The customers parsed from a documents file together with the validation errors found in it.
+ */
+@Getter
+@RequiredArgsConstructor
+public class DocumentsParseResult {
+
+    /**
+     * A map of VAT numbers and Customer objects.
+     */
+    private final Map<String, Customer> customers;
+
+    private final ValidationReport validationReport;
+}
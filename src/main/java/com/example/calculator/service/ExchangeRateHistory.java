@@ -0,0 +1,147 @@
+package com.example.calculator.service;
+
+import com.example.calculator.model.ExchangeRate;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Exchange rates that change over time. The effective dates of all rates split time into periods, each with the
+ * {@link ExchangeRateTable} of the rates in effect during the period: for each currency, its rate with the latest
+ * effective date up to the start of the period, or its rate without effective date.
+ * <p>
+ * The period of a date is found by binary search over the sorted effective dates, and the table of a period is
+ * computed the first time it is used, so a history spanning years only computes the tables of the dates in use.
+ * Instances are shared between threads, see {@link CurrencyExchangeService#getExchangeRateHistory}.
+ */
+public class ExchangeRateHistory {
+
+    private final MathContext mathContext;
+    /**
+     * Start of each period but the first, as epoch days in ascending order.
+     */
+    private final long[] periodStarts;
+    private final Map<Currency, CurrencyRates> currencyRates = new LinkedHashMap<>();
+    /**
+     * Tables indexed by period, the first period is before the earliest effective date.
+     */
+    private final AtomicReferenceArray<ExchangeRateTable> tables;
+
+    /**
+     * @param exchangeRates Exchange rates, the first rate of a currency and date is used if there are several
+     * @param mathContext   Precision and rounding of the factors
+     */
+    ExchangeRateHistory(final Collection<ExchangeRate> exchangeRates, final MathContext mathContext) {
+        this.mathContext = mathContext;
+        final Map<Currency, List<ExchangeRate>> ratesByCurrency = new LinkedHashMap<>();
+        for (ExchangeRate exchangeRate : exchangeRates) {
+            ratesByCurrency.computeIfAbsent(exchangeRate.getCurrency(), currency -> new ArrayList<>())
+                    .add(exchangeRate);
+        }
+        ratesByCurrency.forEach((currency, rates) -> currencyRates.put(currency, new CurrencyRates(rates)));
+
+        periodStarts = currencyRates.values().stream()
+                .flatMapToLong(rates -> Arrays.stream(rates.effectiveDays))
+                .distinct()
+                .sorted()
+                .toArray();
+        tables = new AtomicReferenceArray<>(periodStarts.length + 1);
+    }
+
+    /**
+     * @return True if some rates have an effective date.
+     */
+    public boolean isDated() {
+        return periodStarts.length > 0;
+    }
+
+    /**
+     * Get the conversion factors of the rates in effect on a date.
+     *
+     * @param date The date, null for the rates without effective date
+     * @return The conversion factors of the rates in effect on the date
+     */
+    public ExchangeRateTable getTable(final LocalDate date) {
+        final int period = date == null || periodStarts.length == 0 ? 0 : period(date.toEpochDay());
+        ExchangeRateTable table = tables.get(period);
+        if (table == null) {
+            // Tables of the same period computed concurrently are equal, either one can be kept
+            table = new ExchangeRateTable(getRates(period), mathContext);
+            tables.set(period, table);
+        }
+        return table;
+    }
+
+    /**
+     * @return The index of the period containing the day.
+     */
+    private int period(final long epochDay) {
+        final int index = Arrays.binarySearch(periodStarts, epochDay);
+        // A start of period belongs to the period it starts, other days to the period of the previous start
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private List<ExchangeRate> getRates(final int period) {
+        final List<ExchangeRate> rates = new ArrayList<>(currencyRates.size());
+        currencyRates.forEach((currency, history) -> {
+            final BigDecimal rate = period == 0 ? history.undatedRate : history.getRate(periodStarts[period - 1]);
+            if (rate != null) {
+                rates.add(new ExchangeRate(currency, rate));
+            }
+        });
+        return rates;
+    }
+
+    /**
+     * The rates of one currency, sorted by effective date.
+     */
+    private static final class CurrencyRates {
+
+        private final BigDecimal undatedRate;
+        private final long[] effectiveDays;
+        private final BigDecimal[] rates;
+
+        CurrencyRates(final List<ExchangeRate> exchangeRates) {
+            BigDecimal undated = null;
+            final Map<Long, BigDecimal> dated = new LinkedHashMap<>();
+            for (ExchangeRate exchangeRate : exchangeRates) {
+                if (exchangeRate.getEffectiveDate() == null) {
+                    if (undated == null) {
+                        undated = exchangeRate.getRate();
+                    }
+                } else {
+                    dated.putIfAbsent(exchangeRate.getEffectiveDate().toEpochDay(), exchangeRate.getRate());
+                }
+            }
+            this.undatedRate = undated;
+
+            final List<Map.Entry<Long, BigDecimal>> entries = new ArrayList<>(dated.entrySet());
+            entries.sort(Map.Entry.comparingByKey(Comparator.naturalOrder()));
+            effectiveDays = new long[entries.size()];
+            rates = new BigDecimal[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                effectiveDays[i] = entries.get(i).getKey();
+                rates[i] = entries.get(i).getValue();
+            }
+        }
+
+        /**
+         * @return The rate with the latest effective date up to the day, or the undated rate if there is none.
+         */
+        BigDecimal getRate(final long epochDay) {
+            final int index = Arrays.binarySearch(effectiveDays, epochDay);
+            final int latest = index >= 0 ? index : -index - 2;
+            return latest >= 0 ? rates[latest] : undatedRate;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.calculator.service;
+
+import com.example.calculator.model.ExchangeRate;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Conversion factors between every pair of currencies of a rate set, computed once with a fixed precision so
+ * that converting an amount takes a single multiplication by a factor of bounded size.
+ * <p>
+ * Instances are immutable and shared between threads, see {@link CurrencyExchangeService#getExchangeRateTable}
+ * and {@link ExchangeRateHistory}.
+ */
+public class ExchangeRateTable {
+
+    private final Map<Currency, Integer> indexes = new HashMap<>();
+    private final Currency defaultCurrency;
+    /**
+     * Factors indexed by the indexes of the source and target currencies.
+     */
+    private final BigDecimal[][] factors;
+
+    /**
+     * @param exchangeRates Exchange rates, the first rate of a currency is used if there are several
+     * @param mathContext   Precision and rounding of the factors
+     */
+    ExchangeRateTable(final Collection<ExchangeRate> exchangeRates, final MathContext mathContext) {
+        Currency defaultRateCurrency = null;
+        final BigDecimal[] rates = new BigDecimal[exchangeRates.size()];
+        for (ExchangeRate exchangeRate : exchangeRates) {
+            if (defaultRateCurrency == null && exchangeRate.isDefaultCurrency()) {
+                defaultRateCurrency = exchangeRate.getCurrency();
+            }
+            if (!indexes.containsKey(exchangeRate.getCurrency())) {
+                rates[indexes.size()] = exchangeRate.getRate();
+                indexes.put(exchangeRate.getCurrency(), indexes.size());
+            }
+        }
+        this.defaultCurrency = defaultRateCurrency;
+
+        factors = new BigDecimal[indexes.size()][indexes.size()];
+        for (int from = 0; from < factors.length; from++) {
+            for (int to = 0; to < factors.length; to++) {
+                factors[from][to] = rates[from].multiply(rates[to], mathContext);
+            }
+        }
+    }
+
+    /**
+     * @return The currency of the default exchange rate, null if there is none.
+     */
+    public Currency getDefaultCurrency() {
+        return defaultCurrency;
+    }
+
+    public boolean hasRate(final Currency currency) {
+        return indexes.containsKey(currency);
+    }
+
+    /**
+     * @return The factor converting amounts from one currency to another, null if a currency has no rate.
+     */
+    public BigDecimal getFactor(final Currency fromCurrency, final Currency toCurrency) {
+        final Integer from = indexes.get(fromCurrency);
+        final Integer to = indexes.get(toCurrency);
+        return from == null || to == null ? null : factors[from][to];
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.calculator.service;
+
+import com.example.calculator.CalculatorProperties;
+import com.example.calculator.model.Customer;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Currency;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the customers parsed from recently uploaded documents files, so that a file uploaded again with the same
+ * parse options is not parsed again. Files are identified by the SHA-256 hash of their content.
+ * <p>
+ * Only files without validation errors are cached. Cached customers are shared between requests and must not
+ * be modified.
+ */
+@Component
+public class ParsedDocumentsCache {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int maxEntries;
+    private final Map<String, Map<String, Customer>> entries;
+
+    public ParsedDocumentsCache(CalculatorProperties calculatorProperties) {
+        this.maxEntries = calculatorProperties.getParser().getCacheSize();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, Customer>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * Hash the content of an uploaded file.
+     *
+     * @param content The content of the file, read to the end and closed
+     * @return The SHA-256 hash of the content in hexadecimal
+     * @throws IOException If reading the content fails.
+     */
+    public static String contentHash(final InputStream content) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        try (DigestInputStream digestStream = new DigestInputStream(content, digest)) {
+            while (digestStream.read(buffer) != -1) {
+                // Only the digest is needed
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Build the cache key of a documents file: the hash of its content and the options that change the parse result.
+     *
+     * @param contentHash The hash of the content of the file, see {@link #contentHash(InputStream)}
+     * @param options     The parse options
+     * @return The cache key
+     */
+    public static String key(final String contentHash, final DocumentsParseOptions options) {
+        final String supportedCurrencies = options.getSupportedCurrencies() == null ? ""
+                : options.getSupportedCurrencies().stream()
+                .map(Currency::getCurrencyCode)
+                .sorted()
+                .collect(Collectors.joining(","));
+        return String.join("|", contentHash,
+                String.valueOf(options.getFilterVatNumber()),
+                options.getValidationMode().name(),
+                String.valueOf(options.isPrecomputeTotals()),
+                supportedCurrencies);
+    }
+
+    /**
+     * @return The customers parsed from the file with this key, or null if they are not cached.
+     */
+    public synchronized Map<String, Customer> get(final String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Cache the customers parsed from a file, evicting the least recently used file if the cache is full.
+     */
+    public synchronized void put(final String key, final Map<String, Customer> customers) {
+        if (isEnabled()) {
+            entries.put(key, customers);
+        }
+    }
+
+    /**
+     * @return A copy of the cached entries, from the least to the most recently used.
+     */
+    public synchronized Map<String, Map<String, Customer>> getEntries() {
+        return new LinkedHashMap<>(entries);
+    }
+}
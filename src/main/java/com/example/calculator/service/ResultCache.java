@@ -0,0 +1,164 @@
+package com.example.calculator.service;
+
+import com.example.calculator.CalculatorProperties;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Keeps computed results by request key for a limited time, within a bound on their estimated size in bytes,
+ * evicting the least recently used results first.
+ * <p>
+ * Concurrent computations of the same key are deduplicated: the first caller computes the result and the others
+ * wait for it and share it, or the exception it failed with. Failed computations are not cached. Cached results
+ * are shared between requests and must not be modified.
+ *
+ * @param <V> The type of the results
+ */
+public class ResultCache<V> {
+
+    /**
+     * Estimated size of an entry besides its key and value: the map entry, the cache entry and their references.
+     */
+    private static final long ENTRY_OVERHEAD_BYTES = 96;
+
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final ToLongFunction<V> weigher;
+    private final Clock clock;
+    private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private long sizeInBytes;
+
+    /**
+     * @param properties The size bound and time to live of the results
+     * @param weigher    Estimates the size of a result in bytes
+     */
+    public ResultCache(final CalculatorProperties.ResultCache properties, final ToLongFunction<V> weigher) {
+        this(properties.getMaxBytes(), properties.getTtl(), weigher, Clock.systemUTC());
+    }
+
+    ResultCache(final long maxBytes, final Duration ttl, final ToLongFunction<V> weigher, final Clock clock) {
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttl.toMillis();
+        this.weigher = weigher;
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0 && ttlMillis > 0;
+    }
+
+    /**
+     * @return The result cached with this key, or null if there is none or it has expired.
+     */
+    public synchronized V get(final String key) {
+        final Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis() <= clock.millis()) {
+            remove(key);
+            return null;
+        }
+        return entry.value();
+    }
+
+    /**
+     * Get the result cached with this key, or compute and cache it. If the same key is being computed by another
+     * thread, wait for that computation instead.
+     *
+     * @param key     The key of the request
+     * @param compute Computes the result
+     * @return The cached or computed result
+     */
+    public V getOrCompute(final String key, final Supplier<V> compute) {
+        final V cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final CompletableFuture<V> flight = new CompletableFuture<>();
+        final CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            return await(existing);
+        }
+        try {
+            // The previous computation of the key may have completed after the lookup above
+            V value = get(key);
+            if (value == null) {
+                value = compute.get();
+                put(key, value);
+            }
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * @return The number of cached results, including expired ones not evicted yet.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The estimated size of the cached results in bytes.
+     */
+    public synchronized long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    private synchronized void put(final String key, final V value) {
+        final long weight = ENTRY_OVERHEAD_BYTES + 2L * key.length() + weigher.applyAsLong(value);
+        if (weight > maxBytes) {
+            return;
+        }
+        remove(key);
+        entries.put(key, new Entry<>(value, weight, clock.millis() + ttlMillis));
+        sizeInBytes += weight;
+
+        final Iterator<Entry<V>> eldest = entries.values().iterator();
+        while (sizeInBytes > maxBytes) {
+            sizeInBytes -= eldest.next().weight();
+            eldest.remove();
+        }
+    }
+
+    private void remove(final String key) {
+        final Entry<V> entry = entries.remove(key);
+        if (entry != null) {
+            sizeInBytes -= entry.weight();
+        }
+    }
+
+    private static <V> V await(final CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private record Entry<V>(V value, long weight, long expiresAtMillis) {
+    }
+}
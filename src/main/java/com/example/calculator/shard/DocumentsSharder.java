@@ -0,0 +1,182 @@
+package com.example.calculator.shard;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits a CSV documents file into shards by a hash of the VAT number, so that all documents of a customer, and
+ * with them the parents of its notes, are in the same shard. Each shard is a CSV file with the header of the
+ * original file, and remembers the original row of each of its rows to report validation errors, and the VAT number
+ * and first original row of each of its customers in the order they first appear, the order its worker returns them.
+ */
+public final class DocumentsSharder {
+
+    /**
+     * Position of the VAT number column, the parser reads columns by position.
+     */
+    private static final int VAT_NUMBER_COLUMN = 1;
+
+    private DocumentsSharder() {
+    }
+
+    /**
+     * Split a CSV documents file into temporary files, which the caller must {@link Shard#delete() delete}.
+     * Rows without a VAT number column go to the first shard, whose worker reports them.
+     *
+     * @param inputStream CSV file input stream
+     * @param shardCount  Number of shards
+     * @return The shards, in shard order, some of them may have no rows.
+     * @throws IOException              If reading the file or writing a shard fails.
+     * @throws IllegalArgumentException If the file is not valid CSV.
+     */
+    public static List<Shard> split(final InputStream inputStream, final int shardCount) throws IOException {
+        final List<Shard> shards = new ArrayList<>(shardCount);
+        final List<CSVPrinter> printers = new ArrayList<>(shardCount);
+        try (Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+             CSVParser parser = CSVFormat.DEFAULT.parse(reader)) {
+            final Iterator<CSVRecord> records = parser.iterator();
+            final CSVRecord header = records.hasNext() ? records.next() : null;
+            for (int i = 0; i < shardCount; i++) {
+                final Shard shard = new Shard(Files.createTempFile("documents-shard-" + i + "-", ".csv"));
+                shards.add(shard);
+                final BufferedWriter writer = Files.newBufferedWriter(shard.getPath(), StandardCharsets.UTF_8);
+                final CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT);
+                printers.add(printer);
+                if (header != null) {
+                    printer.printRecord(header);
+                }
+            }
+
+            final Set<String> vatNumbers = new HashSet<>();
+            long row = 0;
+            while (records.hasNext()) {
+                final CSVRecord record = records.next();
+                row++;
+                final String vatNumber = record.size() > VAT_NUMBER_COLUMN ? record.get(VAT_NUMBER_COLUMN) : null;
+                final int shard = vatNumber != null ? shardOf(vatNumber, shardCount) : 0;
+                printers.get(shard).printRecord(record);
+                shards.get(shard).addRow(row);
+                if (vatNumber != null && vatNumbers.add(vatNumber)) {
+                    shards.get(shard).addCustomer(vatNumber, row);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(printers);
+            shards.forEach(Shard::delete);
+            throw e;
+        }
+        for (CSVPrinter printer : printers) {
+            printer.close();
+        }
+        return shards;
+    }
+
+    /**
+     * @return The shard of a customer, stable across instances since {@link String#hashCode()} is specified.
+     */
+    static int shardOf(final String vatNumber, final int shardCount) {
+        return Math.floorMod(vatNumber.hashCode(), shardCount);
+    }
+
+    private static void closeQuietly(final List<CSVPrinter> printers) {
+        for (CSVPrinter printer : printers) {
+            try {
+                printer.close();
+            } catch (IOException e) {
+                // The shard is deleted anyway
+            }
+        }
+    }
+
+    /**
+     * A shard file, the original rows of its rows and its customers.
+     */
+    public static final class Shard {
+
+        private final Path path;
+        private long[] rows = new long[1024];
+        private int rowCount;
+        private final List<String> customerVatNumbers = new ArrayList<>();
+        private long[] customerRows = new long[16];
+
+        Shard(final Path path) {
+            this.path = path;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * @param shardRow 1-based data row of the shard
+         * @return The 1-based data row of the original file.
+         */
+        public long getOriginalRow(final long shardRow) {
+            return shardRow >= 1 && shardRow <= rowCount ? rows[(int) shardRow - 1] : shardRow;
+        }
+
+        public int getCustomerCount() {
+            return customerVatNumbers.size();
+        }
+
+        /**
+         * @param customer 0-based index of a customer in the order customers first appear in the shard
+         */
+        public String getCustomerVatNumber(final int customer) {
+            return customerVatNumbers.get(customer);
+        }
+
+        /**
+         * @param customer 0-based index of a customer in the order customers first appear in the shard
+         * @return The 1-based data row of the first document of the customer in the original file.
+         */
+        public long getCustomerFirstRow(final int customer) {
+            return customerRows[customer];
+        }
+
+        public void delete() {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                path.toFile().deleteOnExit();
+            }
+        }
+
+        private void addRow(final long row) {
+            if (rowCount == rows.length) {
+                rows = Arrays.copyOf(rows, rowCount + (rowCount >> 1));
+            }
+            rows[rowCount++] = row;
+        }
+
+        private void addCustomer(final String vatNumber, final long row) {
+            final int customer = customerVatNumbers.size();
+            if (customer == customerRows.length) {
+                customerRows = Arrays.copyOf(customerRows, customer + (customer >> 1));
+            }
+            customerRows[customer] = row;
+            customerVatNumbers.add(vatNumber);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.example.calculator.shard;
+
+import com.example.calculator.CalculatorProperties;
+import com.example.calculator.exception.ValidationReportException;
+import com.example.calculator.model.ExchangeRate;
+import com.example.calculator.model.ValidationError;
+import com.example.calculator.model.ValidationMode;
+import com.example.calculator.model.ValidationReport;
+import com.example.calculator.service.CustomerBalance;
+import com.example.calculator.shard.DocumentsSharder.Shard;
+import com.example.calculator.specification.model.CalculateResponseDto;
+import com.example.calculator.specification.model.CustomerDto;
+import com.example.calculator.specification.model.ValidationErrorDto;
+import com.example.calculator.specification.model.ValidationReportDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Coordinator side of sharded processing: splits a CSV documents file by customer with {@link DocumentsSharder},
+ * sends one shard to each configured worker's sumInvoices endpoint in parallel and merges their customers.
+ * <p>
+ * Each customer is on exactly one shard, so the balances of the workers are final and only need to be
+ * concatenated. Workers return the customers of their shard in the order they first appear in it, so each one is
+ * positioned at its first row in the original file, as if the whole file was processed locally. Validation reports
+ * of the workers are merged with their rows mapped back to the original file. Duplicate document numbers of
+ * customers on different shards are not detected.
+ */
+@Slf4j
+@Service
+public class ShardedCalculationService {
+
+    private static final String SUM_INVOICES_PATH = "/api/v1/sumInvoices";
+    /**
+     * Message of a {@link ResponseStatusException} returned by a worker, whose reason is kept.
+     */
+    private static final Pattern STATUS_MESSAGE = Pattern.compile("^\\d{3} [A-Z_]+ \"(.*)\"$", Pattern.DOTALL);
+
+    private final List<String> workers;
+    private final int maxErrors;
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService executor;
+
+    public ShardedCalculationService(CalculatorProperties calculatorProperties,
+                                     RestTemplateBuilder restTemplateBuilder,
+                                     ObjectMapper objectMapper) {
+        this.workers = List.copyOf(calculatorProperties.getSharding().getWorkers());
+        this.maxErrors = calculatorProperties.getValidation().getMaxErrors();
+        this.restTemplate = restTemplateBuilder
+                .setReadTimeout(calculatorProperties.getSharding().getTimeout())
+                .build();
+        this.objectMapper = objectMapper;
+        this.executor = workers.isEmpty() ? null : Executors.newFixedThreadPool(workers.size());
+    }
+
+    public boolean isEnabled() {
+        return !workers.isEmpty();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Calculate the customer balances of a CSV documents file on the workers.
+     *
+     * @param inputStream    CSV file input stream, decompressed
+     * @param exchangeRates  The exchange rates of the request
+     * @param outputCurrency The currency of the balances
+     * @param customerVat    Filter customers with specified VAT number (optional)
+     * @param validationMode The validation mode
+     * @return The customers of all shards, positioned at their first row in the original file.
+     * @throws ValidationReportException If validationMode is COLLECT_ALL and the file contains invalid documents.
+     * @throws ResponseStatusException   If the file cannot be split, a worker rejects its shard or fails.
+     */
+    public List<CustomerBalance> sumInvoices(final InputStream inputStream,
+                                         final Collection<ExchangeRate> exchangeRates,
+                                         final Currency outputCurrency,
+                                         final String customerVat,
+                                         final ValidationMode validationMode) {
+        final List<Shard> shards;
+        try {
+            shards = DocumentsSharder.split(inputStream, workers.size());
+        } catch (IOException | RuntimeException e) {
+            log.info("Error splitting documents file: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Unable to parse documents file: " + e.getMessage());
+        }
+
+        try {
+            final List<CompletableFuture<ShardResult>> results = new ArrayList<>(shards.size());
+            for (int i = 0; i < shards.size(); i++) {
+                final String worker = workers.get(i);
+                final Shard shard = shards.get(i);
+                results.add(shard.getRowCount() == 0
+                        ? CompletableFuture.completedFuture(ShardResult.EMPTY)
+                        : CompletableFuture.supplyAsync(() -> send(worker, shard, exchangeRates, outputCurrency,
+                        customerVat, validationMode), executor));
+            }
+            return merge(shards, join(results), customerVat);
+        } finally {
+            shards.forEach(Shard::delete);
+        }
+    }
+
+    private ShardResult send(final String worker,
+                             final Shard shard,
+                             final Collection<ExchangeRate> exchangeRates,
+                             final Currency outputCurrency,
+                             final String customerVat,
+                             final ValidationMode validationMode) {
+        final HttpHeaders fileHeaders = new HttpHeaders();
+        fileHeaders.setContentType(MediaType.parseMediaType("text/csv"));
+        final MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("file", new HttpEntity<>(new FileSystemResource(shard.getPath()), fileHeaders));
+        exchangeRates.forEach(exchangeRate -> body.add("exchangeRates", format(exchangeRate)));
+        body.add("outputCurrency", outputCurrency.getCurrencyCode());
+        body.add("validationMode", validationMode.name());
+        if (customerVat != null) {
+            body.add("customerVat", customerVat);
+        }
+
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        try {
+            final CalculateResponseDto response = restTemplate.postForObject(worker + SUM_INVOICES_PATH,
+                    new HttpEntity<>(body, headers), CalculateResponseDto.class);
+            return new ShardResult(response == null ? List.of() : response.getCustomers(), null, null);
+        } catch (HttpStatusCodeException e) {
+            if (e.getStatusCode() == HttpStatus.PAYLOAD_TOO_LARGE) {
+                // The shard exceeds the memory budget of the worker
+                final Matcher matcher = STATUS_MESSAGE.matcher(e.getResponseBodyAsString());
+                throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                        matcher.matches() ? matcher.group(1) : e.getResponseBodyAsString());
+            }
+            if (e.getStatusCode() != HttpStatus.BAD_REQUEST) {
+                log.warn("Worker [{}] failed with status {}", worker, e.getRawStatusCode());
+                throw new ResponseStatusException(HttpStatus.BAD_GATEWAY,
+                        String.format("Worker [%s] failed with status %d", worker, e.getRawStatusCode()));
+            }
+            final String responseBody = e.getResponseBodyAsString();
+            final MediaType contentType = e.getResponseHeaders() == null ? null
+                    : e.getResponseHeaders().getContentType();
+            if (contentType != null && contentType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                try {
+                    return new ShardResult(null, objectMapper.readValue(responseBody, ValidationReportDto.class),
+                            null);
+                } catch (JsonProcessingException jsonEx) {
+                    throw new ResponseStatusException(HttpStatus.BAD_GATEWAY,
+                            String.format("Worker [%s] returned an invalid validation report", worker));
+                }
+            }
+            final Matcher matcher = STATUS_MESSAGE.matcher(responseBody);
+            return new ShardResult(null, null, matcher.matches() ? matcher.group(1) : responseBody);
+        } catch (ResourceAccessException e) {
+            log.warn("Worker [{}] is not reachable: {}", worker, e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY,
+                    String.format("Worker [%s] is not reachable", worker));
+        }
+    }
+
+    /**
+     * Merge the results of the shards: the first rejection in shard order, or all validation errors in the order
+     * of the original rows, or all customers.
+     */
+    private List<CustomerBalance> merge(final List<Shard> shards, final List<ShardResult> results,
+                                        final String customerVat) {
+        final List<ValidationError> errors = new ArrayList<>();
+        long errorCount = 0;
+        for (int i = 0; i < results.size(); i++) {
+            final ShardResult result = results.get(i);
+            if (result.rejection() != null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, result.rejection());
+            }
+            if (result.report() != null) {
+                errorCount += result.report().getErrorCount();
+                for (ValidationErrorDto error : result.report().getErrors()) {
+                    final long row = error.getRow() == null ? 0 : shards.get(i).getOriginalRow(error.getRow());
+                    errors.add(new ValidationError(row, error.getColumn(), error.getDocumentNumber(),
+                            error.getMessage()));
+                }
+            }
+        }
+        if (errorCount > 0) {
+            errors.sort(Comparator.comparingLong(ValidationError::getRow));
+            final ValidationReport report = new ValidationReport(maxErrors);
+            errors.forEach(report::add);
+            report.addUnlisted(errorCount - errors.size());
+            throw new ValidationReportException(report);
+        }
+
+        final List<CustomerBalance> customers = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            addCustomers(workers.get(i), shards.get(i), results.get(i).customers(), customerVat, customers);
+        }
+        return customers;
+    }
+
+    /**
+     * Match the customers returned by a worker with the customers of its shard, in the order they first appear.
+     *
+     * @throws ResponseStatusException If the worker returned other customers than those of its shard.
+     */
+    private static void addCustomers(final String worker,
+                                     final Shard shard,
+                                     final List<CustomerDto> shardCustomers,
+                                     final String customerVat,
+                                     final List<CustomerBalance> customers) {
+        int matched = 0;
+        for (int customer = 0; customer < shard.getCustomerCount(); customer++) {
+            final String vatNumber = shard.getCustomerVatNumber(customer);
+            if (customerVat != null && !customerVat.equals(vatNumber)) {
+                continue;
+            }
+            if (matched < shardCustomers.size()) {
+                final CustomerDto customerDto = shardCustomers.get(matched);
+                customers.add(new CustomerBalance(shard.getCustomerFirstRow(customer), vatNumber,
+                        customerDto.getName(), customerDto.getBalance()));
+            }
+            matched++;
+        }
+        if (matched != shardCustomers.size()) {
+            log.warn("Worker [{}] returned {} customers, which do not match its shard", worker, shardCustomers.size());
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY,
+                    String.format("Worker [%s] returned customers that do not match its shard", worker));
+        }
+    }
+
+    /**
+     * Wait for all shards, so that no worker is still reading its shard when the shards are deleted.
+     *
+     * @throws RuntimeException The first failure in shard order.
+     */
+    private static List<ShardResult> join(final List<CompletableFuture<ShardResult>> results) {
+        final List<ShardResult> joined = new ArrayList<>(results.size());
+        RuntimeException failure = null;
+        for (CompletableFuture<ShardResult> result : results) {
+            try {
+                joined.add(result.join());
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return joined;
+    }
+
+    private static String format(final ExchangeRate exchangeRate) {
+        return exchangeRate.getCurrency().getCurrencyCode() + ":" + exchangeRate.getRate().toPlainString()
+                + (exchangeRate.getEffectiveDate() == null ? "" : "@" + exchangeRate.getEffectiveDate());
+    }
+
+    /**
+     * The customers of a shard, or the validation report or message its worker rejected it with.
+     */
+    private record ShardResult(List<CustomerDto> customers, ValidationReportDto report, String rejection) {
+
+        static final ShardResult EMPTY = new ShardResult(List.of(), null, null);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.calculator.snapshot;
+
+import com.example.calculator.CalculatorProperties;
+import com.example.calculator.service.CurrencyExchangeService;
+import com.example.calculator.service.ParsedDocumentsCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+/**
+ * Restores the parsed documents cache and the exchange rate tables from a snapshot file on startup and writes them
+ * back on shutdown, so that a restarted instance answers repeated uploads without parsing them again.
+ * <p>
+ * A missing, corrupt or incompatible snapshot is logged and ignored, the instance then starts cold.
+ * <p>
+ * No other bean depends on this one, so it is never lazy: with lazy initialization it would not be created at all.
+ */
+@Slf4j
+@Lazy(false)
+@Component
+public class DocumentsSnapshotService {
+
+    private final boolean enabled;
+    private final Path path;
+    private final ParsedDocumentsCache parsedDocumentsCache;
+    private final CurrencyExchangeService currencyExchangeService;
+
+    public DocumentsSnapshotService(CalculatorProperties calculatorProperties,
+                                    ParsedDocumentsCache parsedDocumentsCache,
+                                    CurrencyExchangeService currencyExchangeService) {
+        this.enabled = calculatorProperties.getSnapshot().isEnabled();
+        this.path = Paths.get(calculatorProperties.getSnapshot().getPath());
+        this.parsedDocumentsCache = parsedDocumentsCache;
+        this.currencyExchangeService = currencyExchangeService;
+    }
+
+    /**
+     * Load the snapshot before the application accepts requests.
+     */
+    @PostConstruct
+    public void load() {
+        if (!enabled || !Files.isRegularFile(path)) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final SnapshotFile.Contents contents;
+        try {
+            contents = SnapshotFile.read(path);
+        } catch (IOException e) {
+            log.warn("Ignoring snapshot [{}]: {}", path, e.getMessage());
+            return;
+        } catch (RuntimeException e) {
+            // Not expected from a corrupt file, but a snapshot never prevents startup
+            log.warn("Ignoring snapshot [{}]", path, e);
+            return;
+        }
+        contents.rateSets().forEach(currencyExchangeService::getExchangeRateTable);
+        contents.entries().forEach(parsedDocumentsCache::put);
+        log.info("Loaded snapshot [{}] with {} documents files and {} rate sets in {} ms", path,
+                contents.entries().size(), contents.rateSets().size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @PreDestroy
+    public void save() {
+        if (!enabled) {
+            return;
+        }
+        final SnapshotFile.Contents contents = new SnapshotFile.Contents(parsedDocumentsCache.getEntries(),
+                new ArrayList<>(currencyExchangeService.getCachedRateSets()));
+        try {
+            SnapshotFile.write(path, contents);
+            log.info("Saved snapshot [{}] with {} documents files and {} rate sets", path,
+                    contents.entries().size(), contents.rateSets().size());
+        } catch (IOException e) {
+            log.warn("Failed to save snapshot [{}]: {}", path, e.getMessage());
+        }
+    }
+}
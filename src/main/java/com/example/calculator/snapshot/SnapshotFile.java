@@ -0,0 +1,307 @@
+package com.example.calculator.snapshot;
+
+import com.example.calculator.model.Customer;
+import com.example.calculator.model.Document;
+import com.example.calculator.model.DocumentTotals;
+import com.example.calculator.model.DocumentType;
+import com.example.calculator.model.ExchangeRate;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binary snapshot file of the parsed documents cache and the exchange rate sets.
+ * <p>
+ * The file starts with a magic number and a format version, files of another version are not read. Numbers are
+ * big-endian, strings are a length and UTF-8 bytes with length -1 for null, decimals are their scale and the
+ * two's complement bytes of their unscaled value, and dates are a presence flag and their epoch day.
+ * <p>
+ * Snapshots are read from a memory mapping of the file, strings are decoded straight from it. Every length and
+ * count is checked against the bytes left in the file before anything is allocated for it, so a corrupt file fails
+ * with an {@link IOException} instead of exhausting the heap.
+ */
+final class SnapshotFile {
+
+    static final int MAGIC = 0x43414C53;
+    static final int VERSION = 2;
+
+    private static final DocumentType[] DOCUMENT_TYPES = DocumentType.values();
+    /**
+     * Smallest size of each item of the file, used to check counts against the bytes left: a string or a decimal
+     * without bytes, a date without value and a flag.
+     */
+    private static final int STRING_BYTES = Integer.BYTES;
+    private static final int DECIMAL_BYTES = 2 * Integer.BYTES;
+    private static final int DATE_BYTES = Byte.BYTES;
+    private static final int RATE_BYTES = STRING_BYTES + DECIMAL_BYTES + DATE_BYTES;
+    private static final int RATE_SET_BYTES = Integer.BYTES;
+    private static final int ENTRY_BYTES = STRING_BYTES + Integer.BYTES;
+    private static final int CUSTOMER_BYTES = 2 * STRING_BYTES + Integer.BYTES + Byte.BYTES;
+    private static final int DOCUMENT_BYTES = 3 * STRING_BYTES + Byte.BYTES + DECIMAL_BYTES + DATE_BYTES;
+    private static final int CURRENCY_TOTALS_BYTES = STRING_BYTES + DOCUMENT_TYPES.length * DECIMAL_BYTES;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Contents of a snapshot.
+     *
+     * @param entries  Customers of the cached documents files by cache key, from the least to the most recently used
+     * @param rateSets Exchange rate sets
+     */
+    record Contents(Map<String, Map<String, Customer>> entries, List<Set<ExchangeRate>> rateSets) {
+    }
+
+    /**
+     * Write a snapshot to a temporary file and move it in place, so that a failed write keeps the previous snapshot.
+     */
+    static void write(final Path path, final Contents contents) throws IOException {
+        final Path tempFile = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt(contents.rateSets().size());
+            for (Set<ExchangeRate> rateSet : contents.rateSets()) {
+                out.writeInt(rateSet.size());
+                for (ExchangeRate exchangeRate : rateSet) {
+                    writeString(out, exchangeRate.getCurrency().getCurrencyCode());
+                    writeDecimal(out, exchangeRate.getRate());
+                    writeDate(out, exchangeRate.getEffectiveDate());
+                }
+            }
+
+            out.writeInt(contents.entries().size());
+            for (Map.Entry<String, Map<String, Customer>> entry : contents.entries().entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (Customer customer : entry.getValue().values()) {
+                    writeCustomer(out, customer);
+                }
+            }
+        }
+        Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read a snapshot by memory-mapping the file.
+     *
+     * @throws IOException If the file cannot be read, is not a snapshot, has another version or is corrupt.
+     */
+    static Contents read(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot file is too large: " + channel.size() + " bytes");
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a snapshot file");
+            }
+            final int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException(String.format("Unsupported snapshot version %d, expected %d", version, VERSION));
+            }
+
+            try {
+                final int rateSetCount = readCount(buffer, RATE_SET_BYTES);
+                final List<Set<ExchangeRate>> rateSets = new ArrayList<>(rateSetCount);
+                for (int i = 0; i < rateSetCount; i++) {
+                    final int rateCount = readCount(buffer, RATE_BYTES);
+                    final Set<ExchangeRate> rateSet = new HashSet<>();
+                    for (int j = 0; j < rateCount; j++) {
+                        rateSet.add(new ExchangeRate(Currency.getInstance(readRequiredString(buffer)),
+                                readRequiredDecimal(buffer), readDate(buffer)));
+                    }
+                    rateSets.add(rateSet);
+                }
+
+                final int entryCount = readCount(buffer, ENTRY_BYTES);
+                final Map<String, Map<String, Customer>> entries = new LinkedHashMap<>();
+                for (int i = 0; i < entryCount; i++) {
+                    final String key = readRequiredString(buffer);
+                    final int customerCount = readCount(buffer, CUSTOMER_BYTES);
+                    final Map<String, Customer> customers = new LinkedHashMap<>();
+                    for (int j = 0; j < customerCount; j++) {
+                        final Customer customer = readCustomer(buffer);
+                        customers.put(customer.getVatNumber(), customer);
+                    }
+                    entries.put(key, customers);
+                }
+                return new Contents(entries, rateSets);
+            } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException
+                     | DateTimeException e) {
+                throw new IOException("Snapshot file is corrupt", e);
+            }
+        }
+    }
+
+    private static void writeCustomer(final DataOutputStream out, final Customer customer) throws IOException {
+        writeString(out, customer.getName());
+        writeString(out, customer.getVatNumber());
+        out.writeInt(customer.getDocuments().size());
+        for (Document document : customer.getDocuments()) {
+            writeString(out, document.getDocumentNumber());
+            out.writeByte(document.getDocumentType().ordinal());
+            writeString(out, document.getParentDocumentNumber());
+            writeString(out, document.getCurrency() == null ? null : document.getCurrency().getCurrencyCode());
+            writeDecimal(out, document.getTotal());
+            writeDate(out, document.getDate());
+        }
+
+        final DocumentTotals documentTotals = customer.getDocumentTotals();
+        out.writeBoolean(documentTotals != null);
+        if (documentTotals != null) {
+            out.writeInt(documentTotals.getCurrencies().size());
+            for (Currency currency : documentTotals.getCurrencies()) {
+                writeString(out, currency.getCurrencyCode());
+                for (DocumentType documentType : DOCUMENT_TYPES) {
+                    writeDecimal(out, documentTotals.getTotal(currency, documentType));
+                }
+            }
+        }
+    }
+
+    private static Customer readCustomer(final ByteBuffer buffer) {
+        final Customer customer = new Customer(readRequiredString(buffer), readRequiredString(buffer));
+        final int documentCount = readCount(buffer, DOCUMENT_BYTES);
+        for (int i = 0; i < documentCount; i++) {
+            final String documentNumber = readRequiredString(buffer);
+            final DocumentType documentType = DOCUMENT_TYPES[buffer.get()];
+            final String parentDocumentNumber = readString(buffer);
+            final String currency = readString(buffer);
+            customer.addDocument(Document.builder(documentNumber, documentType)
+                    .parentDocumentNumber(parentDocumentNumber)
+                    .currency(currency == null ? null : Currency.getInstance(currency))
+                    .total(readDecimal(buffer))
+                    .date(readDate(buffer))
+                    .build());
+        }
+
+        if (buffer.get() != 0) {
+            final int currencyCount = readCount(buffer, CURRENCY_TOTALS_BYTES);
+            for (int i = 0; i < currencyCount; i++) {
+                final Currency currency = Currency.getInstance(readRequiredString(buffer));
+                for (DocumentType documentType : DOCUMENT_TYPES) {
+                    customer.addDocumentTotal(currency, documentType, readDecimal(buffer));
+                }
+            }
+        }
+        return customer;
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        checkLength(length, buffer);
+        final String value = StandardCharsets.UTF_8.decode(buffer.slice(buffer.position(), length)).toString();
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static String readRequiredString(final ByteBuffer buffer) {
+        final String value = readString(buffer);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing required value");
+        }
+        return value;
+    }
+
+    /**
+     * Read the count of the items that follow.
+     *
+     * @param itemBytes Smallest size of an item
+     * @throws IllegalArgumentException If the count is negative or the items cannot fit in the rest of the file.
+     */
+    private static int readCount(final ByteBuffer buffer, final int itemBytes) {
+        final int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / itemBytes) {
+            throw new IllegalArgumentException("Invalid count: " + count);
+        }
+        return count;
+    }
+
+    /**
+     * @throws IllegalArgumentException If the length is negative or exceeds the rest of the file.
+     */
+    private static void checkLength(final int length, final ByteBuffer buffer) {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid length: " + length);
+        }
+    }
+
+    private static void writeDate(final DataOutputStream out, final LocalDate value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.toEpochDay());
+        }
+    }
+
+    private static LocalDate readDate(final ByteBuffer buffer) {
+        return buffer.get() != 0 ? LocalDate.ofEpochDay(buffer.getLong()) : null;
+    }
+
+    private static void writeDecimal(final DataOutputStream out, final BigDecimal value) throws IOException {
+        if (value == null) {
+            out.writeInt(0);
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] unscaled = value.unscaledValue().toByteArray();
+        out.writeInt(value.scale());
+        out.writeInt(unscaled.length);
+        out.write(unscaled);
+    }
+
+    private static BigDecimal readDecimal(final ByteBuffer buffer) {
+        final int scale = buffer.getInt();
+        final int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        checkLength(length, buffer);
+        final byte[] unscaled = new byte[length];
+        buffer.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static BigDecimal readRequiredDecimal(final ByteBuffer buffer) {
+        final BigDecimal value = readDecimal(buffer);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing required value");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.calculator.startup;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exits the application as soon as it is ready to serve requests, so that a training run records the classes
+ * loaded during startup, e.g. into the AppCDS archive of the {@code cds} Maven profile.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "calculator.startup.exit-when-ready", havingValue = "true")
+public class TrainingRunExitListener {
+
+    @EventListener
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        log.info("Training run started in {} ms, exiting", event.getTimeTaken().toMillis());
+        System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+}
@@ -0,0 +1,349 @@
+package com.example.calculator.store;
+
+import com.example.calculator.model.Document;
+import com.example.calculator.model.DocumentCursor;
+import com.example.calculator.model.DocumentType;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores parsed documents outside of the Java heap, in direct byte buffers, so that a large documents file does
+ * not create an object graph the garbage collector has to trace. The heap only holds the buffers, a few primitive
+ * arrays and the currency dictionary.
+ * <p>
+ * Each document is a fixed-width record, documents of the same customer are chained from record to record.
+ * Document numbers are stored as UTF-8 bytes in separate string buffers, currencies as indexes into a dictionary,
+ * totals as unscaled longs with their scale, and dates as epoch days. Totals that do not fit are kept on the heap.
+ * <p>
+ * A store is filled by one thread while parsing and can then be read by several threads. It is owned by the
+ * request that parsed it, which must {@link #close() close} it when its customers are no longer used.
+ */
+public class OffHeapDocumentStore implements AutoCloseable {
+
+    private static final int CUSTOMER_OFFSET = 0;
+    private static final int NEXT_OFFSET = 4;
+    private static final int TOTAL_OFFSET = 8;
+    private static final int NUMBER_OFFSET = 16;
+    private static final int PARENT_OFFSET = 24;
+    private static final int CURRENCY_OFFSET = 32;
+    private static final int SCALE_OFFSET = 34;
+    private static final int TYPE_OFFSET = 36;
+    private static final int DATE_OFFSET = 40;
+    static final int RECORD_BYTES = 44;
+
+    private static final int RECORDS_PER_CHUNK = 1 << 15;
+    private static final int STRING_CHUNK_BYTES = 1 << 20;
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+    private static final long NO_STRING = -1;
+    private static final int NO_RECORD = -1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    /**
+     * Scale of totals stored on the heap, the unscaled value is then the index of the total.
+     */
+    private static final short HEAP_TOTAL_SCALE = Short.MIN_VALUE;
+
+    private static final DocumentType[] DOCUMENT_TYPES = DocumentType.values();
+
+    private final List<ByteBuffer> recordChunks = new ArrayList<>();
+    private final List<ByteBuffer> stringChunks = new ArrayList<>();
+    private final List<BigDecimal> heapTotals = new ArrayList<>();
+    private final List<Currency> currencies = new ArrayList<>();
+    private final Map<Currency, Short> currencyIndexes = new HashMap<>();
+    private int size;
+
+    private int[] firstRecords = new int[16];
+    private int[] lastRecords = new int[16];
+    private int[] documentCounts = new int[16];
+    private int customerCount;
+
+    private boolean closed;
+
+    /**
+     * Allocate a new customer, whose documents are then added with {@link #link(int)}.
+     *
+     * @return The customer id in this store
+     */
+    public int addCustomer() {
+        checkOpen();
+        if (customerCount == firstRecords.length) {
+            firstRecords = Arrays.copyOf(firstRecords, customerCount * 2);
+            lastRecords = Arrays.copyOf(lastRecords, customerCount * 2);
+            documentCounts = Arrays.copyOf(documentCounts, customerCount * 2);
+        }
+        firstRecords[customerCount] = NO_RECORD;
+        lastRecords[customerCount] = NO_RECORD;
+        return customerCount++;
+    }
+
+    /**
+     * Store a document of a customer. The document is not one of the customer's documents until it is
+     * {@link #link(int) linked}, so that rejected duplicates can be stored as well.
+     *
+     * @param customerId The customer id
+     * @param document   The document
+     * @return The record index of the document, records are numbered in the order they are added
+     * @throws IllegalArgumentException If the document number is longer than 65535 UTF-8 bytes.
+     */
+    public int add(final int customerId, final Document document) {
+        checkOpen();
+        if (size % RECORDS_PER_CHUNK == 0) {
+            recordChunks.add(ByteBuffer.allocateDirect(RECORDS_PER_CHUNK * RECORD_BYTES));
+        }
+        final ByteBuffer chunk = recordChunks.get(size / RECORDS_PER_CHUNK);
+        final int offset = (size % RECORDS_PER_CHUNK) * RECORD_BYTES;
+
+        chunk.putInt(offset + CUSTOMER_OFFSET, customerId);
+        chunk.putInt(offset + NEXT_OFFSET, NO_RECORD);
+        chunk.putLong(offset + NUMBER_OFFSET, putString(document.getDocumentNumber()));
+        chunk.putLong(offset + PARENT_OFFSET, putString(document.getParentDocumentNumber()));
+        chunk.putShort(offset + CURRENCY_OFFSET, currencyIndex(document.getCurrency()));
+        chunk.put(offset + TYPE_OFFSET, (byte) document.getDocumentType().ordinal());
+        chunk.putInt(offset + DATE_OFFSET,
+                document.getDate() == null ? NO_DATE : Math.toIntExact(document.getDate().toEpochDay()));
+
+        final BigDecimal total = document.getTotal();
+        if (total != null && total.unscaledValue().bitLength() < Long.SIZE
+                && total.scale() > HEAP_TOTAL_SCALE && total.scale() <= Short.MAX_VALUE) {
+            chunk.putLong(offset + TOTAL_OFFSET, total.unscaledValue().longValue());
+            chunk.putShort(offset + SCALE_OFFSET, (short) total.scale());
+        } else {
+            chunk.putLong(offset + TOTAL_OFFSET, heapTotals.size());
+            chunk.putShort(offset + SCALE_OFFSET, HEAP_TOTAL_SCALE);
+            heapTotals.add(total);
+        }
+        return size++;
+    }
+
+    /**
+     * Add a stored document to the documents of its customer.
+     *
+     * @param record The record index of the document
+     */
+    public void link(final int record) {
+        checkOpen();
+        final int customerId = getCustomerId(record);
+        if (firstRecords[customerId] == NO_RECORD) {
+            firstRecords[customerId] = record;
+        } else {
+            final int last = lastRecords[customerId];
+            recordChunk(last).putInt(recordOffset(last) + NEXT_OFFSET, record);
+        }
+        lastRecords[customerId] = record;
+        documentCounts[customerId]++;
+    }
+
+    /**
+     * @return The number of stored documents, linked or not.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getCustomerId(final int record) {
+        checkOpen();
+        return recordChunk(record).getInt(recordOffset(record) + CUSTOMER_OFFSET);
+    }
+
+    public String getDocumentNumber(final int record) {
+        checkOpen();
+        return getString(recordChunk(record).getLong(recordOffset(record) + NUMBER_OFFSET));
+    }
+
+    /**
+     * Read a stored document back into a {@link Document}.
+     *
+     * @param record The record index of the document
+     * @return A new document equal to the stored one
+     */
+    public Document get(final int record) {
+        final RecordCursor cursor = new RecordCursor(NO_RECORD);
+        cursor.record = record;
+        return Document.builder(cursor.getDocumentNumber(), cursor.getDocumentType())
+                .parentDocumentNumber(cursor.getParentDocumentNumber())
+                .currency(cursor.getCurrency())
+                .total(cursor.getTotal())
+                .date(cursor.getDate())
+                .build();
+    }
+
+    /**
+     * @return The number of linked documents of a customer.
+     */
+    public int getDocumentCount(final int customerId) {
+        return documentCounts[customerId];
+    }
+
+    /**
+     * @return A cursor over the linked documents of a customer, in the order they were linked.
+     */
+    public DocumentCursor cursor(final int customerId) {
+        checkOpen();
+        return new RecordCursor(firstRecords[customerId]);
+    }
+
+    /**
+     * @return Native memory used by the store in bytes.
+     */
+    public long getOffHeapBytes() {
+        return (long) recordChunks.size() * RECORDS_PER_CHUNK * RECORD_BYTES
+                + (long) stringChunks.size() * STRING_CHUNK_BYTES;
+    }
+
+    /**
+     * Release the buffers. Direct buffers are freed once they are unreachable, so the store drops all references
+     * to them; reading from a closed store throws {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        recordChunks.clear();
+        stringChunks.clear();
+        heapTotals.clear();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Document store is closed");
+        }
+    }
+
+    private ByteBuffer recordChunk(final int record) {
+        return recordChunks.get(record / RECORDS_PER_CHUNK);
+    }
+
+    private static int recordOffset(final int record) {
+        return (record % RECORDS_PER_CHUNK) * RECORD_BYTES;
+    }
+
+    private short currencyIndex(final Currency currency) {
+        if (currency == null) {
+            return -1;
+        }
+        Short index = currencyIndexes.get(currency);
+        if (index == null) {
+            index = (short) currencies.size();
+            currencies.add(currency);
+            currencyIndexes.put(currency, index);
+        }
+        return index;
+    }
+
+    /**
+     * Store a string as its UTF-8 length and bytes, strings do not span chunks.
+     *
+     * @return The position of the string, chunk index in the high and offset in the low 32 bits, or
+     * {@link #NO_STRING} for null.
+     */
+    private long putString(final String value) {
+        if (value == null) {
+            return NO_STRING;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("Document number is too long: " + value.length() + " characters");
+        }
+        ByteBuffer chunk = stringChunks.isEmpty() ? null : stringChunks.get(stringChunks.size() - 1);
+        if (chunk == null || chunk.remaining() < Short.BYTES + bytes.length) {
+            chunk = ByteBuffer.allocateDirect(STRING_CHUNK_BYTES);
+            stringChunks.add(chunk);
+        }
+        final long position = (long) (stringChunks.size() - 1) << 32 | chunk.position();
+        chunk.putShort((short) bytes.length);
+        chunk.put(bytes);
+        return position;
+    }
+
+    private String getString(final long position) {
+        if (position == NO_STRING) {
+            return null;
+        }
+        final ByteBuffer chunk = stringChunks.get((int) (position >>> 32));
+        final int offset = (int) position;
+        final byte[] bytes = new byte[Short.toUnsignedInt(chunk.getShort(offset))];
+        chunk.get(offset + Short.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Cursor following the chain of records of a customer. Strings and totals are only decoded when read.
+     */
+    private final class RecordCursor implements DocumentCursor {
+
+        private int nextRecord;
+        private int record = NO_RECORD;
+        private ByteBuffer chunk;
+        private int offset;
+
+        RecordCursor(final int firstRecord) {
+            this.nextRecord = firstRecord;
+        }
+
+        @Override
+        public boolean next() {
+            if (nextRecord == NO_RECORD) {
+                return false;
+            }
+            checkOpen();
+            record = nextRecord;
+            chunk = recordChunk(record);
+            offset = recordOffset(record);
+            nextRecord = chunk.getInt(offset + NEXT_OFFSET);
+            return true;
+        }
+
+        @Override
+        public String getDocumentNumber() {
+            return getString(chunk().getLong(offset + NUMBER_OFFSET));
+        }
+
+        @Override
+        public DocumentType getDocumentType() {
+            return DOCUMENT_TYPES[chunk().get(offset + TYPE_OFFSET)];
+        }
+
+        @Override
+        public String getParentDocumentNumber() {
+            return getString(chunk().getLong(offset + PARENT_OFFSET));
+        }
+
+        @Override
+        public Currency getCurrency() {
+            final short index = chunk().getShort(offset + CURRENCY_OFFSET);
+            return index < 0 ? null : currencies.get(index);
+        }
+
+        @Override
+        public BigDecimal getTotal() {
+            final ByteBuffer buffer = chunk();
+            final long unscaled = buffer.getLong(offset + TOTAL_OFFSET);
+            final short scale = buffer.getShort(offset + SCALE_OFFSET);
+            return scale == HEAP_TOTAL_SCALE
+                    ? heapTotals.get((int) unscaled)
+                    : BigDecimal.valueOf(unscaled, scale);
+        }
+
+        @Override
+        public LocalDate getDate() {
+            final int epochDay = chunk().getInt(offset + DATE_OFFSET);
+            return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+        }
+
+        private ByteBuffer chunk() {
+            checkOpen();
+            if (chunk == null) {
+                chunk = recordChunk(record);
+                offset = recordOffset(record);
+            }
+            return chunk;
+        }
+    }
+}
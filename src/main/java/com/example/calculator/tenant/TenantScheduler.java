@@ -0,0 +1,325 @@
+package com.example.calculator.tenant;
+
+import com.example.calculator.CalculatorProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admits the calculations of the tenants sharing a deployment, so that the batch uploads of one tenant do not
+ * starve the interactive requests of another.
+ * <p>
+ * Each tenant has a pool with a bound of its running calculations and of its waiting requests, beyond which its
+ * requests are rejected. A global bound limits the calculations running across all tenants, and free slots go to
+ * the waiting tenants by start-time fair queuing: each request is tagged with the virtual time at which it may start,
+ * the later of the virtual clock and the finish tag of the previous request of its tenant, and finishes after its
+ * cost divided by the weight of its tenant. The waiting request with the smallest start tag is admitted first, so
+ * tenants get slots in proportion to their weights, and a tenant returning after being idle gets no credit for it.
+ * Requests cost one unit plus one per {@link #COST_UNIT_BYTES} of upload.
+ * <p>
+ * Requests wait on their own thread, the scheduler does not run the calculations.
+ */
+@Service
+public class TenantScheduler {
+
+    /**
+     * Header naming the tenant of a request, tenants without a pool use the pool of the default tenant.
+     */
+    public static final String TENANT_HEADER = "X-Tenant-Id";
+    /**
+     * Header with the API key of a request, which identifies its tenant.
+     */
+    public static final String API_KEY_HEADER = "X-Api-Key";
+    public static final String DEFAULT_TENANT = "default";
+
+    static final long COST_UNIT_BYTES = 1 << 20;
+    static final String QUEUE_WAIT_METRIC = "calculator.tenant.queue.wait";
+    static final String LATENCY_METRIC = "calculator.tenant.latency";
+    static final String QUEUE_SIZE_METRIC = "calculator.tenant.queue.size";
+    static final String ACTIVE_METRIC = "calculator.tenant.active";
+    static final String REJECTED_METRIC = "calculator.tenant.rejected";
+
+    private final int concurrency;
+    private final long queueTimeoutNanos;
+    private final Map<String, String> tenantsByApiKey;
+    private final Map<String, TenantQueue> queues = new LinkedHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private int active;
+    /**
+     * Start tag of the last admitted request.
+     */
+    private double virtualClock;
+
+    public TenantScheduler(CalculatorProperties calculatorProperties, MeterRegistry meterRegistry) {
+        final CalculatorProperties.Tenants tenants = calculatorProperties.getTenants();
+        this.concurrency = tenants.getConcurrency();
+        this.queueTimeoutNanos = tenants.getQueueTimeout().toNanos();
+        this.tenantsByApiKey = Map.copyOf(tenants.getApiKeys());
+        if (concurrency <= 0) {
+            return;
+        }
+        tenants.getPools().forEach((tenant, pool) -> queues.put(tenant, new TenantQueue(tenant, pool, meterRegistry)));
+        queues.computeIfAbsent(DEFAULT_TENANT,
+                tenant -> new TenantQueue(tenant, new CalculatorProperties.Tenants.Pool(), meterRegistry));
+    }
+
+    public boolean isEnabled() {
+        return concurrency > 0;
+    }
+
+    /**
+     * Identify the tenant of a request.
+     *
+     * @param apiKey The API key header (optional)
+     * @param tenant The tenant header (optional)
+     * @return The tenant of the API key if given, otherwise the tenant of the header if it has a pool, otherwise
+     * the default tenant.
+     * @throws ResponseStatusException If the API key is unknown.
+     */
+    public String resolveTenant(final String apiKey, final String tenant) {
+        if (StringUtils.isNotBlank(apiKey)) {
+            final String apiKeyTenant = tenantsByApiKey.get(apiKey);
+            if (apiKeyTenant == null) {
+                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unknown API key");
+            }
+            return apiKeyTenant;
+        }
+        return tenant != null && queues.containsKey(tenant) ? tenant : DEFAULT_TENANT;
+    }
+
+    /**
+     * Wait until a calculation of the tenant may start.
+     *
+     * @param tenant      The tenant, see {@link #resolveTenant}
+     * @param uploadBytes Size of the upload, which the cost of the calculation grows with
+     * @return The admission, which must be released once the calculation completed.
+     * @throws ResponseStatusException 429 if the queue of the tenant is full, 503 if the request waited for
+     *                                 longer than the queue timeout or was interrupted.
+     */
+    public Admission admit(final String tenant, final long uploadBytes) {
+        final TenantQueue queue = queues.getOrDefault(tenant, queues.get(DEFAULT_TENANT));
+        final long startNanos = System.nanoTime();
+        final Waiter waiter = new Waiter(queue, 1 + Math.max(0, uploadBytes) / COST_UNIT_BYTES,
+                lock.newCondition(), startNanos);
+        lock.lock();
+        try {
+            queue.enqueue(waiter);
+            dispatch();
+            if (!waiter.admitted && queue.waiting.size() > queue.queueCapacity) {
+                queue.dequeue(waiter);
+                queue.rejected.increment();
+                throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                        String.format("Too many requests of tenant [%s] are waiting", queue.tenant));
+            }
+            long remainingNanos = queueTimeoutNanos;
+            while (!waiter.admitted) {
+                if (remainingNanos <= 0) {
+                    queue.dequeue(waiter);
+                    queue.timedOut.increment();
+                    throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                            String.format("No calculation slot for tenant [%s] within %d ms", queue.tenant,
+                                    TimeUnit.NANOSECONDS.toMillis(queueTimeoutNanos)));
+                }
+                try {
+                    remainingNanos = waiter.condition.awaitNanos(remainingNanos);
+                } catch (InterruptedException e) {
+                    if (waiter.admitted) {
+                        // Admitted while being interrupted, hand the slot to the next request
+                        queue.active--;
+                        active--;
+                        dispatch();
+                    } else {
+                        queue.dequeue(waiter);
+                    }
+                    Thread.currentThread().interrupt();
+                    throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while queued");
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        queue.queueWait.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        return new Admission(waiter);
+    }
+
+    /**
+     * Admit waiting requests while there are free slots, the smallest start tag among the tenants below their
+     * concurrency first. Called with the lock held.
+     */
+    private void dispatch() {
+        while (active < concurrency) {
+            TenantQueue next = null;
+            double nextStart = 0;
+            for (TenantQueue queue : queues.values()) {
+                if (queue.waiting.isEmpty() || queue.active >= queue.concurrency) {
+                    continue;
+                }
+                final double start = Math.max(virtualClock, queue.finishTag);
+                if (next == null || start < nextStart) {
+                    next = queue;
+                    nextStart = start;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            final Waiter waiter = next.waiting.peek();
+            next.dequeue(waiter);
+            next.active++;
+            active++;
+            virtualClock = nextStart;
+            next.finishTag = nextStart + (double) waiter.cost / next.weight;
+            waiter.admitted = true;
+            waiter.condition.signal();
+        }
+    }
+
+    private void release(final Waiter waiter) {
+        lock.lock();
+        try {
+            waiter.queue.active--;
+            active--;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+        waiter.queue.latency.record(System.nanoTime() - waiter.startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * A calculation admitted to run.
+     */
+    public final class Admission {
+
+        private final Waiter waiter;
+        private boolean released;
+
+        private Admission(final Waiter waiter) {
+            this.waiter = waiter;
+        }
+
+        public String getTenant() {
+            return waiter.queue.tenant;
+        }
+
+        /**
+         * Free the slot of the calculation, releasing more than once has no effect.
+         */
+        public void release() {
+            if (!released) {
+                released = true;
+                TenantScheduler.this.release(waiter);
+            }
+        }
+    }
+
+    /**
+     * A request waiting for a slot, signalled on its own condition once admitted.
+     */
+    private static final class Waiter {
+
+        private final TenantQueue queue;
+        private final long cost;
+        private final Condition condition;
+        private final long startNanos;
+        private boolean admitted;
+
+        Waiter(final TenantQueue queue, final long cost, final Condition condition, final long startNanos) {
+            this.queue = queue;
+            this.cost = cost;
+            this.condition = condition;
+            this.startNanos = startNanos;
+        }
+    }
+
+    /**
+     * The pool of a tenant: its waiting requests in arrival order, its running calculations and its meters.
+     */
+    private static final class TenantQueue {
+
+        private final String tenant;
+        private final int concurrency;
+        private final int queueCapacity;
+        private final int weight;
+        private final ArrayDeque<Waiter> waiting = new ArrayDeque<>();
+        /**
+         * Numbers of waiting requests and of running calculations, written with the lock held and volatile for
+         * the gauges, which read them without it.
+         */
+        private volatile int waitingCount;
+        private volatile int active;
+        /**
+         * Finish tag of the last admitted request of the tenant.
+         */
+        private double finishTag;
+
+        private final Timer queueWait;
+        private final Timer latency;
+        private final Counter rejected;
+        private final Counter timedOut;
+
+        TenantQueue(final String tenant, final CalculatorProperties.Tenants.Pool pool,
+                    final MeterRegistry meterRegistry) {
+            this.tenant = tenant;
+            this.concurrency = Math.max(1, pool.getConcurrency());
+            this.queueCapacity = Math.max(0, pool.getQueueCapacity());
+            this.weight = Math.max(1, pool.getWeight());
+            this.queueWait = Timer.builder(QUEUE_WAIT_METRIC)
+                    .description("Time a calculation waited for a slot")
+                    .tag("tenant", tenant)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+            this.latency = Timer.builder(LATENCY_METRIC)
+                    .description("Time from queuing a calculation until it completed")
+                    .tag("tenant", tenant)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+            this.rejected = Counter.builder(REJECTED_METRIC)
+                    .description("Requests rejected for a full queue or a queue timeout")
+                    .tag("tenant", tenant)
+                    .tag("reason", "queue-full")
+                    .register(meterRegistry);
+            this.timedOut = Counter.builder(REJECTED_METRIC)
+                    .description("Requests rejected for a full queue or a queue timeout")
+                    .tag("tenant", tenant)
+                    .tag("reason", "timeout")
+                    .register(meterRegistry);
+            Gauge.builder(QUEUE_SIZE_METRIC, this, queue -> queue.waitingCount)
+                    .description("Requests waiting for a slot")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry);
+            Gauge.builder(ACTIVE_METRIC, this, queue -> queue.active)
+                    .description("Calculations running")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry);
+        }
+
+        /**
+         * Queue a request. Called with the lock held.
+         */
+        void enqueue(final Waiter waiter) {
+            waiting.add(waiter);
+            waitingCount = waiting.size();
+        }
+
+        /**
+         * Remove a request that was admitted, rejected or gave up. Called with the lock held.
+         */
+        void dequeue(final Waiter waiter) {
+            waiting.remove(waiter);
+            waitingCount = waiting.size();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.calculator.timing;
+
+/**
+ * Timed stages of a request to the calculator API.
+ */
+public enum Stage {
+    /**
+     * Receiving the request and resolving the multipart upload, until the delegate is invoked.
+     */
+    UPLOAD("upload"),
+    /**
+     * Parsing and validating the exchange rates.
+     */
+    EXCHANGE_RATES("rates"),
+    /**
+     * Waiting for a calculation slot of the tenant, with tenant scheduling enabled.
+     */
+    QUEUE("queue"),
+    /**
+     * Parsing and validating the documents file.
+     */
+    PARSE("parse"),
+    /**
+     * Calculating the customer balances.
+     */
+    CALCULATE("calculate");
+
+    private final String metricName;
+
+    Stage(String metricName) {
+        this.metricName = metricName;
+    }
+
+    /**
+     * @return Name of the stage in the Server-Timing header and in spans.
+     */
+    public String getMetricName() {
+        return metricName;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.calculator.timing;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Emits the stages recorded by a {@link StageTimer} as a span tree: a server span for the request with a child
+ * span for each started stage. Spans are created after the request completed, with the recorded timestamps.
+ */
+class StageSpanExporter {
+
+    static final String INSTRUMENTATION_SCOPE = "com.example.calculator";
+
+    private final Tracer tracer;
+
+    StageSpanExporter(final OpenTelemetry openTelemetry) {
+        this.tracer = openTelemetry.getTracer(INSTRUMENTATION_SCOPE);
+    }
+
+    /**
+     * @param timer      Timer of the completed request
+     * @param spanName   Name of the request span
+     * @param httpStatus Response status
+     */
+    void export(final StageTimer timer, final String spanName, final int httpStatus) {
+        final Span requestSpan = tracer.spanBuilder(spanName)
+                .setSpanKind(SpanKind.SERVER)
+                .setStartTimestamp(timer.getStartEpochNanos(), TimeUnit.NANOSECONDS)
+                .setAttribute("http.status_code", httpStatus)
+                .startSpan();
+        if (httpStatus >= 500) {
+            requestSpan.setStatus(StatusCode.ERROR);
+        }
+
+        final Context parent = Context.current().with(requestSpan);
+        for (Stage stage : Stage.values()) {
+            if (timer.isStarted(stage)) {
+                tracer.spanBuilder(stage.getMetricName())
+                        .setParent(parent)
+                        .setStartTimestamp(timer.getStartEpochNanos(stage), TimeUnit.NANOSECONDS)
+                        .startSpan()
+                        .end(timer.getEndEpochNanos(stage), TimeUnit.NANOSECONDS);
+            }
+        }
+        requestSpan.end(timer.getNowEpochNanos(), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.calculator.timing;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Locale;
+
+/**
+ * Records the duration of the {@link Stage stages} of one request. Recording only stores {@link System#nanoTime()}
+ * values in preallocated arrays, so it can stay enabled for every request.
+ * <p>
+ * A timer is not thread safe, it is owned by the thread processing the request.
+ */
+public class StageTimer {
+
+    /**
+     * Request attribute holding the timer of the current request.
+     */
+    public static final String REQUEST_ATTRIBUTE = StageTimer.class.getName();
+
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+
+    private final long startNanos;
+    private final long startEpochNanos;
+    private final long[] stageStartNanos = new long[STAGES.length];
+    private final long[] stageEndNanos = new long[STAGES.length];
+    private int startedStages;
+    private int stoppedStages;
+
+    public StageTimer() {
+        this.startNanos = System.nanoTime();
+        this.startEpochNanos = System.currentTimeMillis() * 1_000_000L;
+    }
+
+    /**
+     * Get the timer of the current request, or a new timer if the request is not timed, e.g. when the delegate
+     * is called outside of a web request.
+     */
+    public static StageTimer current() {
+        final RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null
+                && attributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof StageTimer timer) {
+            return timer;
+        }
+        return new StageTimer();
+    }
+
+    public void start(final Stage stage) {
+        stageStartNanos[stage.ordinal()] = System.nanoTime();
+        startedStages |= 1 << stage.ordinal();
+    }
+
+    /**
+     * Stop a stage. Stopping a stage that was not started is ignored.
+     */
+    public void stop(final Stage stage) {
+        if (isStarted(stage)) {
+            stageEndNanos[stage.ordinal()] = System.nanoTime();
+            stoppedStages |= 1 << stage.ordinal();
+        }
+    }
+
+    public boolean isStarted(final Stage stage) {
+        return (startedStages & 1 << stage.ordinal()) != 0;
+    }
+
+    public boolean isStopped(final Stage stage) {
+        return (stoppedStages & 1 << stage.ordinal()) != 0;
+    }
+
+    /**
+     * @return Duration of the stage in nanoseconds, up to now if it is still running, or 0 if it was not started.
+     */
+    public long getDurationNanos(final Stage stage) {
+        if (!isStarted(stage)) {
+            return 0;
+        }
+        return getEndNanos(stage) - stageStartNanos[stage.ordinal()];
+    }
+
+    /**
+     * @return Time since the timer was created in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * @return Wall clock start time of the stage in nanoseconds since the epoch.
+     */
+    long getStartEpochNanos(final Stage stage) {
+        return startEpochNanos + stageStartNanos[stage.ordinal()] - startNanos;
+    }
+
+    /**
+     * @return Wall clock end time of the stage in nanoseconds since the epoch, now if it is still running.
+     */
+    long getEndEpochNanos(final Stage stage) {
+        return startEpochNanos + getEndNanos(stage) - startNanos;
+    }
+
+    /**
+     * @return Wall clock creation time of the timer in nanoseconds since the epoch.
+     */
+    long getStartEpochNanos() {
+        return startEpochNanos;
+    }
+
+    /**
+     * @return Wall clock time now in nanoseconds since the epoch, consistent with the stage times.
+     */
+    long getNowEpochNanos() {
+        return startEpochNanos + getTotalNanos();
+    }
+
+    /**
+     * Format the started stages and the total time as a Server-Timing header value, durations in milliseconds.
+     * For example: {@code upload;dur=1.204, rates;dur=0.031, parse;dur=5.870, calculate;dur=0.412, total;dur=7.622}
+     */
+    public String toServerTiming() {
+        final StringBuilder builder = new StringBuilder(128);
+        for (Stage stage : STAGES) {
+            if (isStarted(stage)) {
+                appendMetric(builder, stage.getMetricName(), getDurationNanos(stage));
+                builder.append(", ");
+            }
+        }
+        appendMetric(builder, "total", getTotalNanos());
+        return builder.toString();
+    }
+
+    private long getEndNanos(final Stage stage) {
+        return isStopped(stage) ? stageEndNanos[stage.ordinal()] : System.nanoTime();
+    }
+
+    private static void appendMetric(final StringBuilder builder, final String name, final long nanos) {
+        builder.append(name)
+                .append(";dur=")
+                .append(String.format(Locale.ROOT, "%.3f", nanos / NANOS_PER_MILLI));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.calculator.timing;
+
+import io.opentelemetry.api.OpenTelemetry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Starts a {@link StageTimer} for each API request, before the multipart upload is resolved, and makes it
+ * available as a request attribute. When an {@link OpenTelemetry} bean is configured, the recorded stages are
+ * emitted as spans once the request completes: when the filter chain returns, or for asynchronous requests such as
+ * event streams, when their async context completes.
+ */
+@Component
+public class StageTimingFilter extends OncePerRequestFilter {
+
+    private static final String API_PATH_PREFIX = "/api/";
+
+    private final StageSpanExporter spanExporter;
+
+    public StageTimingFilter(ObjectProvider<OpenTelemetry> openTelemetry) {
+        final OpenTelemetry otel = openTelemetry.getIfAvailable();
+        this.spanExporter = otel != null ? new StageSpanExporter(otel) : null;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !getPath(request).startsWith(API_PATH_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        final StageTimer timer = new StageTimer();
+        timer.start(Stage.UPLOAD);
+        request.setAttribute(StageTimer.REQUEST_ATTRIBUTE, timer);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (spanExporter != null) {
+                final String name = request.getMethod() + " " + getPath(request);
+                if (request.isAsyncStarted()) {
+                    request.getAsyncContext().addListener(new ExportingAsyncListener(timer, name, response));
+                } else {
+                    spanExporter.export(timer, name, response.getStatus());
+                }
+            }
+        }
+    }
+
+    /**
+     * Exports the spans of an asynchronous request once it completed, including after a timeout or an error.
+     */
+    private final class ExportingAsyncListener implements AsyncListener {
+
+        private final StageTimer timer;
+        private final String name;
+        private final HttpServletResponse response;
+
+        ExportingAsyncListener(final StageTimer timer, final String name, final HttpServletResponse response) {
+            this.timer = timer;
+            this.name = name;
+            this.response = response;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            spanExporter.export(timer, name, response.getStatus());
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // Completed afterwards
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // Completed afterwards
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Not restarted
+        }
+    }
+
+    private static String getPath(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+}
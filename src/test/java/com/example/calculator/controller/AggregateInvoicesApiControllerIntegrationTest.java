@@ -0,0 +1,85 @@
+package com.example.calculator.controller;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static com.example.calculator.TestConstants.*;
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class AggregateInvoicesApiControllerIntegrationTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Test
+    public void successByDocumentType() throws Exception {
+        MockMultipartFile multipartFile = new MockMultipartFile("file",
+                "data.csv",
+                "text/csv",
+                this.getClass().getResourceAsStream("/data.csv"));
+
+        mvc.perform(multipart("/api/v1/aggregateInvoices")
+                        .file(multipartFile)
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878")
+                        .param("customerVat", VENDOR_1_VAT)
+                        .param("groupBy", "CUSTOMER", "DOCUMENT_TYPE")
+                        .param("measures", "SUM", "COUNT"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.currency", is("EUR")))
+                .andExpect(jsonPath("$.groups", hasSize(3)))
+                .andExpect(jsonPath("$.groups[*].customerName", everyItem(is(VENDOR_1_NAME))))
+                .andExpect(jsonPath("$.groups[*].documentType", contains("INVOICE", "CREDIT_NOTE", "DEBIT_NOTE")))
+                .andExpect(jsonPath("$.groups[0].sum", is(1994.80)))
+                .andExpect(jsonPath("$.groups[0].count", is(2)))
+                .andExpect(jsonPath("$.groups[0].min").doesNotExist());
+    }
+
+    @Test
+    public void successDefaultGroupBy() throws Exception {
+        MockMultipartFile multipartFile = new MockMultipartFile("file",
+                "data.csv",
+                "text/csv",
+                this.getClass().getResourceAsStream("/data.csv"));
+
+        mvc.perform(multipart("/api/v1/aggregateInvoices")
+                        .file(multipartFile)
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.groups", hasSize(3)))
+                .andExpect(jsonPath("$.groups[*].sum", containsInAnyOrder(1938.70, 702.60, 1241.40)));
+    }
+
+    @Test
+    public void invalidGroupBy() throws Exception {
+        MockMultipartFile multipartFile = new MockMultipartFile("file",
+                "data.csv",
+                "text/csv",
+                this.getClass().getResourceAsStream("/data.csv"));
+
+        mvc.perform(multipart("/api/v1/aggregateInvoices")
+                        .file(multipartFile)
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878")
+                        .param("groupBy", "MONTH"))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.calculator.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static com.example.calculator.TestConstants.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * The documents of data.csv take about 2.5 kB with the estimates of the parser, those of one customer less
+ * than half of it.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "calculator.memory.max-request-bytes=1500")
+@AutoConfigureMockMvc
+public class MemoryBudgetIntegrationTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void overBudget() throws Exception {
+        final double rejected = meterRegistry.counter("calculator.request.memory.rejected").count();
+
+        mvc.perform(multipart("/api/v1/sumInvoices")
+                        .file(dataCsv())
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878"))
+                .andDo(print())
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(content().string(containsString("memory budget of 1500 bytes")));
+
+        assertEquals(rejected + 1, meterRegistry.counter("calculator.request.memory.rejected").count(), 0);
+    }
+
+    @Test
+    public void withinBudget() throws Exception {
+        final long requests = meterRegistry.summary("calculator.request.memory.peak").count();
+
+        mvc.perform(multipart("/api/v1/sumInvoices")
+                        .file(dataCsv())
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878")
+                        .param("customerVat", VENDOR_2_VAT))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.customers[0].balance", is(702.6)));
+
+        assertEquals(requests + 1, meterRegistry.summary("calculator.request.memory.peak").count());
+        assertTrue(meterRegistry.summary("calculator.request.memory.peak").max() > 0);
+    }
+
+    @Test
+    public void aggregateOverBudget() throws Exception {
+        mvc.perform(multipart("/api/v1/aggregateInvoices")
+                        .file(dataCsv())
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878"))
+                .andDo(print())
+                .andExpect(status().isPayloadTooLarge());
+    }
+
+    private MockMultipartFile dataCsv() throws Exception {
+        return new MockMultipartFile("file",
+                "data.csv",
+                "text/csv",
+                this.getClass().getResourceAsStream("/data.csv"));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.calculator.controller;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static com.example.calculator.TestConstants.*;
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "calculator.parser.off-heap-documents=true")
+@AutoConfigureMockMvc
+public class OffHeapDocumentsIntegrationTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Test
+    public void sumInvoices() throws Exception {
+        MockMultipartFile multipartFile = new MockMultipartFile("file",
+                "data.csv",
+                "text/csv",
+                this.getClass().getResourceAsStream("/data.csv"));
+
+        mvc.perform(multipart("/api/v1/sumInvoices")
+                        .file(multipartFile)
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878")
+                        .param("customerVat", VENDOR_2_VAT))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.customers", hasSize(1)))
+                .andExpect(jsonPath("$.customers[0].name", is(VENDOR_2_NAME)))
+                .andExpect(jsonPath("$.customers[0].balance", is(702.6)));
+    }
+
+    @Test
+    public void aggregateInvoices() throws Exception {
+        MockMultipartFile multipartFile = new MockMultipartFile("file",
+                "data.csv",
+                "text/csv",
+                this.getClass().getResourceAsStream("/data.csv"));
+
+        mvc.perform(multipart("/api/v1/aggregateInvoices")
+                        .file(multipartFile)
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878")
+                        .param("groupBy", "DOCUMENT_TYPE")
+                        .param("measures", "COUNT"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.groups", hasSize(3)))
+                .andExpect(jsonPath("$.groups[*].count", contains(4, 2, 2)));
+    }
+
+    @Test
+    public void missingParentFailsWhileParsing() throws Exception {
+        MockMultipartFile multipartFile = new MockMultipartFile("file",
+                "data_error.csv",
+                "text/csv",
+                this.getClass().getResourceAsStream("/data_error.csv"));
+
+        mvc.perform(multipart("/api/v1/sumInvoices")
+                        .file(multipartFile)
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878"))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.calculator.controller;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "calculator.progress.interval=50ms")
+public class ProgressIntegrationTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void progressAfterRequest() {
+        assertEquals(HttpStatus.OK, sumInvoices("after").getStatusCode());
+
+        String events = restTemplate.getForObject("/api/v1/progress/after", String.class);
+
+        assertTrue(events, events.contains("event:progress"));
+        assertTrue(events, events.contains("\"phase\":\"DONE\""));
+        assertTrue(events, events.contains("\"rowsParsed\":8"));
+        assertTrue(events, events.contains("\"customersSummed\":3"));
+        assertTrue(events, events.endsWith("event:done\ndata:after\n\n"));
+    }
+
+    @Test
+    public void subscribeBeforeRequest() throws Exception {
+        CompletableFuture<String> events = CompletableFuture.supplyAsync(
+                () -> restTemplate.getForObject("/api/v1/progress/before", String.class));
+        Thread.sleep(200);
+
+        assertEquals(HttpStatus.OK, sumInvoices("before").getStatusCode());
+
+        String body = events.get(10, TimeUnit.SECONDS);
+        assertTrue(body, body.contains("\"phase\":\"DONE\""));
+        assertTrue(body, body.contains("\"totalCustomers\":3"));
+    }
+
+    private ResponseEntity<String> sumInvoices(String progressId) {
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        HttpHeaders fileHeaders = new HttpHeaders();
+        fileHeaders.setContentType(MediaType.parseMediaType("text/csv"));
+        body.add("file", new HttpEntity<>(new ClassPathResource("data.csv"), fileHeaders));
+        body.add("exchangeRates", "EUR:1");
+        body.add("exchangeRates", "USD:0.987");
+        body.add("exchangeRates", "GBP:0.878");
+        body.add("outputCurrency", "EUR");
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        headers.set("X-Progress-Id", progressId);
+        return restTemplate.postForEntity("/api/v1/sumInvoices", new HttpEntity<>(body, headers), String.class);
+    }
+}
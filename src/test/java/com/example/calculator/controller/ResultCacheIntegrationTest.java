@@ -0,0 +1,82 @@
+package com.example.calculator.controller;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "calculator.result-cache.max-bytes=1000000")
+@AutoConfigureMockMvc
+public class ResultCacheIntegrationTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Test
+    public void notModifiedWhenETagMatches() throws Exception {
+        String eTag = mvc.perform(multipart("/api/v1/sumInvoices")
+                        .file(dataFile())
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.customers", hasSize(3)))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Same rates in another order and notation
+        mvc.perform(multipart("/api/v1/sumInvoices")
+                        .file(dataFile())
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "GBP:0.8780", "EUR:1", "USD:0.987")
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andDo(print())
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(content().string(""));
+
+        String otherETag = mvc.perform(multipart("/api/v1/sumInvoices")
+                        .file(dataFile())
+                        .param("outputCurrency", "GBP")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878")
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.currency", is("GBP")))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(eTag, otherETag);
+    }
+
+    @Test
+    public void cachedResultEqualsComputedResult() throws Exception {
+        String first = mvc.perform(multipart("/api/v1/sumInvoices")
+                        .file(dataFile())
+                        .param("outputCurrency", "USD")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String second = mvc.perform(multipart("/api/v1/sumInvoices")
+                        .file(dataFile())
+                        .param("outputCurrency", "USD")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(first, second);
+    }
+
+    private MockMultipartFile dataFile() throws Exception {
+        return new MockMultipartFile("file", "data.csv", "text/csv", this.getClass().getResourceAsStream("/data.csv"));
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.calculator.controller;
+
+import com.example.calculator.CalculatorApplication;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.calculator.TestConstants.*;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Starts a worker and a coordinator sending its three shards to the worker, and compares the results with
+ * local processing.
+ */
+public class ShardedCalculationIntegrationTest {
+
+    private static ConfigurableApplicationContext worker;
+    private static ConfigurableApplicationContext coordinator;
+    private static String coordinatorUrl;
+
+    @BeforeClass
+    public static void start() {
+        worker = new SpringApplicationBuilder(CalculatorApplication.class).run("--server.port=0");
+        final String workerUrl = "http://localhost:" + port(worker);
+        coordinator = new SpringApplicationBuilder(CalculatorApplication.class)
+                .run("--server.port=0",
+                        "--calculator.sharding.workers=" + workerUrl + "," + workerUrl + "," + workerUrl);
+        coordinatorUrl = "http://localhost:" + port(coordinator);
+    }
+
+    @AfterClass
+    public static void stop() {
+        if (coordinator != null) {
+            coordinator.close();
+        }
+        if (worker != null) {
+            worker.close();
+        }
+    }
+
+    @Test
+    public void balancesOfAllShards() {
+        final ResponseEntity<Map> response = sumInvoices("data.csv", "FAIL_FAST");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("EUR", response.getBody().get("currency"));
+        final Map<String, Double> balances = new LinkedHashMap<>();
+        for (Object customer : (List<?>) response.getBody().get("customers")) {
+            balances.put((String) ((Map<?, ?>) customer).get("name"),
+                    ((Number) ((Map<?, ?>) customer).get("balance")).doubleValue());
+        }
+        assertEquals(Map.of(VENDOR_1_NAME, 1938.70, VENDOR_2_NAME, 702.60, VENDOR_3_NAME, 1241.40), balances);
+        // Customers of all shards in the order they first appear in the file
+        assertEquals(List.of(VENDOR_1_NAME, VENDOR_2_NAME, VENDOR_3_NAME), new ArrayList<>(balances.keySet()));
+    }
+
+    @Test
+    public void validationReportWithOriginalRows() {
+        final ResponseEntity<Map> response = sumInvoices("data_multiple_errors.csv", "COLLECT_ALL");
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        // The duplicate document number of two customers on different shards is not detected
+        assertEquals(5, response.getBody().get("errorCount"));
+        final List<Integer> rows = new ArrayList<>();
+        for (Object error : (List<?>) response.getBody().get("errors")) {
+            rows.add((Integer) ((Map<?, ?>) error).get("row"));
+        }
+        assertEquals(List.of(2, 3, 4, 5, 7), rows);
+    }
+
+    private static ResponseEntity<Map> sumInvoices(final String file, final String validationMode) {
+        final MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        final HttpHeaders fileHeaders = new HttpHeaders();
+        fileHeaders.setContentType(MediaType.parseMediaType("text/csv"));
+        body.add("file", new HttpEntity<>(new ClassPathResource(file), fileHeaders));
+        body.add("exchangeRates", "EUR:1");
+        body.add("exchangeRates", "USD:0.987");
+        body.add("exchangeRates", "GBP:0.878");
+        body.add("outputCurrency", "EUR");
+        body.add("validationMode", validationMode);
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        return new TestRestTemplate().postForEntity(coordinatorUrl + "/api/v1/sumInvoices",
+                new HttpEntity<>(body, headers), Map.class);
+    }
+
+    private static int port(final ConfigurableApplicationContext context) {
+        return ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+}
@@ -1,5 +1,9 @@
 package com.example.calculator.controller;
 
+import com.example.calculator.service.DocumentsBinaryConverter;
+import com.example.calculator.service.DocumentsFileParserService;
+import com.example.calculator.service.DocumentsParquetConverter;
+import org.apache.parquet.hadoop.ParquetWriter;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,6 +14,13 @@ import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
 import static com.example.calculator.TestConstants.*;
 import static org.hamcrest.Matchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
@@ -92,7 +103,8 @@ public class SumInvoicesApiControllerIntegrationTest {
                         .param("outputCurrency", "XYZ")
                         .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878"))
                 .andDo(print())
-                .andExpect(status().isBadRequest());
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_PLAIN));
     }
 
     @Test
@@ -110,6 +122,39 @@ public class SumInvoicesApiControllerIntegrationTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    public void successDatedExchangeRates() throws Exception {
+        String csv = "Customer,Vat number,Document number,Type,Parent document,Currency,Total,Date\n" +
+                "Vendor 1,123456789,1000000257,1,,USD,100,2023-12-31\n" +
+                "Vendor 1,123456789,1000000258,1,,USD,100,2024-01-15\n" +
+                "Vendor 1,123456789,1000000259,1,,USD,100\n";
+        MockMultipartFile multipartFile = new MockMultipartFile("file", "data.csv", "text/csv",
+                csv.getBytes(StandardCharsets.UTF_8));
+
+        mvc.perform(multipart("/api/v1/sumInvoices")
+                        .file(multipartFile)
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "USD:0.9", "USD:0.92@2024-01-01"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.customers[0].balance", closeTo(272.0, 1e-9)));
+    }
+
+    @Test
+    public void failedValidationDatedDefaultRate() throws Exception {
+        MockMultipartFile multipartFile = new MockMultipartFile("file",
+                "data.csv",
+                "text/csv",
+                this.getClass().getResourceAsStream("/data.csv"));
+
+        mvc.perform(multipart("/api/v1/sumInvoices")
+                        .file(multipartFile)
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "EUR:1.1@2024-01-01", "USD:0.987", "GBP:0.878"))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void invalid_CSV_data() throws Exception {
         MockMultipartFile multipartFile = new MockMultipartFile("file",
@@ -124,4 +169,106 @@ public class SumInvoicesApiControllerIntegrationTest {
                 .andDo(print())
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    public void collectAllValidationReport() throws Exception {
+        MockMultipartFile multipartFile = new MockMultipartFile("file",
+                "data_multiple_errors.csv",
+                "text/csv",
+                this.getClass().getResourceAsStream("/data_multiple_errors.csv"));
+
+        mvc.perform(multipart("/api/v1/sumInvoices")
+                        .file(multipartFile)
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878")
+                        .param("validationMode", "COLLECT_ALL"))
+                .andDo(print())
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.errorCount", is(6)))
+                .andExpect(jsonPath("$.truncated", is(false)))
+                .andExpect(jsonPath("$.errors", hasSize(6)))
+                .andExpect(jsonPath("$.errors[0].row", is(2)))
+                .andExpect(jsonPath("$.errors[0].column", is("Type")));
+    }
+
+    @Test
+    public void successGzipCompressed() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (InputStream in = this.getClass().getResourceAsStream("/data.csv");
+             GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            in.transferTo(out);
+        }
+        MockMultipartFile multipartFile = new MockMultipartFile("file",
+                "data.csv.gz",
+                "application/gzip",
+                compressed.toByteArray());
+
+        mvc.perform(multipart("/api/v1/sumInvoices")
+                        .file(multipartFile)
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.customers", hasSize(3)))
+                .andExpect(jsonPath("$.customers[*].name", contains(VENDOR_1_NAME, VENDOR_2_NAME, VENDOR_3_NAME)));
+    }
+
+    @Test
+    public void successBinary() throws Exception {
+        MockMultipartFile multipartFile = new MockMultipartFile("file",
+                "data.bin",
+                DocumentsFileParserService.BINARY_CONTENT_TYPE,
+                DocumentsBinaryConverter.convert(this.getClass().getResourceAsStream("/data.csv")));
+
+        mvc.perform(multipart("/api/v1/sumInvoices")
+                        .file(multipartFile)
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.customers", hasSize(3)))
+                .andExpect(jsonPath("$.customers[*].name", contains(VENDOR_1_NAME, VENDOR_2_NAME, VENDOR_3_NAME)));
+    }
+
+    @Test
+    public void successParquet() throws Exception {
+        Path parquet = Files.createTempFile("data", ".parquet");
+        try {
+            DocumentsParquetConverter.convert(this.getClass().getResourceAsStream("/data.csv"), parquet,
+                    ParquetWriter.DEFAULT_BLOCK_SIZE);
+            MockMultipartFile multipartFile = new MockMultipartFile("file",
+                    "data.parquet",
+                    DocumentsFileParserService.PARQUET_CONTENT_TYPE,
+                    Files.readAllBytes(parquet));
+
+            mvc.perform(multipart("/api/v1/sumInvoices")
+                            .file(multipartFile)
+                            .param("outputCurrency", "EUR")
+                            .param("customerVat", VENDOR_1_VAT)
+                            .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878"))
+                    .andDo(print())
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.customers", hasSize(1)))
+                    .andExpect(jsonPath("$.customers[0].name").value(VENDOR_1_NAME));
+        } finally {
+            Files.delete(parquet);
+        }
+    }
+
+    @Test
+    public void successTopBalances() throws Exception {
+        InputStream inputStream = this.getClass().getResourceAsStream("/data.csv");
+        MockMultipartFile multipartFile = new MockMultipartFile("file", "data.csv", "text/csv", inputStream);
+
+        mvc.perform(multipart("/api/v1/sumInvoices")
+                        .file(multipartFile)
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878")
+                        .param("top", "2")
+                        .param("minBalance", "1000"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.customers[*].name", contains(VENDOR_1_NAME, VENDOR_3_NAME)));
+    }
 }
@@ -0,0 +1,90 @@
+package com.example.calculator.controller;
+
+import com.example.calculator.tenant.TenantScheduler;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "calculator.tenants.concurrency=2",
+        "calculator.tenants.api-keys.batch-key=batch",
+        "calculator.tenants.pools.batch.concurrency=1",
+        "calculator.tenants.pools.batch.weight=1",
+        "calculator.tenants.pools.interactive.weight=4"
+})
+@AutoConfigureMockMvc
+public class TenantSchedulingIntegrationTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void scheduledAsTenantOfApiKey() throws Exception {
+        final long requests = latencyCount("batch");
+
+        mvc.perform(multipart("/api/v1/sumInvoices")
+                        .file(dataCsv())
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878")
+                        .header(TenantScheduler.API_KEY_HEADER, "batch-key"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string("Server-Timing", containsString("queue;dur=")));
+
+        assertEquals(requests + 1, latencyCount("batch"));
+    }
+
+    @Test
+    public void scheduledAsTenantOfHeader() throws Exception {
+        final long requests = latencyCount("interactive");
+
+        mvc.perform(multipart("/api/v1/aggregateInvoices")
+                        .file(dataCsv())
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878")
+                        .header(TenantScheduler.TENANT_HEADER, "interactive"))
+                .andDo(print())
+                .andExpect(status().isOk());
+
+        assertEquals(requests + 1, latencyCount("interactive"));
+        assertEquals(0, meterRegistry.get("calculator.tenant.active").tag("tenant", "interactive").gauge().value(), 0);
+    }
+
+    @Test
+    public void unknownApiKey() throws Exception {
+        mvc.perform(multipart("/api/v1/sumInvoices")
+                        .file(dataCsv())
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878")
+                        .header(TenantScheduler.API_KEY_HEADER, "guess"))
+                .andDo(print())
+                .andExpect(status().isUnauthorized());
+    }
+
+    private long latencyCount(String tenant) {
+        return meterRegistry.get("calculator.tenant.latency").tag("tenant", tenant).timer().count();
+    }
+
+    private MockMultipartFile dataCsv() throws Exception {
+        return new MockMultipartFile("file",
+                "data.csv",
+                "text/csv",
+                this.getClass().getResourceAsStream("/data.csv"));
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.calculator.delegate;
+
+import com.example.calculator.exception.UnsupportedCurrencyException;
+import com.example.calculator.model.ExchangeRate;
+import org.junit.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.List;
+
+import static com.example.calculator.TestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ExchangeRatesParserTest {
+
+    @Test
+    public void parsesRatesInOrderWithoutRepeatedEntries() throws UnsupportedCurrencyException {
+        List<ExchangeRate> exchangeRates = new ArrayList<>(new ExchangeRatesParser().parse(Arrays.asList(
+                "EUR:1", "USD:0.987", " ", "GBP:0.878@2024-07-01", "USD:0.987", "GBP:0.9", "BGN:12345678901234567890.5")));
+
+        assertEquals(Arrays.asList(
+                new ExchangeRate(CURRENCY_EUR, BigDecimal.ONE),
+                new ExchangeRate(CURRENCY_USD, new BigDecimal("0.987")),
+                new ExchangeRate(CURRENCY_GBP, new BigDecimal("0.878"), LocalDate.of(2024, 7, 1)),
+                new ExchangeRate(CURRENCY_GBP, new BigDecimal("0.9")),
+                new ExchangeRate(CURRENCY_BGN, new BigDecimal("12345678901234567890.5"))), exchangeRates);
+    }
+
+    @Test
+    public void sameScaleAsBigDecimalString() throws UnsupportedCurrencyException {
+        Collection<ExchangeRate> exchangeRates = new ExchangeRatesParser().parse(
+                Arrays.asList("EUR:1", "USD:0.9870", "GBP:007", "BGN:123456789012345678901234.25"));
+
+        for (ExchangeRate exchangeRate : exchangeRates) {
+            BigDecimal expected = exchangeRate.getCurrency().equals(CURRENCY_USD) ? new BigDecimal("0.9870")
+                    : exchangeRate.getCurrency().equals(CURRENCY_GBP) ? new BigDecimal("007")
+                    : exchangeRate.getCurrency().equals(CURRENCY_BGN) ? new BigDecimal("123456789012345678901234.25")
+                    : new BigDecimal("1");
+            assertEquals(expected, exchangeRate.getRate());
+            assertEquals(expected.scale(), exchangeRate.getRate().scale());
+        }
+    }
+
+    @Test
+    public void malformedRates() {
+        for (String exchangeRate : Arrays.asList("XYZ", "EUR", "EUR:", "eur:1", "EUR1", "EUR:.5", "EUR:1.",
+                "EUR:1.2.3", "EUR:-1", "EUR:1@", "EUR:@2024-01-01", "EUR:1@2024-1-01", "EUR:1@2024-01-011",
+                "EUR:1 ", "EURO:1")) {
+            assertRejected("Invalid currency exchange rate: [" + exchangeRate
+                    + "]. Examples: 'EUR:1', 'GBP:0.123' or 'GBP:0.125@2024-01-01'", "EUR:1", exchangeRate);
+        }
+    }
+
+    @Test
+    public void invalidEffectiveDate() {
+        assertRejected("Invalid exchange rate effective date: [USD:0.9@2024-02-30]", "EUR:1", "USD:0.9@2024-02-30");
+    }
+
+    @Test
+    public void unsupportedCurrency() {
+        try {
+            new ExchangeRatesParser().parse(Arrays.asList("EUR:1", "XYZ:0.322"));
+            fail("Expected an unsupported currency");
+        } catch (UnsupportedCurrencyException e) {
+            assertEquals("XYZ", e.getCurrencyCode());
+        }
+    }
+
+    @Test
+    public void conflictingRates() {
+        assertRejected("Multiple exchange rates provided for currency: USD", "EUR:1", "USD:0.9", "USD:0.90");
+        assertRejected("Multiple exchange rates provided for currency: USD effective from 2024-01-01",
+                "EUR:1", "USD:0.9@2024-01-01", "USD:0.8", "USD:0.7@2024-01-01");
+    }
+
+    @Test
+    public void defaultCurrency() {
+        assertRejected("Default exchange rate currency is not specified", "USD:0.9", " ");
+        assertRejected("Expected only 1 default exchange rate currency, while 2 are specified",
+                "EUR:1", "USD:1@2024-01-01", "USD:0.9");
+        assertRejected("Default exchange rate currency EUR must have rate 1 on every date",
+                "EUR:1", "EUR:1.1@2024-01-01", "USD:0.9");
+    }
+
+    private static void assertRejected(String message, String... exchangeRates) {
+        try {
+            new ExchangeRatesParser().parse(Arrays.asList(exchangeRates));
+            fail("Expected " + message);
+        } catch (ResponseStatusException e) {
+            assertEquals(message, e.getReason());
+        } catch (UnsupportedCurrencyException e) {
+            fail(e.getMessage());
+        }
+    }
+}
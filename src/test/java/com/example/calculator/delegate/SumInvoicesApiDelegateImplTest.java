@@ -1,13 +1,23 @@
 package com.example.calculator.delegate;
 
+import com.example.calculator.CalculatorProperties;
+import com.example.calculator.exception.ValidationReportException;
+import com.example.calculator.memory.RequestMemoryAccounting;
+import com.example.calculator.progress.ProgressRegistry;
 import com.example.calculator.service.CalculateService;
 import com.example.calculator.service.CurrencyExchangeService;
 import com.example.calculator.service.DocumentsFileParserService;
+import com.example.calculator.service.ParsedDocumentsCache;
+import com.example.calculator.shard.ShardedCalculationService;
+import com.example.calculator.tenant.TenantScheduler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import com.example.calculator.specification.model.CalculateResponseDto;
 import com.example.calculator.specification.model.CustomerDto;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
@@ -17,9 +27,11 @@ import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import static com.example.calculator.TestConstants.*;
 
@@ -34,7 +46,13 @@ public class SumInvoicesApiDelegateImplTest {
         CurrencyExchangeService currencyExchangeService = new CurrencyExchangeService();
         CalculateService calculateService = new CalculateService(currencyExchangeService);
         DocumentsFileParserService documentsFileParserService = new DocumentsFileParserService();
-        delegate = new SumInvoicesApiDelegateImpl(calculateService, documentsFileParserService);
+        CalculatorProperties calculatorProperties = new CalculatorProperties();
+        delegate = new SumInvoicesApiDelegateImpl(calculateService, documentsFileParserService,
+                calculatorProperties, new ParsedDocumentsCache(calculatorProperties),
+                new RequestMemoryAccounting(calculatorProperties, new SimpleMeterRegistry()),
+                new ProgressRegistry(calculatorProperties),
+                new TenantScheduler(calculatorProperties, new SimpleMeterRegistry()),
+                new ShardedCalculationService(calculatorProperties, new RestTemplateBuilder(), new ObjectMapper()));
 
         exchangeRates = Arrays.asList("EUR:1", "USD:0.987", "GBP:0.878");
     }
@@ -43,28 +61,28 @@ public class SumInvoicesApiDelegateImplTest {
     public void invalidOutputCurrencyNotMatchingRegex() {
         MultipartFile multipartFile = Mockito.mock(MultipartFile.class);
         List<String> exchangeRates = new LinkedList<>();
-        delegate.sumInvoices(multipartFile, exchangeRates, "asddsasd", null);
+        delegate.sumInvoices(multipartFile, exchangeRates, "asddsasd", null, null, null, null, null, null, null, null);
     }
 
     @Test(expected = ResponseStatusException.class)
     public void invalidOutputCurrencyNonIso() {
         MultipartFile multipartFile = Mockito.mock(MultipartFile.class);
         List<String> exchangeRates = new LinkedList<>();
-        delegate.sumInvoices(multipartFile, exchangeRates, "XYZ", null);
+        delegate.sumInvoices(multipartFile, exchangeRates, "XYZ", null, null, null, null, null, null, null, null);
     }
 
     @Test(expected = ResponseStatusException.class)
     public void unsupportedCurrencyInExchangeRates() {
         MultipartFile multipartFile = Mockito.mock(MultipartFile.class);
         List<String> exchangeRates = Arrays.asList("EUR:1", "XYZ:0.322");
-        delegate.sumInvoices(multipartFile, exchangeRates, "EUR", null);
+        delegate.sumInvoices(multipartFile, exchangeRates, "EUR", null, null, null, null, null, null, null, null);
     }
 
     @Test(expected = ResponseStatusException.class)
     public void invalidExchangeRateValues() {
         MultipartFile multipartFile = Mockito.mock(MultipartFile.class);
         List<String> exchangeRates = Arrays.asList("EUR:1", "XYZ");
-        delegate.sumInvoices(multipartFile, exchangeRates, "EUR", null);
+        delegate.sumInvoices(multipartFile, exchangeRates, "EUR", null, null, null, null, null, null, null, null);
     }
 
     @Test
@@ -72,7 +90,7 @@ public class SumInvoicesApiDelegateImplTest {
         MultipartFile multipartFile = Mockito.mock(MultipartFile.class);
         Mockito.when(multipartFile.getInputStream()).thenReturn(this.getClass().getResourceAsStream("/data.csv"));
         Mockito.when(multipartFile.getName()).thenReturn("data.csv");
-        ResponseEntity<CalculateResponseDto> response = delegate.sumInvoices(multipartFile, exchangeRates, "EUR", null);
+        ResponseEntity<CalculateResponseDto> response = delegate.sumInvoices(multipartFile, exchangeRates, "EUR", null, null, null, null, null, null, null, null);
         assertNotNull(response);
         CalculateResponseDto responseDto = response.getBody();
         assertEquals("EUR", responseDto.getCurrency());
@@ -97,7 +115,7 @@ public class SumInvoicesApiDelegateImplTest {
         MultipartFile multipartFile = Mockito.mock(MultipartFile.class);
         Mockito.when(multipartFile.getInputStream()).thenReturn(this.getClass().getResourceAsStream("/data.csv"));
         Mockito.when(multipartFile.getName()).thenReturn("data.csv");
-        ResponseEntity<CalculateResponseDto> response = delegate.sumInvoices(multipartFile, exchangeRates, "EUR", VENDOR_1_VAT);
+        ResponseEntity<CalculateResponseDto> response = delegate.sumInvoices(multipartFile, exchangeRates, "EUR", null, VENDOR_1_VAT, null, null, null, null, null, null);
         assertNotNull(response);
         CalculateResponseDto responseDto = response.getBody();
         assertEquals("EUR", responseDto.getCurrency());
@@ -115,7 +133,7 @@ public class SumInvoicesApiDelegateImplTest {
         MultipartFile multipartFile = Mockito.mock(MultipartFile.class);
         Mockito.when(multipartFile.getInputStream()).thenReturn(this.getClass().getResourceAsStream("/test.png"));
         Mockito.when(multipartFile.getName()).thenReturn("test.png");
-        delegate.sumInvoices(multipartFile, exchangeRates, "EUR", null);
+        delegate.sumInvoices(multipartFile, exchangeRates, "EUR", null, null, null, null, null, null, null, null);
     }
 
     @Test(expected = ResponseStatusException.class)
@@ -123,6 +141,159 @@ public class SumInvoicesApiDelegateImplTest {
         MultipartFile multipartFile = Mockito.mock(MultipartFile.class);
         Mockito.when(multipartFile.getInputStream()).thenReturn(this.getClass().getResourceAsStream("/data_error.csv"));
         Mockito.when(multipartFile.getName()).thenReturn("data_error.csv");
-        delegate.sumInvoices(multipartFile, exchangeRates, "EUR", null);
+        delegate.sumInvoices(multipartFile, exchangeRates, "EUR", null, null, null, null, null, null, null, null);
+    }
+
+    @Test(expected = ResponseStatusException.class)
+    public void invalidValidationMode() throws IOException {
+        MultipartFile multipartFile = Mockito.mock(MultipartFile.class);
+        delegate.sumInvoices(multipartFile, exchangeRates, "EUR", null, null, "SOMETIMES", null, null, null, null, null);
+    }
+
+    @Test
+    public void collectAllValidationSuccess() throws IOException {
+        MultipartFile multipartFile = Mockito.mock(MultipartFile.class);
+        Mockito.when(multipartFile.getInputStream()).thenReturn(this.getClass().getResourceAsStream("/data.csv"));
+        Mockito.when(multipartFile.getName()).thenReturn("data.csv");
+        ResponseEntity<CalculateResponseDto> response = delegate.sumInvoices(multipartFile, exchangeRates, "EUR", null, null, "COLLECT_ALL", null, null, null, null, null);
+        assertNotNull(response);
+        assertEquals(3, response.getBody().getCustomers().size());
+    }
+
+    @Test
+    public void collectAllValidationErrors() throws IOException {
+        MultipartFile multipartFile = Mockito.mock(MultipartFile.class);
+        Mockito.when(multipartFile.getInputStream()).thenReturn(this.getClass().getResourceAsStream("/data_multiple_errors.csv"));
+        Mockito.when(multipartFile.getName()).thenReturn("data_multiple_errors.csv");
+        try {
+            delegate.sumInvoices(multipartFile, exchangeRates, "EUR", null, null, "COLLECT_ALL", null, null, null, null, null);
+            fail("Expected ValidationReportException");
+        } catch (ValidationReportException e) {
+            // BGN is a valid currency but has no exchange rate
+            assertEquals(6, e.getValidationReport().getErrorCount());
+        }
+    }
+
+    @Test
+    public void successPrecomputedTotals() throws IOException {
+        CalculatorProperties calculatorProperties = new CalculatorProperties();
+        calculatorProperties.getParser().setPrecomputeTotals(true);
+        CalculateService calculateService = new CalculateService(new CurrencyExchangeService());
+        delegate = new SumInvoicesApiDelegateImpl(calculateService, new DocumentsFileParserService(),
+                calculatorProperties, new ParsedDocumentsCache(calculatorProperties),
+                new RequestMemoryAccounting(calculatorProperties, new SimpleMeterRegistry()),
+                new ProgressRegistry(calculatorProperties),
+                new TenantScheduler(calculatorProperties, new SimpleMeterRegistry()),
+                new ShardedCalculationService(calculatorProperties, new RestTemplateBuilder(), new ObjectMapper()));
+
+        MultipartFile multipartFile = Mockito.mock(MultipartFile.class);
+        Mockito.when(multipartFile.getInputStream()).thenReturn(this.getClass().getResourceAsStream("/data.csv"));
+        Mockito.when(multipartFile.getName()).thenReturn("data.csv");
+        List<CustomerDto> customerDtoList = delegate.sumInvoices(multipartFile, exchangeRates, "EUR", null, null, null, null, null, null, null, null)
+                .getBody().getCustomers();
+        assertEquals(3, customerDtoList.size());
+
+        CustomerDto vendor1 = customerDtoList.stream().filter(it -> it.getName().equals(VENDOR_1_NAME)).findFirst().orElse(null);
+        assertNotNull(vendor1);
+        assertEquals(new BigDecimal("1938.70"), vendor1.getBalance());
+
+        CustomerDto vendor2 = customerDtoList.stream().filter(it -> it.getName().equals(VENDOR_2_NAME)).findFirst().orElse(null);
+        assertNotNull(vendor2);
+        assertEquals(new BigDecimal("702.60"), vendor2.getBalance());
+    }
+
+    @Test
+    public void repeatedFileParsedOnce() throws Exception {
+        CalculatorProperties calculatorProperties = new CalculatorProperties();
+        calculatorProperties.getParser().setCacheSize(2);
+        DocumentsFileParserService documentsFileParserService = Mockito.spy(new DocumentsFileParserService());
+        delegate = new SumInvoicesApiDelegateImpl(new CalculateService(new CurrencyExchangeService()),
+                documentsFileParserService, calculatorProperties, new ParsedDocumentsCache(calculatorProperties),
+                new RequestMemoryAccounting(calculatorProperties, new SimpleMeterRegistry()),
+                new ProgressRegistry(calculatorProperties),
+                new TenantScheduler(calculatorProperties, new SimpleMeterRegistry()),
+                new ShardedCalculationService(calculatorProperties, new RestTemplateBuilder(), new ObjectMapper()));
+
+        MultipartFile multipartFile = Mockito.mock(MultipartFile.class);
+        Mockito.when(multipartFile.getInputStream())
+                .thenAnswer(invocation -> this.getClass().getResourceAsStream("/data.csv"));
+        Mockito.when(multipartFile.getName()).thenReturn("data.csv");
+        for (int i = 0; i < 2; i++) {
+            List<CustomerDto> customerDtoList = delegate.sumInvoices(multipartFile, exchangeRates, "EUR", null, null, null, null, null, null, null, null)
+                    .getBody().getCustomers();
+            assertEquals(3, customerDtoList.size());
+        }
+        Mockito.verify(documentsFileParserService, Mockito.times(1)).parseDocumentsCsv(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void successTopBalances() throws IOException {
+        List<CustomerDto> customerDtoList = sumInvoices(2, null, null, null, null);
+        assertEquals(Arrays.asList(VENDOR_1_NAME, VENDOR_3_NAME),
+                customerDtoList.stream().map(CustomerDto::getName).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void successTopBalancesAscending() throws IOException {
+        List<CustomerDto> customerDtoList = sumInvoices(1, null, null, "ASC", null);
+        assertEquals(1, customerDtoList.size());
+        assertEquals(VENDOR_2_NAME, customerDtoList.get(0).getName());
+    }
+
+    @Test
+    public void successBalanceThresholds() throws IOException {
+        List<CustomerDto> customerDtoList = sumInvoices(null, new BigDecimal("1000"), new BigDecimal("1938.70"), "ASC", null);
+        assertEquals(Arrays.asList(VENDOR_3_NAME, VENDOR_1_NAME),
+                customerDtoList.stream().map(CustomerDto::getName).collect(Collectors.toList()));
+    }
+
+    @Test(expected = ResponseStatusException.class)
+    public void invalidTop() throws IOException {
+        sumInvoices(0, null, null, null, null);
+    }
+
+    @Test(expected = ResponseStatusException.class)
+    public void invalidBalanceThresholds() throws IOException {
+        sumInvoices(null, BigDecimal.TEN, BigDecimal.ONE, null, null);
+    }
+
+    @Test(expected = ResponseStatusException.class)
+    public void invalidSortOrder() throws IOException {
+        sumInvoices(null, null, null, "RANDOM", null);
+    }
+
+    @Test
+    public void successFileOrderByDefault() throws IOException {
+        List<CustomerDto> customerDtoList = sumInvoices(null, null, null, null, null);
+        assertEquals(Arrays.asList(VENDOR_1_NAME, VENDOR_2_NAME, VENDOR_3_NAME),
+                customerDtoList.stream().map(CustomerDto::getName).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void successSortByVat() throws IOException {
+        List<CustomerDto> customerDtoList = sumInvoices(null, null, null, null, "VAT");
+        assertEquals(Arrays.asList(VENDOR_1_NAME, VENDOR_3_NAME, VENDOR_2_NAME),
+                customerDtoList.stream().map(CustomerDto::getName).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void successTopByNameDescending() throws IOException {
+        List<CustomerDto> customerDtoList = sumInvoices(2, null, null, "DESC", "NAME");
+        assertEquals(Arrays.asList(VENDOR_3_NAME, VENDOR_2_NAME),
+                customerDtoList.stream().map(CustomerDto::getName).collect(Collectors.toList()));
+    }
+
+    @Test(expected = ResponseStatusException.class)
+    public void invalidSortBy() throws IOException {
+        sumInvoices(null, null, null, null, "COLOR");
+    }
+
+    private List<CustomerDto> sumInvoices(Integer top, BigDecimal minBalance, BigDecimal maxBalance, String sortOrder,
+                                          String sortBy) throws IOException {
+        MultipartFile multipartFile = Mockito.mock(MultipartFile.class);
+        Mockito.when(multipartFile.getInputStream()).thenReturn(this.getClass().getResourceAsStream("/data.csv"));
+        Mockito.when(multipartFile.getName()).thenReturn("data.csv");
+        return delegate.sumInvoices(multipartFile, exchangeRates, "EUR", null, null, null, top, minBalance, maxBalance,
+                sortOrder, sortBy).getBody().getCustomers();
     }
 }
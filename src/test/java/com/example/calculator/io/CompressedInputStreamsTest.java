@@ -0,0 +1,98 @@
+package com.example.calculator.io;
+
+import com.example.calculator.exception.MemoryBudgetExceededException;
+import com.example.calculator.memory.MemoryBudget;
+import io.airlift.compress.zstd.ZstdOutputStream;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompressedInputStreamsTest {
+
+    private static final byte[] CONTENT = "Customer,Vat number,Document number,Type,Parent document,Currency,Total\n"
+            .getBytes();
+
+    @Test
+    public void uncompressed() throws Exception {
+        assertDecompressed(CONTENT, null);
+        assertDecompressed(CONTENT, "text/csv");
+    }
+
+    @Test
+    public void gzipDetected() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(CONTENT);
+        }
+        assertEquals(CompressedInputStreams.Compression.GZIP,
+                CompressedInputStreams.detect(new ByteArrayInputStream(compressed.toByteArray())));
+        assertDecompressed(compressed.toByteArray(), "application/octet-stream");
+        assertDecompressed(compressed.toByteArray(), "application/gzip");
+    }
+
+    @Test
+    public void zstdDetected() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new ZstdOutputStream(compressed)) {
+            out.write(CONTENT);
+        }
+        assertEquals(CompressedInputStreams.Compression.ZSTD,
+                CompressedInputStreams.detect(new ByteArrayInputStream(compressed.toByteArray())));
+        assertDecompressed(compressed.toByteArray(), null);
+        assertDecompressed(compressed.toByteArray(), "application/zstd");
+    }
+
+    @Test
+    public void shortInput() throws Exception {
+        assertDecompressed(new byte[]{0x1F}, null);
+        assertDecompressed(new byte[0], null);
+    }
+
+    @Test(expected = IOException.class)
+    public void declaredGzipButPlain() throws Exception {
+        CompressedInputStreams.decompress(new ByteArrayInputStream(CONTENT), "application/gzip");
+    }
+
+    @Test
+    public void decompressedSizeCappedByMemoryBudget() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(new byte[1 << 20]);
+        }
+        MemoryBudget budget = new MemoryBudget(1 << 16);
+        try (InputStream inputStream = CompressedInputStreams.decompress(
+                new ByteArrayInputStream(compressed.toByteArray()), null, budget)) {
+            inputStream.readAllBytes();
+            fail("Expected the memory budget to be exceeded");
+        } catch (MemoryBudgetExceededException e) {
+            assertEquals(1 << 16, e.getMaxBytes());
+        }
+        assertTrue(budget.isExceeded());
+    }
+
+    @Test
+    public void uncompressedNotCappedByMemoryBudget() throws Exception {
+        MemoryBudget budget = new MemoryBudget(1);
+        try (InputStream inputStream = CompressedInputStreams.decompress(new ByteArrayInputStream(CONTENT), null,
+                budget)) {
+            assertArrayEquals(CONTENT, inputStream.readAllBytes());
+        }
+    }
+
+    private static void assertDecompressed(byte[] input, String contentType) throws IOException {
+        try (InputStream inputStream = CompressedInputStreams.decompress(new ByteArrayInputStream(input), contentType)) {
+            byte[] expected = input.length > 1 ? CONTENT : input;
+            assertArrayEquals(expected, inputStream.readAllBytes());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.calculator.jfr;
+
+import com.example.calculator.exception.CurrencyExchangeException;
+import com.example.calculator.model.Customer;
+import com.example.calculator.model.Document;
+import com.example.calculator.model.DocumentType;
+import com.example.calculator.model.ExchangeRate;
+import com.example.calculator.model.ValidationMode;
+import com.example.calculator.service.CalculateService;
+import com.example.calculator.service.CurrencyExchangeService;
+import com.example.calculator.service.DocumentsFileParserService;
+import com.example.calculator.service.DocumentsParseOptions;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.example.calculator.TestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JfrEventsTest {
+
+    private static final List<Class<? extends Event>> EVENTS = List.of(DocumentsChunkParsedEvent.class, CustomerSummedEvent.class,
+            CurrencyConversionBatchEvent.class, ValidationFailureEvent.class);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Recording recording;
+    private DocumentsFileParserService documentsFileParserService;
+    private CalculateService calculateService;
+    private List<ExchangeRate> exchangeRates;
+
+    @Before
+    public void setup() {
+        recording = new Recording();
+        for (Class<? extends Event> event : EVENTS) {
+            recording.enable(event).withThreshold(Duration.ZERO);
+        }
+        documentsFileParserService = new DocumentsFileParserService();
+        calculateService = new CalculateService(new CurrencyExchangeService());
+        exchangeRates = List.of(new ExchangeRate(CURRENCY_EUR, BigDecimal.ONE),
+                new ExchangeRate(CURRENCY_USD, new BigDecimal("0.987")),
+                new ExchangeRate(CURRENCY_GBP, new BigDecimal("0.878")));
+    }
+
+    @After
+    public void cleanup() {
+        recording.close();
+    }
+
+    @Test
+    public void parseAndCalculateEvents() throws Exception {
+        recording.start();
+        Map<String, Customer> customers = documentsFileParserService.parseDocumentsCsvInputStream(
+                this.getClass().getResourceAsStream("/data.csv"), null);
+        for (Customer customer : customers.values()) {
+            calculateService.getCustomerBalance(customer, CURRENCY_EUR, exchangeRates);
+        }
+        List<RecordedEvent> events = stop();
+
+        List<RecordedEvent> chunks = named(events, "com.example.calculator.DocumentsChunkParsed");
+        assertEquals(1, chunks.size());
+        assertEquals(8, chunks.get(0).getInt("rows"));
+        assertTrue(chunks.get(0).getLong("bytes") > 0);
+
+        List<RecordedEvent> summed = named(events, "com.example.calculator.CustomerSummed");
+        assertEquals(3, summed.size());
+        RecordedEvent vendor1 = summed.stream()
+                .filter(it -> VENDOR_1_VAT.equals(it.getString("vatNumber")))
+                .findFirst().orElseThrow();
+        assertEquals(4, vendor1.getInt("documentCount"));
+
+        List<RecordedEvent> batches = named(events, "com.example.calculator.CurrencyConversionBatch");
+        assertEquals(3, batches.size());
+        assertEquals(8, batches.stream().mapToInt(it -> it.getInt("conversions")).sum());
+        assertEquals("EUR", batches.get(0).getString("outputCurrency"));
+    }
+
+    @Test
+    public void chunksOfLargeFile() throws Exception {
+        StringBuilder csv = new StringBuilder("Customer,Vat number,Document number,Type,Parent document,Currency,Total\n");
+        int rows = DocumentsChunkParsedEvent.CHUNK_ROWS * 2 + 10;
+        for (int i = 0; i < rows; i++) {
+            csv.append("Vendor 1,123456789,").append(i).append(",1,,EUR,100\n");
+        }
+
+        recording.start();
+        documentsFileParserService.parseDocumentsCsvInputStream(
+                new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)), null);
+        List<RecordedEvent> chunks = named(stop(), "com.example.calculator.DocumentsChunkParsed");
+
+        assertEquals(List.of(DocumentsChunkParsedEvent.CHUNK_ROWS, DocumentsChunkParsedEvent.CHUNK_ROWS, 10),
+                chunks.stream().map(it -> it.getInt("rows")).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void validationFailureEvents() throws Exception {
+        recording.start();
+        documentsFileParserService.parseDocumentsCsv(this.getClass().getResourceAsStream("/data_multiple_errors.csv"),
+                DocumentsParseOptions.builder().validationMode(ValidationMode.COLLECT_ALL).build());
+        Customer customer = new Customer(VENDOR_1_NAME, VENDOR_1_VAT);
+        customer.addDocument(Document.builder("1", DocumentType.INVOICE)
+                .currency(Currency.getInstance("BGN"))
+                .total(BigDecimal.TEN)
+                .build());
+        try {
+            calculateService.getCustomerBalance(customer, CURRENCY_EUR, exchangeRates);
+        } catch (CurrencyExchangeException e) {
+            // expected, the missing rate is reported as a validation failure
+        }
+        List<RecordedEvent> failures = named(stop(), "com.example.calculator.ValidationFailure");
+
+        assertEquals(7, failures.size());
+        RecordedEvent first = failures.get(0);
+        assertEquals(2, first.getLong("row"));
+        assertEquals("Type", first.getString("column"));
+        assertEquals("1000000258", first.getString("documentNumber"));
+        assertEquals("Unable to find currency exchange rate for [BGN]",
+                failures.get(failures.size() - 1).getString("message"));
+    }
+
+    private List<RecordedEvent> stop() throws Exception {
+        recording.stop();
+        Path file = temporaryFolder.newFile("recording.jfr").toPath();
+        recording.dump(file);
+        return RecordingFile.readAllEvents(file);
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(it -> it.getEventType().getName().equals(name))
+                .sorted((a, b) -> a.getStartTime().compareTo(b.getStartTime()))
+                .collect(Collectors.toList());
+    }
+}
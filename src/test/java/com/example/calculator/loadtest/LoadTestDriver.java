@@ -0,0 +1,308 @@
+package com.example.calculator.loadtest;
+
+import com.example.calculator.CalculatorApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends concurrent {@code /api/v1/sumInvoices} requests with synthetic documents files, for every combination of
+ * file size and concurrency, and writes throughput, latency percentiles, GC and heap figures to a JSON report.
+ * <p>
+ * Without {@code --url} the application is started in this JVM on a random port, so that its GC and heap usage are
+ * measured as well; with {@code --url} an already running instance is tested and only the client side figures are
+ * reported. With {@code --duration} every scenario runs for that many seconds instead of a number of requests,
+ * as a soak test.
+ * <p>
+ * Usage: {@code mvn test-compile exec:exec -Ploadtest -Dloadtest.rows=1000,100000 -Dloadtest.concurrency=1,8}
+ * <p>
+ * Options: {@code --url=<base url> --profile=<spring profile> --rows=<n,...> --concurrency=<n,...>
+ * --requests=<n> --warmup=<n> --duration=<seconds> --report=<directory>}
+ */
+public class LoadTestDriver {
+
+    private static final String BOUNDARY = "calculator-load-test-boundary";
+    private static final List<String> EXCHANGE_RATES = List.of("EUR:1", "USD:0.987", "GBP:0.878");
+    private static final long HEAP_SAMPLE_MILLIS = 500;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final URI uri;
+    private final boolean inProcess;
+
+    public LoadTestDriver(URI uri, boolean inProcess) {
+        this.uri = uri;
+        this.inProcess = inProcess;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = parseOptions(args);
+        final int[] rows = parseInts(options.getOrDefault("rows", "1000,100000"));
+        final int[] concurrency = parseInts(options.getOrDefault("concurrency", "1,8"));
+        final int requests = Integer.parseInt(options.getOrDefault("requests", "200"));
+        final int warmup = Integer.parseInt(options.getOrDefault("warmup", "20"));
+        final Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "0")));
+        final Path reportDirectory = Paths.get(options.getOrDefault("report", "target/load-test"));
+        final String url = options.getOrDefault("url", "");
+
+        ConfigurableApplicationContext context = null;
+        final String baseUrl;
+        if (url.isEmpty()) {
+            final SpringApplicationBuilder builder = new SpringApplicationBuilder(CalculatorApplication.class);
+            if (options.containsKey("profile")) {
+                builder.profiles(options.get("profile"));
+            }
+            context = builder.run("--server.port=0");
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+        } else {
+            baseUrl = url;
+        }
+
+        try {
+            final LoadTestDriver driver = new LoadTestDriver(URI.create(baseUrl + "/api/v1/sumInvoices"), context != null);
+            final List<ScenarioResult> results = new ArrayList<>();
+            for (int rowCount : rows) {
+                final byte[] body = multipartBody(SyntheticDocumentsGenerator.generate(rowCount,
+                        SyntheticDocumentsGenerator.defaultCustomers(rowCount), SyntheticDocumentsGenerator.DEFAULT_SEED));
+                for (int threads : concurrency) {
+                    driver.run(body, threads, warmup, null);
+                    final ScenarioResult result = driver.run(body, threads, requests,
+                            duration.isZero() ? null : duration).withRows(rowCount);
+                    System.out.printf("rows=%d concurrency=%d requests=%d errors=%d throughput=%.1f/s p50=%.1fms p99=%.1fms%n",
+                            rowCount, threads, result.requests(), result.errors(), result.throughputPerSecond(),
+                            result.latencyMillis().p50(), result.latencyMillis().p99());
+                    results.add(result);
+                }
+            }
+
+            final Instant finishedAt = Instant.now();
+            final Report report = new Report(finishedAt, baseUrl, context != null,
+                    System.getProperty("java.version"), Runtime.getRuntime().maxMemory() >> 20, results);
+            Files.createDirectories(reportDirectory);
+            final Path reportFile = reportDirectory.resolve("load-test-" + DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")
+                    .withZone(ZoneOffset.UTC).format(finishedAt) + ".json");
+            new ObjectMapper()
+                    .registerModule(new JavaTimeModule())
+                    .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                    .writerWithDefaultPrettyPrinter()
+                    .writeValue(reportFile.toFile(), report);
+            System.out.println("Report written to " + reportFile);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    /**
+     * Send requests from {@code concurrency} threads, either {@code requests} requests in total or for
+     * {@code duration} if it is not null.
+     */
+    public ScenarioResult run(final byte[] body, final int concurrency, final int requests, final Duration duration)
+            throws Exception {
+        final HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMinutes(5))
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        final long deadline = duration == null ? Long.MAX_VALUE : System.nanoTime() + duration.toNanos();
+        final AtomicInteger remaining = new AtomicInteger(requests);
+        final AtomicInteger errors = new AtomicInteger();
+
+        final HeapSampler heapSampler = inProcess ? new HeapSampler() : null;
+        final long gcCountBefore = gcCount();
+        final long gcMillisBefore = gcMillis();
+        final ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        final long start = System.nanoTime();
+        final List<Future<long[]>> workers = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            workers.add(executor.submit(() -> {
+                long[] latencies = new long[64];
+                int count = 0;
+                while ((duration == null ? remaining.getAndDecrement() > 0 : System.nanoTime() < deadline)) {
+                    final long requestStart = System.nanoTime();
+                    try {
+                        if (httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    }
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = System.nanoTime() - requestStart;
+                }
+                return Arrays.copyOf(latencies, count);
+            }));
+        }
+
+        long[] latencies = new long[0];
+        for (Future<long[]> worker : workers) {
+            final long[] workerLatencies = worker.get();
+            final int offset = latencies.length;
+            latencies = Arrays.copyOf(latencies, offset + workerLatencies.length);
+            System.arraycopy(workerLatencies, 0, latencies, offset, workerLatencies.length);
+        }
+        final long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        final Heap heap = heapSampler == null ? null : heapSampler.stop();
+        final Gc gc = inProcess ? new Gc(gcCount() - gcCountBefore, gcMillis() - gcMillisBefore) : null;
+        return new ScenarioResult(0, body.length, concurrency, latencies.length, errors.get(),
+                elapsed / 1_000_000, latencies.length * 1e9 / elapsed, Latency.of(latencies), gc, heap);
+    }
+
+    /**
+     * Build the request body with the file and the form fields of the request.
+     */
+    static byte[] multipartBody(final byte[] csv) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(csv.length + 1024);
+        final StringBuilder fields = new StringBuilder();
+        for (String exchangeRate : EXCHANGE_RATES) {
+            appendField(fields, "exchangeRates", exchangeRate);
+        }
+        appendField(fields, "outputCurrency", "EUR");
+        fields.append("--").append(BOUNDARY).append("\r\n")
+                .append("Content-Disposition: form-data; name=\"file\"; filename=\"data.csv\"\r\n")
+                .append("Content-Type: text/csv\r\n\r\n");
+        out.writeBytes(fields.toString().getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(csv);
+        out.writeBytes(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    private static void appendField(final StringBuilder fields, final String name, final String value) {
+        fields.append("--").append(BOUNDARY).append("\r\n")
+                .append("Content-Disposition: form-data; name=\"").append(name).append("\"\r\n\r\n")
+                .append(value).append("\r\n");
+    }
+
+    private static Map<String, String> parseOptions(final String[] args) {
+        final Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Options must look like --name=value: " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+    private static int[] parseInts(final String values) {
+        return Arrays.stream(values.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    /**
+     * Samples the used heap while a scenario runs.
+     */
+    private static class HeapSampler {
+
+        private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        private final long startMegabytes = usedHeapMegabytes();
+        private final AtomicLong maxMegabytes = new AtomicLong(startMegabytes);
+
+        HeapSampler() {
+            scheduler.scheduleAtFixedRate(() -> maxMegabytes.accumulateAndGet(usedHeapMegabytes(), Math::max),
+                    HEAP_SAMPLE_MILLIS, HEAP_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        Heap stop() {
+            scheduler.shutdownNow();
+            final long endMegabytes = usedHeapMegabytes();
+            return new Heap(startMegabytes, endMegabytes, Math.max(maxMegabytes.get(), endMegabytes));
+        }
+
+        private static long usedHeapMegabytes() {
+            return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() >> 20;
+        }
+    }
+
+    public record Report(Instant finishedAt, String target, boolean inProcess, String javaVersion,
+                         long maxHeapMegabytes, List<ScenarioResult> scenarios) {
+    }
+
+    /**
+     * @param gc   Collections during the scenario, null when testing another process
+     * @param heap Used heap during the scenario, null when testing another process
+     */
+    public record ScenarioResult(int rows, int fileBytes, int concurrency, int requests, int errors,
+                                 long durationMillis, double throughputPerSecond, Latency latencyMillis,
+                                 Gc gc, Heap heap) {
+
+        ScenarioResult withRows(final int rows) {
+            return new ScenarioResult(rows, fileBytes, concurrency, requests, errors, durationMillis,
+                    throughputPerSecond, latencyMillis, gc, heap);
+        }
+    }
+
+    public record Latency(double mean, double p50, double p90, double p99, double max) {
+
+        static Latency of(final long[] nanos) {
+            if (nanos.length == 0) {
+                return new Latency(0, 0, 0, 0, 0);
+            }
+            Arrays.sort(nanos);
+            return new Latency(Arrays.stream(nanos).average().orElse(0) / 1e6, percentile(nanos, 50),
+                    percentile(nanos, 90), percentile(nanos, 99), nanos[nanos.length - 1] / 1e6);
+        }
+
+        /**
+         * Nearest-rank percentile of sorted values, in milliseconds.
+         */
+        private static double percentile(final long[] sorted, final int percentile) {
+            final int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+            return sorted[Math.max(0, rank - 1)] / 1e6;
+        }
+    }
+
+    public record Gc(long collections, long timeMillis) {
+    }
+
+    public record Heap(long startMegabytes, long endMegabytes, long maxMegabytes) {
+    }
+}
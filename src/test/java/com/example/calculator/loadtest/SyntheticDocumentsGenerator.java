@@ -0,0 +1,110 @@
+package com.example.calculator.loadtest;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates documents CSV files shaped like {@code data.csv}: about 70% invoices, 15% credit notes and 15% debit
+ * notes whose parent is an earlier invoice of the same customer, in EUR, USD and GBP. The same seed always
+ * generates the same file.
+ * <p>
+ * Usage: {@code SyntheticDocumentsGenerator <output.csv> <rows> [customers] [seed]}
+ */
+public class SyntheticDocumentsGenerator {
+
+    public static final String HEADER = "Customer,Vat number,Document number,Type,Parent document,Currency,Total";
+    public static final long DEFAULT_SEED = 42;
+
+    private static final String[] CURRENCIES = {"EUR", "EUR", "EUR", "EUR", "USD", "USD", "GBP"};
+    private static final long FIRST_DOCUMENT_NUMBER = 1_000_000_000L;
+    private static final long FIRST_VAT_NUMBER = 100_000_000L;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SyntheticDocumentsGenerator <output.csv> <rows> [customers] [seed]");
+            System.exit(1);
+        }
+        final int rows = Integer.parseInt(args[1]);
+        final int customers = args.length > 2 ? Integer.parseInt(args[2]) : defaultCustomers(rows);
+        final long seed = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_SEED;
+        try (Writer out = Files.newBufferedWriter(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            generate(out, rows, customers, seed);
+        }
+    }
+
+    /**
+     * @return About 8 documents per customer, at least one customer.
+     */
+    public static int defaultCustomers(final int rows) {
+        return Math.max(1, rows / 8);
+    }
+
+    /**
+     * Generate a documents file in memory.
+     */
+    public static byte[] generate(final int rows, final int customers, final long seed) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(rows * 48);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8))) {
+            generate(out, rows, customers, seed);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Write a documents file. The first document of each customer is an invoice, so that every note has a parent.
+     *
+     * @param out       Where the CSV is written
+     * @param rows      Number of documents
+     * @param customers Number of customers the documents are spread over
+     * @param seed      Seed of the random values
+     */
+    public static void generate(final Writer out, final int rows, final int customers, final long seed)
+            throws IOException {
+        final Random random = new Random(seed);
+        // Document number of the last invoice of each customer, -1 until the customer has one
+        final long[] lastInvoices = new long[customers];
+        Arrays.fill(lastInvoices, -1);
+
+        out.write(HEADER);
+        for (int row = 0; row < rows; row++) {
+            final int customer = row < customers ? row : random.nextInt(customers);
+            final long documentNumber = FIRST_DOCUMENT_NUMBER + row;
+            final int typeRoll = random.nextInt(100);
+            final int type = lastInvoices[customer] == -1 || typeRoll < 70 ? 1 : typeRoll < 85 ? 2 : 3;
+
+            out.write('\n');
+            out.write("Customer ");
+            out.write(Integer.toString(customer));
+            out.write(',');
+            out.write(Long.toString(FIRST_VAT_NUMBER + customer));
+            out.write(',');
+            out.write(Long.toString(documentNumber));
+            out.write(',');
+            out.write(Integer.toString(type));
+            out.write(',');
+            if (type == 1) {
+                lastInvoices[customer] = documentNumber;
+            } else {
+                out.write(Long.toString(lastInvoices[customer]));
+            }
+            out.write(',');
+            out.write(CURRENCIES[random.nextInt(CURRENCIES.length)]);
+            out.write(',');
+            final int cents = type == 1 ? 1_000 + random.nextInt(1_000_000) : 100 + random.nextInt(10_000);
+            out.write(Integer.toString(cents / 100));
+            out.write('.');
+            out.write(Character.forDigit(cents / 10 % 10, 10));
+            out.write(Character.forDigit(cents % 10, 10));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.calculator.loadtest;
+
+import com.example.calculator.model.Customer;
+import com.example.calculator.model.ValidationMode;
+import com.example.calculator.service.DocumentsFileParserService;
+import com.example.calculator.service.DocumentsParseOptions;
+import com.example.calculator.service.DocumentsParseResult;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class SyntheticDocumentsGeneratorTest {
+
+    @Test
+    public void sameSeedSameFile() {
+        assertArrayEquals(SyntheticDocumentsGenerator.generate(1000, 100, 7),
+                SyntheticDocumentsGenerator.generate(1000, 100, 7));
+        assertFalse(new String(SyntheticDocumentsGenerator.generate(1000, 100, 7))
+                .equals(new String(SyntheticDocumentsGenerator.generate(1000, 100, 8))));
+    }
+
+    @Test
+    public void generatedFileIsValid() throws Exception {
+        DocumentsParseResult result = new DocumentsFileParserService().parseDocumentsCsv(
+                new ByteArrayInputStream(SyntheticDocumentsGenerator.generate(10_000, 500, 42)),
+                DocumentsParseOptions.builder().validationMode(ValidationMode.COLLECT_ALL).build());
+
+        assertFalse(result.getValidationReport().hasErrors());
+        assertEquals(500, result.getCustomers().size());
+        assertEquals(10_000, result.getCustomers().values().stream().mapToInt(Customer::getDocumentCount).sum());
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.calculator.progress;
+
+import com.example.calculator.CalculatorProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
+
+public class ProgressRegistryTest {
+
+    private ProgressRegistry progressRegistry;
+
+    @Before
+    public void setup() {
+        progressRegistry = new ProgressRegistry(new CalculatorProperties());
+    }
+
+    @After
+    public void shutdown() {
+        progressRegistry.shutdown();
+    }
+
+    @Test
+    public void runningIdRejected() {
+        progressRegistry.start("a", "id", 100);
+        try {
+            progressRegistry.start("a", "id", 100);
+            fail("Expected the running progress id to be rejected");
+        } catch (ResponseStatusException e) {
+            assertEquals(HttpStatus.CONFLICT, e.getStatus());
+        }
+    }
+
+    @Test
+    public void completedIdReused() {
+        Progress first = progressRegistry.start("a", "id", 100);
+        first.finish();
+        assertNotSame(first, progressRegistry.start("a", "id", 100));
+    }
+
+    @Test
+    public void idsScopedByTenant() {
+        Progress progressA = progressRegistry.start("a", "id", 100);
+        assertNotSame(progressA, progressRegistry.start("b", "id", 100));
+    }
+}
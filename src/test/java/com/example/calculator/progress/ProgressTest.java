@@ -0,0 +1,57 @@
+package com.example.calculator.progress;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ProgressTest {
+
+    @Test
+    public void phases() {
+        Progress progress = new Progress(1000);
+        assertEquals(Progress.Phase.PARSE, progress.snapshot().phase());
+        assertNull(progress.snapshot().etaMillis());
+
+        progress.bytesRead(500);
+        progress.rowsParsed(10);
+        ProgressEvent parsing = progress.snapshot();
+        assertEquals(500, parsing.bytesRead());
+        assertEquals(1000, parsing.totalBytes());
+        assertEquals(10, parsing.rowsParsed());
+        assertNotNull(parsing.etaMillis());
+
+        progress.startCalculation(4);
+        assertEquals(Progress.Phase.CALCULATE, progress.snapshot().phase());
+        assertNull(progress.snapshot().etaMillis());
+        progress.customersSummed(4);
+        assertEquals(0, (long) progress.snapshot().etaMillis());
+
+        progress.finish();
+        ProgressEvent done = progress.snapshot();
+        assertEquals(Progress.Phase.DONE, done.phase());
+        assertEquals(4, done.customersSummed());
+        assertEquals(4, done.totalCustomers());
+        assertEquals(0, (long) done.etaMillis());
+    }
+
+    @Test
+    public void bytesReadSampled() throws Exception {
+        Progress progress = new Progress(3 * ProgressInputStream.SAMPLE_BYTES);
+        try (InputStream in = new ProgressInputStream(
+                new ByteArrayInputStream(new byte[3 * ProgressInputStream.SAMPLE_BYTES]), progress)) {
+            byte[] buffer = new byte[ProgressInputStream.SAMPLE_BYTES / 2];
+            in.read(buffer);
+            assertEquals(0, progress.snapshot().bytesRead());
+            in.read(buffer);
+            assertEquals(ProgressInputStream.SAMPLE_BYTES, progress.snapshot().bytesRead());
+            in.transferTo(OutputStream.nullOutputStream());
+            assertEquals(3 * ProgressInputStream.SAMPLE_BYTES, progress.snapshot().bytesRead());
+        }
+    }
+}
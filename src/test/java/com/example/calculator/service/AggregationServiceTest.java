@@ -0,0 +1,118 @@
+package com.example.calculator.service;
+
+import com.example.calculator.exception.CurrencyExchangeException;
+import com.example.calculator.model.AggregateGroup;
+import com.example.calculator.model.AggregationDimension;
+import com.example.calculator.model.Customer;
+import com.example.calculator.model.DocumentType;
+import com.example.calculator.model.ExchangeRate;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.calculator.TestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AggregationServiceTest {
+
+    private AggregationService aggregationService;
+    private CalculateService calculateService;
+    private List<ExchangeRate> exchangeRates;
+    private Collection<Customer> customers;
+
+    @Before
+    public void setup() throws Exception {
+        CurrencyExchangeService currencyExchangeService = new CurrencyExchangeService();
+        aggregationService = new AggregationService(currencyExchangeService);
+        calculateService = new CalculateService(currencyExchangeService);
+        exchangeRates = Arrays.asList(new ExchangeRate(CURRENCY_EUR, BigDecimal.ONE),
+                new ExchangeRate(CURRENCY_USD, new BigDecimal("0.987")),
+                new ExchangeRate(CURRENCY_GBP, new BigDecimal("0.878")));
+        Map<String, Customer> customerMap = new DocumentsFileParserService().parseDocumentsCsvInputStream(
+                this.getClass().getResourceAsStream("/data.csv"), null);
+        customers = customerMap.values();
+    }
+
+    @Test
+    public void sumByCustomerMatchesBalance() throws Exception {
+        List<AggregateGroup> groups = aggregationService.aggregate(customers,
+                EnumSet.of(AggregationDimension.CUSTOMER), CURRENCY_EUR, exchangeRates);
+        assertEquals(3, groups.size());
+        for (AggregateGroup group : groups) {
+            assertEquals(calculateService.getCustomerBalance(group.getCustomer(), CURRENCY_EUR, exchangeRates),
+                    group.getSum());
+            assertNull(group.getCurrency());
+            assertNull(group.getDocumentType());
+        }
+    }
+
+    @Test
+    public void byCustomerAndDocumentType() throws Exception {
+        List<AggregateGroup> groups = aggregationService.aggregate(customers,
+                EnumSet.of(AggregationDimension.CUSTOMER, AggregationDimension.DOCUMENT_TYPE), CURRENCY_EUR,
+                exchangeRates);
+        List<AggregateGroup> vendor1 = groups.stream()
+                .filter(it -> it.getCustomer().getVatNumber().equals(VENDOR_1_VAT))
+                .toList();
+        assertEquals(3, vendor1.size());
+
+        AggregateGroup invoices = vendor1.get(0);
+        assertEquals(DocumentType.INVOICE, invoices.getDocumentType());
+        assertEquals(2, invoices.getCount());
+        assertEquals(new BigDecimal("1994.80"), invoices.getSum());
+        assertEquals(new BigDecimal("394.80"), invoices.getMin());
+        assertEquals(new BigDecimal("1600.00"), invoices.getMax());
+
+        AggregateGroup creditNotes = vendor1.get(1);
+        assertEquals(DocumentType.CREDIT_NOTE, creditNotes.getDocumentType());
+        assertEquals(1, creditNotes.getCount());
+        assertEquals(new BigDecimal("-100.00"), creditNotes.getSum());
+
+        assertEquals(DocumentType.DEBIT_NOTE, vendor1.get(2).getDocumentType());
+    }
+
+    @Test
+    public void byCurrencyAndDocumentType() throws Exception {
+        List<AggregateGroup> groups = aggregationService.aggregate(customers,
+                EnumSet.of(AggregationDimension.CURRENCY, AggregationDimension.DOCUMENT_TYPE), CURRENCY_EUR,
+                exchangeRates);
+
+        // EUR: invoices 900 + 1600, credit note 100, debit note 100; GBP: invoice, debit note; USD: invoice, credit note
+        assertEquals(7, groups.size());
+        AggregateGroup eurInvoices = groups.get(0);
+        assertNull(eurInvoices.getCustomer());
+        assertEquals(CURRENCY_EUR, eurInvoices.getCurrency());
+        assertEquals(DocumentType.INVOICE, eurInvoices.getDocumentType());
+        assertEquals(2, eurInvoices.getCount());
+        assertEquals(new BigDecimal("2500.00"), eurInvoices.getSum());
+        assertEquals(CURRENCY_GBP, groups.get(3).getCurrency());
+        assertEquals(CURRENCY_USD, groups.get(5).getCurrency());
+    }
+
+    @Test
+    public void singleGroup() throws Exception {
+        List<AggregateGroup> groups = aggregationService.aggregate(customers,
+                EnumSet.noneOf(AggregationDimension.class), CURRENCY_EUR, exchangeRates);
+        assertEquals(1, groups.size());
+        assertEquals(8, groups.get(0).getCount());
+
+        BigDecimal balances = BigDecimal.ZERO;
+        for (Customer customer : customers) {
+            balances = balances.add(calculateService.getCustomerBalance(customer, CURRENCY_EUR, exchangeRates));
+        }
+        assertEquals(balances, groups.get(0).getSum());
+    }
+
+    @Test(expected = CurrencyExchangeException.class)
+    public void missingExchangeRate() throws Exception {
+        aggregationService.aggregate(customers, EnumSet.of(AggregationDimension.CUSTOMER), CURRENCY_EUR,
+                exchangeRates.subList(0, 2));
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.calculator.service;
+
+import com.example.calculator.model.SortKey;
+import com.example.calculator.model.SortOrder;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class BalanceSelectorTest {
+
+    @Test
+    public void topMatchesFullSort() {
+        Random random = new Random(42);
+        List<BigDecimal> balances = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            balances.add(BigDecimal.valueOf(random.nextInt(1_000_000) - 500_000, 2));
+        }
+
+        BalanceSelector selector = new BalanceSelector(BalanceQuery.builder().top(50).build());
+        offer(selector, balances);
+
+        List<BigDecimal> expected = balances.stream()
+                .sorted(Comparator.reverseOrder())
+                .limit(50)
+                .collect(Collectors.toList());
+        assertEquals(expected, balances(selector));
+    }
+
+    @Test
+    public void topAscendingWithThresholds() {
+        BalanceSelector selector = new BalanceSelector(BalanceQuery.builder()
+                .top(2)
+                .minBalance(new BigDecimal("-5"))
+                .maxBalance(new BigDecimal("10"))
+                .sortOrder(SortOrder.ASC)
+                .build());
+        offer(selector, decimals("3", "-10", "10", "-5", "11", "0"));
+        assertEquals(decimals("-5", "0"), balances(selector));
+    }
+
+    @Test
+    public void topLargerThanInput() {
+        BalanceSelector selector = new BalanceSelector(BalanceQuery.builder().top(Integer.MAX_VALUE).build());
+        offer(selector, Arrays.asList(BigDecimal.ONE, BigDecimal.TEN));
+        assertEquals(Arrays.asList(BigDecimal.TEN, BigDecimal.ONE), balances(selector));
+    }
+
+    @Test
+    public void unsortedInPositionOrder() {
+        BalanceSelector selector = new BalanceSelector(BalanceQuery.builder().minBalance(BigDecimal.ZERO).build());
+        List<CustomerBalance> customers = customers(decimals("3", "-1", "10", "1"));
+        Collections.reverse(customers);
+        customers.forEach(selector::offer);
+        assertEquals(decimals("3", "10", "1"), balances(selector));
+    }
+
+    @Test
+    public void tiesInPositionOrder() {
+        BalanceSelector selector = new BalanceSelector(BalanceQuery.builder().top(2).build());
+        selector.offer(new CustomerBalance(2, "3", "c", BigDecimal.TEN));
+        selector.offer(new CustomerBalance(0, "1", "a", BigDecimal.TEN));
+        selector.offer(new CustomerBalance(1, "2", "b", BigDecimal.TEN));
+        assertEquals(Arrays.asList("a", "b"), names(selector));
+    }
+
+    @Test
+    public void sortByNameAndVat() {
+        List<CustomerBalance> customers = Arrays.asList(
+                new CustomerBalance(0, "2", "b", BigDecimal.ONE),
+                new CustomerBalance(1, "3", "a", BigDecimal.ONE),
+                new CustomerBalance(2, "1", "b", BigDecimal.ONE));
+
+        BalanceSelector byName = new BalanceSelector(BalanceQuery.builder().sortBy(SortKey.NAME).build());
+        customers.forEach(byName::offer);
+        assertEquals(Arrays.asList("3", "2", "1"), vatNumbers(byName));
+
+        BalanceSelector byVat = new BalanceSelector(BalanceQuery.builder()
+                .sortBy(SortKey.VAT)
+                .sortOrder(SortOrder.DESC)
+                .build());
+        customers.forEach(byVat::offer);
+        assertEquals(Arrays.asList("3", "2", "1"), vatNumbers(byVat));
+    }
+
+    @Test
+    public void largeResultSortedInParallel() {
+        Random random = new Random(7);
+        List<BigDecimal> balances = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            balances.add(BigDecimal.valueOf(random.nextInt(100)));
+        }
+        List<CustomerBalance> customers = customers(balances);
+        BalanceSelector selector = new BalanceSelector(BalanceQuery.builder().sortBy(SortKey.BALANCE).build());
+        Collections.shuffle(customers, random);
+        customers.forEach(selector::offer);
+
+        List<CustomerBalance> expected = customers(balances).stream()
+                .sorted(Comparator.comparing(CustomerBalance::balance))
+                .collect(Collectors.toList());
+        assertEquals(expected, selector.getResult());
+    }
+
+    private static void offer(BalanceSelector selector, List<BigDecimal> balances) {
+        customers(balances).forEach(selector::offer);
+    }
+
+    /**
+     * @return Customers with the balances, positioned in their order.
+     */
+    private static List<CustomerBalance> customers(List<BigDecimal> balances) {
+        List<CustomerBalance> customers = new ArrayList<>();
+        for (int i = 0; i < balances.size(); i++) {
+            customers.add(new CustomerBalance(i, String.valueOf(i), "Customer " + i, balances.get(i)));
+        }
+        return customers;
+    }
+
+    private static List<BigDecimal> decimals(String... values) {
+        return Arrays.stream(values).map(BigDecimal::new).collect(Collectors.toList());
+    }
+
+    private static List<BigDecimal> balances(BalanceSelector selector) {
+        return selector.getResult().stream().map(CustomerBalance::balance).collect(Collectors.toList());
+    }
+
+    private static List<String> names(BalanceSelector selector) {
+        return selector.getResult().stream().map(CustomerBalance::name).collect(Collectors.toList());
+    }
+
+    private static List<String> vatNumbers(BalanceSelector selector) {
+        return selector.getResult().stream().map(CustomerBalance::vatNumber).collect(Collectors.toList());
+    }
+}
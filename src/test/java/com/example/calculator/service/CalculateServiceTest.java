@@ -2,6 +2,7 @@ package com.example.calculator.service;
 
 import com.example.calculator.exception.DocumentValidationException;
 import com.example.calculator.model.Document;
+import com.example.calculator.model.DocumentTotals;
 import com.example.calculator.model.DocumentType;
 import com.example.calculator.model.ExchangeRate;
 import org.junit.Before;
@@ -82,4 +83,25 @@ public class CalculateServiceTest {
 
         calculateService.getDocumentsTotalSum(documents, CURRENCY_EUR, exchangeRateList);
     }
+
+    @Test
+    public void documentTotals() throws Exception {
+        List<Document> documents = new LinkedList<>();
+        documents.add(Document.builder("1000", DocumentType.INVOICE).currency(CURRENCY_USD).total(new BigDecimal("100.01")).build());
+        documents.add(Document.builder("1001", DocumentType.INVOICE).currency(CURRENCY_GBP).total(new BigDecimal("100.01")).build());
+        documents.add(Document.builder("1002", DocumentType.INVOICE).currency(CURRENCY_EUR).total(new BigDecimal("100.01")).build());
+        documents.add(Document.builder("1003", DocumentType.CREDIT_NOTE).currency(CURRENCY_USD).total(new BigDecimal("50.00")).parentDocumentNumber("1000").build());
+        documents.add(Document.builder("1004", DocumentType.DEBIT_NOTE).currency(CURRENCY_EUR).total(new BigDecimal("10.00")).parentDocumentNumber("1002").build());
+
+        DocumentTotals documentTotals = new DocumentTotals();
+        documents.forEach(documentTotals::add);
+
+        assertEquals(new BigDecimal("50.01"), documentTotals.getBalance(CURRENCY_USD));
+        assertEquals(new BigDecimal("110.01"), documentTotals.getBalance(CURRENCY_EUR));
+
+        BigDecimal totalSum = calculateService.getDocumentsTotalSum(documentTotals, CURRENCY_EUR, exchangeRateList);
+        assertEquals(calculateService.getDocumentsTotalSum(documents, CURRENCY_EUR, exchangeRateList), totalSum);
+        assertEquals(totalSum, calculateService.getDocumentsTotalSum(documentTotals, CURRENCY_EUR,
+                calculateService.getExchangeRateHistory(exchangeRateList).getTable(null)));
+    }
 }
@@ -0,0 +1,90 @@
+package com.example.calculator.service;
+
+import com.example.calculator.Constants;
+import com.example.calculator.model.ExchangeRate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Currency;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares converting 100k amounts with exact conversion factors ({@code precision} 0) and with factors rounded
+ * to a bounded precision, for short rates and for rates with the long expansion of a double.
+ * <p>
+ * Usage: {@code mvn test-compile exec:exec -Pbenchmark -Dbenchmark=CurrencyConversionBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CurrencyConversionBenchmark {
+
+    private static final int AMOUNTS = 100_000;
+    private static final Currency EUR = Currency.getInstance("EUR");
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final Currency GBP = Currency.getInstance("GBP");
+
+    @Param({"0", "34", "16"})
+    private int precision;
+
+    @Param({"true", "false"})
+    private boolean longRates;
+
+    private CurrencyExchangeService currencyExchangeService;
+    private List<ExchangeRate> exchangeRates;
+    private BigDecimal[] amounts;
+
+    @Setup
+    public void setUp() {
+        currencyExchangeService = new CurrencyExchangeService(
+                new MathContext(precision, Constants.DEFAULT_ROUNDING_MODE));
+        exchangeRates = List.of(new ExchangeRate(EUR, BigDecimal.ONE),
+                new ExchangeRate(USD, longRates ? new BigDecimal(0.987) : new BigDecimal("0.987")),
+                new ExchangeRate(GBP, longRates ? new BigDecimal(0.878) : new BigDecimal("0.878")));
+        Random random = new Random(42);
+        amounts = new BigDecimal[AMOUNTS];
+        for (int i = 0; i < AMOUNTS; i++) {
+            amounts[i] = BigDecimal.valueOf(random.nextInt(100_000_000), 2);
+        }
+    }
+
+    /**
+     * The conversion as it was before factors: both rates multiplied into the amount with unlimited precision.
+     */
+    @Benchmark
+    public BigDecimal directProduct() {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (BigDecimal amount : amounts) {
+            sum = sum.add(amount.multiply(exchangeRates.get(1).getRate())
+                    .multiply(exchangeRates.get(2).getRate())
+                    .setScale(GBP.getDefaultFractionDigits(), Constants.DEFAULT_ROUNDING_MODE));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public BigDecimal rateTable() throws Exception {
+        ExchangeRateTable table = currencyExchangeService.getExchangeRateTable(exchangeRates);
+        BigDecimal sum = BigDecimal.ZERO;
+        for (BigDecimal amount : amounts) {
+            sum = sum.add(currencyExchangeService.convertAmount(table, USD, GBP, amount));
+        }
+        return sum;
+    }
+}
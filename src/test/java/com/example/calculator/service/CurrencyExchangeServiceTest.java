@@ -1,13 +1,18 @@
 package com.example.calculator.service;
 
+import com.example.calculator.Constants;
 import com.example.calculator.exception.CurrencyExchangeException;
 import com.example.calculator.model.ExchangeRate;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.LocalDate;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
 
 import static com.example.calculator.TestConstants.*;
 
@@ -80,4 +85,100 @@ public class CurrencyExchangeServiceTest {
 
         currencyExchangeService.convertAmount(exchangeRateList, CURRENCY_EUR, CURRENCY_USD, new BigDecimal(100));
     }
+
+    @Test
+    public void rateSetFactorsAreCached() {
+        List<ExchangeRate> exchangeRates = List.of(new ExchangeRate(CURRENCY_EUR, BigDecimal.ONE),
+                new ExchangeRate(CURRENCY_USD, new BigDecimal("0.987")));
+        List<ExchangeRate> sameRates = new LinkedList<>(exchangeRates);
+        Assert.assertSame(currencyExchangeService.getExchangeRateTable(exchangeRates),
+                currencyExchangeService.getExchangeRateTable(sameRates));
+
+        sameRates.set(1, new ExchangeRate(CURRENCY_USD, new BigDecimal("0.988")));
+        Assert.assertNotSame(currencyExchangeService.getExchangeRateTable(exchangeRates),
+                currencyExchangeService.getExchangeRateTable(sameRates));
+    }
+
+    @Test
+    public void leastRecentlyUsedRateSetEvicted() {
+        List<ExchangeRate> exchangeRates = List.of(new ExchangeRate(CURRENCY_EUR, BigDecimal.ONE));
+        ExchangeRateTable table = currencyExchangeService.getExchangeRateTable(exchangeRates);
+        for (int i = 1; i <= CurrencyExchangeService.MAX_CACHED_RATE_SETS; i++) {
+            List<ExchangeRate> otherRates = List.of(new ExchangeRate(CURRENCY_EUR, BigDecimal.ONE),
+                    new ExchangeRate(CURRENCY_USD, BigDecimal.valueOf(i)));
+            currencyExchangeService.getExchangeRateTable(otherRates);
+            if (i == CurrencyExchangeService.MAX_CACHED_RATE_SETS / 2) {
+                Assert.assertSame(table, currencyExchangeService.getExchangeRateTable(exchangeRates));
+            }
+        }
+        Assert.assertEquals(CurrencyExchangeService.MAX_CACHED_RATE_SETS,
+                currencyExchangeService.getCachedRateSets().size());
+        Assert.assertSame(table, currencyExchangeService.getExchangeRateTable(exchangeRates));
+        Assert.assertFalse(currencyExchangeService.getCachedRateSets().contains(Set.of(
+                new ExchangeRate(CURRENCY_EUR, BigDecimal.ONE), new ExchangeRate(CURRENCY_USD, BigDecimal.ONE))));
+    }
+
+    @Test
+    public void ratesOfSameCurrencyHashApart() {
+        ExchangeRate rate = new ExchangeRate(CURRENCY_USD, new BigDecimal("0.987"));
+        Assert.assertEquals(rate.hashCode(), new ExchangeRate(CURRENCY_USD, new BigDecimal("0.987")).hashCode());
+        Assert.assertNotEquals(rate.hashCode(), new ExchangeRate(CURRENCY_USD, new BigDecimal("0.988")).hashCode());
+        Assert.assertNotEquals(rate.hashCode(),
+                new ExchangeRate(CURRENCY_USD, new BigDecimal("0.987"), LocalDate.of(2024, 1, 1)).hashCode());
+    }
+
+    @Test
+    public void unlimitedPrecisionSameAsDirectProduct() throws Exception {
+        CurrencyExchangeService unlimited = new CurrencyExchangeService(MathContext.UNLIMITED);
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            List<ExchangeRate> exchangeRates = randomRates(random);
+            BigDecimal amount = BigDecimal.valueOf(random.nextLong() % 100_000_000_000L, 2);
+            BigDecimal expected = amount.multiply(exchangeRates.get(1).getRate())
+                    .multiply(exchangeRates.get(2).getRate())
+                    .setScale(CURRENCY_GBP.getDefaultFractionDigits(), Constants.DEFAULT_ROUNDING_MODE);
+            Assert.assertEquals(expected, unlimited.convertAmount(exchangeRates, CURRENCY_USD, CURRENCY_GBP, amount));
+        }
+    }
+
+    @Test
+    public void boundedPrecisionDifference() throws Exception {
+        CurrencyExchangeService unlimited = new CurrencyExchangeService(MathContext.UNLIMITED);
+        Random random = new Random(42);
+        int defaultPrecisionDifferences = 0;
+        int lowPrecisionDifferences = 0;
+        for (int precision : new int[]{34, 7}) {
+            CurrencyExchangeService bounded = new CurrencyExchangeService(
+                    new MathContext(precision, Constants.DEFAULT_ROUNDING_MODE));
+            for (int i = 0; i < 10_000; i++) {
+                List<ExchangeRate> exchangeRates = randomRates(random);
+                BigDecimal amount = BigDecimal.valueOf(random.nextLong() % 100_000_000_000L, 2);
+                BigDecimal exact = unlimited.convertAmount(exchangeRates, CURRENCY_USD, CURRENCY_GBP, amount);
+                BigDecimal rounded = bounded.convertAmount(exchangeRates, CURRENCY_USD, CURRENCY_GBP, amount);
+
+                // The factor is off by at most one unit in its last digit, plus the rounding of the result
+                BigDecimal factor = exchangeRates.get(1).getRate().multiply(exchangeRates.get(2).getRate());
+                BigDecimal bound = amount.abs().multiply(factor).movePointLeft(precision - 1).add(new BigDecimal("0.01"));
+                Assert.assertTrue(exact.subtract(rounded).abs().compareTo(bound) <= 0);
+                if (exact.compareTo(rounded) != 0) {
+                    if (precision == 34) {
+                        defaultPrecisionDifferences++;
+                    } else {
+                        lowPrecisionDifferences++;
+                    }
+                }
+            }
+        }
+        Assert.assertEquals(0, defaultPrecisionDifferences);
+        Assert.assertTrue(lowPrecisionDifferences > 0);
+    }
+
+    /**
+     * Default EUR rate and USD and GBP rates with the long expansion of a double.
+     */
+    private static List<ExchangeRate> randomRates(Random random) {
+        return List.of(new ExchangeRate(CURRENCY_EUR, BigDecimal.ONE),
+                new ExchangeRate(CURRENCY_USD, new BigDecimal(0.5 + random.nextDouble())),
+                new ExchangeRate(CURRENCY_GBP, new BigDecimal(0.5 + random.nextDouble())));
+    }
 }
@@ -0,0 +1,88 @@
+package com.example.calculator.service;
+
+import com.example.calculator.model.Customer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the customer lookup of the parser, one per row of a 1M row file, using {@link CustomerIndex} and the
+ * {@link HashMap} it replaced.
+ * <p>
+ * Usage: {@code mvn test-compile exec:exec -Pbenchmark -Dbenchmark=CustomerIndexBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerIndexBenchmark {
+
+    private static final int ROWS = 1_000_000;
+
+    @Param({"1000", "125000"})
+    private int customers;
+
+    @Param({"true", "false"})
+    private boolean numericVat;
+
+    /**
+     * VAT number of each row, distinct instances like the strings produced by the parsers.
+     */
+    private String[] vatNumbers;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        vatNumbers = new String[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            int customer = random.nextInt(customers);
+            String vatNumber = numericVat ? Integer.toString(100_000_000 + customer) : "GB" + customer;
+            vatNumbers[i] = new String(vatNumber.toCharArray());
+        }
+    }
+
+    @Benchmark
+    public int hashMap() {
+        HashMap<String, Customer> customersMap = new HashMap<>();
+        for (String vatNumber : vatNumbers) {
+            if (customersMap.containsKey(vatNumber)) {
+                customersMap.get(vatNumber);
+            } else {
+                customersMap.put(vatNumber, new Customer("Customer", vatNumber));
+            }
+        }
+        return customersMap.size();
+    }
+
+    @Benchmark
+    public int customerIndex() {
+        CustomerIndex index = new CustomerIndex(0);
+        for (String vatNumber : vatNumbers) {
+            index.getOrAdd(vatNumber, "Customer");
+        }
+        return index.size();
+    }
+
+    @Benchmark
+    public int customerIndexPresized() {
+        CustomerIndex index = new CustomerIndex(ROWS / 8);
+        for (String vatNumber : vatNumbers) {
+            index.getOrAdd(vatNumber, "Customer");
+        }
+        return index.size();
+    }
+}
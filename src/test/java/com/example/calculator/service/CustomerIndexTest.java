@@ -0,0 +1,75 @@
+package com.example.calculator.service;
+
+import com.example.calculator.model.Customer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class CustomerIndexTest {
+
+    @Test
+    public void getOrAddReturnsExistingCustomer() {
+        CustomerIndex index = new CustomerIndex(0);
+        Customer customer = index.getOrAdd("123456789", "Vendor 1");
+        assertSame(customer, index.getOrAdd(new String("123456789"), "Other name"));
+        assertEquals("Vendor 1", customer.getName());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void numericAndTextVatNumbersAreDistinct() {
+        CustomerIndex index = new CustomerIndex(0);
+        Customer numeric = index.getOrAdd("123", "Vendor 1");
+        Customer leadingZero = index.getOrAdd("0123", "Vendor 2");
+        Customer text = index.getOrAdd("GB123", "Vendor 3");
+        Customer tooLong = index.getOrAdd("1234567890123456789", "Vendor 4");
+
+        assertNotSame(numeric, leadingZero);
+        assertSame(leadingZero, index.getOrAdd("0123", "Vendor 2"));
+        assertSame(text, index.getOrAdd("GB123", "Vendor 3"));
+        assertSame(tooLong, index.getOrAdd("1234567890123456789", "Vendor 4"));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void numericKey() {
+        assertEquals(0, CustomerIndex.numericKey("0"));
+        assertEquals(123456789012345678L, CustomerIndex.numericKey("123456789012345678"));
+        assertEquals(-1, CustomerIndex.numericKey(""));
+        assertEquals(-1, CustomerIndex.numericKey("012"));
+        assertEquals(-1, CustomerIndex.numericKey("12a"));
+        assertEquals(-1, CustomerIndex.numericKey("-12"));
+        assertEquals(-1, CustomerIndex.numericKey("1234567890123456789"));
+    }
+
+    @Test
+    public void growsPastExpectedCustomersAndKeepsInsertionOrder() {
+        Random random = new Random(42);
+        CustomerIndex index = new CustomerIndex(1);
+        Map<String, Customer> expected = new HashMap<>();
+        List<String> order = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            int customer = random.nextInt(5_000);
+            String vatNumber = random.nextBoolean() ? Integer.toString(customer) : "GB" + customer;
+            Customer added = index.getOrAdd(vatNumber, "Vendor");
+            Customer previous = expected.putIfAbsent(vatNumber, added);
+            if (previous == null) {
+                order.add(vatNumber);
+            } else {
+                assertSame(previous, added);
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+        assertEquals(order, new ArrayList<>(index.toMap().keySet()));
+        assertEquals(expected, index.toMap());
+    }
+}
@@ -1,22 +1,48 @@
 package com.example.calculator.service;
 
 import com.example.calculator.exception.DocumentValidationException;
+import com.example.calculator.exception.MemoryBudgetExceededException;
+import com.example.calculator.memory.MemoryBudget;
 import com.example.calculator.model.Customer;
 import com.example.calculator.model.Document;
 import com.example.calculator.model.DocumentType;
+import com.example.calculator.model.ExchangeRate;
+import com.example.calculator.model.ValidationError;
+import com.example.calculator.model.ValidationMode;
+import com.example.calculator.model.ValidationReport;
+import com.example.calculator.store.OffHeapDocumentStore;
+import org.apache.parquet.hadoop.ParquetWriter;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static com.example.calculator.TestConstants.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class DocumentFileParserServiceTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private DocumentsFileParserService documentsFileParserService;
 
     @Before
@@ -73,4 +99,471 @@ public class DocumentFileParserServiceTest {
         documentsFileParserService.parseDocumentsCsvInputStream(inputStream, VENDOR_1_VAT);
     }
 
+    @Test(expected = DocumentValidationException.class)
+    public void duplicateDocumentNumberDifferentValues() throws Exception {
+        String csv = "Customer,Vat number,Document number,Type,Parent document,Currency,Total\n" +
+                "Vendor 1,123456789,1000000257,1,,USD,400\n" +
+                "Vendor 1,123456789,1000000257,1,,USD,500\n";
+        documentsFileParserService.parseDocumentsCsvInputStream(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), null);
+    }
+
+    @Test
+    public void duplicateDocumentSameValuesIgnored() throws Exception {
+        String csv = "Customer,Vat number,Document number,Type,Parent document,Currency,Total\n" +
+                "Vendor 1,123456789,1000000257,1,,USD,400\n" +
+                "Vendor 1,123456789,1000000257,1,,USD,400\n";
+        Map<String, Customer> customerMap = documentsFileParserService.parseDocumentsCsvInputStream(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), null);
+        assertEquals(1, customerMap.get(VENDOR_1_VAT).getDocuments().size());
+    }
+
+    @Test
+    public void duplicateDocumentsManyRows() throws Exception {
+        StringBuilder csv = new StringBuilder("Customer,Vat number,Document number,Type,Parent document,Currency,Total\n");
+        for (int i = 0; i < 20_000; i++) {
+            csv.append(String.format("Vendor %d,%d,%d,1,,EUR,%d%n", i % 10, 100000000 + i % 10, i, i));
+        }
+        // An identical repeat of row 1 and a conflicting duplicate of row 10001
+        csv.append("Vendor 0,100000000,0,1,,EUR,0\n");
+        csv.append("Vendor 0,100000000,10000,1,,EUR,1\n");
+        DocumentsParseResult result = documentsFileParserService.parseDocumentsCsv(
+                new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)),
+                DocumentsParseOptions.builder()
+                        .validationMode(ValidationMode.COLLECT_ALL)
+                        .precomputeTotals(true)
+                        .expectedDocuments(100)
+                        .build());
+
+        List<ValidationError> errors = result.getValidationReport().getErrors();
+        assertEquals(1, errors.size());
+        assertError(errors.get(0), 20_002, "Document number", "10000");
+        assertTrue(errors.get(0).getMessage().endsWith("first seen in row 10001"));
+        assertEquals(20_000, result.getCustomers().values().stream().mapToInt(it -> it.getDocuments().size()).sum());
+        // Vendor 0 has documents 0, 10, ..., 19990, each counted once
+        assertEquals(new BigDecimal("19990000"),
+                result.getCustomers().get("100000000").getDocumentTotals().getBalance(CURRENCY_EUR));
+    }
+
+    @Test
+    public void collectAllSuccess() throws Exception {
+        InputStream inputStream = this.getClass().getResourceAsStream("/data.csv");
+        DocumentsParseResult result = documentsFileParserService.parseDocumentsCsv(inputStream,
+                DocumentsParseOptions.builder().validationMode(ValidationMode.COLLECT_ALL).build());
+        assertFalse(result.getValidationReport().hasErrors());
+        assertEquals(3, result.getCustomers().size());
+    }
+
+    @Test
+    public void collectAllErrors() throws Exception {
+        InputStream inputStream = this.getClass().getResourceAsStream("/data_multiple_errors.csv");
+        DocumentsParseResult result = documentsFileParserService.parseDocumentsCsv(inputStream,
+                DocumentsParseOptions.builder()
+                        .validationMode(ValidationMode.COLLECT_ALL)
+                        .supportedCurrencies(Set.of(CURRENCY_EUR, CURRENCY_USD, CURRENCY_GBP))
+                        .build());
+
+        ValidationReport report = result.getValidationReport();
+        assertEquals(6, report.getErrorCount());
+        assertFalse(report.isTruncated());
+
+        List<ValidationError> errors = report.getErrors();
+        assertError(errors.get(0), 2, "Type", "1000000258");
+        assertError(errors.get(1), 3, "Currency", "1000000259");
+        assertError(errors.get(2), 5, "Total", "1000000261");
+        assertError(errors.get(3), 7, "Currency", "1000000263");
+        // Duplicates and missing parents are reported in row order after the whole file has been read
+        assertError(errors.get(4), 4, "Parent document", "1000000260");
+        assertError(errors.get(5), 6, "Document number", "1000000257");
+    }
+
+    @Test
+    public void collectAllMaxErrors() throws Exception {
+        InputStream inputStream = this.getClass().getResourceAsStream("/data_multiple_errors.csv");
+        DocumentsParseResult result = documentsFileParserService.parseDocumentsCsv(inputStream,
+                DocumentsParseOptions.builder()
+                        .validationMode(ValidationMode.COLLECT_ALL)
+                        .maxErrors(2)
+                        .build());
+
+        // Without a restriction on currencies the BGN debit note is valid, but its parent is not
+        ValidationReport report = result.getValidationReport();
+        assertEquals(6, report.getErrorCount());
+        assertEquals(2, report.getErrors().size());
+        assertTrue(report.isTruncated());
+    }
+
+    @Test
+    public void collectAllMissingColumns() throws Exception {
+        InputStream inputStream = this.getClass().getResourceAsStream("/test.png");
+        DocumentsParseResult result = documentsFileParserService.parseDocumentsCsv(inputStream,
+                DocumentsParseOptions.builder().validationMode(ValidationMode.COLLECT_ALL).build());
+        assertTrue(result.getValidationReport().hasErrors());
+    }
+
+    @Test
+    public void precomputeTotals() throws Exception {
+        InputStream inputStream = this.getClass().getResourceAsStream("/data.csv");
+        DocumentsParseResult result = documentsFileParserService.parseDocumentsCsv(inputStream,
+                DocumentsParseOptions.builder().precomputeTotals(true).build());
+
+        Customer customer1 = result.getCustomers().get(VENDOR_1_VAT);
+        assertNotNull(customer1.getDocumentTotals());
+        assertEquals(new BigDecimal("400"), customer1.getDocumentTotals().getTotal(CURRENCY_USD, DocumentType.INVOICE));
+        assertEquals(new BigDecimal("100"), customer1.getDocumentTotals().getTotal(CURRENCY_EUR, DocumentType.CREDIT_NOTE));
+        assertEquals(new BigDecimal("1500"), customer1.getDocumentTotals().getBalance(CURRENCY_EUR));
+        assertEquals(new BigDecimal("50"), customer1.getDocumentTotals().getBalance(CURRENCY_GBP));
+    }
+
+    @Test(expected = DocumentValidationException.class)
+    public void precomputeTotalsMissingParent() throws Exception {
+        String csv = "Customer,Vat number,Document number,Type,Parent document,Currency,Total\n" +
+                "Vendor 1,123456789,1000000260,2,1000000257,EUR,100\n" +
+                "Vendor 2,987654321,1000000257,1,,USD,400\n";
+        documentsFileParserService.parseDocumentsCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                DocumentsParseOptions.builder().precomputeTotals(true).build());
+    }
+
+    @Test
+    public void precomputeTotalsParentLaterInFile() throws Exception {
+        String csv = "Customer,Vat number,Document number,Type,Parent document,Currency,Total\n" +
+                "Vendor 1,123456789,1000000260,2,1000000257,EUR,100\n" +
+                "Vendor 1,123456789,1000000257,1,,USD,400\n";
+        DocumentsParseResult result = documentsFileParserService.parseDocumentsCsv(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                DocumentsParseOptions.builder().precomputeTotals(true).build());
+        assertEquals(2, result.getCustomers().get(VENDOR_1_VAT).getDocuments().size());
+    }
+
+    @Test
+    public void offHeapSameBalancesAsHeap() throws Exception {
+        CalculateService calculateService = new CalculateService(new CurrencyExchangeService());
+        List<ExchangeRate> exchangeRates = List.of(new ExchangeRate(CURRENCY_EUR, BigDecimal.ONE),
+                new ExchangeRate(CURRENCY_USD, new BigDecimal("0.987")),
+                new ExchangeRate(CURRENCY_GBP, new BigDecimal("0.878")));
+        Map<String, Customer> heapCustomers = documentsFileParserService.parseDocumentsCsvInputStream(
+                this.getClass().getResourceAsStream("/data.csv"), null);
+
+        try (OffHeapDocumentStore store = new OffHeapDocumentStore()) {
+            Map<String, Customer> offHeapCustomers = documentsFileParserService.parseDocumentsCsv(
+                    this.getClass().getResourceAsStream("/data.csv"),
+                    DocumentsParseOptions.builder().documentStore(store).build()).getCustomers();
+
+            assertEquals(heapCustomers.keySet(), offHeapCustomers.keySet());
+            for (Customer heapCustomer : heapCustomers.values()) {
+                Customer offHeapCustomer = offHeapCustomers.get(heapCustomer.getVatNumber());
+                assertTrue(offHeapCustomer.getDocuments().isEmpty());
+                assertEquals(heapCustomer.getDocuments().size(), offHeapCustomer.getDocumentCount());
+                assertEquals(calculateService.getCustomerBalance(heapCustomer, CURRENCY_EUR, exchangeRates),
+                        calculateService.getCustomerBalance(offHeapCustomer, CURRENCY_EUR, exchangeRates));
+            }
+        }
+    }
+
+    @Test(expected = DocumentValidationException.class)
+    public void offHeapMissingParent() throws Exception {
+        String csv = "Customer,Vat number,Document number,Type,Parent document,Currency,Total\n" +
+                "Vendor 1,123456789,1000000260,2,1000000257,EUR,100\n" +
+                "Vendor 2,987654321,1000000257,1,,USD,400\n";
+        try (OffHeapDocumentStore store = new OffHeapDocumentStore()) {
+            documentsFileParserService.parseDocumentsCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                    DocumentsParseOptions.builder().documentStore(store).build());
+        }
+    }
+
+    @Test
+    public void memoryBudgetChargedPerDocumentAndCustomer() throws Exception {
+        MemoryBudget budget = new MemoryBudget(0);
+        documentsFileParserService.parseDocumentsCsv(this.getClass().getResourceAsStream("/data.csv"),
+                DocumentsParseOptions.builder().memoryBudget(budget).build());
+
+        // 8 documents with 10 digit numbers, 4 notes with a parent and 4 invoices with an empty one, 3 customers
+        long documents = 8 * (DocumentsCollector.DOCUMENT_BYTES + 50) + 4 * 50 + 4 * 40;
+        long customers = 3 * (DocumentsCollector.CUSTOMER_BYTES + 48 + 49);
+        assertEquals(documents + customers, budget.getUsedBytes());
+        assertFalse(budget.isExceeded());
+    }
+
+    @Test
+    public void memoryBudgetExceeded() throws Exception {
+        MemoryBudget budget = new MemoryBudget(1000);
+        try {
+            documentsFileParserService.parseDocumentsCsv(this.getClass().getResourceAsStream("/data.csv"),
+                    DocumentsParseOptions.builder().memoryBudget(budget).build());
+            fail("Expected the memory budget to be exceeded");
+        } catch (MemoryBudgetExceededException e) {
+            assertEquals(1000, e.getMaxBytes());
+        }
+        assertTrue(budget.isExceeded());
+    }
+
+    @Test
+    public void memoryBudgetChargedForBinaryBuffer() throws Exception {
+        byte[] binary = DocumentsBinaryConverter.convert(this.getClass().getResourceAsStream("/data.csv"));
+        MemoryBudget budget = new MemoryBudget(1000);
+        try {
+            documentsFileParserService.parseDocumentsBinary(new ByteArrayInputStream(binary),
+                    DocumentsParseOptions.builder().memoryBudget(budget).build());
+            fail("Expected the memory budget to be exceeded");
+        } catch (MemoryBudgetExceededException e) {
+            assertEquals(1000, e.getMaxBytes());
+        }
+        // Charged for the first read buffer before any document is collected
+        assertEquals(1 << 16, budget.getUsedBytes());
+        assertTrue(budget.isExceeded());
+    }
+
+    @Test
+    public void memoryBudgetChargedPerOffHeapBlock() throws Exception {
+        MemoryBudget budget = new MemoryBudget(0);
+        try (OffHeapDocumentStore store = new OffHeapDocumentStore()) {
+            documentsFileParserService.parseDocumentsCsv(this.getClass().getResourceAsStream("/data.csv"),
+                    DocumentsParseOptions.builder().documentStore(store).memoryBudget(budget).build());
+
+            long customers = 3 * (DocumentsCollector.CUSTOMER_BYTES + 48 + 49);
+            assertEquals(customers + 8 * DocumentsCollector.STORED_DOCUMENT_BYTES + store.getOffHeapBytes(),
+                    budget.getUsedBytes());
+        }
+    }
+
+    @Test
+    public void optionalDateColumn() throws Exception {
+        String csv = "Customer,Vat number,Document number,Type,Parent document,Currency,Total,Date\n" +
+                "Vendor 1,123456789,1000000257,1,,USD,400,2024-07-15\n" +
+                "Vendor 1,123456789,1000000258,1,,USD,400\n" +
+                "Vendor 1,123456789,1000000259,1,,USD,400,\n" +
+                "Vendor 1,123456789,1000000260,2,1000000257,EUR,100,15.07.2024\n";
+        DocumentsParseResult result = documentsFileParserService.parseDocumentsCsv(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                DocumentsParseOptions.builder().validationMode(ValidationMode.COLLECT_ALL).build());
+
+        List<Document> documents = result.getCustomers().get(VENDOR_1_VAT).getDocuments();
+        assertEquals(3, documents.size());
+        assertEquals(LocalDate.of(2024, 7, 15), documents.get(0).getDate());
+        assertNull(documents.get(1).getDate());
+        assertNull(documents.get(2).getDate());
+        List<ValidationError> errors = result.getValidationReport().getErrors();
+        assertEquals(1, errors.size());
+        assertError(errors.get(0), 4, "Date", "1000000260");
+    }
+
+    @Test
+    public void parallelParentValidationInRowOrder() throws Exception {
+        DocumentsParseResult result = documentsFileParserService.parseDocumentsCsv(
+                new ByteArrayInputStream(invalidParentsCsv()),
+                DocumentsParseOptions.builder().validationMode(ValidationMode.COLLECT_ALL).build());
+
+        List<ValidationError> errors = result.getValidationReport().getErrors();
+        assertEquals(3, errors.size());
+        // The parent of another customer is reported like a missing one
+        assertError(errors.get(0), 4, "Parent document", "1000003");
+        assertError(errors.get(1), 100_000, "Parent document", "1099999");
+        assertError(errors.get(2), 250_000, "Parent document", "1249999");
+    }
+
+    @Test
+    public void parallelParentValidationFailFastOnFirstRow() throws Exception {
+        try {
+            documentsFileParserService.parseDocumentsCsv(new ByteArrayInputStream(invalidParentsCsv()),
+                    DocumentsParseOptions.builder().build());
+            fail("Expected an invalid parent");
+        } catch (DocumentValidationException e) {
+            assertEquals("1000003", e.getDocumentNumber());
+        }
+    }
+
+    /**
+     * More notes than {@link DocumentsCollector#PARALLEL_THRESHOLD}: odd rows are invoices, even rows credit
+     * their previous row, except row 4 whose parent belongs to another customer, row 100000 whose parent does not
+     * exist and row 250000 without a parent.
+     */
+    private static byte[] invalidParentsCsv() {
+        StringBuilder csv = new StringBuilder("Customer,Vat number,Document number,Type,Parent document,Currency,Total\n");
+        for (int row = 1; row <= 250_000; row++) {
+            int customer = (row + 1) / 2 % 100;
+            csv.append(String.format("Vendor %d,%d,%d,", customer, 100000000 + customer, 999_999 + row));
+            if (row % 2 == 1) {
+                csv.append("1,,EUR,100\n");
+            } else {
+                String parent = switch (row) {
+                    case 4 -> "1000000";
+                    case 100_000 -> "1";
+                    case 250_000 -> "";
+                    default -> String.valueOf(999_998 + row);
+                };
+                csv.append("2,").append(parent).append(",EUR,10\n");
+            }
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void binarySameAsCsv() throws Exception {
+        byte[] binary = DocumentsBinaryConverter.convert(this.getClass().getResourceAsStream("/data.csv"));
+        Map<String, Customer> binaryCustomers = documentsFileParserService.parseDocumentsBinary(
+                new ByteArrayInputStream(binary), DocumentsParseOptions.builder().build()).getCustomers();
+        Map<String, Customer> csvCustomers = documentsFileParserService.parseDocumentsCsvInputStream(
+                this.getClass().getResourceAsStream("/data.csv"), null);
+
+        assertEquals(csvCustomers.keySet(), binaryCustomers.keySet());
+        for (Customer csvCustomer : csvCustomers.values()) {
+            Customer binaryCustomer = binaryCustomers.get(csvCustomer.getVatNumber());
+            assertEquals(csvCustomer, binaryCustomer);
+            assertEquals(csvCustomer.getDocuments(), binaryCustomer.getDocuments());
+        }
+    }
+
+    @Test
+    public void binaryFilterVat() throws Exception {
+        byte[] binary = DocumentsBinaryConverter.convert(this.getClass().getResourceAsStream("/data.csv"));
+        Map<String, Customer> customerMap = documentsFileParserService.parseDocumentsBinary(
+                new ByteArrayInputStream(binary),
+                DocumentsParseOptions.builder().filterVatNumber(VENDOR_1_VAT).build()).getCustomers();
+        assertEquals(1, customerMap.size());
+        assertEquals(4, customerMap.get(VENDOR_1_VAT).getDocuments().size());
+    }
+
+    @Test
+    public void binaryCollectAllErrors() throws Exception {
+        String csv = "Customer,Vat number,Document number,Type,Parent document,Currency,Total\n" +
+                "Vendor 1,123456789,1000000257,1,,USD,400.5\n" +
+                "Vendor 1,123456789,1000000258,7,,USD,400\n" +
+                "Vendor 1,123456789,1000000259,1,,XYZ,400\n" +
+                "Vendor 1,123456789,1000000260,2,1000000999,USD,1.25\n";
+        byte[] binary = DocumentsBinaryConverter.convert(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+        DocumentsParseResult result = documentsFileParserService.parseDocumentsBinary(new ByteArrayInputStream(binary),
+                DocumentsParseOptions.builder().validationMode(ValidationMode.COLLECT_ALL).build());
+
+        List<ValidationError> errors = result.getValidationReport().getErrors();
+        assertEquals(3, errors.size());
+        assertError(errors.get(0), 2, "Type", "1000000258");
+        assertError(errors.get(1), 3, "Currency", "1000000259");
+        assertError(errors.get(2), 4, "Parent document", "1000000260");
+
+        Document document = result.getCustomers().get(VENDOR_1_VAT).getDocuments().stream()
+                .filter(it -> it.getDocumentNumber().equals("1000000257")).findFirst().orElse(null);
+        assertNotNull(document);
+        assertEquals(new BigDecimal("400.50"), document.getTotal());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void binaryTruncated() throws Exception {
+        byte[] binary = DocumentsBinaryConverter.convert(this.getClass().getResourceAsStream("/data.csv"));
+        documentsFileParserService.parseDocumentsBinary(new ByteArrayInputStream(binary, 0, binary.length - 3),
+                DocumentsParseOptions.builder().build());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void binaryHugeStringCount() throws Exception {
+        documentsFileParserService.parseDocumentsBinary(new ByteArrayInputStream(binaryHeader(0, Integer.MAX_VALUE)),
+                DocumentsParseOptions.builder().build());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void binaryNegativeStringCount() throws Exception {
+        documentsFileParserService.parseDocumentsBinary(new ByteArrayInputStream(binaryHeader(0, -1)),
+                DocumentsParseOptions.builder().build());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void binaryHugeRowCount() throws Exception {
+        documentsFileParserService.parseDocumentsBinary(new ByteArrayInputStream(binaryHeader(Integer.MAX_VALUE, 0)),
+                DocumentsParseOptions.builder().build());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void binaryNegativeRowCount() throws Exception {
+        documentsFileParserService.parseDocumentsBinary(new ByteArrayInputStream(binaryHeader(-1, 0)),
+                DocumentsParseOptions.builder().build());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void binaryInvalidMagic() throws Exception {
+        documentsFileParserService.parseDocumentsBinary(this.getClass().getResourceAsStream("/data.csv"),
+                DocumentsParseOptions.builder().build());
+    }
+
+    @Test
+    public void parquetSameAsCsv() throws Exception {
+        Path parquet = temporaryFolder.newFile("data.parquet").toPath();
+        DocumentsParquetConverter.convert(this.getClass().getResourceAsStream("/data.csv"), parquet,
+                ParquetWriter.DEFAULT_BLOCK_SIZE);
+        Map<String, Customer> parquetCustomers = documentsFileParserService.parseDocumentsParquet(parquet,
+                DocumentsParseOptions.builder().build()).getCustomers();
+        Map<String, Customer> csvCustomers = documentsFileParserService.parseDocumentsCsvInputStream(
+                this.getClass().getResourceAsStream("/data.csv"), null);
+
+        assertEquals(csvCustomers.keySet(), parquetCustomers.keySet());
+        for (Customer csvCustomer : csvCustomers.values()) {
+            Customer parquetCustomer = parquetCustomers.get(csvCustomer.getVatNumber());
+            assertEquals(csvCustomer, parquetCustomer);
+            assertEquals(csvCustomer.getDocuments(), parquetCustomer.getDocuments());
+        }
+    }
+
+    @Test
+    public void parquetFilterVatRowGroups() throws Exception {
+        StringBuilder csv = new StringBuilder("Customer,Vat number,Document number,Type,Parent document,Currency,Total\n");
+        for (int i = 0; i < 1000; i++) {
+            csv.append(String.format("Vendor %d,%d,%d,1,,EUR,%d.25%n", i / 100, 100000000 + i / 100, i, i));
+        }
+        Path parquet = temporaryFolder.newFile("many.parquet").toPath();
+        DocumentsParquetConverter.convert(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)),
+                parquet, 1024);
+
+        Map<String, Customer> customerMap = documentsFileParserService.parseDocumentsParquet(parquet,
+                DocumentsParseOptions.builder().filterVatNumber("100000003").build()).getCustomers();
+        assertEquals(1, customerMap.size());
+        Customer customer = customerMap.get("100000003");
+        assertEquals("Vendor 3", customer.getName());
+        assertEquals(100, customer.getDocuments().size());
+        assertTrue(customer.getDocuments().stream().allMatch(it -> it.getTotal().scale() == 2));
+    }
+
+    @Test
+    public void parquetCollectAllErrors() throws Exception {
+        String csv = "Customer,Vat number,Document number,Type,Parent document,Currency,Total\n" +
+                "Vendor 1,123456789,1000000257,1,,USD,400.5\n" +
+                "Vendor 1,123456789,1000000258,7,,USD,400\n" +
+                "Vendor 1,123456789,1000000259,1,,XYZ,400\n" +
+                "Vendor 1,123456789,1000000260,2,1000000999,USD,1.25\n";
+        Path parquet = temporaryFolder.newFile("errors.parquet").toPath();
+        DocumentsParquetConverter.convert(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), parquet,
+                ParquetWriter.DEFAULT_BLOCK_SIZE);
+        DocumentsParseResult result = documentsFileParserService.parseDocumentsParquet(parquet,
+                DocumentsParseOptions.builder().validationMode(ValidationMode.COLLECT_ALL).build());
+
+        List<ValidationError> errors = result.getValidationReport().getErrors();
+        assertEquals(3, errors.size());
+        assertError(errors.get(0), 2, "Type", "1000000258");
+        assertError(errors.get(1), 3, "Currency", "1000000259");
+        assertError(errors.get(2), 4, "Parent document", "1000000260");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parquetInvalidFile() throws Exception {
+        Path file = temporaryFolder.newFile("data.csv").toPath();
+        Files.copy(this.getClass().getResourceAsStream("/data.csv"), file, StandardCopyOption.REPLACE_EXISTING);
+        documentsFileParserService.parseDocumentsParquet(file, DocumentsParseOptions.builder().build());
+    }
+
+    private static void assertError(ValidationError error, long row, String column, String documentNumber) {
+        assertEquals(row, error.getRow());
+        assertEquals(column, error.getColumn());
+        assertEquals(documentNumber, error.getDocumentNumber());
+    }
+
+    /**
+     * @return A binary documents file header with the given counts and no strings, currencies or columns.
+     */
+    private static byte[] binaryHeader(int rows, int strings) {
+        return ByteBuffer.allocate(DocumentsBinaryReader.MAGIC.length + 2 + 2 * Integer.BYTES + Short.BYTES)
+                .put(DocumentsBinaryReader.MAGIC)
+                .put((byte) DocumentsBinaryReader.VERSION)
+                .put((byte) 2)
+                .putInt(rows)
+                .putInt(strings)
+                .putShort((short) 0)
+                .array();
+    }
 }
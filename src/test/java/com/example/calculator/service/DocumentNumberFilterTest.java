@@ -0,0 +1,39 @@
+package com.example.calculator.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentNumberFilterTest {
+
+    @Test
+    public void addedNumbersAreAlwaysReported() {
+        DocumentNumberFilter filter = new DocumentNumberFilter(0);
+        for (int i = 0; i < 100_000; i++) {
+            filter.add(Integer.toString(1_000_000_000 + i));
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertFalse(filter.add(Integer.toString(1_000_000_000 + i)));
+        }
+    }
+
+    @Test
+    public void falsePositiveRateStaysLowWhenGrowing() {
+        // Sized for far fewer numbers than are added, so the filter adds layers
+        DocumentNumberFilter filter = new DocumentNumberFilter(1_000);
+        int falsePositives = 0;
+        for (int i = 0; i < 200_000; i++) {
+            if (!filter.add("INV-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("False positives: " + falsePositives, falsePositives < 200_000 / 20);
+    }
+
+    @Test
+    public void sizeFollowsExpectedNumbers() {
+        DocumentNumberFilter filter = new DocumentNumberFilter(1_000_000);
+        assertTrue(filter.getSizeInBytes() < 2 * 1_000_000);
+    }
+}
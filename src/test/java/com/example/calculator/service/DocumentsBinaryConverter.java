@@ -0,0 +1,125 @@
+package com.example.calculator.service;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts documents CSV files to the binary columnar format read by {@link DocumentsBinaryReader}.
+ * <p>
+ * Usage: {@code DocumentsBinaryConverter <input.csv> <output.bin>}
+ */
+public class DocumentsBinaryConverter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: DocumentsBinaryConverter <input.csv> <output.bin>");
+            System.exit(1);
+        }
+        try (InputStream in = new FileInputStream(args[0]);
+             OutputStream out = new BufferedOutputStream(new FileOutputStream(args[1]))) {
+            convert(in, out);
+        }
+    }
+
+    /**
+     * Convert a CSV documents file to the binary format.
+     */
+    public static byte[] convert(InputStream csv) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        convert(csv, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Convert a CSV documents file to the binary format. Type and total values must be valid numbers.
+     */
+    public static void convert(InputStream csv, OutputStream out) throws IOException {
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        Map<String, Integer> currencyIds = new HashMap<>();
+        List<String> currencies = new ArrayList<>();
+
+        List<int[]> stringColumns = new ArrayList<>();
+        List<Byte> types = new ArrayList<>();
+        List<Integer> currencyColumn = new ArrayList<>();
+        List<BigDecimal> totals = new ArrayList<>();
+        int scale = 0;
+
+        CSVFormat format = CSVFormat.DEFAULT.builder().setSkipHeaderRecord(true).setHeader().build();
+        try (CSVParser parser = format.parse(new InputStreamReader(csv, StandardCharsets.UTF_8))) {
+            for (CSVRecord record : parser) {
+                String parent = record.get(4);
+                stringColumns.add(new int[]{
+                        id(record.get(0), stringIds, strings),
+                        id(record.get(1), stringIds, strings),
+                        id(record.get(2), stringIds, strings),
+                        parent.isEmpty() ? DocumentsBinaryReader.NO_STRING : id(parent, stringIds, strings)});
+                types.add(Byte.parseByte(record.get(3)));
+                currencyColumn.add(id(record.get(5), currencyIds, currencies));
+                BigDecimal total = new BigDecimal(record.get(6));
+                scale = Math.max(scale, total.scale());
+                totals.add(total);
+            }
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(DocumentsBinaryReader.MAGIC);
+        data.writeByte(DocumentsBinaryReader.VERSION);
+        data.writeByte(scale);
+        data.writeInt(types.size());
+
+        data.writeInt(strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            data.writeShort(bytes.length);
+            data.write(bytes);
+        }
+        data.writeShort(currencies.size());
+        for (String currency : currencies) {
+            data.write(currency.getBytes(StandardCharsets.US_ASCII), 0, DocumentsBinaryReader.CURRENCY_CODE_LENGTH);
+        }
+
+        for (int column = 0; column < 3; column++) {
+            for (int[] row : stringColumns) {
+                data.writeInt(row[column]);
+            }
+        }
+        for (byte type : types) {
+            data.writeByte(type);
+        }
+        for (int[] row : stringColumns) {
+            data.writeInt(row[3]);
+        }
+        for (int currency : currencyColumn) {
+            data.writeShort(currency);
+        }
+        for (BigDecimal total : totals) {
+            data.writeLong(total.setScale(scale).unscaledValue().longValueExact());
+        }
+        data.flush();
+    }
+
+    private static int id(String value, Map<String, Integer> ids, List<String> values) {
+        return ids.computeIfAbsent(value, it -> {
+            values.add(it);
+            return values.size() - 1;
+        });
+    }
+}
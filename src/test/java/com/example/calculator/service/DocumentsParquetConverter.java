@@ -0,0 +1,102 @@
+package com.example.calculator.service;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.SimpleGroupFactory;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.example.ExampleParquetWriter;
+import org.apache.parquet.io.LocalOutputFile;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+import org.apache.parquet.schema.Types;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts documents CSV files to the Parquet files read by {@link DocumentsParquetReader}.
+ * <p>
+ * Usage: {@code DocumentsParquetConverter <input.csv> <output.parquet>}
+ */
+public class DocumentsParquetConverter {
+
+    private static final int DECIMAL_PRECISION = 18;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: DocumentsParquetConverter <input.csv> <output.parquet>");
+            System.exit(1);
+        }
+        try (InputStream in = new FileInputStream(args[0])) {
+            convert(in, Path.of(args[1]), ParquetWriter.DEFAULT_BLOCK_SIZE);
+        }
+    }
+
+    /**
+     * Convert a CSV documents file to Parquet. Type and total values must be valid numbers.
+     *
+     * @param rowGroupSize Approximate row group size in bytes, small values produce many row groups
+     */
+    public static void convert(InputStream csv, Path output, long rowGroupSize) throws IOException {
+        List<CSVRecord> records;
+        CSVFormat format = CSVFormat.DEFAULT.builder().setSkipHeaderRecord(true).setHeader().build();
+        try (CSVParser parser = format.parse(new InputStreamReader(csv, StandardCharsets.UTF_8))) {
+            records = parser.getRecords();
+        }
+        int scale = 0;
+        for (CSVRecord record : records) {
+            scale = Math.max(scale, new BigDecimal(record.get(6)).scale());
+        }
+
+        MessageType schema = Types.buildMessage()
+                .required(PrimitiveTypeName.BINARY).as(LogicalTypeAnnotation.stringType()).named("Customer")
+                .required(PrimitiveTypeName.BINARY).as(LogicalTypeAnnotation.stringType()).named("Vat number")
+                .required(PrimitiveTypeName.BINARY).as(LogicalTypeAnnotation.stringType()).named("Document number")
+                .required(PrimitiveTypeName.INT32).named("Type")
+                .optional(PrimitiveTypeName.BINARY).as(LogicalTypeAnnotation.stringType()).named("Parent document")
+                .required(PrimitiveTypeName.BINARY).as(LogicalTypeAnnotation.stringType()).named("Currency")
+                .required(PrimitiveTypeName.INT64).as(LogicalTypeAnnotation.decimalType(scale, DECIMAL_PRECISION))
+                .named("Total")
+                .named("documents");
+
+        SimpleGroupFactory groups = new SimpleGroupFactory(schema);
+        List<Group> rows = new ArrayList<>();
+        for (CSVRecord record : records) {
+            Group group = groups.newGroup()
+                    .append("Customer", record.get(0))
+                    .append("Vat number", record.get(1))
+                    .append("Document number", record.get(2))
+                    .append("Type", Integer.parseInt(record.get(3)));
+            if (!record.get(4).isEmpty()) {
+                group.append("Parent document", record.get(4));
+            }
+            group.append("Currency", record.get(5))
+                    .append("Total", new BigDecimal(record.get(6)).setScale(scale).unscaledValue().longValueExact());
+            rows.add(group);
+        }
+
+        try (ParquetWriter<Group> writer = ExampleParquetWriter.builder(new LocalOutputFile(output))
+                .withConf(new PlainParquetConfiguration())
+                .withType(schema)
+                .withWriteMode(ParquetFileWriter.Mode.OVERWRITE)
+                .withRowGroupSize(rowGroupSize)
+                .withPageRowCountLimit(10)
+                .build()) {
+            for (Group row : rows) {
+                writer.write(row);
+            }
+        }
+    }
+}
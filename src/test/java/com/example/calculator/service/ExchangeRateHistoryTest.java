@@ -0,0 +1,66 @@
+package com.example.calculator.service;
+
+import com.example.calculator.model.ExchangeRate;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.example.calculator.TestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ExchangeRateHistoryTest {
+
+    private static final LocalDate JANUARY = LocalDate.of(2024, 1, 1);
+    private static final LocalDate MARCH = LocalDate.of(2024, 3, 1);
+
+    private final ExchangeRateHistory history = new ExchangeRateHistory(List.of(
+            new ExchangeRate(CURRENCY_EUR, BigDecimal.ONE),
+            new ExchangeRate(CURRENCY_USD, new BigDecimal("0.9")),
+            new ExchangeRate(CURRENCY_USD, new BigDecimal("0.95"), MARCH),
+            new ExchangeRate(CURRENCY_USD, new BigDecimal("0.92"), JANUARY),
+            new ExchangeRate(CURRENCY_GBP, new BigDecimal("0.8"), MARCH)),
+            CurrencyExchangeService.DEFAULT_MATH_CONTEXT);
+
+    @Test
+    public void undatedRatesBeforeFirstEffectiveDate() {
+        assertTrue(history.isDated());
+        assertEquals(new BigDecimal("0.9"), history.getTable(null).getFactor(CURRENCY_EUR, CURRENCY_USD));
+        assertEquals(new BigDecimal("0.9"),
+                history.getTable(JANUARY.minusDays(1)).getFactor(CURRENCY_EUR, CURRENCY_USD));
+        assertNull(history.getTable(JANUARY.minusDays(1)).getFactor(CURRENCY_EUR, CURRENCY_GBP));
+    }
+
+    @Test
+    public void latestRateUpToDate() {
+        assertEquals(new BigDecimal("0.92"), history.getTable(JANUARY).getFactor(CURRENCY_EUR, CURRENCY_USD));
+        assertEquals(new BigDecimal("0.92"),
+                history.getTable(MARCH.minusDays(1)).getFactor(CURRENCY_EUR, CURRENCY_USD));
+        assertNull(history.getTable(MARCH.minusDays(1)).getFactor(CURRENCY_EUR, CURRENCY_GBP));
+
+        assertEquals(new BigDecimal("0.95"), history.getTable(MARCH).getFactor(CURRENCY_EUR, CURRENCY_USD));
+        assertEquals(new BigDecimal("0.760"),
+                history.getTable(LocalDate.of(2030, 1, 1)).getFactor(CURRENCY_USD, CURRENCY_GBP));
+    }
+
+    @Test
+    public void tableComputedOncePerPeriod() {
+        assertSame(history.getTable(JANUARY), history.getTable(JANUARY.plusDays(20)));
+        assertSame(history.getTable(null), history.getTable(LocalDate.of(2000, 1, 1)));
+    }
+
+    @Test
+    public void undatedRatesSingleTable() {
+        ExchangeRateHistory undated = new ExchangeRateHistory(List.of(
+                new ExchangeRate(CURRENCY_EUR, BigDecimal.ONE),
+                new ExchangeRate(CURRENCY_USD, new BigDecimal("0.9"))),
+                CurrencyExchangeService.DEFAULT_MATH_CONTEXT);
+        assertFalse(undated.isDated());
+        assertSame(undated.getTable(null), undated.getTable(MARCH));
+    }
+}
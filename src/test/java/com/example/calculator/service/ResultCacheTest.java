@@ -0,0 +1,153 @@
+package com.example.calculator.service;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class ResultCacheTest {
+
+    private final MutableClock clock = new MutableClock();
+
+    @Test
+    public void expiresAfterTtl() {
+        ResultCache<String> cache = new ResultCache<>(10_000, Duration.ofMinutes(5), String::length, clock);
+        cache.getOrCompute("a", () -> "result");
+        assertEquals("result", cache.get("a"));
+
+        clock.advance(Duration.ofMinutes(5));
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getSizeInBytes());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedOverByteBound() {
+        // Each entry weighs 96 + 2 + 100 bytes
+        ResultCache<String> cache = new ResultCache<>(500, Duration.ofMinutes(5), value -> 100, clock);
+        cache.getOrCompute("a", () -> "a");
+        cache.getOrCompute("b", () -> "b");
+        cache.get("a");
+        cache.getOrCompute("c", () -> "c");
+
+        assertEquals(2, cache.size());
+        assertEquals("a", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("c", cache.get("c"));
+        assertEquals(2 * 198, cache.getSizeInBytes());
+    }
+
+    @Test
+    public void resultLargerThanBoundNotCached() {
+        ResultCache<String> cache = new ResultCache<>(500, Duration.ofMinutes(5), value -> 1000, clock);
+        assertEquals("a", cache.getOrCompute("a", () -> "a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void concurrentComputationsShareResult() throws Exception {
+        ResultCache<String> cache = new ResultCache<>(10_000, Duration.ofMinutes(5), String::length, clock);
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<String> first = executor.submit(() -> cache.getOrCompute("a", () -> {
+                computations.incrementAndGet();
+                computing.countDown();
+                await(release);
+                return new String("result");
+            }));
+            computing.await(10, TimeUnit.SECONDS);
+            Future<String> second = executor.submit(() -> cache.getOrCompute("a", () -> {
+                computations.incrementAndGet();
+                return "other";
+            }));
+            release.countDown();
+
+            assertSame(first.get(10, TimeUnit.SECONDS), second.get(10, TimeUnit.SECONDS));
+            assertEquals(1, computations.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failureSharedAndNotCached() throws Exception {
+        ResultCache<String> cache = new ResultCache<>(10_000, Duration.ofMinutes(5), String::length, clock);
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> cache.getOrCompute("a", () -> {
+                computing.countDown();
+                await(release);
+                throw new IllegalStateException("failed");
+            }));
+            computing.await(10, TimeUnit.SECONDS);
+            Future<String> second = executor.submit(() -> cache.getOrCompute("a", () -> "other"));
+            // Let the second call join the computation before it fails
+            Thread.sleep(200);
+            release.countDown();
+
+            for (Future<String> future : List.of(first, second)) {
+                try {
+                    future.get(10, TimeUnit.SECONDS);
+                    fail("Expected the computation to fail");
+                } catch (ExecutionException e) {
+                    assertEquals("failed", e.getCause().getMessage());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals("retry", cache.getOrCompute("a", () -> "retry"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant instant = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
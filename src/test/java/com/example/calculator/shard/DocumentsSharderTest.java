@@ -0,0 +1,99 @@
+package com.example.calculator.shard;
+
+import com.example.calculator.shard.DocumentsSharder.Shard;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.calculator.TestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentsSharderTest {
+
+    private static final String HEADER = "Customer,Vat number,Document number,Type,Parent document,Currency,Total";
+
+    @Test
+    public void customersOnOneShardWithHeader() throws IOException {
+        final List<Shard> shards;
+        try (InputStream in = getClass().getResourceAsStream("/data.csv")) {
+            shards = DocumentsSharder.split(in, 3);
+        }
+        try {
+            assertEquals(3, shards.size());
+            final Map<String, Integer> shardOfVat = new HashMap<>();
+            int rows = 0;
+            for (int i = 0; i < shards.size(); i++) {
+                final List<String> lines = Files.readAllLines(shards.get(i).getPath(), StandardCharsets.UTF_8);
+                assertEquals(HEADER, lines.get(0));
+                assertEquals(shards.get(i).getRowCount(), lines.size() - 1);
+                rows += shards.get(i).getRowCount();
+                for (String line : lines.subList(1, lines.size())) {
+                    final Integer previous = shardOfVat.put(line.split(",")[1], i);
+                    assertTrue(previous == null || previous == i);
+                }
+            }
+            assertEquals(8, rows);
+            assertEquals(DocumentsSharder.shardOf(VENDOR_1_VAT, 3), (int) shardOfVat.get(VENDOR_1_VAT));
+            assertEquals(DocumentsSharder.shardOf(VENDOR_2_VAT, 3), (int) shardOfVat.get(VENDOR_2_VAT));
+            assertEquals(DocumentsSharder.shardOf(VENDOR_3_VAT, 3), (int) shardOfVat.get(VENDOR_3_VAT));
+        } finally {
+            shards.forEach(Shard::delete);
+        }
+        shards.forEach(shard -> assertFalse(Files.exists(shard.getPath())));
+    }
+
+    @Test
+    public void originalRows() throws IOException {
+        final String csv = HEADER + "\n"
+                + "Vendor 1,123456789,1,1,,EUR,1\n"
+                + "Vendor 2,987654321,2,1,,EUR,1\n"
+                + "Vendor 1,123456789,3,1,,EUR,1\n"
+                + "Invalid\n"
+                + "Vendor 2,987654321,4,1,,EUR,1\n";
+        final List<Shard> shards = DocumentsSharder.split(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), 2);
+        try {
+            final Shard vendor1 = shards.get(DocumentsSharder.shardOf(VENDOR_1_VAT, 2));
+            final Shard vendor2 = shards.get(DocumentsSharder.shardOf(VENDOR_2_VAT, 2));
+            final Shard invalid = shards.get(0);
+
+            assertEquals(1, vendor1.getOriginalRow(findRow(vendor1, ",1,1,")));
+            assertEquals(3, vendor1.getOriginalRow(findRow(vendor1, ",3,1,")));
+            assertEquals(2, vendor2.getOriginalRow(findRow(vendor2, ",2,1,")));
+            assertEquals(5, vendor2.getOriginalRow(findRow(vendor2, ",4,1,")));
+            assertEquals(4, invalid.getOriginalRow(findRow(invalid, "Invalid")));
+
+            // Customers in the order they first appear, with their first original row
+            assertEquals(2, shards.stream().mapToInt(Shard::getCustomerCount).sum());
+            final int vendor2Customer = vendor1 == vendor2 ? 1 : 0;
+            assertEquals(VENDOR_1_VAT, vendor1.getCustomerVatNumber(0));
+            assertEquals(1, vendor1.getCustomerFirstRow(0));
+            assertEquals(VENDOR_2_VAT, vendor2.getCustomerVatNumber(vendor2Customer));
+            assertEquals(2, vendor2.getCustomerFirstRow(vendor2Customer));
+        } finally {
+            shards.forEach(Shard::delete);
+        }
+    }
+
+    /**
+     * @return The 1-based data row of the shard containing the text.
+     */
+    private static long findRow(final Shard shard, final String text) throws IOException {
+        final List<String> lines = Files.readAllLines(shard.getPath(), StandardCharsets.UTF_8);
+        for (int i = 1; i < lines.size(); i++) {
+            if (lines.get(i).contains(text)) {
+                return i;
+            }
+        }
+        throw new AssertionError(text + " not found in shard");
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.calculator.snapshot;
+
+import com.example.calculator.CalculatorProperties;
+import com.example.calculator.model.Customer;
+import com.example.calculator.model.Document;
+import com.example.calculator.model.DocumentType;
+import com.example.calculator.model.ExchangeRate;
+import com.example.calculator.service.CurrencyExchangeService;
+import com.example.calculator.service.DocumentsFileParserService;
+import com.example.calculator.service.DocumentsParseOptions;
+import com.example.calculator.service.ParsedDocumentsCache;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.example.calculator.TestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentsSnapshotServiceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private CalculatorProperties calculatorProperties;
+    private Path snapshotPath;
+
+    @Before
+    public void setup() throws Exception {
+        snapshotPath = temporaryFolder.getRoot().toPath().resolve("snapshot.bin");
+        calculatorProperties = new CalculatorProperties();
+        calculatorProperties.getParser().setCacheSize(4);
+        calculatorProperties.getSnapshot().setEnabled(true);
+        calculatorProperties.getSnapshot().setPath(snapshotPath.toString());
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        Map<String, Customer> customers = new DocumentsFileParserService().parseDocumentsCsv(
+                this.getClass().getResourceAsStream("/data.csv"),
+                DocumentsParseOptions.builder().precomputeTotals(true).build()).getCustomers();
+        List<ExchangeRate> exchangeRates = List.of(new ExchangeRate(CURRENCY_EUR, BigDecimal.ONE),
+                new ExchangeRate(CURRENCY_USD, new BigDecimal("0.987")));
+
+        ParsedDocumentsCache cache = new ParsedDocumentsCache(calculatorProperties);
+        CurrencyExchangeService currencyExchangeService = new CurrencyExchangeService();
+        cache.put("data", customers);
+        currencyExchangeService.getExchangeRateTable(exchangeRates);
+        new DocumentsSnapshotService(calculatorProperties, cache, currencyExchangeService).save();
+        assertTrue(Files.isRegularFile(snapshotPath));
+
+        ParsedDocumentsCache restoredCache = new ParsedDocumentsCache(calculatorProperties);
+        CurrencyExchangeService restoredExchangeService = new CurrencyExchangeService();
+        new DocumentsSnapshotService(calculatorProperties, restoredCache, restoredExchangeService).load();
+
+        assertEquals(Set.of(Set.copyOf(exchangeRates)), restoredExchangeService.getCachedRateSets());
+        Map<String, Customer> restored = restoredCache.get("data");
+        assertEquals(customers.keySet(), restored.keySet());
+        for (Customer customer : customers.values()) {
+            Customer restoredCustomer = restored.get(customer.getVatNumber());
+            assertEquals(customer.getName(), restoredCustomer.getName());
+            assertEquals(customer.getDocuments().size(), restoredCustomer.getDocuments().size());
+            for (int i = 0; i < customer.getDocuments().size(); i++) {
+                assertDocument(customer.getDocuments().get(i), restoredCustomer.getDocuments().get(i));
+            }
+            for (Currency currency : customer.getDocumentTotals().getCurrencies()) {
+                for (DocumentType documentType : DocumentType.values()) {
+                    assertEquals(customer.getDocumentTotals().getTotal(currency, documentType),
+                            restoredCustomer.getDocumentTotals().getTotal(currency, documentType));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void otherVersionIgnored() throws Exception {
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(snapshotPath))) {
+            out.writeInt(SnapshotFile.MAGIC);
+            out.writeInt(SnapshotFile.VERSION + 1);
+            out.writeInt(0);
+            out.writeInt(0);
+        }
+        ParsedDocumentsCache cache = new ParsedDocumentsCache(calculatorProperties);
+        new DocumentsSnapshotService(calculatorProperties, cache, new CurrencyExchangeService()).load();
+        assertTrue(cache.getEntries().isEmpty());
+    }
+
+    @Test
+    public void truncatedFileIgnored() throws Exception {
+        ParsedDocumentsCache cache = new ParsedDocumentsCache(calculatorProperties);
+        cache.put("data", new DocumentsFileParserService().parseDocumentsCsvInputStream(
+                this.getClass().getResourceAsStream("/data.csv"), null));
+        new DocumentsSnapshotService(calculatorProperties, cache, new CurrencyExchangeService()).save();
+        byte[] bytes = Files.readAllBytes(snapshotPath);
+        Files.write(snapshotPath, Arrays.copyOf(bytes, bytes.length / 2));
+
+        ParsedDocumentsCache restoredCache = new ParsedDocumentsCache(calculatorProperties);
+        new DocumentsSnapshotService(calculatorProperties, restoredCache, new CurrencyExchangeService()).load();
+        assertNull(restoredCache.get("data"));
+    }
+
+    @Test
+    public void hugeLengthIgnored() throws Exception {
+        assertCorruptIgnored(out -> {
+            out.writeInt(1);
+            out.writeInt(Integer.MAX_VALUE);
+        });
+    }
+
+    @Test
+    public void negativeLengthIgnored() throws Exception {
+        assertCorruptIgnored(out -> {
+            out.writeInt(1);
+            out.writeInt(-2);
+        });
+    }
+
+    @Test
+    public void hugeCountIgnored() throws Exception {
+        assertCorruptIgnored(out -> out.writeInt(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void missingVatNumberIgnored() throws Exception {
+        assertCorruptIgnored(out -> {
+            out.writeInt(1);
+            out.writeInt(1);
+            out.writeByte('k');
+            out.writeInt(1);
+            out.writeInt(1);
+            out.writeByte('n');
+            out.writeInt(-1);
+            out.writeInt(0);
+            out.writeByte(0);
+        });
+    }
+
+    @FunctionalInterface
+    private interface Entries {
+        void write(DataOutputStream out) throws Exception;
+    }
+
+    /**
+     * Write a snapshot without rate sets followed by corrupt entries, and check that loading it starts cold.
+     */
+    private void assertCorruptIgnored(Entries entries) throws Exception {
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(snapshotPath))) {
+            out.writeInt(SnapshotFile.MAGIC);
+            out.writeInt(SnapshotFile.VERSION);
+            out.writeInt(0);
+            entries.write(out);
+        }
+        ParsedDocumentsCache cache = new ParsedDocumentsCache(calculatorProperties);
+        new DocumentsSnapshotService(calculatorProperties, cache, new CurrencyExchangeService()).load();
+        assertTrue(cache.getEntries().isEmpty());
+    }
+
+    private static void assertDocument(Document expected, Document actual) {
+        assertEquals(expected.getDocumentNumber(), actual.getDocumentNumber());
+        assertEquals(expected.getDocumentType(), actual.getDocumentType());
+        assertEquals(expected.getParentDocumentNumber(), actual.getParentDocumentNumber());
+        assertEquals(expected.getCurrency(), actual.getCurrency());
+        assertEquals(expected.getTotal(), actual.getTotal());
+    }
+}
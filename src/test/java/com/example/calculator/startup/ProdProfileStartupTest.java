@@ -0,0 +1,50 @@
+package com.example.calculator.startup;
+
+import com.example.calculator.CalculatorApplication;
+import com.example.calculator.snapshot.DocumentsSnapshotService;
+import org.junit.Test;
+import org.springdoc.webmvc.ui.SwaggerConfig;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Starts the application with the prod profile and measures the time until it is ready.
+ */
+public class ProdProfileStartupTest {
+
+    /**
+     * Generous bound that only catches large regressions, startup takes a few seconds.
+     */
+    private static final Duration STARTUP_BUDGET = Duration.ofSeconds(30);
+
+    @Test
+    public void startsLazilyWithoutSwagger() {
+        final long start = System.nanoTime();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(CalculatorApplication.class)
+                .profiles("prod")
+                .run("--server.port=0")) {
+            final Duration startup = Duration.ofNanos(System.nanoTime() - start);
+            System.out.printf("Started with the prod profile in %d ms%n", startup.toMillis());
+            assertTrue("Startup took " + startup, startup.compareTo(STARTUP_BUDGET) < 0);
+
+            assertTrue(context.getBeanFactory().getBeanDefinition("sumInvoicesApiDelegateImpl").isLazyInit());
+            assertEquals(1, context.getBeanNamesForType(DocumentsSnapshotService.class).length);
+            assertEquals(0, context.getBeanNamesForType(SwaggerConfig.class).length);
+
+            final int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            final TestRestTemplate restTemplate = new TestRestTemplate();
+            assertEquals(HttpStatus.NOT_FOUND,
+                    restTemplate.getForEntity("http://localhost:" + port + "/v3/api-docs", String.class).getStatusCode());
+            assertEquals(HttpStatus.OK,
+                    restTemplate.getForEntity("http://localhost:" + port + "/openapi.yaml", String.class).getStatusCode());
+        }
+    }
+}
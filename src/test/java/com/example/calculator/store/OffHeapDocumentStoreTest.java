@@ -0,0 +1,94 @@
+package com.example.calculator.store;
+
+import com.example.calculator.model.Document;
+import com.example.calculator.model.DocumentCursor;
+import com.example.calculator.model.DocumentType;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.calculator.TestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class OffHeapDocumentStoreTest {
+
+    @Test
+    public void documentsRoundTrip() {
+        List<Document> documents = List.of(
+                Document.builder("1000000257", DocumentType.INVOICE).parentDocumentNumber("")
+                        .currency(CURRENCY_USD).total(new BigDecimal("400.50")).build(),
+                Document.builder("1000000260", DocumentType.CREDIT_NOTE).parentDocumentNumber("1000000257")
+                        .currency(CURRENCY_EUR).total(new BigDecimal("-1E+3")).date(LocalDate.of(2024, 2, 29)).build(),
+                // Unscaled value wider than a long, kept on the heap
+                Document.builder("Документ-3", DocumentType.DEBIT_NOTE)
+                        .currency(CURRENCY_GBP).total(new BigDecimal(100.01)).build());
+
+        try (OffHeapDocumentStore store = new OffHeapDocumentStore()) {
+            int customer = store.addCustomer();
+            for (Document document : documents) {
+                store.link(store.add(customer, document));
+            }
+
+            for (int i = 0; i < documents.size(); i++) {
+                assertEquals(documents.get(i), store.get(i));
+                assertEquals(documents.get(i).getTotal().scale(), store.get(i).getTotal().scale());
+            }
+            assertNull(store.get(2).getParentDocumentNumber());
+            assertNull(store.get(0).getDate());
+            assertEquals("", store.get(0).getParentDocumentNumber());
+            assertEquals(3, store.getDocumentCount(customer));
+        }
+    }
+
+    @Test
+    public void cursorFollowsLinkedDocumentsOfCustomer() {
+        try (OffHeapDocumentStore store = new OffHeapDocumentStore()) {
+            int customer1 = store.addCustomer();
+            int customer2 = store.addCustomer();
+            // Enough records for several chunks
+            for (int i = 0; i < 100_000; i++) {
+                int record = store.add(i % 2 == 0 ? customer1 : customer2, Document.builder(Integer.toString(i),
+                        DocumentType.INVOICE).currency(CURRENCY_EUR).total(BigDecimal.valueOf(i)).build());
+                // Stored but not linked, like a rejected duplicate
+                if (i % 10 != 9) {
+                    store.link(record);
+                }
+            }
+
+            List<String> numbers = new ArrayList<>();
+            BigDecimal sum = BigDecimal.ZERO;
+            DocumentCursor cursor = store.cursor(customer2);
+            while (cursor.next()) {
+                numbers.add(cursor.getDocumentNumber());
+                sum = sum.add(cursor.getTotal());
+            }
+            assertEquals(40_000, numbers.size());
+            assertEquals(40_000, store.getDocumentCount(customer2));
+            assertEquals("1", numbers.get(0));
+            assertEquals("3", numbers.get(1));
+            assertEquals("11", numbers.get(4));
+            long expectedSum = 0;
+            for (int i = 1; i < 100_000; i += 2) {
+                expectedSum += i % 10 != 9 ? i : 0;
+            }
+            assertEquals(BigDecimal.valueOf(expectedSum), sum);
+            assertFalse(store.cursor(store.addCustomer()).next());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closedStoreCannotBeRead() {
+        OffHeapDocumentStore store = new OffHeapDocumentStore();
+        int customer = store.addCustomer();
+        store.link(store.add(customer, Document.builder("1", DocumentType.INVOICE)
+                .currency(CURRENCY_EUR).total(BigDecimal.ONE).build()));
+        DocumentCursor cursor = store.cursor(customer);
+        store.close();
+        cursor.next();
+    }
+}
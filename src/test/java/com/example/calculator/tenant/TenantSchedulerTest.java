@@ -0,0 +1,187 @@
+package com.example.calculator.tenant;
+
+import com.example.calculator.CalculatorProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TenantSchedulerTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void disabledByDefault() {
+        assertFalse(new TenantScheduler(new CalculatorProperties(), meterRegistry).isEnabled());
+    }
+
+    @Test
+    public void resolveTenant() {
+        final CalculatorProperties calculatorProperties = properties(1);
+        calculatorProperties.getTenants().getPools().put("batch", pool(1, 1, 1));
+        calculatorProperties.getTenants().setApiKeys(Map.of("secret", "batch"));
+        final TenantScheduler scheduler = new TenantScheduler(calculatorProperties, meterRegistry);
+
+        assertEquals("batch", scheduler.resolveTenant("secret", null));
+        assertEquals("batch", scheduler.resolveTenant(null, "batch"));
+        assertEquals(TenantScheduler.DEFAULT_TENANT, scheduler.resolveTenant(null, "other"));
+        assertEquals(TenantScheduler.DEFAULT_TENANT, scheduler.resolveTenant(" ", null));
+        try {
+            scheduler.resolveTenant("guess", "batch");
+            fail("Unknown API key accepted");
+        } catch (ResponseStatusException e) {
+            assertEquals(HttpStatus.UNAUTHORIZED, e.getStatus());
+        }
+    }
+
+    @Test
+    public void slotsSharedByWeight() throws Exception {
+        final CalculatorProperties calculatorProperties = properties(1);
+        calculatorProperties.getTenants().getPools().put("interactive", pool(1, 16, 3));
+        calculatorProperties.getTenants().getPools().put("batch", pool(1, 16, 1));
+        final TenantScheduler scheduler = new TenantScheduler(calculatorProperties, meterRegistry);
+
+        final TenantScheduler.Admission blocking = scheduler.admit(TenantScheduler.DEFAULT_TENANT, 0);
+        final List<String> admitted = Collections.synchronizedList(new ArrayList<>());
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            for (String tenant : List.of("interactive", "batch")) {
+                final Thread thread = new Thread(() -> {
+                    final TenantScheduler.Admission admission = scheduler.admit(tenant, 0);
+                    admitted.add(admission.getTenant());
+                    admission.release();
+                });
+                thread.start();
+                threads.add(thread);
+            }
+        }
+        awaitQueueSize("interactive", 8);
+        awaitQueueSize("batch", 8);
+
+        blocking.release();
+        for (Thread thread : threads) {
+            thread.join(10_000);
+        }
+        assertEquals(16, admitted.size());
+        assertEquals(6, admitted.subList(0, 8).stream().filter("interactive"::equals).count());
+        assertEquals(1, meterRegistry.get(TenantScheduler.QUEUE_WAIT_METRIC).tag("tenant", "default").timer().count());
+        assertEquals(8, meterRegistry.get(TenantScheduler.LATENCY_METRIC).tag("tenant", "batch").timer().count());
+    }
+
+    @Test
+    public void largeUploadsCostMore() throws Exception {
+        final CalculatorProperties calculatorProperties = properties(1);
+        calculatorProperties.getTenants().getPools().put("a", pool(1, 16, 1));
+        calculatorProperties.getTenants().getPools().put("b", pool(1, 16, 1));
+        final TenantScheduler scheduler = new TenantScheduler(calculatorProperties, meterRegistry);
+
+        final TenantScheduler.Admission blocking = scheduler.admit(TenantScheduler.DEFAULT_TENANT, 0);
+        final List<String> admitted = Collections.synchronizedList(new ArrayList<>());
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            for (String tenant : List.of("a", "b")) {
+                // Uploads of tenant a cost 3 units, those of tenant b 1 unit
+                final long bytes = tenant.equals("a") ? 2 * TenantScheduler.COST_UNIT_BYTES : 0;
+                final Thread thread = new Thread(() -> {
+                    final TenantScheduler.Admission admission = scheduler.admit(tenant, bytes);
+                    admitted.add(admission.getTenant());
+                    admission.release();
+                });
+                thread.start();
+                threads.add(thread);
+            }
+        }
+        awaitQueueSize("a", 4);
+        awaitQueueSize("b", 4);
+
+        blocking.release();
+        for (Thread thread : threads) {
+            thread.join(10_000);
+        }
+        assertEquals(List.of("a", "b", "b", "b", "a", "b"), admitted.subList(0, 6));
+    }
+
+    @Test
+    public void fullQueueRejected() throws Exception {
+        final CalculatorProperties calculatorProperties = properties(1);
+        calculatorProperties.getTenants().getPools().put(TenantScheduler.DEFAULT_TENANT, pool(1, 1, 1));
+        final TenantScheduler scheduler = new TenantScheduler(calculatorProperties, meterRegistry);
+
+        final TenantScheduler.Admission blocking = scheduler.admit(TenantScheduler.DEFAULT_TENANT, 0);
+        final Thread queued = new Thread(() -> scheduler.admit(TenantScheduler.DEFAULT_TENANT, 0).release());
+        queued.start();
+        awaitQueueSize(TenantScheduler.DEFAULT_TENANT, 1);
+        try {
+            scheduler.admit(TenantScheduler.DEFAULT_TENANT, 0);
+            fail("Request admitted to a full queue");
+        } catch (ResponseStatusException e) {
+            assertEquals(HttpStatus.TOO_MANY_REQUESTS, e.getStatus());
+        }
+        blocking.release();
+        queued.join(10_000);
+        assertFalse(queued.isAlive());
+        assertEquals(1, rejected(TenantScheduler.DEFAULT_TENANT, "queue-full"), 0);
+    }
+
+    @Test
+    public void queueTimeout() {
+        final CalculatorProperties calculatorProperties = properties(1);
+        calculatorProperties.getTenants().setQueueTimeout(Duration.ofMillis(50));
+        final TenantScheduler scheduler = new TenantScheduler(calculatorProperties, meterRegistry);
+
+        final TenantScheduler.Admission blocking = scheduler.admit(TenantScheduler.DEFAULT_TENANT, 0);
+        try {
+            scheduler.admit(TenantScheduler.DEFAULT_TENANT, 0);
+            fail("Request admitted while the slot is taken");
+        } catch (ResponseStatusException e) {
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatus());
+        }
+        assertEquals(1, rejected(TenantScheduler.DEFAULT_TENANT, "timeout"), 0);
+
+        // The timed out request left the queue, the slot is free again once released
+        blocking.release();
+        blocking.release();
+        scheduler.admit(TenantScheduler.DEFAULT_TENANT, 0).release();
+        assertEquals(0, meterRegistry.get(TenantScheduler.ACTIVE_METRIC).tag("tenant", "default").gauge().value(), 0);
+    }
+
+    private void awaitQueueSize(final String tenant, final int size) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10_000;
+        while (meterRegistry.get(TenantScheduler.QUEUE_SIZE_METRIC).tag("tenant", tenant).gauge().value() < size) {
+            assertTrue("Requests of tenant " + tenant + " not queued", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private double rejected(final String tenant, final String reason) {
+        return meterRegistry.get(TenantScheduler.REJECTED_METRIC).tag("tenant", tenant).tag("reason", reason)
+                .counter().count();
+    }
+
+    private static CalculatorProperties properties(final int concurrency) {
+        final CalculatorProperties calculatorProperties = new CalculatorProperties();
+        calculatorProperties.getTenants().setConcurrency(concurrency);
+        return calculatorProperties;
+    }
+
+    private static CalculatorProperties.Tenants.Pool pool(final int concurrency, final int queueCapacity,
+                                                          final int weight) {
+        final CalculatorProperties.Tenants.Pool pool = new CalculatorProperties.Tenants.Pool();
+        pool.setConcurrency(concurrency);
+        pool.setQueueCapacity(queueCapacity);
+        pool.setWeight(weight);
+        return pool;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.calculator.timing;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StageTimerTest {
+
+    @Test
+    public void recordStages() throws Exception {
+        StageTimer timer = new StageTimer();
+        timer.start(Stage.PARSE);
+        Thread.sleep(5);
+        timer.stop(Stage.PARSE);
+
+        assertTrue(timer.isStopped(Stage.PARSE));
+        assertTrue(timer.getDurationNanos(Stage.PARSE) >= 5_000_000L);
+        assertFalse(timer.isStarted(Stage.CALCULATE));
+        assertEquals(0, timer.getDurationNanos(Stage.CALCULATE));
+        assertTrue(timer.getTotalNanos() >= timer.getDurationNanos(Stage.PARSE));
+        assertTrue(timer.getEndEpochNanos(Stage.PARSE) > timer.getStartEpochNanos(Stage.PARSE));
+    }
+
+    @Test
+    public void stopWithoutStartIgnored() {
+        StageTimer timer = new StageTimer();
+        timer.stop(Stage.UPLOAD);
+        assertFalse(timer.isStopped(Stage.UPLOAD));
+        assertEquals(0, timer.getDurationNanos(Stage.UPLOAD));
+    }
+
+    @Test
+    public void serverTiming() {
+        StageTimer timer = new StageTimer();
+        timer.start(Stage.EXCHANGE_RATES);
+        timer.stop(Stage.EXCHANGE_RATES);
+        timer.start(Stage.CALCULATE);
+        timer.stop(Stage.CALCULATE);
+
+        assertTrue(Pattern.matches("rates;dur=\\d+\\.\\d{3}, calculate;dur=\\d+\\.\\d{3}, total;dur=\\d+\\.\\d{3}",
+                timer.toServerTiming()));
+    }
+
+    @Test
+    public void currentWithoutRequest() {
+        assertFalse(StageTimer.current().isStarted(Stage.UPLOAD));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.calculator.timing;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StageTimingFilterTest {
+
+    private InMemorySpanExporter spanExporter;
+    private StageTimingFilter filter;
+
+    @Before
+    public void setup() {
+        spanExporter = InMemorySpanExporter.create();
+        OpenTelemetry openTelemetry = OpenTelemetrySdk.builder()
+                .setTracerProvider(SdkTracerProvider.builder()
+                        .addSpanProcessor(SimpleSpanProcessor.create(spanExporter))
+                        .build())
+                .build();
+        filter = new StageTimingFilter(new StaticListableBeanFactory(Map.of("openTelemetry", openTelemetry))
+                .getBeanProvider(OpenTelemetry.class));
+    }
+
+    @Test
+    public void synchronousRequestExportedWhenChainReturns() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/test");
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> { });
+
+        assertEquals(List.of("upload", "GET /api/v1/test"), spanNames());
+    }
+
+    @Test
+    public void asynchronousRequestExportedWhenCompleted() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/progress/1");
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> req.startAsync());
+
+        assertTrue(spanNames().isEmpty());
+
+        ((MockAsyncContext) request.getAsyncContext()).complete();
+        assertEquals(List.of("upload", "GET /api/v1/progress/1"), spanNames());
+    }
+
+    private List<String> spanNames() {
+        return spanExporter.getFinishedSpanItems().stream()
+                .map(SpanData::getName)
+                .collect(Collectors.toList());
+    }
+}
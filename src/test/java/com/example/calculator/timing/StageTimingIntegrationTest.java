@@ -0,0 +1,113 @@
+package com.example.calculator.timing;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class StageTimingIntegrationTest {
+
+    @TestConfiguration
+    static class OpenTelemetryConfiguration {
+
+        @Bean
+        InMemorySpanExporter spanExporter() {
+            return InMemorySpanExporter.create();
+        }
+
+        @Bean
+        OpenTelemetry openTelemetry(InMemorySpanExporter spanExporter) {
+            return OpenTelemetrySdk.builder()
+                    .setTracerProvider(SdkTracerProvider.builder()
+                            .addSpanProcessor(SimpleSpanProcessor.create(spanExporter))
+                            .build())
+                    .build();
+        }
+    }
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private InMemorySpanExporter spanExporter;
+
+    @Before
+    public void setup() {
+        spanExporter.reset();
+    }
+
+    @Test
+    public void serverTimingAndSpans() throws Exception {
+        InputStream inputStream = this.getClass().getResourceAsStream("/data.csv");
+        MockMultipartFile multipartFile = new MockMultipartFile("file", "data.csv", "text/csv", inputStream);
+
+        mvc.perform(multipart("/api/v1/sumInvoices")
+                        .file(multipartFile)
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "USD:0.987", "GBP:0.878"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(StageTimer.SERVER_TIMING_HEADER, matchesPattern(
+                        "upload;dur=[\\d.]+, rates;dur=[\\d.]+, parse;dur=[\\d.]+, calculate;dur=[\\d.]+, total;dur=[\\d.]+")));
+
+        List<SpanData> spans = spanExporter.getFinishedSpanItems();
+        assertEquals(5, spans.size());
+        SpanData requestSpan = spans.get(spans.size() - 1);
+        assertEquals("POST /api/v1/sumInvoices", requestSpan.getName());
+        assertEquals(SpanKind.SERVER, requestSpan.getKind());
+
+        List<SpanData> stageSpans = spans.subList(0, spans.size() - 1);
+        assertEquals(List.of("upload", "rates", "parse", "calculate"),
+                stageSpans.stream().map(SpanData::getName).collect(Collectors.toList()));
+        for (SpanData stageSpan : stageSpans) {
+            assertEquals(requestSpan.getSpanId(), stageSpan.getParentSpanId());
+            assertEquals(requestSpan.getTraceId(), stageSpan.getTraceId());
+            assertTrue(stageSpan.getStartEpochNanos() >= requestSpan.getStartEpochNanos());
+            assertTrue(stageSpan.getEndEpochNanos() <= requestSpan.getEndEpochNanos());
+        }
+    }
+
+    @Test
+    public void spansOnError() throws Exception {
+        InputStream inputStream = this.getClass().getResourceAsStream("/data.csv");
+        MockMultipartFile multipartFile = new MockMultipartFile("file", "data.csv", "text/csv", inputStream);
+
+        mvc.perform(multipart("/api/v1/sumInvoices")
+                        .file(multipartFile)
+                        .param("outputCurrency", "EUR")
+                        .param("exchangeRates", "EUR:1", "USD:0.987"))
+                .andExpect(status().isBadRequest());
+
+        List<String> names = spanExporter.getFinishedSpanItems().stream()
+                .map(SpanData::getName)
+                .collect(Collectors.toList());
+        assertEquals(List.of("upload", "rates", "parse", "calculate", "POST /api/v1/sumInvoices"), names);
+    }
+}